@@ -0,0 +1,44 @@
+package edu.rit.cs.maxflow.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks, taking the usual JMH command line options, with
+ * the GC profiler always on so every result comes with its allocation
+ * rate and bytes allocated per operation.
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar Solve -p family=grid,ak
+ * </pre>
+ *
+ * @author RIT CS
+ */
+public class BenchmarkMain {
+
+    /**
+     * Run the benchmarks.
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if a benchmark fails
+     * @throws IOException if the benchmark list cannot be read
+     */
+    public static void main( String[] args ) throws CommandLineOptionException,
+            RunnerException, IOException {
+        CommandLineOptions cli = new CommandLineOptions( args );
+        if ( cli.shouldHelp() || cli.shouldList() ||
+             cli.shouldListProfilers() ) {
+            org.openjdk.jmh.Main.main( args );
+            return;
+        }
+        new Runner( new OptionsBuilder()
+                            .parent( cli )
+                            .addProfiler( GCProfiler.class )
+                            .build() ).run();
+    }
+}
@@ -0,0 +1,93 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.PathSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one shortest path search from source to sink takes on a graph
+ * with no flow, through {@link edu.rit.cs.labgraph.FlowGraph#doBFS()},
+ * through a reused {@link PathSearch}, and through a reused bidirectional
+ * one.
+ *
+ * @author RIT CS
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BfsBenchmark {
+
+    /**
+     * Search for a path.
+     * @param state the generated graph
+     * @return the path found
+     */
+    @Benchmark
+    public Optional< List< String > > doBFS( GeneratedGraph state ) {
+        return state.graph.doBFS();
+    }
+
+    /**
+     * Search for a path, without building a list of names.
+     * @param searcher the reused search
+     * @return the path's bottleneck
+     */
+    @Benchmark
+    public long pathSearch( Searcher searcher ) {
+        searcher.search.find();
+        return searcher.search.getBottleneck();
+    }
+
+    /**
+     * Search for a path from both ends.
+     * @param searcher the reused searches
+     * @return the path's bottleneck
+     */
+    @Benchmark
+    public long bidirectionalPathSearch( Searcher searcher ) {
+        searcher.bidirectional.find();
+        return searcher.bidirectional.getBottleneck();
+    }
+
+    /**
+     * Searches of the generated graph, made once per thread.
+     */
+    @State( Scope.Thread )
+    public static class Searcher {
+
+        /**
+         * The search
+         */
+        public PathSearch search;
+
+        /**
+         * The search from both ends
+         */
+        public PathSearch bidirectional;
+
+        /**
+         * Make the search.
+         * @param state the generated graph
+         */
+        @Setup( Level.Trial )
+        public void setUp( GeneratedGraph state ) {
+            this.search = new PathSearch( state.graph );
+            this.bidirectional = new PathSearch( state.graph, true );
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Benchmark state holding one generated graph: its edge list file, a
+ * snapshot of it, and the graph loaded from them.
+ *
+ * @author RIT CS
+ */
+@State( Scope.Benchmark )
+public class GeneratedGraph {
+
+    /**
+     * The graph family, one of {@link GraphGenerators.Family}
+     */
+    @Param( { "grid", "layered", "random", "rmat", "ak", "washington",
+              "bipartite" } )
+    public String family;
+
+    /**
+     * Roughly how many nodes the graph has
+     */
+    @Param( { "10000" } )
+    public int nodes;
+
+    /**
+     * The random seed for the generator
+     */
+    @Param( { "1" } )
+    public long seed;
+
+    /**
+     * The largest cost of an edge, or 0 for a graph without costs
+     */
+    @Param( { "0" } )
+    public int maxCost;
+
+    /**
+     * The generated edge list file
+     */
+    public Path edgeList;
+
+    /**
+     * A snapshot of the same graph
+     */
+    public Path snapshot;
+
+    /**
+     * The graph, loaded from the edge list file
+     */
+    public FlowGraph graph;
+
+    /**
+     * Generate the graph and save it both ways.
+     * @throws IOException if the files cannot be written
+     * @throws GraphException if the generated file cannot be read back
+     */
+    @Setup( Level.Trial )
+    public void generate() throws IOException, GraphException {
+        this.edgeList = Files.createTempFile( "graph", ".txt" );
+        this.snapshot = Files.createTempFile( "graph", ".snap" );
+        GraphGenerators.write(
+                GraphGenerators.Family.valueOf(
+                        this.family.toUpperCase( Locale.ROOT ) ),
+                this.nodes, this.seed, this.maxCost, this.edgeList );
+        this.graph = load( this.edgeList );
+        this.graph.writeSnapshot( this.snapshot.toString() );
+    }
+
+    /**
+     * Remove the files.
+     * @throws IOException if they cannot be removed
+     */
+    @TearDown( Level.Trial )
+    public void delete() throws IOException {
+        Files.deleteIfExists( this.edgeList );
+        Files.deleteIfExists( this.snapshot );
+    }
+
+    /**
+     * Load a graph file written by {@link #generate()}.
+     * @param file the edge list or snapshot
+     * @return the graph it holds
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if the file is not a graph
+     */
+    public FlowGraph load( Path file ) throws IOException, GraphException {
+        return new FlowGraph( file.toString(), GraphGenerators.SOURCE,
+                              GraphGenerators.SINK );
+    }
+}
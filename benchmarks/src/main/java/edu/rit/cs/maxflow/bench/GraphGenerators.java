@@ -0,0 +1,403 @@
+package edu.rit.cs.maxflow.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Writers for synthetic max flow problems, in the edge list format read
+ * by {@link edu.rit.cs.labgraph.FlowGraph}. Every graph has a node named
+ * {@value #SOURCE} and a node named {@value #SINK}; the other nodes are
+ * named "n" followed by a number. The same family, size and seed always
+ * give the same file. Edges between inner nodes may also be given random
+ * costs, for the min-cost solvers; the costs are drawn apart from the
+ * rest, so a graph has the same edges and capacities with or without
+ * them.
+ * <p>
+ * The families are the usual ones for stressing max flow codes:
+ * <ul>
+ *     <li>GRID: a square grid, fed from the left column and drained
+ *     from the right one</li>
+ *     <li>LAYERED: a few wide layers, each node linked to random nodes
+ *     in the next layer</li>
+ *     <li>RANDOM: a sparse random graph with four edges per node</li>
+ *     <li>RMAT: a power-law graph from the recursive matrix model, with
+ *     the source and sink on the two biggest hubs</li>
+ *     <li>AK: long chains that leak one unit to the sink at every step,
+ *     in the style of Cherkassky and Goldberg's AK generator, which is
+ *     hard for both augmenting path and push-relabel codes</li>
+ *     <li>WASHINGTON: a random level graph as made by the Washington
+ *     generator, as many levels deep as they are wide, each node linked
+ *     to three nodes in the next level</li>
+ *     <li>BIPARTITE: an assignment problem, with every capacity 1: the
+ *     source feeds half the nodes, the sink drains the other half, and
+ *     each node of the first half is linked to three of the second</li>
+ * </ul>
+ *
+ * @author RIT CS
+ */
+public final class GraphGenerators {
+
+    /**
+     * The name of the source node in every generated graph
+     */
+    public static final String SOURCE = "source";
+
+    /**
+     * The name of the sink node in every generated graph
+     */
+    public static final String SINK = "sink";
+
+    /**
+     * Mixed into the seed of the costs, so they are not drawn from the
+     * same numbers as the edges
+     */
+    private static final long COST_SEED = 0x5DEECE66DL;
+
+    /**
+     * The graph families that can be generated
+     */
+    public enum Family {
+        GRID, LAYERED, RANDOM, RMAT, AK, WASHINGTON, BIPARTITE
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private GraphGenerators() {
+    }
+
+    /**
+     * Write a generated graph to a file, without costs.
+     * @param family the kind of graph
+     * @param nodes roughly how many nodes it should have
+     * @param seed the random seed
+     * @param file the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write( Family family, int nodes, long seed, Path file )
+            throws IOException {
+        write( family, nodes, seed, 0, file );
+    }
+
+    /**
+     * Write a generated graph to a file.
+     * @param family the kind of graph
+     * @param nodes roughly how many nodes it should have
+     * @param seed the random seed
+     * @param maxCost the largest cost of an edge between inner nodes, whose
+     *                costs are drawn from 1 up to it, or 0 for no costs
+     * @param file the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write( Family family, int nodes, long seed,
+                              int maxCost, Path file ) throws IOException {
+        if ( nodes < 4 ) {
+            throw new IllegalArgumentException( "nodes must be at least 4" );
+        }
+        if ( maxCost < 0 ) {
+            throw new IllegalArgumentException(
+                    "maxCost cannot be negative" );
+        }
+        try ( PrintWriter out = new PrintWriter( new BufferedWriter(
+                Files.newBufferedWriter( file, StandardCharsets.UTF_8 ),
+                1 << 16 ) ) ) {
+            Edges edges = new Edges( out, maxCost,
+                                     new SplittableRandom( seed ^ COST_SEED ) );
+            SplittableRandom random = new SplittableRandom( seed );
+            switch ( family ) {
+                case GRID:
+                    grid( edges, nodes, random );
+                    break;
+                case LAYERED:
+                    levels( edges, 8, Math.max( 1, nodes / 8 ), 4, 1000,
+                            random );
+                    break;
+                case RANDOM:
+                    random( edges, nodes, random );
+                    break;
+                case RMAT:
+                    rmat( edges, nodes, random );
+                    break;
+                case AK:
+                    ak( edges, nodes );
+                    break;
+                case WASHINGTON:
+                    int side = (int) Math.max( 2, Math.sqrt( nodes ) );
+                    levels( edges, side, side, 3, 10000, random );
+                    break;
+                case BIPARTITE:
+                    bipartite( edges, nodes, random );
+                    break;
+            }
+            if ( out.checkError() ) {
+                throw new IOException( "could not write " + file );
+            }
+        }
+    }
+
+    /**
+     * A square grid with random capacities on its edges.
+     * @param edges where to write the edges
+     * @param nodes roughly how many nodes to use
+     * @param random the random source
+     */
+    private static void grid( Edges edges, int nodes, SplittableRandom random ) {
+        int side = (int) Math.max( 2, Math.sqrt( nodes ) );
+        for ( int r = 0; r < side; r++ ) {
+            for ( int c = 0; c < side; c++ ) {
+                int u = r * side + c;
+                if ( c + 1 < side ) {
+                    edges.add( u, u + 1, 1 + random.nextInt( 100 ) );
+                }
+                if ( r + 1 < side ) {
+                    edges.add( u, u + side, 1 + random.nextInt( 100 ) );
+                }
+            }
+            edges.fromSource( r * side, 100L * side );
+            edges.toSink( r * side + side - 1, 100L * side );
+        }
+    }
+
+    /**
+     * Levels of nodes, each linked to random nodes in the next level,
+     * with the source feeding the first level and the last level
+     * draining into the sink.
+     * @param edges where to write the edges
+     * @param depth how many levels
+     * @param width how many nodes in each level
+     * @param degree how many edges leave each node
+     * @param maxCap the largest capacity
+     * @param random the random source
+     */
+    private static void levels( Edges edges, int depth, int width, int degree,
+                                int maxCap, SplittableRandom random ) {
+        for ( int i = 0; i < width; i++ ) {
+            edges.fromSource( i, (long) degree * maxCap );
+        }
+        for ( int level = 0; level + 1 < depth; level++ ) {
+            for ( int i = 0; i < width; i++ ) {
+                for ( int k = 0; k < degree; k++ ) {
+                    edges.add( level * width + i,
+                               ( level + 1 ) * width + random.nextInt( width ),
+                               1 + random.nextInt( maxCap ) );
+                }
+            }
+        }
+        for ( int i = 0; i < width; i++ ) {
+            edges.toSink( ( depth - 1 ) * width + i, (long) degree * maxCap );
+        }
+    }
+
+    /**
+     * A sparse random graph. Out of every 64 nodes, the source feeds
+     * one and another drains into the sink.
+     * @param edges where to write the edges
+     * @param nodes how many nodes to use
+     * @param random the random source
+     */
+    private static void random( Edges edges, int nodes,
+                                SplittableRandom random ) {
+        int inner = nodes - 2;
+        for ( int i = 0; i < inner; i++ ) {
+            if ( i % 64 == 0 ) {
+                edges.fromSource( i, 1 + random.nextInt( 1000 ) );
+            }
+            else if ( i % 64 == 63 ) {
+                edges.toSink( i, 1 + random.nextInt( 1000 ) );
+            }
+        }
+        long m = 4L * inner;
+        for ( long k = 0; k < m; k++ ) {
+            int u = random.nextInt( inner );
+            int v = random.nextInt( inner );
+            if ( u != v ) {
+                edges.add( u, v, 1 + random.nextInt( 1000 ) );
+            }
+        }
+    }
+
+    /**
+     * A recursive matrix graph with eight edges per node, each edge placed
+     * by picking quadrants of the adjacency matrix with probabilities
+     * 0.57, 0.19, 0.19 and 0.05. Low-numbered nodes are the hubs, so the
+     * source is tied to node 0 and the sink to node 1.
+     * @param edges where to write the edges
+     * @param nodes roughly how many nodes to use
+     * @param random the random source
+     */
+    private static void rmat( Edges edges, int nodes, SplittableRandom random ) {
+        int scale = 32 - Integer.numberOfLeadingZeros( nodes - 1 );
+        long m = 8L << scale;
+        for ( long k = 0; k < m; k++ ) {
+            int u = 0;
+            int v = 0;
+            for ( int bit = scale - 1; bit >= 0; bit-- ) {
+                double p = random.nextDouble();
+                if ( p >= 0.57 + 0.19 + 0.19 ) {
+                    u |= 1 << bit;
+                    v |= 1 << bit;
+                }
+                else if ( p >= 0.57 + 0.19 ) {
+                    u |= 1 << bit;
+                }
+                else if ( p >= 0.57 ) {
+                    v |= 1 << bit;
+                }
+            }
+            if ( u != v ) {
+                edges.add( u, v, 1 + random.nextInt( 100 ) );
+            }
+        }
+        edges.fromSource( 0, 1L << 40 );
+        edges.toSink( 1, 1L << 40 );
+    }
+
+    /**
+     * Two chains of length k from the source. Every node on the first
+     * chain leaks one unit straight to the sink, so an augmenting path
+     * code finds k paths of growing length, and a push-relabel code must
+     * relabel its way down the chain. The second chain is three times as
+     * long and carries k units in one path, so the flow along it must be
+     * pushed through every one of its nodes.
+     * @param edges where to write the edges
+     * @param nodes roughly how many nodes to use
+     */
+    private static void ak( Edges edges, int nodes ) {
+        int k = Math.max( 1, ( nodes - 2 ) / 4 );
+        edges.fromSource( 0, k + 1 );
+        for ( int i = 0; i < k; i++ ) {
+            if ( i + 1 < k ) {
+                edges.add( i, i + 1, k - i );
+            }
+            edges.toSink( i, 1 );
+        }
+        int base = k;
+        int rungs = 3 * k;
+        edges.fromSource( base, k );
+        for ( int i = 0; i + 1 < rungs; i++ ) {
+            edges.add( base + i, base + i + 1, k );
+        }
+        edges.toSink( base + rungs - 1, k );
+    }
+
+    /**
+     * An assignment problem: half the nodes on the left, each linked to
+     * three random nodes on the right, and every capacity 1.
+     * @param edges where to write the edges
+     * @param nodes roughly how many nodes to use
+     * @param random the random source
+     */
+    private static void bipartite( Edges edges, int nodes,
+                                   SplittableRandom random ) {
+        int half = Math.max( 1, ( nodes - 2 ) / 2 );
+        for ( int i = 0; i < half; i++ ) {
+            edges.fromSource( i, 1 );
+            for ( int k = 0; k < 3; k++ ) {
+                edges.add( i, half + random.nextInt( half ), 1 );
+            }
+        }
+        for ( int i = 0; i < half; i++ ) {
+            edges.toSink( half + i, 1 );
+        }
+    }
+
+    /**
+     * Writes edge lines, naming the inner nodes by number.
+     */
+    private static final class Edges {
+
+        /**
+         * Where the lines go
+         */
+        private final PrintWriter out;
+
+        /**
+         * The largest cost of an inner edge, or 0 to write no costs
+         */
+        private final int maxCost;
+
+        /**
+         * Where the costs are drawn from
+         */
+        private final SplittableRandom costs;
+
+        /**
+         * @param out where the lines go
+         * @param maxCost the largest cost of an inner edge, or 0 for none
+         * @param costs where the costs are drawn from
+         */
+        Edges( PrintWriter out, int maxCost, SplittableRandom costs ) {
+            this.out = out;
+            this.maxCost = maxCost;
+            this.costs = costs;
+        }
+
+        /**
+         * Write an edge between two inner nodes, with a cost if there are
+         * costs.
+         * @param u one node
+         * @param v the other node
+         * @param cap the edge's capacity
+         */
+        void add( int u, int v, long cap ) {
+            this.out.print( 'n' );
+            this.out.print( u );
+            this.out.print( " n" );
+            this.out.print( v );
+            this.out.print( ' ' );
+            if ( this.maxCost > 0 ) {
+                this.out.print( cap );
+                this.out.print( ' ' );
+                this.out.println( 1 + this.costs.nextInt( this.maxCost ) );
+            }
+            else {
+                this.out.println( cap );
+            }
+        }
+
+        /**
+         * Write an edge from the source to an inner node.
+         * @param v the inner node
+         * @param cap the edge's capacity
+         */
+        void fromSource( int v, long cap ) {
+            this.out.println( SOURCE + " n" + v + " " + cap );
+        }
+
+        /**
+         * Write an edge from an inner node to the sink.
+         * @param u the inner node
+         * @param cap the edge's capacity
+         */
+        void toSink( int u, long cap ) {
+            this.out.println( "n" + u + " " + SINK + " " + cap );
+        }
+    }
+
+    /**
+     * Write a generated graph, for use outside the benchmarks.
+     * @param args family, node count, seed, output file and, optionally,
+     *             the largest edge cost
+     * @throws IOException if the file cannot be written
+     */
+    public static void main( String[] args ) throws IOException {
+        if ( args.length != 4 && args.length != 5 ) {
+            System.err.println( "Usage: java GraphGenerators " +
+                                "grid|layered|random|rmat|ak|washington|" +
+                                "bipartite " +
+                                "nodes seed file [max-cost]" );
+            System.exit( 1 );
+        }
+        write( Family.valueOf( args[ 0 ].toUpperCase( Locale.ROOT ) ),
+               Integer.parseInt( args[ 1 ] ), Long.parseLong( args[ 2 ] ),
+               args.length == 5 ? Integer.parseInt( args[ 4 ] ) : 0,
+               Paths.get( args[ 3 ] ) );
+    }
+}
@@ -0,0 +1,54 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it takes to load a graph, from its edge list and from a
+ * snapshot.
+ *
+ * @author RIT CS
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LoadBenchmark {
+
+    /**
+     * Parse the edge list file.
+     * @param state the generated graph
+     * @return the loaded graph
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if the file is not a graph
+     */
+    @Benchmark
+    public FlowGraph parse( GeneratedGraph state )
+            throws IOException, GraphException {
+        return state.load( state.edgeList );
+    }
+
+    /**
+     * Load the snapshot.
+     * @param state the generated graph
+     * @return the loaded graph
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if the file is not a graph
+     */
+    @Benchmark
+    public FlowGraph snapshot( GeneratedGraph state )
+            throws IOException, GraphException {
+        return state.load( state.snapshot );
+    }
+}
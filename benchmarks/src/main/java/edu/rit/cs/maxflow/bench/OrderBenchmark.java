@@ -0,0 +1,111 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+import edu.rit.cs.labgraph.NodeOrder;
+import edu.rit.cs.labgraph.PathSearch;
+import edu.rit.cs.maxflow.DinicSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much the order of a graph's node ids matters: a search from source
+ * to sink, and a complete Dinic solve, on a generated graph whose nodes
+ * are numbered at random, then renumbered by each {@link NodeOrder}.
+ * The generators number nodes in an order close to the graph's shape,
+ * so that order is measured too, as "generated".
+ * <p>
+ * Run with {@code -prof perfnorm} on Linux to see the cache misses per
+ * call alongside the times.
+ *
+ * @author RIT CS
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class OrderBenchmark {
+
+    /**
+     * "generated", "random", or the name of a {@link NodeOrder} as given
+     * to MaxFlow's -n option, applied to the random order
+     */
+    @Param( { "generated", "random", "bfs", "rcm", "degree" } )
+    public String order;
+
+    /**
+     * The graph, numbered in that order
+     */
+    private FlowGraph graph;
+
+    /**
+     * A reused search of the graph
+     */
+    private PathSearch search;
+
+    /**
+     * Number the generated graph's nodes.
+     * @param state the generated graph
+     * @throws GraphException if there is no order by that name
+     */
+    @Setup( Level.Trial )
+    public void setUp( GeneratedGraph state ) throws GraphException {
+        this.graph = state.graph;
+        if ( !this.order.equals( "generated" ) ) {
+            int[] shuffled = new int[ this.graph.getCsr().nodeCount() ];
+            SplittableRandom random = new SplittableRandom( state.seed );
+            for ( int i = 0; i < shuffled.length; i++ ) {
+                int j = random.nextInt( i + 1 );
+                shuffled[ i ] = shuffled[ j ];
+                shuffled[ j ] = i;
+            }
+            this.graph = NodeOrder.renumber( this.graph, shuffled );
+            if ( !this.order.equals( "random" ) ) {
+                this.graph = NodeOrder.named( this.order ).apply( this.graph );
+            }
+        }
+        this.search = new PathSearch( this.graph );
+    }
+
+    /**
+     * Start each solve from no flow.
+     */
+    @Setup( Level.Invocation )
+    public void clearFlow() {
+        this.graph.getCsr().clearFlow();
+    }
+
+    /**
+     * Search for a path from source to sink.
+     * @return the path's length
+     */
+    @Benchmark
+    public int pathSearch() {
+        this.search.find();
+        return this.search.getLength();
+    }
+
+    /**
+     * Solve the graph.
+     * @return the value of the max flow
+     */
+    @Benchmark
+    public long dinic() {
+        return new DinicSolver().maxFlow( this.graph );
+    }
+}
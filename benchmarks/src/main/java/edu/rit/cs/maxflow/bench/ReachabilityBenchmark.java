@@ -0,0 +1,82 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.ParallelBfs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a {@link ParallelBfs} takes to label every node with its
+ * distance from the source, and every node with its distance to the sink,
+ * on a graph with no flow, for several numbers of workers.
+ *
+ * @author RIT CS
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ReachabilityBenchmark {
+
+    /**
+     * How many threads the search runs on
+     */
+    @Param( { "1", "2", "4", "8" } )
+    public int workers;
+
+    /**
+     * The reused search
+     */
+    private ParallelBfs bfs;
+
+    /**
+     * Make the search.
+     * @param state the generated graph
+     */
+    @Setup( Level.Trial )
+    public void setUp( GeneratedGraph state ) {
+        this.bfs = new ParallelBfs( state.graph.getCsr(), this.workers );
+    }
+
+    /**
+     * Stop the search's threads.
+     */
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        this.bfs.close();
+    }
+
+    /**
+     * Search forward from the source.
+     * @param state the generated graph
+     * @return how many nodes were reached
+     */
+    @Benchmark
+    public int fromSource( GeneratedGraph state ) {
+        return this.bfs.search( state.graph.getSourceId(), false );
+    }
+
+    /**
+     * Search backward from the sink.
+     * @param state the generated graph
+     * @return how many nodes were reached
+     */
+    @Benchmark
+    public int toSink( GeneratedGraph state ) {
+        return this.bfs.search( state.graph.getSinkId(), true );
+    }
+}
@@ -0,0 +1,81 @@
+package edu.rit.cs.maxflow.bench;
+
+import edu.rit.cs.labgraph.GraphException;
+import edu.rit.cs.maxflow.MaxFlow;
+import edu.rit.cs.maxflow.MaxFlowSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a complete max flow solve takes, starting from no flow, for
+ * each solver {@link MaxFlow} can run.
+ * <p>
+ * Each call solves the same graph, so its flow is cleared before every
+ * call. Solvers that can print their progress are made not to.
+ *
+ * @author RIT CS
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class SolveBenchmark {
+
+    /**
+     * The solver's name, as given to {@link MaxFlow}'s -s option
+     */
+    @Param( { "edmonds-karp", "bidirectional-edmonds-karp",
+              "capacity-scaling", "dinic", "push-relabel",
+              "parallel-push-relabel", "matching",
+              "successive-shortest-paths", "cost-scaling" } )
+    public String solverName;
+
+    /**
+     * The solver
+     */
+    private MaxFlowSolver solver;
+
+    /**
+     * Create the solver, with no trace.
+     * @throws GraphException if there is no solver by that name
+     */
+    @Setup( Level.Trial )
+    public void setUp() throws GraphException {
+        this.solver = MaxFlow.solverNamed(
+                this.solverName, Runtime.getRuntime().availableProcessors(),
+                null );
+    }
+
+    /**
+     * Start the next solve from no flow.
+     * @param state the generated graph
+     */
+    @Setup( Level.Invocation )
+    public void clearFlow( GeneratedGraph state ) {
+        state.graph.getCsr().clearFlow();
+    }
+
+    /**
+     * Solve the graph.
+     * @param state the generated graph
+     * @return the value of the max flow
+     */
+    @Benchmark
+    public long maxFlow( GeneratedGraph state ) {
+        return this.solver.maxFlow( state.graph );
+    }
+}
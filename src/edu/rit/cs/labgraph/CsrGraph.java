@@ -0,0 +1,910 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compressed-sparse-row representation of a flow graph.
+ * Node names are interned once into dense ids, numbered in the order they
+ * were first seen. Each edge is stored as a pair of arcs, one under each
+ * of its endpoints, and each arc knows its mate so that pushing flow
+ * along an arc is a constant-time update of the residual capacities.
+ * Capacities can be changed in place. Adding edges lays the arcs out
+ * again, keeping every edge's id and flow; removing an edge only takes
+ * its capacity away and hides it.
+ * <p>
+ * An edge may also have a cost per unit of flow, in either direction,
+ * for min-cost flow. A graph in which every cost is 0 keeps no costs.
+ *
+ * @author RIT CS
+ */
+public final class CsrGraph {
+
+    /**
+     * The name of each node, indexed by id. When the graph was loaded from
+     * a snapshot, names are decoded from {@link #nameBytes} as needed.
+     */
+    private String[] names;
+
+    /**
+     * The UTF-8 bytes of every name, one after another, or null if all
+     * names are in {@link #names}
+     */
+    private final ByteBuffer nameBytes;
+
+    /**
+     * Name u is bytes nameOffsets[u] to nameOffsets[u+1]-1 of nameBytes
+     */
+    private final int[] nameOffsets;
+
+    /**
+     * An open-addressing index of the names by String.hashCode.
+     * Each slot holds a node id plus 1, or 0 if empty.
+     */
+    private int[] nameSlots;
+
+    /**
+     * The arcs leaving node u are offsets[u] to offsets[u+1]-1
+     */
+    private int[] offsets;
+
+    /**
+     * The node each arc points to
+     */
+    private int[] heads;
+
+    /**
+     * The arc running the other way along the same edge
+     */
+    private int[] mates;
+
+    /**
+     * The edge each arc belongs to
+     */
+    private int[] arcEdges;
+
+    /**
+     * The arc stored under each edge's first node
+     */
+    private int[] edgeArcs;
+
+    /**
+     * The capacity of each edge, in either direction
+     */
+    private long[] capacities;
+
+    /**
+     * The cost of each edge, per unit of flow, or null if every cost is 0
+     */
+    private long[] costs;
+
+    /**
+     * How much more flow each arc can carry
+     */
+    private long[] residuals;
+
+    /**
+     * Whether each edge has been removed, or null if none has
+     */
+    private boolean[] removed;
+
+    /**
+     * True once this graph's arrays may be shared with another graph, so
+     * that they must be copied before being changed in place
+     */
+    private boolean shared;
+
+    /**
+     * Build a graph from a list of edges.
+     * @param names the node names, indexed by id
+     * @param tails the first node of each edge
+     * @param heads the second node of each edge
+     * @param capacities the capacity of each edge
+     * @param costs the cost of each edge, or null if every cost is 0
+     * @param edgeCount how many entries of the edge arrays are used
+     */
+    private CsrGraph( String[] names, int[] tails, int[] heads,
+                      long[] capacities, long[] costs, int edgeCount ) {
+        this.names = names;
+        this.nameBytes = null;
+        this.nameOffsets = null;
+        this.nameSlots = indexNames( names );
+        this.capacities = Arrays.copyOf( capacities, edgeCount );
+        this.costs = costs == null ? null : Arrays.copyOf( costs, edgeCount );
+        layOut( tails, heads, edgeCount );
+    }
+
+    /**
+     * Put together a graph from arrays that are already laid out, such
+     * as those read from a snapshot. The arrays are used, not copied.
+     * @param nameBytes the UTF-8 bytes of every name
+     * @param nameOffsets where each name starts in nameBytes, plus the end
+     * @param nameSlots the name index, as returned by {@link #nameSlots()}
+     * @param offsets where each node's arcs start, plus the end
+     * @param heads the node each arc points to
+     * @param mates the arc running the other way along the same edge
+     * @param arcEdges the edge each arc belongs to
+     * @param edgeArcs the arc stored under each edge's first node
+     * @param capacities the capacity of each edge
+     * @param costs the cost of each edge, or null if every cost is 0
+     */
+    CsrGraph( ByteBuffer nameBytes, int[] nameOffsets, int[] nameSlots,
+              int[] offsets, int[] heads, int[] mates, int[] arcEdges,
+              int[] edgeArcs, long[] capacities, long[] costs ) {
+        this.names = new String[ nameOffsets.length - 1 ];
+        this.nameBytes = nameBytes;
+        this.nameOffsets = nameOffsets;
+        this.nameSlots = nameSlots;
+        this.offsets = offsets;
+        this.heads = heads;
+        this.mates = mates;
+        this.arcEdges = arcEdges;
+        this.edgeArcs = edgeArcs;
+        this.capacities = capacities;
+        this.costs = costs;
+        this.residuals = new long[ heads.length ];
+        clearFlow();
+    }
+
+    /**
+     * Build the name index for a list of names.
+     * @param names the node names, indexed by id
+     * @return the index, as kept in {@link #nameSlots}
+     */
+    private static int[] indexNames( String[] names ) {
+        int[] slots = new int[ slotCount( names.length ) ];
+        int mask = slots.length - 1;
+        for ( int u = 0; u < names.length; u++ ) {
+            int slot = names[ u ].hashCode() & mask;
+            while ( slots[ slot ] != 0 ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            slots[ slot ] = u + 1;
+        }
+        return slots;
+    }
+
+    /**
+     * Lay out the arcs of the given edges, grouped by the node they leave.
+     * Within a node the arcs keep the order their edges were added in.
+     * The nodes and capacities must already be set; every edge is left
+     * with no flow.
+     * @param tails the first node of each edge
+     * @param heads the second node of each edge
+     * @param edgeCount how many entries of the edge arrays are used
+     */
+    private void layOut( int[] tails, int[] heads, int edgeCount ) {
+        final int nodeCount = this.names.length;
+        this.offsets = new int[ nodeCount + 1 ];
+        this.heads = new int[ 2 * edgeCount ];
+        this.mates = new int[ 2 * edgeCount ];
+        this.arcEdges = new int[ 2 * edgeCount ];
+        this.edgeArcs = new int[ edgeCount ];
+        this.residuals = new long[ 2 * edgeCount ];
+
+        for ( int e = 0; e < edgeCount; e++ ) {
+            this.offsets[ tails[ e ] + 1 ]++;
+            this.offsets[ heads[ e ] + 1 ]++;
+        }
+        for ( int u = 0; u < nodeCount; u++ ) {
+            this.offsets[ u + 1 ] += this.offsets[ u ];
+        }
+        int[] next = Arrays.copyOf( this.offsets, nodeCount );
+        for ( int e = 0; e < edgeCount; e++ ) {
+            int forward = next[ tails[ e ] ]++;
+            int backward = next[ heads[ e ] ]++;
+            this.heads[ forward ] = heads[ e ];
+            this.heads[ backward ] = tails[ e ];
+            this.mates[ forward ] = backward;
+            this.mates[ backward ] = forward;
+            this.arcEdges[ forward ] = e;
+            this.arcEdges[ backward ] = e;
+            this.edgeArcs[ e ] = forward;
+        }
+        clearFlow();
+    }
+
+    /**
+     * Make a graph that shares another's nodes, arcs and capacities, but
+     * has its own residual capacities.
+     * @param other the graph to share with
+     */
+    private CsrGraph( CsrGraph other ) {
+        this.names = other.names;
+        this.nameBytes = other.nameBytes;
+        this.nameOffsets = other.nameOffsets;
+        this.nameSlots = other.nameSlots;
+        this.offsets = other.offsets;
+        this.heads = other.heads;
+        this.mates = other.mates;
+        this.arcEdges = other.arcEdges;
+        this.edgeArcs = other.edgeArcs;
+        this.capacities = other.capacities;
+        this.costs = other.costs;
+        this.removed = other.removed;
+        this.residuals = new long[ other.residuals.length ];
+        this.shared = true;
+        other.shared = true;
+        clearFlow();
+    }
+
+    /**
+     * @param nodeCount a number of nodes
+     * @return a power of two at least twice nodeCount
+     */
+    private static int slotCount( int nodeCount ) {
+        int slots = 16;
+        while ( slots < 2 * nodeCount ) {
+            slots *= 2;
+        }
+        return slots;
+    }
+
+    /**
+     * Read a graph from an edge-list file, or from a snapshot written by
+     * {@link FlowGraph#writeSnapshot(String)}.
+     * @param file the file
+     * @param threads how many threads may parse an edge list
+     * @return the graph, with no flow
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if a line of an edge list is not correctly
+     *                        formatted
+     */
+    public static CsrGraph read( Path file, int threads )
+            throws IOException, GraphException {
+        if ( GraphSnapshot.isSnapshot( file ) ) {
+            return GraphSnapshot.read( file );
+        }
+        Builder builder = new Builder();
+        EdgeListParser.parse( file, builder, threads );
+        return builder.build();
+    }
+
+    /**
+     * @return the number of nodes in this graph
+     */
+    public int nodeCount() {
+        return this.names.length;
+    }
+
+    /**
+     * @return the number of edges in this graph
+     */
+    public int edgeCount() {
+        return this.edgeArcs.length;
+    }
+
+    /**
+     * @return the number of arcs in this graph, two per edge
+     */
+    public int arcCount() {
+        return this.heads.length;
+    }
+
+    /**
+     * Look up a node's id.
+     * @param name the node's name
+     * @return the node's id, or -1 if it is not in this graph
+     */
+    public int id( String name ) {
+        int mask = this.nameSlots.length - 1;
+        for ( int slot = name.hashCode() & mask; ;
+              slot = ( slot + 1 ) & mask ) {
+            int u = this.nameSlots[ slot ] - 1;
+            if ( u < 0 ) {
+                return -1;
+            }
+            if ( name( u ).equals( name ) ) {
+                return u;
+            }
+        }
+    }
+
+    /**
+     * @param u a node id
+     * @return the name of node u
+     */
+    public String name( int u ) {
+        String name = this.names[ u ];
+        if ( name == null ) {
+            int start = this.nameOffsets[ u ];
+            byte[] bytes = new byte[ this.nameOffsets[ u + 1 ] - start ];
+            this.nameBytes.get( start, bytes );
+            name = new String( bytes, StandardCharsets.UTF_8 );
+            this.names[ u ] = name;
+        }
+        return name;
+    }
+
+    /**
+     * @param u a node id
+     * @return the first arc leaving node u
+     */
+    public int firstArc( int u ) {
+        return this.offsets[ u ];
+    }
+
+    /**
+     * @param u a node id
+     * @return one past the last arc leaving node u
+     */
+    public int endArc( int u ) {
+        return this.offsets[ u + 1 ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return the node the arc points to
+     */
+    public int head( int arc ) {
+        return this.heads[ arc ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return the node the arc leaves, that is, the head of its mate
+     */
+    public int tail( int arc ) {
+        return this.heads[ this.mates[ arc ] ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return the arc running the other way along the same edge
+     */
+    public int mate( int arc ) {
+        return this.mates[ arc ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return the edge the arc belongs to
+     */
+    public int edge( int arc ) {
+        return this.arcEdges[ arc ];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the arc running from the edge's first node to its second
+     */
+    public int forwardArc( int edge ) {
+        return this.edgeArcs[ edge ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return true if the arc runs from its edge's first node to its second
+     */
+    public boolean isForward( int arc ) {
+        return this.edgeArcs[ this.arcEdges[ arc ] ] == arc;
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the capacity of the edge, in either direction
+     */
+    public long capacity( int edge ) {
+        return this.capacities[ edge ];
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the cost of each unit of flow along the edge, in either
+     * direction
+     */
+    public long cost( int edge ) {
+        return this.costs == null ? 0 : this.costs[ edge ];
+    }
+
+    /**
+     * @return true if some edge has a cost other than 0
+     */
+    public boolean hasCosts() {
+        return this.costs != null;
+    }
+
+    /**
+     * @param edge an edge index
+     * @return the flow from the edge's first node to its second,
+     * negative if it runs the other way
+     */
+    public long flow( int edge ) {
+        return this.capacities[ edge ] - this.residuals[ this.edgeArcs[ edge ] ];
+    }
+
+    /**
+     * @param arc an arc index
+     * @return how much more flow can be pushed along the arc
+     */
+    public long residual( int arc ) {
+        return this.residuals[ arc ];
+    }
+
+    /**
+     * Push flow along an arc, taking the same amount of room from it
+     * and giving it to its mate.
+     * @param arc an arc index
+     * @param delta the amount of flow to push
+     * @rit.pre delta does not exceed residual(arc)
+     */
+    public void push( int arc, long delta ) {
+        this.residuals[ arc ] -= delta;
+        this.residuals[ this.mates[ arc ] ] += delta;
+    }
+
+    /**
+     * View this graph's arcs through the interface that solvers share with
+     * {@link OffHeapGraph}. The view sees flow pushed and capacities
+     * changed through the graph, but holds on to the arc layout, so it
+     * must be made again after nodes or edges are added.
+     * @return the view
+     */
+    public ResidualNetwork asNetwork() {
+        return new Network( this );
+    }
+
+    /**
+     * Make a graph with the same nodes, edges and capacities as this one,
+     * sharing their arrays, but with its own flow, starting at zero.
+     * Flow can be pushed through the two graphs independently, from any
+     * number of threads. The shared arrays are copied on write: the first
+     * change to either graph's capacities, edges or nodes gives that graph
+     * its own copy, so the other one never sees it.
+     * @return the new graph
+     */
+    public CsrGraph shareTopology() {
+        return new CsrGraph( this );
+    }
+
+    /**
+     * Change an edge's capacity. If its flow no longer fits, the flow is
+     * cut down to the new capacity, which leaves the edge's two nodes out
+     * of balance by the amount cut.
+     * @param edge an edge index
+     * @param capacity the new capacity, in either direction
+     * @return how much flow from the edge's first node to its second was
+     * cut, negative if the cut flow ran the other way
+     */
+    long setCapacity( int edge, long capacity ) {
+        unshare();
+        long flow = flow( edge );
+        long kept = Math.max( -capacity, Math.min( capacity, flow ) );
+        int forward = this.edgeArcs[ edge ];
+        this.capacities[ edge ] = capacity;
+        this.residuals[ forward ] = capacity - kept;
+        this.residuals[ this.mates[ forward ] ] = capacity + kept;
+        return flow - kept;
+    }
+
+    /**
+     * Remove an edge by taking away its capacity, as
+     * {@link #setCapacity(int, long)} does, and marking it removed. Its
+     * arcs stay in place, but never have room for flow.
+     * @param edge an edge index
+     * @return how much flow from the edge's first node to its second was
+     * cut, negative if the cut flow ran the other way
+     */
+    long removeEdge( int edge ) {
+        unshare();
+        if ( this.removed == null ) {
+            this.removed = new boolean[ edgeCount() ];
+        }
+        this.removed[ edge ] = true;
+        return setCapacity( edge, 0 );
+    }
+
+    /**
+     * @param edge an edge index
+     * @return true if the edge has been removed
+     */
+    public boolean isRemoved( int edge ) {
+        return this.removed != null && this.removed[ edge ];
+    }
+
+    /**
+     * Add a node with no arcs.
+     * @param name the node's name
+     * @return the new node's id
+     * @rit.pre name is not already in this graph
+     */
+    int addNode( String name ) {
+        unshare();
+        int u = this.names.length;
+        this.names = Arrays.copyOf( this.names, u + 1 );
+        this.names[ u ] = name;
+        this.offsets = Arrays.copyOf( this.offsets, u + 2 );
+        this.offsets[ u + 1 ] = this.offsets[ u ];
+        if ( 2 * ( u + 1 ) > this.nameSlots.length ) {
+            String[] all = new String[ u + 1 ];
+            for ( int v = 0; v <= u; v++ ) {
+                all[ v ] = name( v );
+            }
+            this.nameSlots = indexNames( all );
+        }
+        else {
+            int mask = this.nameSlots.length - 1;
+            int slot = name.hashCode() & mask;
+            while ( this.nameSlots[ slot ] != 0 ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            this.nameSlots[ slot ] = u + 1;
+        }
+        return u;
+    }
+
+    /**
+     * Give this graph its own copy of the arrays that are changed in
+     * place, if they may be shared. The arc arrays are never changed in
+     * place, only replaced.
+     */
+    private void unshare() {
+        if ( this.shared ) {
+            this.capacities = this.capacities.clone();
+            this.nameSlots = this.nameSlots.clone();
+            if ( this.removed != null ) {
+                this.removed = this.removed.clone();
+            }
+            this.shared = false;
+        }
+    }
+
+    /**
+     * Add edges, with no flow, and lay out the arcs again. Every edge
+     * already in the graph keeps its id and its flow; the new edges get
+     * the next ids, in order. Arc indices change.
+     * @param tails the first node of each new edge
+     * @param heads the second node of each new edge
+     * @param capacities the capacity of each new edge
+     * @param costs the cost of each new edge, or null if every cost is 0
+     * @param count how many entries of the arrays to add
+     */
+    void addEdges( int[] tails, int[] heads, long[] capacities, long[] costs,
+                   int count ) {
+        int m = edgeCount();
+        int total = m + count;
+        int[] allTails = new int[ total ];
+        int[] allHeads = new int[ total ];
+        long[] flows = new long[ m ];
+        for ( int e = 0; e < m; e++ ) {
+            int forward = this.edgeArcs[ e ];
+            allTails[ e ] = tail( forward );
+            allHeads[ e ] = this.heads[ forward ];
+            flows[ e ] = flow( e );
+        }
+        System.arraycopy( tails, 0, allTails, m, count );
+        System.arraycopy( heads, 0, allHeads, m, count );
+        this.capacities = Arrays.copyOf( this.capacities, total );
+        System.arraycopy( capacities, 0, this.capacities, m, count );
+        if ( costs != null || this.costs != null ) {
+            this.costs = this.costs == null ? new long[ total ] :
+                         Arrays.copyOf( this.costs, total );
+            if ( costs != null ) {
+                System.arraycopy( costs, 0, this.costs, m, count );
+            }
+        }
+        if ( this.removed != null ) {
+            this.removed = Arrays.copyOf( this.removed, total );
+        }
+        layOut( allTails, allHeads, total );
+        for ( int e = 0; e < m; e++ ) {
+            push( this.edgeArcs[ e ], flows[ e ] );
+        }
+    }
+
+    /**
+     * @return the name index, for writing snapshots
+     */
+    int[] nameSlots() {
+        return this.nameSlots;
+    }
+
+    /**
+     * @return where each node's arcs start, plus the end, for writing
+     * snapshots
+     */
+    int[] offsets() {
+        return this.offsets;
+    }
+
+    /**
+     * @return the head of each arc, for writing snapshots
+     */
+    int[] heads() {
+        return this.heads;
+    }
+
+    /**
+     * @return the mate of each arc, for writing snapshots
+     */
+    int[] mates() {
+        return this.mates;
+    }
+
+    /**
+     * @return the edge of each arc, for writing snapshots
+     */
+    int[] arcEdges() {
+        return this.arcEdges;
+    }
+
+    /**
+     * @return the forward arc of each edge, for writing snapshots
+     */
+    int[] edgeArcs() {
+        return this.edgeArcs;
+    }
+
+    /**
+     * @return the capacity of each edge, for writing snapshots
+     */
+    long[] capacities() {
+        return this.capacities;
+    }
+
+    /**
+     * @return the cost of each edge, or null if every cost is 0, for
+     * writing snapshots
+     */
+    long[] costs() {
+        return this.costs;
+    }
+
+    /**
+     * Set the flow on every edge back to 0.
+     */
+    public void clearFlow() {
+        for ( int a = 0; a < this.residuals.length; a++ ) {
+            this.residuals[ a ] = this.capacities[ this.arcEdges[ a ] ];
+        }
+    }
+
+    /**
+     * A graph's arcs as a {@link ResidualNetwork}. Every arc id it hands
+     * out fits in an int.
+     */
+    private static final class Network implements ResidualNetwork {
+
+        /**
+         * The graph
+         */
+        private final CsrGraph csr;
+
+        /**
+         * The graph's arc arrays, as they were when the view was made
+         */
+        private final int[] offsets;
+        private final int[] heads;
+        private final int[] mates;
+        private final long[] residuals;
+
+        /**
+         * @param csr the graph to view
+         */
+        Network( CsrGraph csr ) {
+            this.csr = csr;
+            this.offsets = csr.offsets;
+            this.heads = csr.heads;
+            this.mates = csr.mates;
+            this.residuals = csr.residuals;
+        }
+
+        @Override
+        public int nodeCount() {
+            return this.offsets.length - 1;
+        }
+
+        @Override
+        public long arcCount() {
+            return this.heads.length;
+        }
+
+        @Override
+        public int id( String name ) {
+            return this.csr.id( name );
+        }
+
+        @Override
+        public String name( int u ) {
+            return this.csr.name( u );
+        }
+
+        @Override
+        public long firstArc( int u ) {
+            return this.offsets[ u ];
+        }
+
+        @Override
+        public long endArc( int u ) {
+            return this.offsets[ u + 1 ];
+        }
+
+        @Override
+        public int head( long arc ) {
+            return this.heads[ (int) arc ];
+        }
+
+        @Override
+        public long mate( long arc ) {
+            return this.mates[ (int) arc ];
+        }
+
+        @Override
+        public int tail( long arc ) {
+            return this.heads[ this.mates[ (int) arc ] ];
+        }
+
+        @Override
+        public long residual( long arc ) {
+            return this.residuals[ (int) arc ];
+        }
+
+        @Override
+        public void push( long arc, long delta ) {
+            this.residuals[ (int) arc ] -= delta;
+            this.residuals[ this.mates[ (int) arc ] ] += delta;
+        }
+    }
+
+    /**
+     * Collects node names and edges, then lays them out as a {@link CsrGraph}.
+     */
+    public static final class Builder implements EdgeSink {
+
+        /**
+         * The node names seen so far, in order
+         */
+        private String[] names = new String[ 16 ];
+
+        /**
+         * The node ids assigned so far
+         */
+        private final Map< String, Integer > ids = new HashMap<>();
+
+        /**
+         * The first node of each edge added so far
+         */
+        private int[] tails = new int[ 16 ];
+
+        /**
+         * The second node of each edge added so far
+         */
+        private int[] heads = new int[ 16 ];
+
+        /**
+         * The capacity of each edge added so far
+         */
+        private long[] capacities = new long[ 16 ];
+
+        /**
+         * The cost of each edge added so far, or null until one is not 0
+         */
+        private long[] costs;
+
+        /**
+         * The number of edges added so far
+         */
+        private int edgeCount = 0;
+
+        /**
+         * Intern a node name.
+         * @param name the node's name
+         * @return the node's id, assigning the next free one if the
+         * name has not been seen before
+         */
+        public int node( String name ) {
+            Integer id = this.ids.get( name );
+            return id == null ? newNode( name ) : id;
+        }
+
+        /**
+         * Assign the next free id to a name that has not been seen before.
+         * @param name the node's name
+         * @return the node's id
+         * @rit.pre name has not been passed to this builder before
+         */
+        public int newNode( String name ) {
+            int id = this.ids.size();
+            if ( id == this.names.length ) {
+                this.names = Arrays.copyOf( this.names, 2 * id );
+            }
+            this.names[ id ] = name;
+            this.ids.put( name, id );
+            return id;
+        }
+
+        /**
+         * Add an edge between two interned nodes.
+         * @param tail the id of the edge's first node
+         * @param head the id of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         */
+        public void addEdge( int tail, int head, long capacity ) {
+            addEdge( tail, head, capacity, 0 );
+        }
+
+        /**
+         * Add an edge with a cost between two interned nodes.
+         * @param tail the id of the edge's first node
+         * @param head the id of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         * @param cost the cost of each unit of flow along the edge
+         */
+        public void addEdge( int tail, int head, long capacity, long cost ) {
+            if ( this.edgeCount == this.tails.length ) {
+                int size = 2 * this.edgeCount;
+                this.tails = Arrays.copyOf( this.tails, size );
+                this.heads = Arrays.copyOf( this.heads, size );
+                this.capacities = Arrays.copyOf( this.capacities, size );
+                if ( this.costs != null ) {
+                    this.costs = Arrays.copyOf( this.costs, size );
+                }
+            }
+            if ( cost != 0 && this.costs == null ) {
+                this.costs = new long[ this.tails.length ];
+            }
+            this.tails[ this.edgeCount ] = tail;
+            this.heads[ this.edgeCount ] = head;
+            this.capacities[ this.edgeCount ] = capacity;
+            if ( this.costs != null ) {
+                this.costs[ this.edgeCount ] = cost;
+            }
+            this.edgeCount++;
+        }
+
+        /**
+         * Add an edge, interning its node names.
+         * @param tail the name of the edge's first node
+         * @param head the name of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         */
+        public void addEdge( String tail, String head, long capacity ) {
+            addEdge( node( tail ), node( head ), capacity, 0 );
+        }
+
+        /**
+         * Add an edge with a cost, interning its node names.
+         * @param tail the name of the edge's first node
+         * @param head the name of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         * @param cost the cost of each unit of flow along the edge
+         */
+        public void addEdge( String tail, String head, long capacity,
+                             long cost ) {
+            addEdge( node( tail ), node( head ), capacity, cost );
+        }
+
+        /**
+         * Add every node and edge from another builder, after those
+         * already added. Nodes are matched by name; the other builder's
+         * new nodes get ids in the order it saw them.
+         * @param other the builder to copy from
+         */
+        public void addAll( Builder other ) {
+            int[] map = new int[ other.ids.size() ];
+            for ( int k = 0; k < map.length; k++ ) {
+                map[ k ] = node( other.names[ k ] );
+            }
+            for ( int e = 0; e < other.edgeCount; e++ ) {
+                addEdge( map[ other.tails[ e ] ], map[ other.heads[ e ] ],
+                         other.capacities[ e ],
+                         other.costs == null ? 0 : other.costs[ e ] );
+            }
+        }
+
+        /**
+         * @return a graph holding every node and edge added so far,
+         * with no flow
+         */
+        public CsrGraph build() {
+            return new CsrGraph( Arrays.copyOf( this.names, this.ids.size() ),
+                                 this.tails, this.heads, this.capacities,
+                                 this.costs, this.edgeCount );
+        }
+    }
+}
@@ -13,6 +13,11 @@ public class Edge {
      */
     private final long capacity;
 
+    /**
+     * What each unit of flow through this edge costs, in either direction
+     */
+    private final long cost;
+
     /**
      * The name of the first node.
      * When flow is assigned, it is positive if the flow comes
@@ -30,9 +35,21 @@ public class Edge {
     /**
      * The flow in the direction from in to out.
      * Negative if the flow is in the opposite direction.
+     * Only used when this edge does not belong to a graph.
      */
     private long flow;
 
+    /**
+     * The graph that holds this edge's flow, or null if the edge
+     * keeps its own
+     */
+    private final CsrGraph graph;
+
+    /**
+     * The index of this edge in its graph
+     */
+    private final int id;
+
     /**
      * Create a new edge with an initial flow of 0.
      * @param in The name of the first node.
@@ -45,10 +62,58 @@ public class Edge {
      *                 in either direction.
      */
     public Edge( String in, String out, long capacity ) {
+        this( in, out, capacity, 0 );
+    }
+
+    /**
+     * Create a new edge with a cost and an initial flow of 0.
+     * @param in The name of the first node.
+     * @param out The name of the second node.
+     * @param capacity the maximum flow that can travel through this edge
+     *                 in either direction.
+     * @param cost what each unit of flow through this edge costs, in
+     *             either direction.
+     */
+    public Edge( String in, String out, long capacity, long cost ) {
         this.in = in;
         this.out = out;
         this.capacity = capacity;
+        this.cost = cost;
         this.flow = 0;
+        this.graph = null;
+        this.id = -1;
+    }
+
+    /**
+     * Create a view of one of a graph's edges. Its flow is read from
+     * and written to the graph.
+     * @param graph The graph holding the edge.
+     * @param id The index of the edge in the graph.
+     */
+    Edge( CsrGraph graph, int id ) {
+        int forward = graph.forwardArc( id );
+        this.in = graph.name( graph.tail( forward ) );
+        this.out = graph.name( graph.head( forward ) );
+        this.capacity = graph.capacity( id );
+        this.cost = graph.cost( id );
+        this.flow = 0;
+        this.graph = graph;
+        this.id = id;
+    }
+
+    /**
+     * @return The capacity, which a graph's edge reads from its graph
+     * since it can be changed there.
+     */
+    private long capacity() {
+        return this.graph == null ? this.capacity : this.graph.capacity( this.id );
+    }
+
+    /**
+     * @return The flow in the direction from in to out.
+     */
+    private long flow() {
+        return this.graph == null ? this.flow : this.graph.flow( this.id );
     }
 
     /**
@@ -86,7 +151,15 @@ public class Edge {
      * @return The value of capacity.
      */
     public long getCapacity() {
-        return this.capacity;
+        return capacity();
+    }
+
+    /**
+     * Get what each unit of flow through this edge costs.
+     * @return The value of cost, 0 unless one was given.
+     */
+    public long getCost() {
+        return this.cost;
     }
 
     /**
@@ -113,7 +186,7 @@ public class Edge {
      * @return capacity - direction(String, String) * existing-flow
      */
     public long availableFlow(String in, String out) {
-        return this.capacity - (direction(in, out) * this.flow);
+        return capacity() - (direction(in, out) * flow());
     }
 
     /**
@@ -126,7 +199,13 @@ public class Edge {
      * exceed capacity.
      */
     public void changeFlow(String in, String out, long delta) {
-        this.flow += direction(in, out) * delta;
+        if (this.graph == null) {
+            this.flow += direction(in, out) * delta;
+        }
+        else {
+            this.graph.push(this.graph.forwardArc(this.id),
+                    direction(in, out) * delta);
+        }
     }
 
     /**
@@ -138,10 +217,10 @@ public class Edge {
      */
     public long getFlow(String in, String out) {
         if (this.in.equals(in) && this.out.equals(out)) {
-            return this.flow;
+            return flow();
         }
         else {
-            return -this.flow;
+            return -flow();
         }
     }
 
@@ -153,9 +232,9 @@ public class Edge {
     public String toString() {
         return "[" + this.in +
                "==>" +
-               this.direction( this.in, this.out ) * this.flow +
+               this.direction( this.in, this.out ) * flow() +
                '/' +
-               this.capacity +
+               capacity() +
                "==>" +
                this.out + ']';
     }
@@ -167,7 +246,7 @@ public class Edge {
     public String toStringNoMax() {
         return "[" + this.in +
                "==>" +
-               this.direction( this.in, this.out ) * this.flow +
+               this.direction( this.in, this.out ) * flow() +
                "==>" +
                this.out + ']';
     }
@@ -0,0 +1,659 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads an edge-list file into a {@link CsrGraph.Builder}, or into an
+ * {@link OffHeapGraph.Builder} one line at a time.
+ * Each line holds two node names, a capacity and, optionally, a cost,
+ * separated by spaces or tabs; blank lines are skipped. The file is
+ * memory-mapped and scanned byte by byte. Node names are interned by
+ * their bytes, so a String is only made the first time a name is seen,
+ * and numbers are parsed without making any objects at all.
+ * <p>
+ * A large file is split into chunks at line breaks, and the chunks are
+ * parsed at the same time, each into its own builder with its own name
+ * table. The chunks are then merged in file order, so every node gets
+ * the same id it would get if the file were read from start to end.
+ *
+ * @author RIT CS
+ */
+final class EdgeListParser {
+
+    /**
+     * The most bytes mapped at once. Chunks bigger than this are mapped in
+     * windows that start on a line boundary.
+     */
+    private static final int WINDOW = 1 << 30;
+
+    /**
+     * Files are not split into chunks smaller than this
+     */
+    private static final long MIN_CHUNK = 1 << 22;
+
+    /**
+     * The file being read
+     */
+    private final FileChannel channel;
+
+    /**
+     * The offset of the first byte of this parser's chunk
+     */
+    private final long start;
+
+    /**
+     * The offset just past the last byte of this parser's chunk
+     */
+    private final long end;
+
+    /**
+     * Where the parsed nodes and edges go
+     */
+    private final EdgeSink builder;
+
+    /**
+     * The node names seen so far
+     */
+    private final NameTable names = new NameTable();
+
+    /**
+     * The window being parsed
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The file offset of the start of the window
+     */
+    private long base;
+
+    /**
+     * The number of line breaks passed so far in this chunk
+     */
+    private long line;
+
+    /**
+     * @param channel the edge-list file
+     * @param start the offset of the first byte of the chunk
+     * @param end the offset just past the last byte of the chunk
+     * @param builder where the parsed nodes and edges go
+     */
+    private EdgeListParser( FileChannel channel, long start, long end,
+                            EdgeSink builder ) {
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+        this.builder = builder;
+    }
+
+    /**
+     * Read every edge in a file into a builder.
+     * @param file the edge-list file
+     * @param builder where the parsed nodes and edges go
+     * @param threads how many chunks may be parsed at once
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if a line is not correctly formatted; the
+     *                        message gives the line number and byte offset
+     */
+    static void parse( Path file, CsrGraph.Builder builder, int threads )
+            throws IOException, GraphException {
+        try ( FileChannel channel =
+                      FileChannel.open( file, StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            int count = (int) Math.max( 1, Math.min( threads,
+                                                     size / MIN_CHUNK ) );
+            if ( count == 1 ) {
+                try {
+                    new EdgeListParser( channel, 0, size, builder ).run();
+                }
+                catch ( ParseError pe ) {
+                    throw pe.toGraphException( file, 0 );
+                }
+                return;
+            }
+
+            long[] bounds = chunkBounds( channel, size, count );
+            List< EdgeListParser > chunks = new ArrayList<>();
+            List< CsrGraph.Builder > parts = new ArrayList<>();
+            for ( int i = 0; i < count; i++ ) {
+                if ( bounds[ i ] < bounds[ i + 1 ] ) {
+                    CsrGraph.Builder part = new CsrGraph.Builder();
+                    chunks.add( new EdgeListParser( channel, bounds[ i ],
+                                                    bounds[ i + 1 ], part ) );
+                    parts.add( part );
+                }
+            }
+            List< Future< Void > > results;
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    Math.min( threads, chunks.size() ) );
+            try {
+                List< Callable< Void > > tasks = new ArrayList<>();
+                for ( EdgeListParser chunk: chunks ) {
+                    tasks.add( () -> {
+                        chunk.run();
+                        return null;
+                    } );
+                }
+                results = pool.invokeAll( tasks );
+            }
+            catch ( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "interrupted reading " +
+                                                  file );
+            }
+            finally {
+                pool.shutdown();
+            }
+
+            long lines = 0;
+            for ( int i = 0; i < chunks.size(); i++ ) {
+                try {
+                    results.get( i ).get();
+                }
+                catch ( ExecutionException ee ) {
+                    Throwable cause = ee.getCause();
+                    if ( cause instanceof ParseError ) {
+                        throw ( (ParseError) cause ).toGraphException( file,
+                                                                       lines );
+                    }
+                    if ( cause instanceof IOException ) {
+                        throw (IOException) cause;
+                    }
+                    throw new IllegalStateException( cause );
+                }
+                catch ( InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( "interrupted reading " +
+                                                      file );
+                }
+                lines += chunks.get( i ).line;
+            }
+            for ( CsrGraph.Builder part: parts ) {
+                builder.addAll( part );
+            }
+        }
+    }
+
+    /**
+     * Read every edge in a file, in order, on the calling thread.
+     * @param file the edge-list file
+     * @param sink where the parsed nodes and edges go
+     * @throws IOException if the file cannot be read or the edges cannot
+     *                     be stored
+     * @throws GraphException if a line is not correctly formatted; the
+     *                        message gives the line number and byte offset
+     */
+    static void parse( Path file, EdgeSink sink )
+            throws IOException, GraphException {
+        try ( FileChannel channel =
+                      FileChannel.open( file, StandardOpenOption.READ ) ) {
+            new EdgeListParser( channel, 0, channel.size(), sink ).run();
+        }
+        catch ( ParseError pe ) {
+            throw pe.toGraphException( file, 0 );
+        }
+    }
+
+    /**
+     * Find where to split a file so that every chunk starts on a line.
+     * @param channel the file
+     * @param size the file's size
+     * @param count how many chunks to make
+     * @return count+1 offsets; chunk i runs from entry i to entry i+1,
+     *         and may be empty if a line is very long
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] chunkBounds( FileChannel channel, long size,
+                                       int count ) throws IOException {
+        long[] bounds = new long[ count + 1 ];
+        bounds[ count ] = size;
+        ByteBuffer probe = ByteBuffer.allocate( 1 << 16 );
+        for ( int i = 1; i < count; i++ ) {
+            long pos = Math.max( bounds[ i - 1 ], size / count * i );
+            bounds[ i ] = size;
+            while ( pos < size ) {
+                probe.clear();
+                int read = channel.read( probe, pos );
+                if ( read <= 0 ) {
+                    break;
+                }
+                int newline = -1;
+                for ( int j = 0; j < read; j++ ) {
+                    if ( probe.get( j ) == '\n' ) {
+                        newline = j;
+                        break;
+                    }
+                }
+                if ( newline >= 0 ) {
+                    bounds[ i ] = pos + newline + 1;
+                    break;
+                }
+                pos += read;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Map this parser's chunk a window at a time and parse every line.
+     * @throws IOException if the file cannot be read
+     * @throws ParseError if a line is not correctly formatted
+     */
+    private void run() throws IOException, ParseError {
+        this.base = this.start;
+        while ( this.base < this.end ) {
+            int length = (int) Math.min( WINDOW, this.end - this.base );
+            this.buffer = this.channel.map( FileChannel.MapMode.READ_ONLY,
+                                            this.base, length );
+            int stop = length;
+            if ( this.base + length < this.end ) {
+                while ( stop > 0 && this.buffer.get( stop - 1 ) != '\n' ) {
+                    stop--;
+                }
+                if ( stop == 0 ) {
+                    throw error( 0, "line is longer than " + WINDOW +
+                                    " bytes" );
+                }
+            }
+            parseLines( stop );
+            this.base += stop;
+        }
+    }
+
+    /**
+     * Parse the lines in the current window.
+     * @param end the offset just past the last byte to parse; the window
+     *            ends here or at a newline
+     * @throws IOException if an edge cannot be stored
+     * @throws ParseError if a line is not correctly formatted
+     */
+    private void parseLines( int end ) throws IOException, ParseError {
+        MappedByteBuffer buf = this.buffer;
+        int pos = 0;
+        while ( pos < end ) {
+            pos = skipBlanks( pos, end );
+            if ( pos == end ) {
+                break;
+            }
+            byte b = buf.get( pos );
+            if ( b == '\n' || b == '\r' ) {
+                pos = endLine( pos, end );
+                continue;
+            }
+
+            int tail = pos;
+            pos = skipName( pos, end );
+            int tailId = intern( tail, pos );
+            int head = skipBlanks( pos, end );
+            if ( head == pos || isLineEnd( head, end ) ) {
+                throw error( head, "expected a second node name" );
+            }
+            pos = skipName( head, end );
+            int headId = intern( head, pos );
+            int digits = skipBlanks( pos, end );
+            if ( digits == pos || isLineEnd( digits, end ) ) {
+                throw error( digits, "expected a capacity" );
+            }
+
+            pos = skipDigits( digits, end );
+            long capacity = number( digits, pos, "capacity" );
+            String last = "capacity";
+            long cost = 0;
+            int next = skipBlanks( pos, end );
+            if ( next > pos && !isLineEnd( next, end ) ) {
+                pos = skipDigits( next, end );
+                cost = number( next, pos, "cost" );
+                last = "cost";
+                next = skipBlanks( pos, end );
+            }
+            if ( !isLineEnd( next, end ) ) {
+                throw error( next, "unexpected text after the " + last );
+            }
+            this.builder.addEdge( tailId, headId, capacity, cost );
+            pos = endLine( next, end );
+        }
+    }
+
+    /**
+     * @param pos an offset in the window
+     * @param end the end of the parsed region
+     * @return the first offset at or after pos that is not a space or tab
+     */
+    private int skipBlanks( int pos, int end ) {
+        while ( pos < end ) {
+            byte b = this.buffer.get( pos );
+            if ( b != ' ' && b != '\t' ) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param pos an offset in the window
+     * @param end the end of the parsed region
+     * @return the first offset at or after pos that is not a digit
+     */
+    private int skipDigits( int pos, int end ) {
+        while ( pos < end ) {
+            byte b = this.buffer.get( pos );
+            if ( b < '0' || b > '9' ) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Parse a whole number without making any objects.
+     * @param start the offset of the first digit
+     * @param end the offset just past the last digit
+     * @param what what the number is, for error messages
+     * @return the number
+     * @throws ParseError if there are no digits or the number does not
+     *                    fit in a long
+     */
+    private long number( int start, int end, String what )
+            throws ParseError {
+        if ( start == end ) {
+            throw error( start, "expected a " + what );
+        }
+        long value = 0;
+        for ( int pos = start; pos < end; pos++ ) {
+            int d = this.buffer.get( pos ) - '0';
+            if ( value > ( Long.MAX_VALUE - d ) / 10 ) {
+                throw error( start, what + " is too large" );
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * @param pos an offset in the window
+     * @param end the end of the parsed region
+     * @return the first offset at or after pos that ends a name
+     */
+    private int skipName( int pos, int end ) {
+        while ( pos < end ) {
+            byte b = this.buffer.get( pos );
+            if ( b == ' ' || b == '\t' || b == '\n' || b == '\r' ) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param pos an offset in the window
+     * @param end the end of the parsed region
+     * @return true if pos is at a line break or the end of the region
+     */
+    private boolean isLineEnd( int pos, int end ) {
+        if ( pos == end ) {
+            return true;
+        }
+        byte b = this.buffer.get( pos );
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Step over the line break at pos.
+     * @param pos an offset at a line break or the end of the region
+     * @param end the end of the parsed region
+     * @return the offset of the start of the next line
+     */
+    private int endLine( int pos, int end ) {
+        if ( pos < end && this.buffer.get( pos ) == '\r' ) {
+            pos++;
+        }
+        if ( pos < end && this.buffer.get( pos ) == '\n' ) {
+            pos++;
+            this.line++;
+        }
+        return pos;
+    }
+
+    /**
+     * Find or assign the id of the name in bytes start to end-1.
+     * @param start the offset of the name's first byte
+     * @param end the offset just past the name
+     * @return the node's id
+     */
+    private int intern( int start, int end ) {
+        int id = this.names.find( this.buffer, start, end );
+        if ( id < 0 ) {
+            byte[] bytes = new byte[ end - start ];
+            this.buffer.get( start, bytes );
+            id = this.builder.newNode(
+                    new String( bytes, StandardCharsets.UTF_8 ) );
+            this.names.add( bytes, id );
+        }
+        return id;
+    }
+
+    /**
+     * Describe a formatting problem.
+     * @param pos the offset in the window where the problem is
+     * @param message what is wrong
+     * @return an exception giving the byte offset and the line number
+     * within this chunk
+     */
+    private ParseError error( int pos, String message ) {
+        return new ParseError( this.line, this.base + pos, message );
+    }
+
+    /**
+     * A formatting problem found in one chunk. The line number is only
+     * known once the lines in the chunks before it have been counted.
+     */
+    private static final class ParseError extends Exception {
+
+        /**
+         * The number of line breaks before the problem, in its chunk
+         */
+        private final long line;
+
+        /**
+         * The offset of the problem in the file
+         */
+        private final long offset;
+
+        /**
+         * @param line the number of line breaks before the problem,
+         *             in its chunk
+         * @param offset the offset of the problem in the file
+         * @param message what is wrong
+         */
+        ParseError( long line, long offset, String message ) {
+            super( message, null, false, false );
+            this.line = line;
+            this.offset = offset;
+        }
+
+        /**
+         * @param file the file being read
+         * @param before the number of line breaks in the earlier chunks
+         * @return an exception naming the file, line and byte offset
+         */
+        GraphException toGraphException( Path file, long before ) {
+            return new GraphException( file + ": line " +
+                                       ( before + this.line + 1 ) +
+                                       ", byte " + this.offset + ": " +
+                                       getMessage() );
+        }
+    }
+
+    /**
+     * An open-addressing hash table from a name's bytes to its node id.
+     * The bytes of every name are kept in one pool.
+     */
+    static final class NameTable {
+
+        /**
+         * Each slot holds an entry number plus 1, or 0 if empty
+         */
+        private int[] slots = new int[ 1024 ];
+
+        /**
+         * The number of names in the table
+         */
+        private int size = 0;
+
+        /**
+         * The node id, hash, pool offset and length of each entry
+         */
+        private int[] ids = new int[ 256 ];
+        private int[] hashes = new int[ 256 ];
+        private int[] starts = new int[ 256 ];
+        private int[] lengths = new int[ 256 ];
+
+        /**
+         * The bytes of every name, one after another
+         */
+        private byte[] pool = new byte[ 4096 ];
+
+        /**
+         * The number of bytes used in the pool
+         */
+        private int poolSize = 0;
+
+        /**
+         * The hash of the name last looked up and not found
+         */
+        private int pendingHash;
+
+        /**
+         * Hash the bytes of a name.
+         * @param buf the bytes
+         * @param start the offset of the first byte
+         * @param end the offset just past the last byte
+         * @return the hash
+         */
+        private static int hash( ByteBuffer buf, int start, int end ) {
+            int h = 0x811c9dc5;
+            for ( int i = start; i < end; i++ ) {
+                h = ( h ^ buf.get( i ) ) * 0x01000193;
+            }
+            return h;
+        }
+
+        /**
+         * Look up a name.
+         * @param buf the bytes holding the name
+         * @param start the offset of the name's first byte
+         * @param end the offset just past the name
+         * @return the name's id, or -1 if it is not in the table. If it
+         * is not, the next {@link #add(byte[], int)} must be for it.
+         */
+        int find( ByteBuffer buf, int start, int end ) {
+            int h = hash( buf, start, end );
+            int mask = this.slots.length - 1;
+            for ( int s = h & mask; ; s = ( s + 1 ) & mask ) {
+                int k = this.slots[ s ] - 1;
+                if ( k < 0 ) {
+                    this.pendingHash = h;
+                    return -1;
+                }
+                if ( this.hashes[ k ] == h &&
+                     this.lengths[ k ] == end - start &&
+                     sameBytes( buf, start, this.starts[ k ], end - start ) ) {
+                    return this.ids[ k ];
+                }
+            }
+        }
+
+        /**
+         * Add the name last looked up with {@link #find}.
+         * @param bytes the name's bytes
+         * @param id the name's node id
+         */
+        void add( byte[] bytes, int id ) {
+            int k = this.size;
+            if ( k == this.ids.length ) {
+                this.ids = Arrays.copyOf( this.ids, 2 * k );
+                this.hashes = Arrays.copyOf( this.hashes, 2 * k );
+                this.starts = Arrays.copyOf( this.starts, 2 * k );
+                this.lengths = Arrays.copyOf( this.lengths, 2 * k );
+            }
+            if ( this.poolSize + bytes.length > this.pool.length ) {
+                this.pool = Arrays.copyOf(
+                        this.pool,
+                        Math.max( 2 * this.pool.length,
+                                  this.poolSize + bytes.length ) );
+            }
+            System.arraycopy( bytes, 0, this.pool, this.poolSize,
+                              bytes.length );
+            this.ids[ k ] = id;
+            this.hashes[ k ] = this.pendingHash;
+            this.starts[ k ] = this.poolSize;
+            this.lengths[ k ] = bytes.length;
+            this.poolSize += bytes.length;
+            this.size++;
+            if ( 2 * this.size > this.slots.length ) {
+                rehash();
+            }
+            else {
+                insert( k );
+            }
+        }
+
+        /**
+         * Put an entry in the first free slot for its hash.
+         * @param k an entry number
+         */
+        private void insert( int k ) {
+            int mask = this.slots.length - 1;
+            int s = this.hashes[ k ] & mask;
+            while ( this.slots[ s ] != 0 ) {
+                s = ( s + 1 ) & mask;
+            }
+            this.slots[ s ] = k + 1;
+        }
+
+        /**
+         * Double the number of slots and reinsert every entry.
+         */
+        private void rehash() {
+            this.slots = new int[ 2 * this.slots.length ];
+            for ( int k = 0; k < this.size; k++ ) {
+                insert( k );
+            }
+        }
+
+        /**
+         * Compare bytes in a buffer with bytes in the pool.
+         * @param buf the buffer
+         * @param start the offset in the buffer
+         * @param poolStart the offset in the pool
+         * @param length how many bytes to compare
+         * @return true if they are the same
+         */
+        private boolean sameBytes( ByteBuffer buf, int start,
+                                   int poolStart, int length ) {
+            for ( int i = 0; i < length; i++ ) {
+                if ( buf.get( start + i ) != this.pool[ poolStart + i ] ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
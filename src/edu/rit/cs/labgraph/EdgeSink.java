@@ -0,0 +1,43 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+
+/**
+ * Where {@link EdgeListParser} puts the nodes and edges it reads: a
+ * {@link CsrGraph.Builder} or an {@link OffHeapGraph.Builder}.
+ *
+ * @author RIT CS
+ */
+interface EdgeSink {
+
+    /**
+     * Assign the next free id to a name that has not been seen before.
+     * @param name the node's name
+     * @return the node's id
+     */
+    int newNode( String name );
+
+    /**
+     * Add an edge between two nodes.
+     * @param tail the id of the edge's first node
+     * @param head the id of the edge's second node
+     * @param capacity the capacity of the edge, in either direction
+     * @throws IOException if the edge cannot be stored
+     */
+    void addEdge( int tail, int head, long capacity ) throws IOException;
+
+    /**
+     * Add an edge with a cost between two nodes. A sink that keeps no
+     * costs, such as an {@link OffHeapGraph.Builder}, which is only ever
+     * solved for a max flow, adds the edge without it.
+     * @param tail the id of the edge's first node
+     * @param head the id of the edge's second node
+     * @param capacity the capacity of the edge, in either direction
+     * @param cost the cost of each unit of flow along the edge
+     * @throws IOException if the edge cannot be stored
+     */
+    default void addEdge( int tail, int head, long capacity, long cost )
+            throws IOException {
+        addEdge( tail, head, capacity );
+    }
+}
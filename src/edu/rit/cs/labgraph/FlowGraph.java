@@ -1,13 +1,18 @@
 package edu.rit.cs.labgraph;
 
-import java.io.*;
-import java.security.KeyStoreException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * A Graph representation where nodes are just strings that contain no data,
- * and edges are named by their node endpoints, their flow, and their flow
- * capacity.
+ * and edges are named by their node endpoints, their flow, their flow
+ * capacity and, for min-cost flow, the cost of each unit of their flow.
  * This graph class was custom-designed for the Max Flow Problem.
  *
  * @author RIT CS
@@ -26,10 +31,37 @@ public class FlowGraph {
     private final String sink;
 
     /**
-     * The internal graph data structure: a map where each node name
-     * is associated with the set of edges connected to it
+     * The internal graph data structure: node names interned to ids,
+     * with the edges at each node laid out as arcs in CSR form
      */
-    private final LinkedHashMap< String, LinkedHashSet< Edge > > adjList;
+    private final CsrGraph csr;
+
+    /**
+     * The id of the source node in {@link #csr}
+     */
+    private final int sourceId;
+
+    /**
+     * The id of the sink node in {@link #csr}
+     */
+    private final int sinkId;
+
+    /**
+     * The {@link Edge} view of each edge, created the first time it is asked for,
+     * or null until one is
+     */
+    private Edge[] edges;
+
+    /**
+     * The search behind {@link #doBFS()}, created the first time it is run
+     */
+    private PathSearch pathSearch;
+
+    /**
+     * The bidirectional search that moves flow off a removed or shrunk
+     * edge, created the first time it is needed
+     */
+    private PathSearch repairSearch;
 
     /**
      * <em>This constant is only used for testing.</em>
@@ -53,123 +85,390 @@ public class FlowGraph {
         final String C = "C";
         final String D = "D";
 
-        Edge eAB = new Edge( A, B, CAP );
-        Edge eAC = new Edge( A, C, CAP );
-        Edge eBC = new Edge( B, C, CAP );
-        Edge eDB = new Edge( D, B, CAP );
-        Edge eDC = new Edge( D, C, CAP );
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        for ( String node: List.of( A, B, C, D ) ) {
+            builder.node( node );
+        }
+        builder.addEdge( A, B, CAP );
+        builder.addEdge( A, C, CAP );
+        builder.addEdge( B, C, CAP );
+        builder.addEdge( D, B, CAP );
+        builder.addEdge( D, C, CAP );
 
         this.source = A;
         this.sink = D;
-        this.adjList = new LinkedHashMap<>();
-
-        for ( String node: List.of( A, B, C, D ) ) {
-            this.adjList.put( node, new LinkedHashSet<>() );
-        }
-        this.adjList.get( A ).add( eAB );
-        this.adjList.get( B ).add( eAB );
-        this.adjList.get( A ).add( eAC );
-        this.adjList.get( C ).add( eAC );
-        this.adjList.get( B ).add( eBC );
-        this.adjList.get( C ).add( eBC );
-        this.adjList.get( D ).add( eDB );
-        this.adjList.get( B ).add( eDB );
-        this.adjList.get( D ).add( eDC );
-        this.adjList.get( C ).add( eDC );
+        this.csr = builder.build();
+        this.sourceId = this.csr.id( A );
+        this.sinkId = this.csr.id( D );
     }
 
     /**
      * Build a graph from the edge list in a file. Each line in the file
-     * contains two nodes and a maximum flow capacity.
-     * A BufferedReader is used to read the file contents. Note that each
-     * line specifies one edge. But each edge will get attached to the lists
-     * of two nodes, without modification.
+     * contains two nodes and a maximum flow capacity, and may end with
+     * a cost per unit of flow.
+     * The file is memory-mapped and parsed in place by an
+     * {@link EdgeListParser}, using one thread per processor for large
+     * files. Note that each line specifies one edge, which is shared by
+     * the arc lists of both of its nodes.
+     * If the file is a snapshot written by {@link #writeSnapshot(String)},
+     * it is loaded directly instead.
      * @param graphFileName The name of the edge list file.
      * @param source The source of the flow for the maxflow problem.
      * @param sink The sink of the flow for the maxflow problem.
      * @throws IOException If there is a problem reading the input file
-     * @throws GraphException If the data in the file is not correctly formatted
+     * @throws GraphException If the data in the file is not correctly formatted,
+     * naming the line and byte offset of the problem,
      * or if either the source or sink are not in the final graph.
      */
     public FlowGraph(String graphFileName, String source, String sink)
             throws IOException, GraphException {
+        this(graphFileName, source, sink,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Build a graph from the edge list in a file, as
+     * {@link #FlowGraph(String, String, String)} does, parsing large
+     * files in chunks on up to the given number of threads. Node ids, and
+     * so the output of {@link #show(boolean)}, do not depend on the
+     * number of threads.
+     * @param graphFileName The name of the edge list file. It may also be
+     * a snapshot written by {@link #writeSnapshot(String)}.
+     * @param source The source of the flow for the maxflow problem.
+     * @param sink The sink of the flow for the maxflow problem.
+     * @param threads How many threads may parse the file.
+     * @throws IOException If there is a problem reading the input file
+     * @throws GraphException If the data in the file is not correctly formatted,
+     * or if either the source or sink are not in the final graph.
+     */
+    public FlowGraph(String graphFileName, String source, String sink,
+                     int threads)
+            throws IOException, GraphException {
         this.source = source;
         this.sink = sink;
-        this.adjList = new LinkedHashMap<>();
-
-        try (BufferedReader in =
-                     new BufferedReader(new FileReader(graphFileName))) {
-            String line;
-            while ((line = in.readLine()) != null) {
-                String[] arrLine = line.split(" ");
-                if (!this.adjList.containsKey(arrLine[0])) {
-                    this.adjList.put(arrLine[0], new LinkedHashSet<>());
-                }
-                if (!this.adjList.containsKey(arrLine[1])) {
-                    this.adjList.put(arrLine[1], new LinkedHashSet<>());
-                }
-                this.adjList.get(arrLine[0]).add(new Edge(
-                        arrLine[0], arrLine[1], Long.parseLong(arrLine[2])));
-                this.adjList.get(arrLine[1]).add(new Edge(
-                        arrLine[0], arrLine[1], Long.parseLong(arrLine[2])));
-            }
+
+        this.csr = CsrGraph.read(Paths.get(graphFileName), threads);
+        this.sourceId = this.csr.id(source);
+        this.sinkId = this.csr.id(sink);
+        if (this.sourceId < 0) {
+            throw new GraphException("Source is not in the graph: " + source);
         }
-        catch (IOException ioe) {
-            System.err.println(ioe.getMessage());
+        if (this.sinkId < 0) {
+            throw new GraphException("Sink is not in the graph: " + sink);
         }
     }
 
+    /**
+     * Build a graph around an existing CSR graph, such as one from
+     * {@link CsrGraph#shareTopology()}, with any two of its nodes as the
+     * source and sink. The flow is whatever the CSR graph holds.
+     * @param csr The nodes, edges and flow of the graph.
+     * @param sourceId The id of the source of the flow.
+     * @param sinkId The id of the sink of the flow.
+     */
+    public FlowGraph(CsrGraph csr, int sourceId, int sinkId) {
+        this.csr = csr;
+        this.sourceId = sourceId;
+        this.sinkId = sinkId;
+        this.source = csr.name(sourceId);
+        this.sink = csr.name(sinkId);
+    }
+
     /**
      *Find the shortest path from source to sink, taking into account the
      * available flow on each edge considered. This means that edges whose
      * flows are maxed out in the direction being considered will not be used
      * for the solution path. A breadth-first-search algorithm is used, with
      * no guarantee on order of consideration of edges.
+     * The search itself reuses one {@link PathSearch}; solvers should use
+     * a PathSearch directly to get the path as arcs without building a
+     * list of names.
      * @return An Optional containing the list of nodes for the path, from
      * source to sink, or Optional.empty() if no path exists
      */
     public Optional<List<String>> doBFS() {
-        //Make queue of nodes to go through
-        List<String> queue = new LinkedList<>();
-        queue.add(this.source);
-
-        //Make map of predecessors for already visited nodes
-        Map<String, String> predecessors = new HashMap<>();
-        predecessors.put(this.source, this.source);
-
-        //Construct predecessors map
-        while (!queue.isEmpty()) {
-            String current = queue.remove(0);
-            if (current == this.sink) {
-                break;
+        if (this.pathSearch == null) {
+            this.pathSearch = new PathSearch(this);
+        }
+        if (!this.pathSearch.find()) {
+            return Optional.empty();
+        }
+
+        //Construct Path
+        int[] arcs = this.pathSearch.getArcs();
+        List<String> path = new ArrayList<>(this.pathSearch.getLength() + 1);
+        path.add(this.source);
+        for (int i = 0; i < this.pathSearch.getLength(); i++) {
+            path.add(this.csr.name(this.csr.head(arcs[i])));
+        }
+        return Optional.of(path);
+    }
+
+    /**
+     * Add an edge, creating either node if it is not in the graph yet.
+     * The new edge has no flow, and every other edge keeps its flow, so
+     * a solver run afterwards only has to add what the new edge allows.
+     * Each call lays out the graph's arcs again; to add many edges at
+     * once, use {@link #addEdges(Collection)}.
+     * @param a The name of the edge's first node.
+     * @param b The name of the edge's second node.
+     * @param capacity The edge's capacity, in either direction.
+     * @return The new edge.
+     * @throws GraphException If the capacity is negative.
+     */
+    public Edge addEdge(String a, String b, long capacity)
+            throws GraphException {
+        return addEdge(a, b, capacity, 0);
+    }
+
+    /**
+     * Add an edge with a cost, as {@link #addEdge(String, String, long)}
+     * does.
+     * @param a The name of the edge's first node.
+     * @param b The name of the edge's second node.
+     * @param capacity The edge's capacity, in either direction.
+     * @param cost What each unit of flow through the edge costs.
+     * @return The new edge.
+     * @throws GraphException If the capacity or cost is negative.
+     */
+    public Edge addEdge(String a, String b, long capacity, long cost)
+            throws GraphException {
+        addEdges(List.of(new Edge(a, b, capacity, cost)));
+        return edgeAt(this.csr.forwardArc(this.csr.edgeCount() - 1));
+    }
+
+    /**
+     * Add several edges, laying out the graph's arcs again only once,
+     * as {@link #addEdge(String, String, long)} does for one.
+     * @param newEdges Edges giving the nodes, capacity and cost of each
+     *                 edge to add. Their flows are ignored, and they do not
+     *                 become part of this graph; use
+     *                 {@link #getEdge(String, String)} to find the edges
+     *                 that do.
+     * @throws GraphException If any capacity or cost is negative, in
+     * which case no edge is added.
+     */
+    public void addEdges(Collection<Edge> newEdges) throws GraphException {
+        long[] costs = null;
+        for (Edge e : newEdges) {
+            checkCapacity(e.getCapacity());
+            if (e.getCost() < 0) {
+                throw new GraphException("Cost is negative: " + e.getCost());
             }
-            for (Edge edge: this.adjList.get(current)) {
-                String neighbor = edge.getOtherEnd(current);
-                if (!predecessors.containsKey(neighbor) &&
-                        edge.getFlow(current, neighbor) <
-                                edge.getCapacity()) {
-                    predecessors.put(neighbor, current);
-                    queue.add(neighbor);
-                }
+            if (e.getCost() != 0 && costs == null) {
+                costs = new long[newEdges.size()];
+            }
+        }
+        int[] tails = new int[newEdges.size()];
+        int[] heads = new int[newEdges.size()];
+        long[] capacities = new long[newEdges.size()];
+        int count = 0;
+        for (Edge e : newEdges) {
+            tails[count] = nodeId(e.getInNode());
+            heads[count] = nodeId(e.getOutNode());
+            capacities[count] = e.getCapacity();
+            if (costs != null) {
+                costs[count] = e.getCost();
             }
+            count++;
         }
+        this.csr.addEdges(tails, heads, capacities, costs, count);
+        this.pathSearch = null;
+        this.repairSearch = null;
+    }
 
-        //Construct Path
-        List<String> path = new LinkedList<>();
-        if (predecessors.containsKey(this.sink)) {
-            String current = this.sink;
-            while (current != this.source) {
-                path.add(0, current);
-                current = predecessors.get(current);
+    /**
+     * Remove an edge. Any flow it carried is moved to other paths between
+     * its nodes if there is room, and otherwise taken back out of the
+     * flow, so the graph still holds a valid flow afterwards. Each path
+     * is found by a bidirectional search, which gives up as soon as the
+     * smaller of its two frontiers runs out, so a search that finds no
+     * path only covers the smaller side of the cut that stops it.
+     * @param a The name of one of the edge's nodes.
+     * @param b The name of the other node.
+     * @throws GraphException If there is no edge between the nodes.
+     */
+    public void removeEdge(String a, String b) throws GraphException {
+        int edge = this.csr.edge(existingArc(a, b));
+        rebalance(edge, this.csr.removeEdge(edge));
+    }
+
+    /**
+     * Change an edge's capacity. If the edge's flow no longer fits, the
+     * extra is moved to other paths between its nodes if there is room,
+     * and otherwise taken back out of the flow, as
+     * {@link #removeEdge(String, String)} does; the rest of the flow is
+     * kept. A solver run afterwards starts from that flow.
+     * @param a The name of one of the edge's nodes.
+     * @param b The name of the other node.
+     * @param capacity The edge's new capacity, in either direction.
+     * @throws GraphException If there is no edge between the nodes, or
+     * the capacity is negative.
+     */
+    public void setCapacity(String a, String b, long capacity)
+            throws GraphException {
+        checkCapacity(capacity);
+        int edge = this.csr.edge(existingArc(a, b));
+        rebalance(edge, this.csr.setCapacity(edge, capacity));
+    }
+
+    /**
+     * @return The net flow out of the source: the value of the flow this
+     * graph holds.
+     */
+    public long getFlowValue() {
+        long value = 0;
+        for (int arc = this.csr.firstArc(this.sourceId);
+             arc < this.csr.endArc(this.sourceId); arc++) {
+            value += this.csr.capacity(this.csr.edge(arc)) -
+                     this.csr.residual(arc);
+        }
+        return value;
+    }
+
+    /**
+     * @return What the flow this graph holds costs: the sum over the
+     * edges of the cost of each times the size of its flow.
+     */
+    public long getFlowCost() {
+        long cost = 0;
+        if (this.csr.hasCosts()) {
+            for (int edge = 0; edge < this.csr.edgeCount(); edge++) {
+                cost += this.csr.cost(edge) * Math.abs(this.csr.flow(edge));
             }
-            path.add(0, this.source);
         }
+        return cost;
+    }
+
+    /**
+     * @param capacity A capacity for an edge.
+     * @throws GraphException If it is negative.
+     */
+    private static void checkCapacity(long capacity) throws GraphException {
+        if (capacity < 0) {
+            throw new GraphException("Capacity is negative: " + capacity);
+        }
+    }
 
-        if (path.isEmpty()) {
-            return Optional.empty();
+    /**
+     * @param name A node name.
+     * @return The node's id, adding it to the graph if it is new.
+     */
+    private int nodeId(String name) {
+        int u = this.csr.id(name);
+        return u >= 0 ? u : this.csr.addNode(name);
+    }
+
+    /**
+     * @param a The name of the node an arc leaves.
+     * @param b The name of the node it points to.
+     * @return The first arc between them.
+     * @throws GraphException If there is none.
+     */
+    private int existingArc(String a, String b) throws GraphException {
+        int arc = findArc(a, b);
+        if (arc < 0) {
+            throw new GraphException("No edge between " + a + " and " + b);
+        }
+        return arc;
+    }
+
+    /**
+     * Restore conservation of flow after some flow has been cut from an
+     * edge. The node the flow left is left with that much more flow
+     * coming in than going out, and the node it reached with that much
+     * less. First the cut flow is sent between them along other paths,
+     * which keeps the flow's value; whatever cannot be is sent back to
+     * the source or on to the sink, and pulled back into the other node
+     * from the sink or the source. Such paths always exist, since the
+     * cut flow came from one of them and went to the other.
+     * @param edge The edge whose flow was cut.
+     * @param cut How much flow from its first node to its second was cut,
+     *            negative if the cut flow ran the other way.
+     */
+    private void rebalance(int edge, long cut) {
+        if (cut == 0) {
+            return;
+        }
+        int forward = this.csr.forwardArc(edge);
+        int from = cut > 0 ? this.csr.tail(forward) : this.csr.head(forward);
+        int to = cut > 0 ? this.csr.head(forward) : this.csr.tail(forward);
+        long left = Math.abs(cut) - route(from, to, Math.abs(cut));
+        if (from != this.sourceId && from != this.sinkId) {
+            long excess = left - route(from, this.sourceId, left);
+            route(from, this.sinkId, excess);
+        }
+        if (to != this.sourceId && to != this.sinkId) {
+            long deficit = left - route(this.sinkId, to, left);
+            route(this.sourceId, to, deficit);
         }
-        else {
-            return Optional.of(path);
+    }
+
+    /**
+     * Push flow between two nodes along shortest paths with room for it.
+     * @param from The id of the node sending the flow.
+     * @param to The id of the node receiving it.
+     * @param amount The most flow to push.
+     * @return The amount pushed.
+     */
+    private long route(int from, int to, long amount) {
+        if (this.repairSearch == null) {
+            this.repairSearch = new PathSearch(this, true);
+        }
+        long pushed = 0;
+        while (pushed < amount && this.repairSearch.find(from, to)) {
+            pushed += this.repairSearch.augment(amount - pushed);
+        }
+        return pushed;
+    }
+
+    /**
+     * Save this graph's nodes, edges, capacities and costs, but not its
+     * flows, in a binary snapshot that the file constructors load far
+     * faster than an edge list, and that {@link SnapshotNetwork#open}
+     * maps without loading at all. Removed edges are saved with no
+     * capacity.
+     * @param snapshotFileName The name of the file to write.
+     * @throws IOException If the file cannot be written
+     */
+    public void writeSnapshot(String snapshotFileName) throws IOException {
+        GraphSnapshot.write(this.csr, Paths.get(snapshotFileName));
+    }
+
+    /**
+     * Write every edge's flow to a text file, one edge per line, in the
+     * order the edges were read: the edge's two nodes, its capacity, its
+     * cost if the graph has costs, and its flow from the first node to
+     * the second, negative if the flow runs the other way, separated by
+     * spaces. The columns before the flow are in the edge list format
+     * this class reads. Removed edges are left out. The file is written
+     * as it goes, not built in memory.
+     * @param flowFileName The name of the file to write.
+     * @throws IOException If the file cannot be written
+     */
+    public void writeFlows(String flowFileName) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+                Paths.get(flowFileName), StandardCharsets.UTF_8))) {
+            for (int edge = 0; edge < this.csr.edgeCount(); edge++) {
+                if (this.csr.isRemoved(edge)) {
+                    continue;
+                }
+                int forward = this.csr.forwardArc(edge);
+                out.print(this.csr.name(this.csr.tail(forward)));
+                out.print(' ');
+                out.print(this.csr.name(this.csr.head(forward)));
+                out.print(' ');
+                out.print(this.csr.capacity(edge));
+                out.print(' ');
+                if (this.csr.hasCosts()) {
+                    out.print(this.csr.cost(edge));
+                    out.print(' ');
+                }
+                out.println(this.csr.flow(edge));
+            }
+            if (out.checkError()) {
+                throw new IOException("could not write " + flowFileName);
+            }
         }
     }
 
@@ -196,7 +495,18 @@ public class FlowGraph {
      * @rit.pre node is not null and is in the graph.
      */
     public Set< Edge > getEdgesAt( String node ) {
-        return this.adjList.get( node );
+        int u = this.csr.id( node );
+        if ( u < 0 ) {
+            return null;
+        }
+        Set< Edge > result = new LinkedHashSet<>();
+        for ( int arc = this.csr.firstArc( u ); arc < this.csr.endArc( u );
+              arc++ ) {
+            if ( !this.csr.isRemoved( this.csr.edge( arc ) ) ) {
+                result.add( edgeAt( arc ) );
+            }
+        }
+        return result;
     }
 
     /**
@@ -206,12 +516,17 @@ public class FlowGraph {
      * @return The Edge object containing the two given nodes
      */
     public Edge getEdge(String a, String b) {
-        for (Edge edge: this.adjList.get(a)) {
-            if (edge.getOtherEnd(a).equals(b)) {
-                return edge;
-            }
-        }
-        return null;
+        int arc = findArc(a, b);
+        return arc < 0 ? null : edgeAt(arc);
+    }
+
+    /**
+     * Get an edge in this graph by its index in {@link #getCsr()}
+     * @param id The edge's index
+     * @return The same Edge object every time for the same edge
+     */
+    public Edge getEdge(int id) {
+        return edgeAt(this.csr.forwardArc(id));
     }
 
     /**
@@ -224,12 +539,71 @@ public class FlowGraph {
      * @return The amount of flow as described above
      */
     public long getAvailableFlow(String previous, String current) {
-        for (Edge edge: this.adjList.get(previous)) {
-            if (edge.getOtherEnd(previous).equals(current)) {
-                return edge.getCapacity() - edge.getFlow(previous, current);
+        int arc = findArc(previous, current);
+        return arc < 0 ? 0 : this.csr.residual(arc);
+    }
+
+    /**
+     * Get the compact representation backing this graph. Flow pushed
+     * through it is seen by every {@link Edge} of this graph.
+     * @return the CSR form of this graph
+     */
+    public CsrGraph getCsr() {
+        return this.csr;
+    }
+
+    /**
+     * @return The id of the starting node in {@link #getCsr()}.
+     */
+    public int getSourceId() {
+        return this.sourceId;
+    }
+
+    /**
+     * @return The id of the ending node in {@link #getCsr()}.
+     */
+    public int getSinkId() {
+        return this.sinkId;
+    }
+
+    /**
+     * Find the first arc from one node to another whose edge has not
+     * been removed.
+     * @param a The name of the node the arc leaves
+     * @param b The name of the node the arc points to
+     * @return The arc's index, or -1 if there is none
+     */
+    private int findArc(String a, String b) {
+        int u = this.csr.id(a);
+        int v = this.csr.id(b);
+        if (u < 0 || v < 0) {
+            return -1;
+        }
+        for (int arc = this.csr.firstArc(u); arc < this.csr.endArc(u); arc++) {
+            if (this.csr.head(arc) == v &&
+                    !this.csr.isRemoved(this.csr.edge(arc))) {
+                return arc;
             }
         }
-        return 0;
+        return -1;
+    }
+
+    /**
+     * Get the Edge view of the edge an arc belongs to.
+     * @param arc An arc index
+     * @return The same Edge object every time for the same edge
+     */
+    private Edge edgeAt(int arc) {
+        int edge = this.csr.edge(arc);
+        if (this.edges == null || edge >= this.edges.length) {
+            this.edges = this.edges == null ?
+                    new Edge[this.csr.edgeCount()] :
+                    Arrays.copyOf(this.edges, this.csr.edgeCount());
+        }
+        if (this.edges[edge] == null) {
+            this.edges[edge] = new Edge(this.csr, edge);
+        }
+        return this.edges[edge];
     }
 
     /**
@@ -239,10 +613,47 @@ public class FlowGraph {
      *                if false, just include each edge's flow.
      */
     public void show(boolean showMax) {
-        for (String key: this.adjList.keySet()) {
-            System.out.print(key + ": ");
-            System.out.println(String.join(", ",
-                    this.adjList.get(key).toString()));
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), 1 << 16));
+        show(out, showMax);
+        out.flush();
+    }
+
+    /**
+     * Print the same representation as {@link #show(boolean)}, one node
+     * at a time, without making an Edge object for every edge.
+     * @param out Where to print. It is not flushed.
+     * @param showMax As for {@link #show(boolean)}.
+     */
+    public void show(PrintWriter out, boolean showMax) {
+        for (int u = 0; u < this.csr.nodeCount(); u++) {
+            out.print(this.csr.name(u));
+            out.print(": [");
+            boolean first = true;
+            for (int arc = this.csr.firstArc(u); arc < this.csr.endArc(u);
+                 arc++) {
+                int edge = this.csr.edge(arc);
+                // A loop has two arcs here, but is only one edge.
+                if (this.csr.isRemoved(edge) ||
+                    (this.csr.head(arc) == u && !this.csr.isForward(arc))) {
+                    continue;
+                }
+                if (!first) {
+                    out.print(", ");
+                }
+                first = false;
+                int forward = this.csr.forwardArc(edge);
+                out.print('[');
+                out.print(this.csr.name(this.csr.tail(forward)));
+                out.print("==>");
+                out.print(this.csr.flow(edge));
+                out.print('/');
+                out.print(this.csr.capacity(edge));
+                out.print("==>");
+                out.print(this.csr.name(this.csr.head(forward)));
+                out.print(']');
+            }
+            out.println(']');
         }
     }
 }
@@ -0,0 +1,281 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps recently used graphs loaded, so that asking for the same file
+ * again costs a lookup instead of a parse. Graphs are kept by file, and
+ * a file whose modification time or size has changed since it was
+ * loaded is loaded again.
+ * <p>
+ * The cache holds graphs up to a budget of bytes, estimated from their
+ * node, edge and arc counts, and evicts the least recently used graphs
+ * when a new one would go over it. A graph bigger than the whole budget
+ * is still kept until the next one is loaded.
+ * <p>
+ * Any number of threads may use the cache. When several ask for a file
+ * that is not loaded, one of them loads it and the others wait for it.
+ * The graphs handed out are shared, so their flow and edges must not be
+ * changed; solve in a view made by {@link CsrGraph#shareTopology()}.
+ *
+ * @author RIT CS
+ */
+public final class GraphCache {
+
+    /**
+     * Roughly how many bytes each node, edge and arc takes on the heap
+     */
+    private static final long NODE_BYTES = 80;
+    private static final long EDGE_BYTES = 12;
+    private static final long ARC_BYTES = 20;
+
+    /**
+     * How many more bytes each edge takes if the graph has costs
+     */
+    private static final long COST_BYTES = 8;
+
+    /**
+     * The most bytes of graphs to keep
+     */
+    private final long budget;
+
+    /**
+     * How many threads may parse a file
+     */
+    private final int threads;
+
+    /**
+     * The graphs, by absolute file name, least recently used first
+     */
+    private final LinkedHashMap< Path, Entry > entries =
+            new LinkedHashMap<>( 16, 0.75f, true );
+
+    /**
+     * The bytes taken by the graphs that have been loaded
+     */
+    private long bytes;
+
+    /**
+     * How many requests found their graph, loaded it, and how many graphs
+     * were evicted to stay within the budget
+     */
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Make an empty cache.
+     * @param budget the most bytes of graphs to keep
+     * @param threads how many threads may parse one file
+     */
+    public GraphCache( long budget, int threads ) {
+        if ( budget < 0 ) {
+            throw new IllegalArgumentException( "budget cannot be negative" );
+        }
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "threads must be positive" );
+        }
+        this.budget = budget;
+        this.threads = threads;
+    }
+
+    /**
+     * Get the graph in a file, loading it if it is not in the cache or
+     * the file has changed.
+     * @param file an edge list, or a snapshot written by
+     *             {@link FlowGraph#writeSnapshot(String)}
+     * @return the graph, with no flow
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if a line of an edge list is not correctly
+     *                        formatted
+     */
+    public CsrGraph get( Path file ) throws IOException, GraphException {
+        Path key = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes =
+                Files.readAttributes( key, BasicFileAttributes.class );
+        Entry entry;
+        boolean loading = false;
+        synchronized ( this ) {
+            entry = this.entries.get( key );
+            if ( entry != null &&
+                 ( !entry.modified.equals( attributes.lastModifiedTime() ) ||
+                   entry.size != attributes.size() ) ) {
+                remove( key, entry );
+                entry = null;
+            }
+            if ( entry == null ) {
+                entry = new Entry( key, attributes, this.threads );
+                this.entries.put( key, entry );
+                this.misses++;
+                loading = true;
+            }
+            else {
+                this.hits++;
+            }
+        }
+
+        if ( loading ) {
+            entry.load.run();
+        }
+        try {
+            CsrGraph graph = entry.load.get();
+            if ( loading ) {
+                synchronized ( this ) {
+                    if ( this.entries.get( key ) == entry ) {
+                        entry.bytes = footprint( graph );
+                        this.bytes += entry.bytes;
+                        evict( entry );
+                    }
+                }
+            }
+            return graph;
+        }
+        catch ( ExecutionException ee ) {
+            synchronized ( this ) {
+                remove( key, entry );
+            }
+            Throwable cause = ee.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof GraphException ) {
+                throw (GraphException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+        catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "interrupted loading " + key );
+        }
+    }
+
+    /**
+     * Forget a graph, if it is still the one kept for its file.
+     * @param key the graph's file
+     * @param entry the graph
+     */
+    private void remove( Path key, Entry entry ) {
+        if ( this.entries.get( key ) == entry ) {
+            this.entries.remove( key );
+            this.bytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Evict the least recently used loaded graphs until the rest fit in
+     * the budget.
+     * @param keep a graph that stays, even if it alone is over the budget
+     */
+    private void evict( Entry keep ) {
+        Iterator< Entry > it = this.entries.values().iterator();
+        while ( this.bytes > this.budget && it.hasNext() ) {
+            Entry entry = it.next();
+            if ( entry != keep && entry.bytes > 0 ) {
+                it.remove();
+                this.bytes -= entry.bytes;
+                this.evictions++;
+            }
+        }
+    }
+
+    /**
+     * Estimate how much of the heap a graph takes.
+     * @param graph the graph
+     * @return the estimate, in bytes
+     */
+    public static long footprint( CsrGraph graph ) {
+        return NODE_BYTES * graph.nodeCount() +
+               ( graph.hasCosts() ? EDGE_BYTES + COST_BYTES : EDGE_BYTES ) *
+               graph.edgeCount() +
+               ARC_BYTES * graph.arcCount();
+    }
+
+    /**
+     * Forget every graph.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * @return how many graphs are kept, counting any being loaded
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the estimated bytes taken by the graphs kept
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @return the most bytes of graphs kept
+     */
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * @return how many requests found their graph already loaded
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return how many requests had to load their graph
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return how many graphs have been evicted to stay within the budget
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * A graph kept for a file, and the state of the file when it was read
+     */
+    private static final class Entry {
+
+        private final FileTime modified;
+        private final long size;
+        private final FutureTask< CsrGraph > load;
+
+        /**
+         * The graph's estimated size, or 0 while it is loading
+         */
+        private long bytes;
+
+        /**
+         * @param file the graph's file
+         * @param attributes the file's attributes before it is read
+         * @param threads how many threads may parse it
+         */
+        Entry( Path file, BasicFileAttributes attributes, int threads ) {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.load = new FutureTask<>( () -> CsrGraph.read( file,
+                                                               threads ) );
+        }
+    }
+}
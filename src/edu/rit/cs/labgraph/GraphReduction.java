@@ -0,0 +1,688 @@
+package edu.rit.cs.labgraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A smaller graph with the same maximum flow as a {@link FlowGraph},
+ * made before solving, and the means to carry the flow found in it back
+ * to the original graph's edges.
+ * <p>
+ * Three reductions are applied until none of them changes anything:
+ * <ul>
+ *     <li>nodes that are not connected to both the source and the sink
+ *     by edges with some capacity are dropped, and so are edges with no
+ *     capacity and loops;</li>
+ *     <li>edges between the same two nodes are merged into one, whose
+ *     capacity is their sum;</li>
+ *     <li>a node other than the source and sink that has one neighbour
+ *     is dropped, and one that has two is bypassed: its two edges become
+ *     one between its neighbours, whose capacity is the lesser of
+ *     theirs.</li>
+ * </ul>
+ * Each edge of the reduced graph remembers the original edges it stands
+ * for. Once the reduced graph holds a maximum flow, {@link #expand()}
+ * writes the flow onto those edges, so the original graph then holds a
+ * maximum flow too, and its flows and minimum cuts can be read from it
+ * as usual.
+ * <p>
+ * The reduction ignores any flow the original graph already has, and the
+ * reduced graph starts with none. Neither graph's edges should be
+ * changed between reducing and expanding. Edge costs are not kept, since
+ * merged edges cannot be given one cost, so a graph whose flow must be
+ * the cheapest should be solved without reducing it.
+ *
+ * @author RIT CS
+ */
+public final class GraphReduction {
+
+    /**
+     * The graph that was reduced
+     */
+    private final FlowGraph original;
+
+    /**
+     * The reduced graph
+     */
+    private final FlowGraph reduced;
+
+    /**
+     * What each edge of the reduced graph stands for, by edge id
+     */
+    private final Part[] parts;
+
+    /**
+     * Reduce a graph.
+     * @param graph the graph to reduce; it is not changed
+     * @return the reduction, holding the reduced graph
+     */
+    public static GraphReduction reduce( FlowGraph graph ) {
+        return new GraphReduction( graph );
+    }
+
+    /**
+     * Reduce a graph.
+     * @param graph the graph to reduce
+     */
+    private GraphReduction( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        Work work = new Work( csr, graph.getSourceId(), graph.getSinkId() );
+        for ( int u = 0; u < csr.nodeCount(); u++ ) {
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int e = csr.edge( a );
+                int v = csr.head( a );
+                if ( csr.isForward( a ) && !csr.isRemoved( e ) &&
+                     csr.capacity( e ) > 0 && u != v ) {
+                    work.load( e, new Part( u, v, e, csr.capacity( e ) ) );
+                }
+            }
+        }
+        work.pruneUnconnected();
+        work.contract();
+
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        int[] ids = new int[ csr.nodeCount() ];
+        for ( int u = 0; u < csr.nodeCount(); u++ ) {
+            if ( !work.deadNodes.get( u ) ) {
+                ids[ u ] = builder.newNode( csr.name( u ) );
+            }
+        }
+        List< Part > kept = new ArrayList<>();
+        for ( int k = 0; k < work.parts.size(); k++ ) {
+            if ( work.deadEdges.get( k ) ) {
+                continue;
+            }
+            Part part = work.parts.get( k );
+            builder.addEdge( ids[ part.a ], ids[ part.b ], part.capacity );
+            kept.add( part );
+        }
+        this.original = graph;
+        this.reduced = new FlowGraph( builder.build(), ids[ work.source ],
+                                      ids[ work.sink ] );
+        this.parts = kept.toArray( new Part[ 0 ] );
+    }
+
+    /**
+     * @return the graph that was reduced
+     */
+    public FlowGraph getOriginal() {
+        return this.original;
+    }
+
+    /**
+     * @return the reduced graph, to be solved in place of the original
+     */
+    public FlowGraph getReduced() {
+        return this.reduced;
+    }
+
+    /**
+     * Replace the original graph's flow with the one the reduced graph
+     * holds. Where edges were merged, the flow is split among them,
+     * filling each one in turn; edges that were dropped get no flow.
+     * If the reduced graph holds a maximum flow, so will the original.
+     */
+    public void expand() {
+        CsrGraph csr = this.original.getCsr();
+        CsrGraph small = this.reduced.getCsr();
+        csr.clearFlow();
+        Deque< Share > shares = new ArrayDeque<>();
+        for ( int e = 0; e < this.parts.length; e++ ) {
+            Part part = this.parts[ e ];
+            shares.push( new Share( part, part.a, small.flow( e ) ) );
+        }
+        while ( !shares.isEmpty() ) {
+            Share share = shares.pop();
+            Part part = share.part;
+            int from = share.from;
+            long flow = share.flow;
+            if ( flow < 0 ) {
+                from = part.other( from );
+                flow = -flow;
+            }
+            if ( flow == 0 ) {
+                continue;
+            }
+            if ( part.edge >= 0 ) {
+                int a = csr.forwardArc( part.edge );
+                csr.push( csr.tail( a ) == from ? a : csr.mate( a ), flow );
+            }
+            else if ( part.series ) {
+                // The children run in order from a to b.
+                int n = part.children.size();
+                int at = from;
+                for ( int i = 0; i < n; i++ ) {
+                    Part child = part.children.get(
+                            from == part.a ? i : n - 1 - i );
+                    shares.push( new Share( child, at, flow ) );
+                    at = child.other( at );
+                }
+            }
+            else {
+                for ( Part child: part.children ) {
+                    long some = Math.min( flow, child.capacity );
+                    shares.push( new Share( child, from, some ) );
+                    flow -= some;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many nodes the reduction dropped
+     */
+    public int getNodesRemoved() {
+        return this.original.getCsr().nodeCount() -
+               this.reduced.getCsr().nodeCount();
+    }
+
+    /**
+     * @return how many edges the reduction dropped or merged away
+     */
+    public int getEdgesRemoved() {
+        CsrGraph csr = this.original.getCsr();
+        int edges = 0;
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            if ( !csr.isRemoved( e ) ) {
+                edges++;
+            }
+        }
+        return edges - this.reduced.getCsr().edgeCount();
+    }
+
+    /**
+     * What an edge of the reduced graph, or of a graph part way through
+     * being reduced, stands for: one original edge, a chain of parts
+     * joined end to end, or parts side by side between the same nodes.
+     */
+    private static final class Part {
+
+        /**
+         * The ids, in the original graph, of the nodes the part joins
+         */
+        final int a;
+        final int b;
+
+        /**
+         * The original edge, or -1 if the part is made of others
+         */
+        final int edge;
+
+        /**
+         * The most flow the part can carry, in either direction
+         */
+        long capacity;
+
+        /**
+         * True if the children form a chain from a to b, false if they
+         * are side by side
+         */
+        final boolean series;
+
+        /**
+         * The parts this one is made of
+         */
+        final List< Part > children;
+
+        /**
+         * Make a part for one original edge.
+         * @param a the edge's first node
+         * @param b its second node
+         * @param edge the edge's id
+         * @param capacity the edge's capacity
+         */
+        Part( int a, int b, int edge, long capacity ) {
+            this.a = a;
+            this.b = b;
+            this.edge = edge;
+            this.capacity = capacity;
+            this.series = false;
+            this.children = null;
+        }
+
+        /**
+         * Make a part out of others.
+         * @param a the node the part starts at
+         * @param b the node it ends at
+         * @param series true for a chain from a to b, false for parts
+         *               side by side
+         * @param children the parts it is made of
+         * @param capacity the most flow they can carry together
+         */
+        Part( int a, int b, boolean series, List< Part > children,
+              long capacity ) {
+            this.a = a;
+            this.b = b;
+            this.edge = -1;
+            this.capacity = capacity;
+            this.series = series;
+            this.children = children;
+        }
+
+        /**
+         * @param u one of the part's nodes
+         * @return the other one
+         */
+        int other( int u ) {
+            return u == this.a ? this.b : this.a;
+        }
+    }
+
+    /**
+     * Some flow still to be written onto the edges of a part.
+     */
+    private static final class Share {
+
+        final Part part;
+        final int from;
+        final long flow;
+
+        /**
+         * @param part the part
+         * @param from the node of the part the flow enters at
+         * @param flow how much flow, negative if it enters at the other
+         */
+        Share( Part part, int from, long flow ) {
+            this.part = part;
+            this.from = from;
+            this.flow = flow;
+        }
+    }
+
+    /**
+     * The state of a graph part way through being reduced. Edges are
+     * indexes into the list of parts, and an edge that is merged away
+     * or dropped is marked dead rather than removed.
+     */
+    private static final class Work {
+
+        final CsrGraph csr;
+        final int source;
+        final int sink;
+        final List< Part > parts;
+        final BitSet deadEdges = new BitSet();
+        final BitSet deadNodes = new BitSet();
+
+        /**
+         * The live edge between each pair of nodes
+         */
+        final PairTable between;
+
+        /**
+         * The edge each original edge was first loaded into, or -1; the
+         * arcs at a node, read through this, give its loaded edges
+         */
+        final int[] loaded;
+
+        /**
+         * The edges made by bypassing nodes, at each of their nodes; like
+         * the loaded ones, some of them may since have died
+         */
+        final int[][] added;
+        final int[] addedCount;
+
+        /**
+         * How many live edges each node has
+         */
+        final int[] degree;
+
+        /**
+         * @param csr the graph being reduced
+         * @param source the id of its source
+         * @param sink the id of its sink
+         */
+        Work( CsrGraph csr, int source, int sink ) {
+            this.csr = csr;
+            this.source = source;
+            this.sink = sink;
+            this.parts = new ArrayList<>( csr.edgeCount() );
+            this.loaded = new int[ csr.edgeCount() ];
+            this.added = new int[ csr.nodeCount() ][];
+            this.addedCount = new int[ csr.nodeCount() ];
+            Arrays.fill( this.loaded, -1 );
+            this.degree = new int[ csr.nodeCount() ];
+            this.between = new PairTable( csr.edgeCount() );
+        }
+
+        /**
+         * @param u a node id
+         * @param v another
+         * @return the key of the pair in {@link #between}
+         */
+        private static long key( int u, int v ) {
+            return (long) Math.min( u, v ) << 32 | Math.max( u, v );
+        }
+
+        /**
+         * Add an edge, merging it with the one already between its nodes
+         * if there is one.
+         * @param part what the edge stands for
+         * @return the edge's index, which is the size the list of parts
+         *         had before if the edge is new
+         */
+        int add( Part part ) {
+            long key = key( part.a, part.b );
+            int old = this.between.get( key );
+            if ( old >= 0 ) {
+                Part there = this.parts.get( old );
+                if ( there.edge < 0 && !there.series ) {
+                    there.children.add( part );
+                    there.capacity += part.capacity;
+                }
+                else {
+                    List< Part > side = new ArrayList<>();
+                    side.add( there );
+                    side.add( part );
+                    this.parts.set( old, new Part(
+                            there.a, there.b, false, side,
+                            there.capacity + part.capacity ) );
+                }
+                return old;
+            }
+            int k = this.parts.size();
+            this.parts.add( part );
+            this.between.put( key, k );
+            this.degree[ part.a ]++;
+            this.degree[ part.b ]++;
+            return k;
+        }
+
+        /**
+         * Load an original edge.
+         * @param edge the edge's id
+         * @param part the part standing for it
+         */
+        void load( int edge, Part part ) {
+            this.loaded[ edge ] = add( part );
+        }
+
+        /**
+         * Add an edge that bypasses a node.
+         * @param part the chain standing for it
+         */
+        void bypass( Part part ) {
+            int k = add( part );
+            if ( k == this.parts.size() - 1 && this.parts.get( k ) == part ) {
+                attach( part.a, k );
+                attach( part.b, k );
+            }
+        }
+
+        /**
+         * @param u a node id
+         * @param k an edge just made at the node
+         */
+        private void attach( int u, int k ) {
+            int[] list = this.added[ u ];
+            if ( list == null ) {
+                list = this.added[ u ] = new int[ 2 ];
+            }
+            else if ( this.addedCount[ u ] == list.length ) {
+                list = this.added[ u ] = Arrays.copyOf( list, 2 * list.length );
+            }
+            list[ this.addedCount[ u ]++ ] = k;
+        }
+
+        /**
+         * Find a node's live edges, when it has at most two.
+         * @param v the node
+         * @param found where to put the edges; -1 where there is none
+         */
+        private void liveEdges( int v, int[] found ) {
+            found[ 0 ] = -1;
+            found[ 1 ] = -1;
+            for ( int a = this.csr.firstArc( v ); a < this.csr.endArc( v );
+                  a++ ) {
+                note( this.loaded[ this.csr.edge( a ) ], found );
+            }
+            for ( int i = 0; i < this.addedCount[ v ]; i++ ) {
+                note( this.added[ v ][ i ], found );
+            }
+        }
+
+        /**
+         * @param k an edge at a node, or -1
+         * @param found the node's live edges found so far
+         */
+        private void note( int k, int[] found ) {
+            if ( k >= 0 && !this.deadEdges.get( k ) && k != found[ 0 ] ) {
+                if ( found[ 0 ] < 0 ) {
+                    found[ 0 ] = k;
+                }
+                else {
+                    found[ 1 ] = k;
+                }
+            }
+        }
+
+        /**
+         * @param k a live edge to mark dead
+         */
+        void kill( int k ) {
+            Part part = this.parts.get( k );
+            this.deadEdges.set( k );
+            this.between.remove( key( part.a, part.b ) );
+            this.degree[ part.a ]--;
+            this.degree[ part.b ]--;
+        }
+
+        /**
+         * Drop every node that is not connected to the source, and
+         * everything but the source and sink if the sink is not.
+         */
+        void pruneUnconnected() {
+            int n = this.csr.nodeCount();
+            BitSet seen = new BitSet( n );
+            int[] queue = new int[ n ];
+            int head = 0;
+            int tail = 0;
+            queue[ tail++ ] = this.source;
+            seen.set( this.source );
+            while ( head < tail ) {
+                int u = queue[ head++ ];
+                for ( int a = this.csr.firstArc( u ); a < this.csr.endArc( u );
+                      a++ ) {
+                    int v = this.csr.head( a );
+                    int e = this.csr.edge( a );
+                    if ( !seen.get( v ) && !this.csr.isRemoved( e ) &&
+                         this.csr.capacity( e ) > 0 ) {
+                        seen.set( v );
+                        queue[ tail++ ] = v;
+                    }
+                }
+            }
+            if ( !seen.get( this.sink ) ) {
+                seen.clear();
+            }
+            seen.set( this.source );
+            seen.set( this.sink );
+            for ( int k = 0; k < this.parts.size(); k++ ) {
+                Part part = this.parts.get( k );
+                if ( !seen.get( part.a ) || !seen.get( part.b ) ) {
+                    kill( k );
+                }
+            }
+            this.deadNodes.set( 0, n );
+            this.deadNodes.andNot( seen );
+        }
+
+        /**
+         * Drop nodes with one neighbour and bypass nodes with two, until
+         * there are none left.
+         */
+        void contract() {
+            int n = this.csr.nodeCount();
+            int[] stack = new int[ n ];
+            boolean[] queued = new boolean[ n ];
+            int[] found = new int[ 2 ];
+            int top = 0;
+            for ( int u = n - 1; u >= 0; u-- ) {
+                if ( !this.deadNodes.get( u ) ) {
+                    stack[ top++ ] = u;
+                    queued[ u ] = true;
+                }
+            }
+            while ( top > 0 ) {
+                int v = stack[ --top ];
+                queued[ v ] = false;
+                if ( v == this.source || v == this.sink ||
+                     this.deadNodes.get( v ) || this.degree[ v ] > 2 ) {
+                    continue;
+                }
+                liveEdges( v, found );
+                int first = found[ 0 ];
+                int second = found[ 1 ];
+                this.deadNodes.set( v );
+                this.added[ v ] = null;
+                if ( first < 0 ) {
+                    continue;
+                }
+                Part in = this.parts.get( first );
+                int u = in.other( v );
+                kill( first );
+                int w = u;
+                if ( second >= 0 ) {
+                    Part out = this.parts.get( second );
+                    w = out.other( v );
+                    kill( second );
+                    List< Part > chain = new ArrayList<>( 2 );
+                    chain.add( in );
+                    chain.add( out );
+                    bypass( new Part( u, w, true, chain,
+                                      Math.min( in.capacity, out.capacity ) ) );
+                }
+                for ( int x: new int[] { u, w } ) {
+                    if ( !queued[ x ] ) {
+                        stack[ top++ ] = x;
+                        queued[ x ] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The live edge between each pair of nodes, in an open addressing
+     * table keyed by the pair, so that looking one up allocates nothing.
+     */
+    private static final class PairTable {
+
+        /**
+         * The key of each slot, or -1 if it is empty
+         */
+        private long[] keys;
+
+        /**
+         * The edge in each full slot
+         */
+        private int[] edges;
+
+        /**
+         * How many slots are full
+         */
+        private int size;
+
+        /**
+         * @param expected how many pairs the table should hold without
+         *                 growing
+         */
+        PairTable( int expected ) {
+            int slots =
+                    Integer.highestOneBit( Math.max( 4, 2 * expected ) ) << 1;
+            this.keys = new long[ slots ];
+            this.edges = new int[ slots ];
+            Arrays.fill( this.keys, -1 );
+        }
+
+        /**
+         * @param key a pair's key
+         * @return where the pair's search starts
+         */
+        private int home( long key ) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) ( h >>> 32 ) & ( this.keys.length - 1 );
+        }
+
+        /**
+         * @param key a pair's key
+         * @return the slot holding the pair, or the empty slot it would go
+         *         in
+         */
+        private int slot( long key ) {
+            int mask = this.keys.length - 1;
+            int i = home( key );
+            while ( this.keys[ i ] != -1 && this.keys[ i ] != key ) {
+                i = ( i + 1 ) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * @param key a pair's key
+         * @return the edge between the pair, or -1 if there is none
+         */
+        int get( long key ) {
+            int i = slot( key );
+            return this.keys[ i ] == key ? this.edges[ i ] : -1;
+        }
+
+        /**
+         * @param key the key of a pair not in the table
+         * @param edge the edge between the pair
+         */
+        void put( long key, int edge ) {
+            if ( 2 * ( this.size + 1 ) > this.keys.length ) {
+                long[] oldKeys = this.keys;
+                int[] oldEdges = this.edges;
+                this.keys = new long[ 2 * oldKeys.length ];
+                this.edges = new int[ 2 * oldKeys.length ];
+                Arrays.fill( this.keys, -1 );
+                for ( int i = 0; i < oldKeys.length; i++ ) {
+                    if ( oldKeys[ i ] != -1 ) {
+                        int j = slot( oldKeys[ i ] );
+                        this.keys[ j ] = oldKeys[ i ];
+                        this.edges[ j ] = oldEdges[ i ];
+                    }
+                }
+            }
+            int i = slot( key );
+            this.keys[ i ] = key;
+            this.edges[ i ] = edge;
+            this.size++;
+        }
+
+        /**
+         * Take a pair out of the table, moving back any pair whose search
+         * went past it.
+         * @param key a pair's key
+         */
+        void remove( long key ) {
+            int mask = this.keys.length - 1;
+            int i = slot( key );
+            if ( this.keys[ i ] != key ) {
+                return;
+            }
+            this.size--;
+            int j = i;
+            while ( true ) {
+                j = ( j + 1 ) & mask;
+                if ( this.keys[ j ] == -1 ) {
+                    break;
+                }
+                int k = home( this.keys[ j ] );
+                // Move j back to i unless its home lies in (i, j].
+                if ( i <= j ? ( i < k && k <= j ) : ( i < k || k <= j ) ) {
+                    continue;
+                }
+                this.keys[ i ] = this.keys[ j ];
+                this.edges[ i ] = this.edges[ j ];
+                i = j;
+            }
+            this.keys[ i ] = -1;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package edu.rit.cs.labgraph;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Ways to renumber a graph's nodes so that nodes near each other in the
+ * graph get ids near each other, and a search walks its arrays in close
+ * to sequential order instead of jumping about them.
+ * <p>
+ * A graph's node ids follow the order the nodes first appear in its
+ * file, which has nothing to do with its structure. {@link #apply}
+ * makes a copy of a graph with its nodes renumbered and its arcs laid
+ * out again in the new order. Every node keeps its name and every edge
+ * keeps its id, capacity and flow, so anything looked up by name or by
+ * edge id, including {@link FlowGraph#getEdge(String, String)}, the
+ * flows written by {@link FlowGraph#writeFlows(String)} and minimum
+ * cuts, reads the same in either graph.
+ *
+ * @author RIT CS
+ */
+public enum NodeOrder {
+
+    /**
+     * Breadth-first order from the source, each part of the graph the
+     * source does not reach following from its lowest old id
+     */
+    BFS,
+
+    /**
+     * Reverse Cuthill-McKee order: breadth-first from a node of low
+     * degree far from the rest, taking each node's neighbours from the
+     * lowest degree up, then reversed. Keeps each node's neighbours
+     * within a narrow band of ids.
+     */
+    REVERSE_CUTHILL_MCKEE,
+
+    /**
+     * Highest degree first, so that the nodes most searches pass through
+     * share a few cache lines
+     */
+    DEGREE;
+
+    /**
+     * Look up an order by the name used on the command line.
+     * @param name "bfs", "rcm" or "degree"
+     * @return the order
+     * @throws GraphException if there is no order by that name
+     */
+    public static NodeOrder named( String name ) throws GraphException {
+        switch ( name.toLowerCase( Locale.ROOT ) ) {
+            case "bfs":
+                return BFS;
+            case "rcm":
+                return REVERSE_CUTHILL_MCKEE;
+            case "degree":
+                return DEGREE;
+            default:
+                throw new GraphException( "Unknown node order: " + name );
+        }
+    }
+
+    /**
+     * Work out the new order of a graph's nodes.
+     * @param graph the graph
+     * @return the old id of each node, in the new order
+     */
+    public int[] order( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        int n = csr.nodeCount();
+        switch ( this ) {
+            case BFS:
+                return breadthFirst( csr, graph.getSourceId(), false );
+            case REVERSE_CUTHILL_MCKEE:
+                int[] order = breadthFirst( csr, -1, true );
+                for ( int i = 0, j = n - 1; i < j; i++, j-- ) {
+                    int swap = order[ i ];
+                    order[ i ] = order[ j ];
+                    order[ j ] = swap;
+                }
+                return order;
+            default:
+                return byDegree( csr );
+        }
+    }
+
+    /**
+     * Make a copy of a graph with its nodes renumbered in this order.
+     * @param graph the graph
+     * @return the copy
+     */
+    public FlowGraph apply( FlowGraph graph ) {
+        return renumber( graph, order( graph ) );
+    }
+
+    /**
+     * Make a copy of a graph with its nodes renumbered in any order.
+     * @param graph the graph
+     * @param order the old id of each node, in the new order; every id
+     *              must appear once
+     * @return the copy, with the same names, edges, capacities, costs and
+     *         flow
+     */
+    public static FlowGraph renumber( FlowGraph graph, int[] order ) {
+        CsrGraph csr = graph.getCsr();
+        int[] newId = new int[ csr.nodeCount() ];
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        for ( int u: order ) {
+            newId[ u ] = builder.newNode( csr.name( u ) );
+        }
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            int a = csr.forwardArc( e );
+            builder.addEdge( newId[ csr.tail( a ) ], newId[ csr.head( a ) ],
+                             csr.capacity( e ), csr.cost( e ) );
+        }
+        CsrGraph result = builder.build();
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            if ( csr.isRemoved( e ) ) {
+                result.removeEdge( e );
+            }
+            else if ( csr.flow( e ) != 0 ) {
+                result.push( result.forwardArc( e ), csr.flow( e ) );
+            }
+        }
+        return new FlowGraph( result, newId[ graph.getSourceId() ],
+                              newId[ graph.getSinkId() ] );
+    }
+
+    /**
+     * Number the nodes breadth-first, starting a new search from an
+     * unnumbered node whenever one runs out.
+     * @param csr the graph
+     * @param root the node to start from, or -1 to start each search
+     *             from a node of least degree far from the others
+     * @param byDegree true to take each node's neighbours in order of
+     *                 degree, least first
+     * @return the old id of each node, in the new order
+     */
+    private static int[] breadthFirst( CsrGraph csr, int root,
+                                       boolean byDegree ) {
+        int n = csr.nodeCount();
+        int[] order = new int[ n ];
+        boolean[] placed = new boolean[ n ];
+        int tail = 0;
+        int next = 0;
+        long[] keyed = byDegree ? new long[ 16 ] : null;
+        int[] depth = byDegree ? new int[ n ] : null;
+        int[] queue = byDegree ? new int[ n ] : null;
+        if ( byDegree ) {
+            Arrays.fill( depth, -1 );
+        }
+        while ( tail < n ) {
+            int start = root;
+            if ( start < 0 || placed[ start ] ) {
+                while ( placed[ next ] ) {
+                    next++;
+                }
+                start = byDegree ? peripheral( csr, next, depth, queue ) :
+                        next;
+            }
+            int head = tail;
+            order[ tail++ ] = start;
+            placed[ start ] = true;
+            while ( head < tail ) {
+                int u = order[ head++ ];
+                int from = tail;
+                for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                    int v = csr.head( a );
+                    if ( !placed[ v ] ) {
+                        placed[ v ] = true;
+                        order[ tail++ ] = v;
+                    }
+                }
+                if ( byDegree && tail - from > 1 ) {
+                    // Sort the new nodes by degree, packed with their ids.
+                    if ( keyed.length < tail - from ) {
+                        keyed = new long[ 2 * ( tail - from ) ];
+                    }
+                    for ( int i = from; i < tail; i++ ) {
+                        keyed[ i - from ] = (long) degree( csr, order[ i ] )
+                                            << 32 | order[ i ];
+                    }
+                    Arrays.sort( keyed, 0, tail - from );
+                    for ( int i = from; i < tail; i++ ) {
+                        order[ i ] = (int) keyed[ i - from ];
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Find a node of low degree far from the others in its part of the
+     * graph, by searching from a node, then from the least degree node
+     * of the last level found, while the levels get deeper.
+     * @param csr the graph
+     * @param u a node in the part to search
+     * @param depth scratch space, all -1, and left that way
+     * @param queue scratch space
+     * @return the node found
+     */
+    private static int peripheral( CsrGraph csr, int u, int[] depth,
+                                   int[] queue ) {
+        int best = u;
+        int height = -1;
+        for ( int round = 0; round < 8; round++ ) {
+            int head = 0;
+            int tail = 0;
+            queue[ tail++ ] = best;
+            depth[ best ] = 0;
+            while ( head < tail ) {
+                int v = queue[ head++ ];
+                for ( int a = csr.firstArc( v ); a < csr.endArc( v ); a++ ) {
+                    int w = csr.head( a );
+                    if ( depth[ w ] < 0 ) {
+                        depth[ w ] = depth[ v ] + 1;
+                        queue[ tail++ ] = w;
+                    }
+                }
+            }
+            int last = depth[ queue[ tail - 1 ] ];
+            int candidate = queue[ tail - 1 ];
+            for ( int i = tail - 1; i >= 0 && depth[ queue[ i ] ] == last;
+                  i-- ) {
+                if ( degree( csr, queue[ i ] ) < degree( csr, candidate ) ) {
+                    candidate = queue[ i ];
+                }
+            }
+            for ( int i = 0; i < tail; i++ ) {
+                depth[ queue[ i ] ] = -1;
+            }
+            if ( last <= height ) {
+                break;
+            }
+            height = last;
+            best = candidate;
+        }
+        return best;
+    }
+
+    /**
+     * Number the nodes from the highest degree down, ties in old order.
+     * @param csr the graph
+     * @return the old id of each node, in the new order
+     */
+    private static int[] byDegree( CsrGraph csr ) {
+        int n = csr.nodeCount();
+        long[] keyed = new long[ n ];
+        for ( int u = 0; u < n; u++ ) {
+            keyed[ u ] = (long) ( Integer.MAX_VALUE - degree( csr, u ) )
+                         << 32 | u;
+        }
+        Arrays.sort( keyed );
+        int[] order = new int[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            order[ i ] = (int) keyed[ i ];
+        }
+        return order;
+    }
+
+    /**
+     * @param csr a graph
+     * @param u a node id
+     * @return how many arcs leave the node
+     */
+    private static int degree( CsrGraph csr, int u ) {
+        return csr.endArc( u ) - csr.firstArc( u );
+    }
+}
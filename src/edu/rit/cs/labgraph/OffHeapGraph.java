@@ -0,0 +1,667 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A flow graph kept in a memory-mapped file instead of on the heap, for
+ * graphs too big to fit there. The layout is the same compressed sparse
+ * rows as {@link CsrGraph}, but arc and edge ids are longs, so a graph
+ * may have more than 2^31 arcs, and the operating system pages the arcs
+ * in and out as they are used. The residual capacities live in the file
+ * too, so a graph's flow is kept when it is closed and opened again.
+ * <p>
+ * The file starts with a 32-byte header: the magic number, the format
+ * version, the node count, the name-slot count, the edge count and the
+ * length of the name bytes. Then come, each starting on an 8-byte
+ * boundary: the arc offsets, the arc heads, mates and residual
+ * capacities, the forward arc and capacity of each edge, the name
+ * offsets, the name index, and last the UTF-8 bytes of every name. All
+ * numbers are little-endian. The file is mapped in chunks of 1 GiB, and
+ * no number crosses from one chunk to the next.
+ * <p>
+ * Node ids are ints as in {@link CsrGraph}. A {@link Builder} keeps the
+ * node names on the heap while the graph is built; the edges it is given
+ * go straight to a file beside the graph's. Edge costs in an edge list
+ * are dropped, since only max flow solvers run on these graphs.
+ *
+ * @author RIT CS
+ */
+public final class OffHeapGraph implements ResidualNetwork, AutoCloseable {
+
+    /**
+     * The first four bytes of every file: "MFOH"
+     */
+    static final int MAGIC = 0x4D464F48;
+
+    /**
+     * The format version written by this class
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header
+     */
+    private static final int HEADER = 32;
+
+    /**
+     * The file
+     */
+    private final Path file;
+
+    /**
+     * The file's contents
+     */
+    private final Region region;
+
+    /**
+     * The number of nodes, edges and name slots
+     */
+    private final int nodeCount;
+    private final long edgeCount;
+    private final int slotCount;
+
+    /**
+     * Where each section starts in the file
+     */
+    private final long offsetsAt;
+    private final long headsAt;
+    private final long matesAt;
+    private final long residualsAt;
+    private final long forwardAt;
+    private final long capacitiesAt;
+    private final long nameOffsetsAt;
+    private final long slotsAt;
+    private final long namesAt;
+
+    /**
+     * Make a graph from a mapped file whose header has been checked.
+     * @param file the file
+     * @param region the file's contents
+     */
+    private OffHeapGraph( Path file, Region region ) {
+        this.file = file;
+        this.region = region;
+        this.nodeCount = region.getInt( 8 );
+        this.slotCount = region.getInt( 12 );
+        this.edgeCount = region.getLong( 16 );
+        long[] at = layout( this.nodeCount, this.edgeCount, this.slotCount,
+                            region.getLong( 24 ) );
+        this.offsetsAt = at[ 0 ];
+        this.headsAt = at[ 1 ];
+        this.matesAt = at[ 2 ];
+        this.residualsAt = at[ 3 ];
+        this.forwardAt = at[ 4 ];
+        this.capacitiesAt = at[ 5 ];
+        this.nameOffsetsAt = at[ 6 ];
+        this.slotsAt = at[ 7 ];
+        this.namesAt = at[ 8 ];
+    }
+
+    /**
+     * Work out where each section of a file starts.
+     * @param nodeCount the number of nodes
+     * @param edgeCount the number of edges
+     * @param slotCount the number of name slots
+     * @param nameBytes the length of the name bytes
+     * @return the start of each section, in file order, then the size of
+     *         the file
+     */
+    private static long[] layout( int nodeCount, long edgeCount,
+                                  int slotCount, long nameBytes ) {
+        long arcCount = 2 * edgeCount;
+        long[] sizes = {
+                Long.BYTES * ( nodeCount + 1L ),
+                Integer.BYTES * arcCount,
+                Long.BYTES * arcCount,
+                Long.BYTES * arcCount,
+                Long.BYTES * edgeCount,
+                Long.BYTES * edgeCount,
+                Long.BYTES * ( nodeCount + 1L ),
+                Integer.BYTES * (long) slotCount,
+                nameBytes
+        };
+        long[] at = new long[ sizes.length + 1 ];
+        long pos = HEADER;
+        for ( int i = 0; i < sizes.length; i++ ) {
+            at[ i ] = pos;
+            pos = ( pos + sizes[ i ] + 7 ) & ~7L;
+        }
+        at[ sizes.length ] = pos;
+        return at;
+    }
+
+    /**
+     * Map a graph file made by a {@link Builder}. Its flow is as it was
+     * left.
+     * @param file the file
+     * @return the graph
+     * @throws IOException if the file cannot be read, or does not hold a
+     *                     graph
+     */
+    public static OffHeapGraph open( Path file ) throws IOException {
+        try ( FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+            long size = channel.size();
+            if ( size < HEADER ) {
+                throw new IOException( file + " is not a graph file" );
+            }
+            Region region = new Region( channel, size );
+            if ( region.getInt( 0 ) != MAGIC ) {
+                throw new IOException( file + " is not a graph file" );
+            }
+            if ( region.getInt( 4 ) != VERSION ) {
+                throw new IOException( file + " has unknown version " +
+                                       region.getInt( 4 ) );
+            }
+            long[] at = layout( region.getInt( 8 ), region.getLong( 16 ),
+                                region.getInt( 12 ), region.getLong( 24 ) );
+            if ( size < at[ at.length - 1 ] ) {
+                throw new IOException( file + " is truncated" );
+            }
+            return new OffHeapGraph( file, region );
+        }
+    }
+
+    /**
+     * Read an edge-list file, in the format {@link FlowGraph} reads, into
+     * a new graph file.
+     * @param edgeList the edge-list file
+     * @param file the graph file to make, replaced if it exists
+     * @return the graph, with no flow
+     * @throws IOException if a file cannot be read or written
+     * @throws GraphException if a line is not correctly formatted
+     */
+    public static OffHeapGraph read( Path edgeList, Path file )
+            throws IOException, GraphException {
+        try ( Builder builder = new Builder( file ) ) {
+            EdgeListParser.parse( edgeList, builder );
+            return builder.build();
+        }
+    }
+
+    /**
+     * @return the file the graph is kept in
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    @Override
+    public int nodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return the number of edges in this graph
+     */
+    public long edgeCount() {
+        return this.edgeCount;
+    }
+
+    @Override
+    public long arcCount() {
+        return 2 * this.edgeCount;
+    }
+
+    @Override
+    public int id( String name ) {
+        int mask = this.slotCount - 1;
+        for ( int slot = name.hashCode() & mask; ;
+              slot = ( slot + 1 ) & mask ) {
+            int u = this.region.getInt( this.slotsAt +
+                                        (long) Integer.BYTES * slot ) - 1;
+            if ( u < 0 ) {
+                return -1;
+            }
+            if ( name( u ).equals( name ) ) {
+                return u;
+            }
+        }
+    }
+
+    @Override
+    public String name( int u ) {
+        long at = this.nameOffsetsAt + (long) Long.BYTES * u;
+        long start = this.region.getLong( at );
+        byte[] bytes = new byte[ (int) ( this.region.getLong( at + Long.BYTES )
+                                         - start ) ];
+        for ( int i = 0; i < bytes.length; i++ ) {
+            bytes[ i ] = this.region.get( this.namesAt + start + i );
+        }
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    @Override
+    public long firstArc( int u ) {
+        return this.region.getLong( this.offsetsAt + (long) Long.BYTES * u );
+    }
+
+    @Override
+    public long endArc( int u ) {
+        return this.region.getLong( this.offsetsAt +
+                                    (long) Long.BYTES * ( u + 1 ) );
+    }
+
+    @Override
+    public int head( long arc ) {
+        return this.region.getInt( this.headsAt + Integer.BYTES * arc );
+    }
+
+    @Override
+    public long mate( long arc ) {
+        return this.region.getLong( this.matesAt + Long.BYTES * arc );
+    }
+
+    @Override
+    public long residual( long arc ) {
+        return this.region.getLong( this.residualsAt + Long.BYTES * arc );
+    }
+
+    @Override
+    public void push( long arc, long delta ) {
+        long at = this.residualsAt + Long.BYTES * arc;
+        this.region.putLong( at, this.region.getLong( at ) - delta );
+        at = this.residualsAt + Long.BYTES * mate( arc );
+        this.region.putLong( at, this.region.getLong( at ) + delta );
+    }
+
+    /**
+     * @param edge an edge id
+     * @return the arc running from the edge's first node to its second
+     */
+    public long forwardArc( long edge ) {
+        return this.region.getLong( this.forwardAt + Long.BYTES * edge );
+    }
+
+    /**
+     * @param edge an edge id
+     * @return the capacity of the edge, in either direction
+     */
+    public long capacity( long edge ) {
+        return this.region.getLong( this.capacitiesAt + Long.BYTES * edge );
+    }
+
+    /**
+     * @param edge an edge id
+     * @return the flow from the edge's first node to its second,
+     * negative if it runs the other way
+     */
+    public long flow( long edge ) {
+        return capacity( edge ) - residual( forwardArc( edge ) );
+    }
+
+    /**
+     * Set every edge's flow back to zero.
+     */
+    public void clearFlow() {
+        for ( long e = 0; e < this.edgeCount; e++ ) {
+            long forward = forwardArc( e );
+            long capacity = capacity( e );
+            this.region.putLong( this.residualsAt + Long.BYTES * forward,
+                                 capacity );
+            this.region.putLong( this.residualsAt +
+                                 Long.BYTES * mate( forward ), capacity );
+        }
+    }
+
+    /**
+     * Write the graph's flow out to its file. The mapping itself is let
+     * go when the graph is garbage collected.
+     */
+    @Override
+    public void close() {
+        this.region.force();
+    }
+
+    /**
+     * A file mapped in chunks, so that it can be bigger than one buffer.
+     * Every number is read from a single chunk, which holds as long as
+     * the numbers are aligned to their size. {@link SnapshotNetwork}
+     * maps snapshots with it too.
+     */
+    static final class Region {
+
+        /**
+         * Chunk i maps the bytes from i << SHIFT on
+         */
+        private static final int SHIFT = 30;
+
+        /**
+         * The offset of a byte within its chunk
+         */
+        private static final long MASK = ( 1L << SHIFT ) - 1;
+
+        /**
+         * The mapped chunks
+         */
+        private final MappedByteBuffer[] chunks;
+
+        /**
+         * Map a file for reading and writing, growing it if it is shorter.
+         * @param channel the file, open for reading and writing
+         * @param size how many bytes to map
+         * @throws IOException if the file cannot be mapped
+         */
+        Region( FileChannel channel, long size ) throws IOException {
+            this( channel, size, FileChannel.MapMode.READ_WRITE,
+                  ByteOrder.LITTLE_ENDIAN );
+        }
+
+        /**
+         * Map a file.
+         * @param channel the file, open as the mode needs
+         * @param size how many bytes to map
+         * @param mode how to map it
+         * @param order the byte order of the numbers in it
+         * @throws IOException if the file cannot be mapped
+         */
+        Region( FileChannel channel, long size, FileChannel.MapMode mode,
+                ByteOrder order ) throws IOException {
+            this.chunks = new MappedByteBuffer[
+                    (int) ( ( size + MASK ) >>> SHIFT ) ];
+            for ( int i = 0; i < this.chunks.length; i++ ) {
+                long start = (long) i << SHIFT;
+                this.chunks[ i ] = channel.map(
+                        mode, start, Math.min( MASK + 1, size - start ) );
+                this.chunks[ i ].order( order );
+            }
+        }
+
+        /**
+         * @param at a byte offset in the file
+         * @return the byte there
+         */
+        byte get( long at ) {
+            return this.chunks[ (int) ( at >>> SHIFT ) ].get(
+                    (int) ( at & MASK ) );
+        }
+
+        /**
+         * @param at a byte offset in the file
+         * @param b the byte to put there
+         */
+        void put( long at, byte b ) {
+            this.chunks[ (int) ( at >>> SHIFT ) ].put( (int) ( at & MASK ), b );
+        }
+
+        /**
+         * @param at a byte offset in the file, a multiple of 4
+         * @return the int there
+         */
+        int getInt( long at ) {
+            return this.chunks[ (int) ( at >>> SHIFT ) ].getInt(
+                    (int) ( at & MASK ) );
+        }
+
+        /**
+         * @param at a byte offset in the file, a multiple of 4
+         * @param value the int to put there
+         */
+        void putInt( long at, int value ) {
+            this.chunks[ (int) ( at >>> SHIFT ) ].putInt(
+                    (int) ( at & MASK ), value );
+        }
+
+        /**
+         * @param at a byte offset in the file, a multiple of 8
+         * @return the long there
+         */
+        long getLong( long at ) {
+            return this.chunks[ (int) ( at >>> SHIFT ) ].getLong(
+                    (int) ( at & MASK ) );
+        }
+
+        /**
+         * @param at a byte offset in the file, a multiple of 8
+         * @param value the long to put there
+         */
+        void putLong( long at, long value ) {
+            this.chunks[ (int) ( at >>> SHIFT ) ].putLong(
+                    (int) ( at & MASK ), value );
+        }
+
+        /**
+         * Write every change out to the file.
+         */
+        void force() {
+            for ( MappedByteBuffer chunk: this.chunks ) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * Collects node names and edges, then lays them out in a graph file.
+     * The edges are written to a file beside the graph's as they come in,
+     * 16 bytes each, and that file is deleted when the builder is done.
+     */
+    public static final class Builder implements EdgeSink, AutoCloseable {
+
+        /**
+         * The graph file to make
+         */
+        private final Path file;
+
+        /**
+         * The file the edges are staged in
+         */
+        private final Path staged;
+
+        /**
+         * The staged edges
+         */
+        private final FileChannel channel;
+
+        /**
+         * Edges not yet written to the staging file
+         */
+        private final ByteBuffer buffer =
+                ByteBuffer.allocateDirect( 1 << 20 )
+                          .order( ByteOrder.LITTLE_ENDIAN );
+
+        /**
+         * The node names seen so far, in order
+         */
+        private String[] names = new String[ 16 ];
+
+        /**
+         * The node ids assigned so far
+         */
+        private final Map< String, Integer > ids = new HashMap<>();
+
+        /**
+         * The number of edges added so far
+         */
+        private long edgeCount;
+
+        /**
+         * Start a graph.
+         * @param file the graph file to make, replaced if it exists
+         * @throws IOException if the staging file cannot be made
+         */
+        public Builder( Path file ) throws IOException {
+            this.file = file;
+            this.staged = file.resolveSibling( file.getFileName() + ".edges" );
+            this.channel = FileChannel.open(
+                    this.staged, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING );
+        }
+
+        /**
+         * Intern a node name.
+         * @param name the node's name
+         * @return the node's id, assigning the next free one if the
+         * name has not been seen before
+         */
+        public int node( String name ) {
+            Integer id = this.ids.get( name );
+            return id == null ? newNode( name ) : id;
+        }
+
+        /**
+         * Assign the next free id to a name that has not been seen before.
+         * @param name the node's name
+         * @return the node's id
+         * @rit.pre name has not been passed to this builder before
+         */
+        @Override
+        public int newNode( String name ) {
+            int id = this.ids.size();
+            if ( id == this.names.length ) {
+                this.names = Arrays.copyOf( this.names, 2 * id );
+            }
+            this.names[ id ] = name;
+            this.ids.put( name, id );
+            return id;
+        }
+
+        /**
+         * Add an edge between two interned nodes.
+         * @param tail the id of the edge's first node
+         * @param head the id of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         * @throws IOException if the edge cannot be staged
+         */
+        @Override
+        public void addEdge( int tail, int head, long capacity )
+                throws IOException {
+            if ( this.buffer.remaining() < 16 ) {
+                flush();
+            }
+            this.buffer.putInt( tail ).putInt( head ).putLong( capacity );
+            this.edgeCount++;
+        }
+
+        /**
+         * Add an edge, interning its node names.
+         * @param tail the name of the edge's first node
+         * @param head the name of the edge's second node
+         * @param capacity the capacity of the edge, in either direction
+         * @throws IOException if the edge cannot be staged
+         */
+        public void addEdge( String tail, String head, long capacity )
+                throws IOException {
+            addEdge( node( tail ), node( head ), capacity );
+        }
+
+        /**
+         * Write the buffered edges to the staging file.
+         * @throws IOException if the file cannot be written
+         */
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while ( this.buffer.hasRemaining() ) {
+                this.channel.write( this.buffer );
+            }
+            this.buffer.clear();
+        }
+
+        /**
+         * Lay out every node and edge added so far in the graph file.
+         * Within a node the arcs keep the order their edges were added in,
+         * as in a {@link CsrGraph}.
+         * @return the graph, with no flow
+         * @throws IOException if a file cannot be read or written
+         */
+        public OffHeapGraph build() throws IOException {
+            flush();
+            int n = this.ids.size();
+            long m = this.edgeCount;
+            byte[][] encoded = new byte[ n ][];
+            long nameBytes = 0;
+            for ( int u = 0; u < n; u++ ) {
+                encoded[ u ] = this.names[ u ].getBytes(
+                        StandardCharsets.UTF_8 );
+                nameBytes += encoded[ u ].length;
+            }
+            int slots = 16;
+            while ( slots < 2 * n ) {
+                slots *= 2;
+            }
+            long[] at = layout( n, m, slots, nameBytes );
+
+            Region edges = new Region( this.channel, 16 * m );
+            Region region;
+            try ( FileChannel out = FileChannel.open(
+                    this.file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                region = new Region( out, at[ at.length - 1 ] );
+            }
+            region.putInt( 0, MAGIC );
+            region.putInt( 4, VERSION );
+            region.putInt( 8, n );
+            region.putInt( 12, slots );
+            region.putLong( 16, m );
+            region.putLong( 24, nameBytes );
+
+            long[] next = new long[ n + 1 ];
+            for ( long e = 0; e < m; e++ ) {
+                next[ edges.getInt( 16 * e ) + 1 ]++;
+                next[ edges.getInt( 16 * e + 4 ) + 1 ]++;
+            }
+            for ( int u = 0; u < n; u++ ) {
+                next[ u + 1 ] += next[ u ];
+            }
+            for ( int u = 0; u <= n; u++ ) {
+                region.putLong( at[ 0 ] + (long) Long.BYTES * u, next[ u ] );
+            }
+            for ( long e = 0; e < m; e++ ) {
+                int tail = edges.getInt( 16 * e );
+                int head = edges.getInt( 16 * e + 4 );
+                long capacity = edges.getLong( 16 * e + 8 );
+                long forward = next[ tail ]++;
+                long backward = next[ head ]++;
+                region.putInt( at[ 1 ] + Integer.BYTES * forward, head );
+                region.putInt( at[ 1 ] + Integer.BYTES * backward, tail );
+                region.putLong( at[ 2 ] + Long.BYTES * forward, backward );
+                region.putLong( at[ 2 ] + Long.BYTES * backward, forward );
+                region.putLong( at[ 3 ] + Long.BYTES * forward, capacity );
+                region.putLong( at[ 3 ] + Long.BYTES * backward, capacity );
+                region.putLong( at[ 4 ] + Long.BYTES * e, forward );
+                region.putLong( at[ 5 ] + Long.BYTES * e, capacity );
+            }
+
+            long start = 0;
+            int mask = slots - 1;
+            for ( int u = 0; u < n; u++ ) {
+                region.putLong( at[ 6 ] + (long) Long.BYTES * u, start );
+                for ( byte b: encoded[ u ] ) {
+                    region.put( at[ 8 ] + start++, b );
+                }
+                int slot = this.names[ u ].hashCode() & mask;
+                while ( region.getInt( at[ 7 ] +
+                                       (long) Integer.BYTES * slot ) != 0 ) {
+                    slot = ( slot + 1 ) & mask;
+                }
+                region.putInt( at[ 7 ] + (long) Integer.BYTES * slot, u + 1 );
+            }
+            region.putLong( at[ 6 ] + (long) Long.BYTES * n, start );
+            region.force();
+            close();
+            return new OffHeapGraph( this.file, region );
+        }
+
+        /**
+         * Delete the staging file. A builder cannot be used after this.
+         * @throws IOException if the file cannot be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+            Files.deleteIfExists( this.staged );
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package edu.rit.cs.labgraph;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * A level-synchronous breadth-first search over a graph's residual arcs,
+ * run by the workers of a {@link ForkJoinPool}. It finds, from one root,
+ * the residual distance to every node it reaches and the arc each one
+ * was reached through, so one search serves for reachability, distance
+ * labelling and shortest paths.
+ * <p>
+ * The search goes a level at a time. The frontier is split into ranges
+ * that the workers expand in parallel; a worker claims each node it
+ * reaches with a compare-and-set on the node's stamp, so every node joins
+ * the next level exactly once, and the claimed nodes are appended to the
+ * next frontier in blocks. Levels too small to be worth splitting are
+ * expanded on the calling thread. The distances found are always the
+ * same, but when a node can be reached from more than one node of the
+ * level before, which arc it is reached through depends on the timing.
+ * <p>
+ * A search can also run backward, finding the nodes that can reach the
+ * root and their distance to it. Which arcs may be used is up to the
+ * caller: by default an arc with room for more flow, but a solver that
+ * keeps its residual capacities elsewhere can pass its own test.
+ * <p>
+ * Like {@link PathSearch}, its buffers are allocated once, by the
+ * constructor. The graph must not gain nodes while it is in use.
+ *
+ * @author RIT CS
+ */
+public final class ParallelBfs implements AutoCloseable {
+
+    /**
+     * The most frontier nodes one task expands without splitting
+     */
+    private static final int GRAIN = 1024;
+
+    /**
+     * How many reached nodes a task collects before appending them to the
+     * next frontier
+     */
+    private static final int BLOCK = 256;
+
+    /**
+     * The graph being searched
+     */
+    private final CsrGraph csr;
+
+    /**
+     * The workers
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Whether the pool was made by this search, and is shut down with it
+     */
+    private final boolean ownsPool;
+
+    /**
+     * The search that last reached each node; a node has been reached in
+     * the current search if its stamp equals {@link #stamp}
+     */
+    private final AtomicIntegerArray seen;
+
+    /**
+     * Each reached node's distance from the root
+     */
+    private final int[] distance;
+
+    /**
+     * The arc each reached node was reached through, going forward, or
+     * the arc it reaches the root through, going backward
+     */
+    private final int[] parentArc;
+
+    /**
+     * The level being expanded and the one being built
+     */
+    private int[] frontier;
+    private int[] next;
+
+    /**
+     * How many nodes the level being built holds
+     */
+    private final AtomicInteger nextSize = new AtomicInteger();
+
+    /**
+     * The stamp of the current search
+     */
+    private int stamp;
+
+    /**
+     * The root of the last search, whether it went backward, and how
+     * many nodes it reached
+     */
+    private int root = -1;
+    private boolean backward;
+    private int reached;
+
+    /**
+     * Work done in all searches so far
+     */
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder arcsScanned = new LongAdder();
+
+    /**
+     * Make a search with a pool of its own, shut down by {@link #close()}.
+     * @param csr the graph to search
+     * @param workers how many worker threads to use
+     */
+    public ParallelBfs( CsrGraph csr, int workers ) {
+        this( csr, new ForkJoinPool( checkWorkers( workers ) ), true );
+    }
+
+    /**
+     * Make a search that runs on an existing pool. Closing the search
+     * leaves the pool running.
+     * @param csr the graph to search
+     * @param pool the pool to run on
+     */
+    public ParallelBfs( CsrGraph csr, ForkJoinPool pool ) {
+        this( csr, pool, false );
+    }
+
+    /**
+     * @param csr the graph to search
+     * @param pool the pool to run on
+     * @param ownsPool true if the pool is shut down with the search
+     */
+    private ParallelBfs( CsrGraph csr, ForkJoinPool pool, boolean ownsPool ) {
+        int n = csr.nodeCount();
+        this.csr = csr;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.seen = new AtomicIntegerArray( n );
+        this.distance = new int[ n ];
+        this.parentArc = new int[ n ];
+        this.frontier = new int[ n ];
+        this.next = new int[ n ];
+    }
+
+    /**
+     * @param workers a number of worker threads
+     * @return the number, if it is positive
+     */
+    private static int checkWorkers( int workers ) {
+        if ( workers < 1 ) {
+            throw new IllegalArgumentException( "workers must be positive" );
+        }
+        return workers;
+    }
+
+    /**
+     * Find every node reachable from a root along arcs with room for
+     * more flow, or every node that can reach it.
+     * @param root the id of the node to search from
+     * @param backward true to search for the nodes that can reach the root
+     * @return how many nodes were reached, counting the root
+     */
+    public int search( int root, boolean backward ) {
+        return search( root, -1, backward, a -> this.csr.residual( a ) > 0 );
+    }
+
+    /**
+     * Search from a root, stopping after the level that reaches a target.
+     * @param root the id of the node to search from
+     * @param target the id of the node to stop at, or -1 to search the
+     *               whole graph
+     * @param backward true to search for the nodes that can reach the root
+     * @param usable tells whether an arc may be used, given the arc in the
+     *               direction the flow would take: out of the node
+     *               expanded going forward, into it going backward
+     * @return how many nodes were reached, counting the root
+     */
+    public int search( int root, int target, boolean backward,
+                       IntPredicate usable ) {
+        nextStamp();
+        this.root = root;
+        this.backward = backward;
+        this.seen.set( root, this.stamp );
+        this.distance[ root ] = 0;
+        this.parentArc[ root ] = -1;
+        this.frontier[ 0 ] = root;
+        int size = 1;
+        int total = 1;
+        int depth = 0;
+        while ( size > 0 && ( target < 0 || !isReached( target ) ) ) {
+            this.nextSize.set( 0 );
+            Level level = new Level( backward, usable, depth, 0, size );
+            if ( size <= GRAIN ) {
+                level.compute();
+            }
+            else {
+                this.pool.invoke( level );
+            }
+            int[] done = this.frontier;
+            this.frontier = this.next;
+            this.next = done;
+            size = this.nextSize.get();
+            total += size;
+            depth++;
+        }
+        this.reached = total;
+        return total;
+    }
+
+    /**
+     * @param u a node id
+     * @return true if the last search reached the node
+     */
+    public boolean isReached( int u ) {
+        return this.seen.get( u ) == this.stamp;
+    }
+
+    /**
+     * @param u a node id
+     * @return the node's residual distance from the root of the last
+     *         search, or to it if the search went backward, or -1 if the
+     *         search did not reach it
+     */
+    public int distance( int u ) {
+        return isReached( u ) ? this.distance[ u ] : -1;
+    }
+
+    /**
+     * @param u a node id
+     * @return the arc the last search reached the node through, going
+     *         forward, or the arc it takes toward the root, going
+     *         backward; -1 for the root or a node not reached
+     */
+    public int parentArc( int u ) {
+        return isReached( u ) ? this.parentArc[ u ] : -1;
+    }
+
+    /**
+     * Read a shortest path off the last search.
+     * @param u a node the search reached
+     * @return the arcs from the root to the node, in order, or from the
+     *         node to the root if the search went backward
+     * @rit.pre isReached(u)
+     */
+    public int[] pathTo( int u ) {
+        int[] arcs = new int[ this.distance[ u ] ];
+        int v = u;
+        for ( int i = 0; i < arcs.length; i++ ) {
+            int a = this.parentArc[ v ];
+            if ( this.backward ) {
+                arcs[ i ] = a;
+                v = this.csr.head( a );
+            }
+            else {
+                arcs[ arcs.length - 1 - i ] = a;
+                v = this.csr.tail( a );
+            }
+        }
+        return arcs;
+    }
+
+    /**
+     * @return the ids of the nodes the last search reached
+     */
+    public BitSet getReached() {
+        BitSet result = new BitSet( this.csr.nodeCount() );
+        if ( this.root >= 0 ) {
+            for ( int u = 0; u < this.csr.nodeCount(); u++ ) {
+                if ( isReached( u ) ) {
+                    result.set( u );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return how many nodes the last search reached
+     */
+    public int getReachedCount() {
+        return this.reached;
+    }
+
+    /**
+     * @return how many nodes all searches so far have expanded
+     */
+    public long getNodesVisited() {
+        return this.nodesVisited.sum();
+    }
+
+    /**
+     * @return how many arcs all searches so far have looked at
+     */
+    public long getArcsScanned() {
+        return this.arcsScanned.sum();
+    }
+
+    /**
+     * Shut down the pool, if this search made it.
+     */
+    @Override
+    public void close() {
+        if ( this.ownsPool ) {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Move on to a new stamp, clearing the old ones when it wraps.
+     */
+    private void nextStamp() {
+        if ( ++this.stamp == 0 ) {
+            for ( int u = 0; u < this.seen.length(); u++ ) {
+                this.seen.set( u, 0 );
+            }
+            this.stamp = 1;
+        }
+    }
+
+    /**
+     * Expands a range of the frontier, splitting it among the workers
+     * while it is large.
+     */
+    private final class Level extends RecursiveAction {
+
+        private final boolean backward;
+        private final IntPredicate usable;
+        private final int depth;
+        private final int start;
+        private final int end;
+
+        /**
+         * @param backward true if the search goes backward
+         * @param usable tells whether an arc may be used
+         * @param depth the distance of the frontier from the root
+         * @param start where the range starts in the frontier
+         * @param end where it ends
+         */
+        Level( boolean backward, IntPredicate usable, int depth, int start,
+               int end ) {
+            this.backward = backward;
+            this.usable = usable;
+            this.depth = depth;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if ( this.end - this.start > GRAIN ) {
+                int middle = ( this.start + this.end ) >>> 1;
+                invokeAll(
+                        new Level( this.backward, this.usable, this.depth,
+                                   this.start, middle ),
+                        new Level( this.backward, this.usable, this.depth,
+                                   middle, this.end ) );
+                return;
+            }
+            CsrGraph csr = ParallelBfs.this.csr;
+            AtomicIntegerArray seen = ParallelBfs.this.seen;
+            int stamp = ParallelBfs.this.stamp;
+            int[] frontier = ParallelBfs.this.frontier;
+            int[] block = new int[ BLOCK ];
+            int count = 0;
+            long arcs = 0;
+            for ( int i = this.start; i < this.end; i++ ) {
+                int u = frontier[ i ];
+                int first = csr.firstArc( u );
+                int last = csr.endArc( u );
+                arcs += last - first;
+                for ( int a = first; a < last; a++ ) {
+                    int v = csr.head( a );
+                    int old = seen.get( v );
+                    if ( old == stamp ) {
+                        continue;
+                    }
+                    // Going backward, v reaches u through the mate of a.
+                    int link = this.backward ? csr.mate( a ) : a;
+                    if ( !this.usable.test( link ) ||
+                         !seen.compareAndSet( v, old, stamp ) ) {
+                        continue;
+                    }
+                    ParallelBfs.this.distance[ v ] = this.depth + 1;
+                    ParallelBfs.this.parentArc[ v ] = link;
+                    block[ count++ ] = v;
+                    if ( count == BLOCK ) {
+                        append( block, count );
+                        count = 0;
+                    }
+                }
+            }
+            append( block, count );
+            ParallelBfs.this.nodesVisited.add( this.end - this.start );
+            ParallelBfs.this.arcsScanned.add( arcs );
+        }
+
+        /**
+         * Add reached nodes to the next frontier.
+         * @param block the nodes
+         * @param count how many of them there are
+         */
+        private void append( int[] block, int count ) {
+            if ( count > 0 ) {
+                int at = ParallelBfs.this.nextSize.getAndAdd( count );
+                System.arraycopy( block, 0, ParallelBfs.this.next, at, count );
+            }
+        }
+    }
+}
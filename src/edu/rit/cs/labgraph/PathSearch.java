@@ -0,0 +1,700 @@
+package edu.rit.cs.labgraph;
+
+import java.util.Arrays;
+
+/**
+ * A reusable breadth-first search for shortest augmenting paths from a
+ * graph's source to its sink, or between any two of its nodes. All of its
+ * buffers are allocated once, by the constructor, so searching and
+ * augmenting create no garbage.
+ * <p>
+ * A found path is given as the arcs it uses, in order, along with its
+ * bottleneck: the least residual capacity of any of its arcs, which is
+ * tracked while the search runs. Because the path is
+ * made of arcs, not node names, parallel edges are told apart.
+ * <p>
+ * A search can also be made bidirectional. It then grows one frontier
+ * forward from where the path starts and one backward from where it
+ * ends, along arcs into the node with room, always a whole level of the
+ * smaller frontier at a time, and stops when they meet. On graphs with
+ * a small diameter and a high fan-out, the two frontiers meet long
+ * before either one covers the graph. When a frontier's arcs outnumber
+ * a fraction of the arcs it has not reached yet, that level is grown
+ * bottom-up instead: each node not yet reached checks whether one of
+ * its neighbours is in the frontier, which stops at the first one found.
+ * The paths found are still shortest, but may be different shortest
+ * paths from the ones a forward search finds.
+ * <p>
+ * A search can also walk any {@link ResidualNetwork}, such as an
+ * {@link OffHeapGraph}, with long arc ids. It then only grows forward,
+ * and its paths are given by {@link #getNetworkArcs()}.
+ *
+ * @author RIT CS
+ */
+public final class PathSearch {
+
+    /**
+     * A level is grown bottom-up when its frontier has more than
+     * 1/ALPHA of the arcs not yet reached
+     */
+    private static final int ALPHA = 2;
+
+    /**
+     * A level is only grown bottom-up when its frontier holds at least
+     * 1/BETA of the nodes
+     */
+    private static final int BETA = 24;
+
+    /**
+     * The graph being searched, or null if it is a network
+     */
+    private final CsrGraph csr;
+
+    /**
+     * The network being searched, or null if it is a graph
+     */
+    private final ResidualNetwork network;
+
+    /**
+     * The id of the node searched from
+     */
+    private final int source;
+
+    /**
+     * The id of the node searched for
+     */
+    private final int sink;
+
+    /**
+     * The nodes waiting to be expanded
+     */
+    private final int[] queue;
+
+    /**
+     * The search that last reached each node; a node has been reached in
+     * the current search if its stamp equals {@link #stamp}
+     */
+    private final int[] seen;
+
+    /**
+     * The arc each reached node was reached through
+     */
+    private final int[] parentArc;
+
+    /**
+     * The least residual capacity on the way to each reached node
+     */
+    private final long[] reach;
+
+    /**
+     * The arcs of the last path found, in order
+     */
+    private final int[] path;
+
+    /**
+     * For network searches only: the arc each reached node was reached
+     * through, and the arcs of the last path found
+     */
+    private final long[] parentLink;
+    private final long[] networkPath;
+
+    /**
+     * Whether searches grow from both ends
+     */
+    private final boolean bidirectional;
+
+    /**
+     * For bidirectional searches only: the backward frontier, the stamps
+     * of the nodes it has reached, and the arc each of them reaches the
+     * end through
+     */
+    private final int[] queueBack;
+    private final int[] seenBack;
+    private final int[] childArc;
+
+    /**
+     * For bidirectional searches only: each reached node's distance from
+     * the start, or to the end
+     */
+    private final int[] level;
+    private final int[] levelBack;
+
+    /**
+     * Where the two frontiers of the last bidirectional search met
+     */
+    private int meet;
+
+    /**
+     * Where the last search started and ended
+     */
+    private int from;
+    private int to;
+
+    /**
+     * The stamp of the current search
+     */
+    private int stamp;
+
+    /**
+     * How many arcs the last path found has, or 0 if there is none
+     */
+    private int length;
+
+    /**
+     * The bottleneck of the last path found
+     */
+    private long bottleneck;
+
+    /**
+     * How many nodes and arcs every search so far has looked at
+     */
+    private long nodesVisited;
+    private long arcsScanned;
+
+    /**
+     * Create a search between a graph's source and sink.
+     * @param graph the graph to search; a new search is needed after
+     *              nodes or edges are added to it
+     */
+    public PathSearch( FlowGraph graph ) {
+        this( graph, false );
+    }
+
+    /**
+     * Create a search between a graph's source and sink.
+     * @param graph the graph to search; a new search is needed after
+     *              nodes or edges are added to it
+     * @param bidirectional true to grow each search from both ends
+     */
+    public PathSearch( FlowGraph graph, boolean bidirectional ) {
+        this.csr = graph.getCsr();
+        this.network = null;
+        this.source = graph.getSourceId();
+        this.sink = graph.getSinkId();
+        int n = this.csr.nodeCount();
+        this.queue = new int[ n ];
+        this.seen = new int[ n ];
+        this.parentArc = new int[ n ];
+        this.reach = new long[ n ];
+        this.path = new int[ n ];
+        this.parentLink = null;
+        this.networkPath = null;
+        this.bidirectional = bidirectional;
+        this.queueBack = bidirectional ? new int[ n ] : null;
+        this.seenBack = bidirectional ? new int[ n ] : null;
+        this.childArc = bidirectional ? new int[ n ] : null;
+        this.level = bidirectional ? new int[ n ] : null;
+        this.levelBack = bidirectional ? new int[ n ] : null;
+    }
+
+    /**
+     * Create a forward search between two nodes of a network.
+     * @param network the network to search
+     * @param source the id of the node paths start from
+     * @param sink the id of the node paths end at
+     */
+    public PathSearch( ResidualNetwork network, int source, int sink ) {
+        this.csr = null;
+        this.network = network;
+        this.source = source;
+        this.sink = sink;
+        int n = network.nodeCount();
+        this.queue = new int[ n ];
+        this.seen = new int[ n ];
+        this.parentArc = null;
+        this.reach = new long[ n ];
+        this.path = null;
+        this.parentLink = new long[ n ];
+        this.networkPath = new long[ n ];
+        this.bidirectional = false;
+        this.queueBack = null;
+        this.seenBack = null;
+        this.childArc = null;
+        this.level = null;
+        this.levelBack = null;
+    }
+
+    /**
+     * Look for a shortest path from the source to the sink along arcs
+     * with room for more flow.
+     * @return true if a path was found
+     */
+    public boolean find() {
+        return find( this.source, this.sink );
+    }
+
+    /**
+     * Look for a shortest path from the source to the sink along arcs
+     * with room for at least a given amount more flow.
+     * @param threshold the least residual capacity an arc may have and
+     *                  still be used; at least 1
+     * @return true if a path was found
+     */
+    public boolean find( long threshold ) {
+        return find( this.source, this.sink, threshold );
+    }
+
+    /**
+     * Look for a shortest path between any two nodes along arcs with room
+     * for more flow.
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @return true if a path was found
+     */
+    public boolean find( int from, int to ) {
+        return find( from, to, 1 );
+    }
+
+    /**
+     * Look for a shortest path between any two nodes along arcs with room
+     * for at least a given amount more flow.
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @param threshold the least residual capacity an arc may have and
+     *                  still be used; at least 1
+     * @return true if a path was found
+     */
+    public boolean find( int from, int to, long threshold ) {
+        nextStamp();
+        this.length = 0;
+        this.bottleneck = 0;
+        this.from = from;
+        this.to = to;
+        if ( from == to ) {
+            return false;
+        }
+        if ( this.bidirectional ) {
+            return findBoth( from, to, threshold );
+        }
+        if ( this.network != null ) {
+            return findInNetwork( from, to, threshold );
+        }
+        int head = 0;
+        int tail = 0;
+        this.queue[ tail++ ] = from;
+        this.seen[ from ] = this.stamp;
+        this.reach[ from ] = Long.MAX_VALUE;
+        while ( head < tail ) {
+            int u = this.queue[ head++ ];
+            int first = this.csr.firstArc( u );
+            int end = this.csr.endArc( u );
+            this.nodesVisited++;
+            for ( int a = first; a < end; a++ ) {
+                int v = this.csr.head( a );
+                long residual = this.csr.residual( a );
+                if ( residual >= threshold && this.seen[ v ] != this.stamp ) {
+                    this.seen[ v ] = this.stamp;
+                    this.parentArc[ v ] = a;
+                    this.reach[ v ] = Math.min( this.reach[ u ], residual );
+                    if ( v == to ) {
+                        this.arcsScanned += a + 1 - first;
+                        tracePath();
+                        return true;
+                    }
+                    this.queue[ tail++ ] = v;
+                }
+            }
+            this.arcsScanned += end - first;
+        }
+        return false;
+    }
+
+    /**
+     * Search a network forward, as {@link #find(int, int, long)} searches
+     * a graph.
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @param threshold the least residual capacity an arc may use
+     * @return true if a path was found
+     */
+    private boolean findInNetwork( int from, int to, long threshold ) {
+        ResidualNetwork network = this.network;
+        int head = 0;
+        int tail = 0;
+        this.queue[ tail++ ] = from;
+        this.seen[ from ] = this.stamp;
+        this.reach[ from ] = Long.MAX_VALUE;
+        while ( head < tail ) {
+            int u = this.queue[ head++ ];
+            long first = network.firstArc( u );
+            long end = network.endArc( u );
+            this.nodesVisited++;
+            for ( long a = first; a < end; a++ ) {
+                int v = network.head( a );
+                long residual = network.residual( a );
+                if ( residual >= threshold && this.seen[ v ] != this.stamp ) {
+                    this.seen[ v ] = this.stamp;
+                    this.parentLink[ v ] = a;
+                    this.reach[ v ] = Math.min( this.reach[ u ], residual );
+                    if ( v == to ) {
+                        this.arcsScanned += a + 1 - first;
+                        traceNetworkPath();
+                        return true;
+                    }
+                    this.queue[ tail++ ] = v;
+                }
+            }
+            this.arcsScanned += end - first;
+        }
+        return false;
+    }
+
+    /**
+     * Grow frontiers from both ends, a level at a time, until they meet.
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @param threshold the least residual capacity an arc may use
+     * @return true if a path was found
+     */
+    private boolean findBoth( int from, int to, long threshold ) {
+        this.meet = -1;
+        this.queue[ 0 ] = from;
+        this.seen[ from ] = this.stamp;
+        this.level[ from ] = 0;
+        this.queueBack[ 0 ] = to;
+        this.seenBack[ to ] = this.stamp;
+        this.levelBack[ to ] = 0;
+        // Where each frontier is in its queue, its depth, and how many
+        // arcs leave the nodes it has reached.
+        int start = 0;
+        int end = 1;
+        int depth = 0;
+        long reached = degree( from );
+        int startBack = 0;
+        int endBack = 1;
+        int depthBack = 0;
+        long reachedBack = degree( to );
+        while ( start < end && startBack < endBack ) {
+            if ( end - start <= endBack - startBack ) {
+                int tail = grow( true, start, end, depth, reached,
+                                 threshold );
+                reached += sumDegrees( this.queue, end, tail );
+                start = end;
+                end = tail;
+                depth++;
+            }
+            else {
+                int tail = grow( false, startBack, endBack, depthBack,
+                                 reachedBack, threshold );
+                reachedBack += sumDegrees( this.queueBack, endBack, tail );
+                startBack = endBack;
+                endBack = tail;
+                depthBack++;
+            }
+            if ( this.meet >= 0 ) {
+                traceBoth();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grow one of the frontiers of a bidirectional search by a level,
+     * top-down or bottom-up, stopping if it meets the other one.
+     * @param forward true to grow the frontier from the start, false the
+     *                one from the end
+     * @param start where the frontier starts in its queue
+     * @param end where it ends; the next level is added after it
+     * @param depth the frontier's distance from its end of the path
+     * @param reached how many arcs leave the nodes this side has reached
+     * @param threshold the least residual capacity an arc may use
+     * @return where the next level ends in the queue
+     */
+    private int grow( boolean forward, int start, int end, int depth,
+                      long reached, long threshold ) {
+        int[] queue = forward ? this.queue : this.queueBack;
+        long frontierArcs = sumDegrees( queue, start, end );
+        if ( ( end - start ) * (long) BETA >= this.csr.nodeCount() &&
+             frontierArcs * ALPHA > this.csr.arcCount() - reached ) {
+            return bottomUp( forward, end, depth, threshold );
+        }
+        return topDown( forward, start, end, depth, threshold );
+    }
+
+    /**
+     * Grow a frontier by following the arcs out of each of its nodes.
+     * @param forward true to grow the frontier from the start
+     * @param start where the frontier starts in its queue
+     * @param end where it ends
+     * @param depth the frontier's distance from its end of the path
+     * @param threshold the least residual capacity an arc may use
+     * @return where the next level ends in the queue
+     */
+    private int topDown( boolean forward, int start, int end, int depth,
+                         long threshold ) {
+        CsrGraph csr = this.csr;
+        int stamp = this.stamp;
+        int[] queue = forward ? this.queue : this.queueBack;
+        int[] mine = forward ? this.seen : this.seenBack;
+        int[] other = forward ? this.seenBack : this.seen;
+        int[] myLevel = forward ? this.level : this.levelBack;
+        int[] links = forward ? this.parentArc : this.childArc;
+        int tail = end;
+        for ( int i = start; i < end; i++ ) {
+            int u = queue[ i ];
+            int first = csr.firstArc( u );
+            int last = csr.endArc( u );
+            this.nodesVisited++;
+            for ( int a = first; a < last; a++ ) {
+                int v = csr.head( a );
+                if ( mine[ v ] == stamp ) {
+                    continue;
+                }
+                // Going backward, v reaches u through the mate of a.
+                int link = forward ? a : csr.mate( a );
+                if ( csr.residual( link ) < threshold ) {
+                    continue;
+                }
+                mine[ v ] = stamp;
+                myLevel[ v ] = depth + 1;
+                links[ v ] = link;
+                queue[ tail++ ] = v;
+                if ( other[ v ] == stamp ) {
+                    this.meet = v;
+                    this.arcsScanned += a + 1 - first;
+                    return tail;
+                }
+            }
+            this.arcsScanned += last - first;
+        }
+        return tail;
+    }
+
+    /**
+     * Grow a frontier by checking, for each node it has not reached,
+     * whether one of its neighbours is in the frontier.
+     * @param forward true to grow the frontier from the start
+     * @param end where the frontier ends in its queue
+     * @param depth the frontier's distance from its end of the path
+     * @param threshold the least residual capacity an arc may use
+     * @return where the next level ends in the queue
+     */
+    private int bottomUp( boolean forward, int end, int depth,
+                          long threshold ) {
+        CsrGraph csr = this.csr;
+        int stamp = this.stamp;
+        int[] queue = forward ? this.queue : this.queueBack;
+        int[] mine = forward ? this.seen : this.seenBack;
+        int[] other = forward ? this.seenBack : this.seen;
+        int[] myLevel = forward ? this.level : this.levelBack;
+        int[] links = forward ? this.parentArc : this.childArc;
+        int tail = end;
+        for ( int v = 0; v < csr.nodeCount(); v++ ) {
+            if ( mine[ v ] == stamp ) {
+                continue;
+            }
+            this.nodesVisited++;
+            int first = csr.firstArc( v );
+            int last = csr.endArc( v );
+            int a = first;
+            for ( ; a < last; a++ ) {
+                int u = csr.head( a );
+                if ( mine[ u ] == stamp && myLevel[ u ] == depth ) {
+                    // Going forward, u reaches v through the mate of a.
+                    int link = forward ? csr.mate( a ) : a;
+                    if ( csr.residual( link ) >= threshold ) {
+                        mine[ v ] = stamp;
+                        myLevel[ v ] = depth + 1;
+                        links[ v ] = link;
+                        queue[ tail++ ] = v;
+                        break;
+                    }
+                }
+            }
+            this.arcsScanned += Math.min( a + 1, last ) - first;
+            if ( mine[ v ] == stamp && other[ v ] == stamp ) {
+                this.meet = v;
+                return tail;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * @param u a node
+     * @return how many arcs leave it
+     */
+    private int degree( int u ) {
+        return this.csr.endArc( u ) - this.csr.firstArc( u );
+    }
+
+    /**
+     * @param queue a frontier queue
+     * @param start where a range of it starts
+     * @param end where the range ends
+     * @return how many arcs leave the nodes in the range
+     */
+    private long sumDegrees( int[] queue, int start, int end ) {
+        long total = 0;
+        for ( int i = start; i < end; i++ ) {
+            total += degree( queue[ i ] );
+        }
+        return total;
+    }
+
+    /**
+     * Push the bottleneck amount of flow along the last path found.
+     * @return the amount pushed, or 0 if no path was found
+     */
+    public long augment() {
+        return augment( this.bottleneck );
+    }
+
+    /**
+     * Push flow along the last path found, up to a limit.
+     * @param limit the most flow to push
+     * @return the amount pushed: the smaller of the limit and the
+     *         bottleneck, or 0 if no path was found
+     */
+    public long augment( long limit ) {
+        long delta = Math.min( limit, this.bottleneck );
+        for ( int i = 0; i < this.length; i++ ) {
+            if ( this.network == null ) {
+                this.csr.push( this.path[ i ], delta );
+            }
+            else {
+                this.network.push( this.networkPath[ i ], delta );
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Get the arcs of the last path found. Only the first
+     * {@link #getLength()} entries are part of the path, and the array
+     * is overwritten by the next search.
+     * @return the path's arcs, in order from where it starts, or null if
+     *         this search walks a network
+     */
+    public int[] getArcs() {
+        return this.path;
+    }
+
+    /**
+     * Get the arcs of the last path found in a network, as
+     * {@link #getArcs()} does for a graph.
+     * @return the path's arcs, in order from where it starts, or null if
+     *         this search walks a graph
+     */
+    public long[] getNetworkArcs() {
+        return this.networkPath;
+    }
+
+    /**
+     * @param i the index of an arc of the last path found, less than
+     *          {@link #getLength()}
+     * @return the node that arc leads to
+     */
+    public int getHead( int i ) {
+        return this.network != null ?
+               this.network.head( this.networkPath[ i ] ) :
+               this.csr.head( this.path[ i ] );
+    }
+
+    /**
+     * @return how many arcs the last path found has, or 0 if none was
+     *         found
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return the least residual capacity on the last path found, or 0 if
+     *         none was found
+     */
+    public long getBottleneck() {
+        return this.bottleneck;
+    }
+
+    /**
+     * @return how many nodes every search so far has taken off its queue
+     */
+    public long getNodesVisited() {
+        return this.nodesVisited;
+    }
+
+    /**
+     * @return how many arcs every search so far has looked at
+     */
+    public long getArcsScanned() {
+        return this.arcsScanned;
+    }
+
+    /**
+     * Start a new search, clearing the stamps when they run out.
+     */
+    private void nextStamp() {
+        if ( ++this.stamp == 0 ) {
+            Arrays.fill( this.seen, 0 );
+            if ( this.seenBack != null ) {
+                Arrays.fill( this.seenBack, 0 );
+            }
+            this.stamp = 1;
+        }
+    }
+
+    /**
+     * Copy the arcs of the path just found out of the parent arcs.
+     */
+    private void tracePath() {
+        int count = 0;
+        for ( int v = this.to; v != this.from;
+              v = this.csr.tail( this.parentArc[ v ] ) ) {
+            count++;
+        }
+        this.length = count;
+        for ( int v = this.to; v != this.from;
+              v = this.csr.tail( this.parentArc[ v ] ) ) {
+            this.path[ --count ] = this.parentArc[ v ];
+        }
+        this.bottleneck = this.reach[ this.to ];
+    }
+
+    /**
+     * Copy the arcs of the path just found in a network out of the parent
+     * links.
+     */
+    private void traceNetworkPath() {
+        int count = 0;
+        for ( int v = this.to; v != this.from;
+              v = this.network.tail( this.parentLink[ v ] ) ) {
+            count++;
+        }
+        this.length = count;
+        for ( int v = this.to; v != this.from;
+              v = this.network.tail( this.parentLink[ v ] ) ) {
+            this.networkPath[ --count ] = this.parentLink[ v ];
+        }
+        this.bottleneck = this.reach[ this.to ];
+    }
+
+    /**
+     * Copy the arcs of the path just found by a bidirectional search out
+     * of the parent arcs up to where the frontiers met, and the child arcs
+     * after it, and find its bottleneck.
+     */
+    private void traceBoth() {
+        int count = 0;
+        for ( int v = this.meet; v != this.from;
+              v = this.csr.tail( this.parentArc[ v ] ) ) {
+            count++;
+        }
+        int i = count;
+        for ( int v = this.meet; v != this.from;
+              v = this.csr.tail( this.parentArc[ v ] ) ) {
+            this.path[ --i ] = this.parentArc[ v ];
+        }
+        for ( int v = this.meet; v != this.to;
+              v = this.csr.head( this.childArc[ v ] ) ) {
+            this.path[ count++ ] = this.childArc[ v ];
+        }
+        this.length = count;
+        long least = Long.MAX_VALUE;
+        for ( int k = 0; k < count; k++ ) {
+            least = Math.min( least, this.csr.residual( this.path[ k ] ) );
+        }
+        this.bottleneck = least;
+    }
+}
@@ -0,0 +1,97 @@
+package edu.rit.cs.labgraph;
+
+/**
+ * The residual arcs of a flow graph, as a solver walks them: dense node
+ * ids, each node's arcs in one run of arc ids, and for each arc its head,
+ * its mate running the other way along the same edge, and how much more
+ * flow it can carry.
+ * <p>
+ * Arc ids are longs, so a graph may hold more than 2^31 arcs. Node ids
+ * stay ints. {@link CsrGraph#asNetwork()} gives the arcs of a graph kept
+ * on the heap, {@link OffHeapGraph} keeps them in a memory-mapped file,
+ * and {@link SnapshotNetwork} maps them from a snapshot; a solver written
+ * against this interface runs on any of them.
+ *
+ * @author RIT CS
+ */
+public interface ResidualNetwork {
+
+    /**
+     * @return the number of nodes
+     */
+    int nodeCount();
+
+    /**
+     * @return the number of arcs, two for each edge
+     */
+    long arcCount();
+
+    /**
+     * @param name a node name
+     * @return the node's id, or -1 if there is no node by that name
+     */
+    int id( String name );
+
+    /**
+     * @param u a node id
+     * @return the node's name
+     */
+    String name( int u );
+
+    /**
+     * @param u a node id
+     * @return the id of the first arc leaving the node
+     */
+    long firstArc( int u );
+
+    /**
+     * @param u a node id
+     * @return the id just past the last arc leaving the node
+     */
+    long endArc( int u );
+
+    /**
+     * @param arc an arc id
+     * @return the node the arc points to
+     */
+    int head( long arc );
+
+    /**
+     * @param arc an arc id
+     * @return the arc running the other way along the same edge
+     */
+    long mate( long arc );
+
+    /**
+     * @param arc an arc id
+     * @return the node the arc leaves
+     */
+    default int tail( long arc ) {
+        return head( mate( arc ) );
+    }
+
+    /**
+     * @param arc an arc id
+     * @return how much more flow the arc can carry
+     */
+    long residual( long arc );
+
+    /**
+     * @param arc an arc id
+     * @return the flow running along the arc, negative if it runs the
+     *         other way; an edge's two arcs start out with the same
+     *         capacity, so this is half the difference of their residual
+     *         capacities
+     */
+    default long arcFlow( long arc ) {
+        return ( residual( mate( arc ) ) - residual( arc ) ) / 2;
+    }
+
+    /**
+     * Send flow along an arc, taking it from the arc's residual capacity
+     * and giving it to the arc's mate.
+     * @param arc an arc id
+     * @param delta the amount of flow
+     */
+    void push( long arc, long delta );
+}
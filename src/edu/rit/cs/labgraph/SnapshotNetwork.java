@@ -0,0 +1,231 @@
+package edu.rit.cs.labgraph;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot written by {@link FlowGraph#writeSnapshot(String)}, mapped
+ * as a {@link ResidualNetwork} without copying any of it onto the heap.
+ * Opening one reads nothing but the header, so it takes the same few
+ * milliseconds whatever the size of the graph; the operating system
+ * pages the arcs in as a solver first walks them.
+ * <p>
+ * The snapshot is mapped read-only. The flow on each edge is kept in a
+ * temporary file of its own, which is mapped too and deleted as soon as
+ * it is, so the operating system hands out its zeroed pages only as the
+ * flow reaches them. An arc's residual capacity is worked out from its
+ * edge's capacity and flow. Edge costs are not read; {@link #hasCosts()}
+ * tells whether there are any.
+ *
+ * @author RIT CS
+ */
+public final class SnapshotNetwork implements ResidualNetwork {
+
+    /**
+     * The snapshot's contents
+     */
+    private final OffHeapGraph.Region region;
+
+    /**
+     * The flow on each edge, from its first node to its second
+     */
+    private final OffHeapGraph.Region flows;
+
+    /**
+     * The number of nodes, edges and name slots
+     */
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int slotCount;
+
+    /**
+     * Whether the snapshot holds costs
+     */
+    private final boolean hasCosts;
+
+    /**
+     * Where each section starts in the file
+     */
+    private final long[] at;
+
+    /**
+     * Make a network from a mapped snapshot whose header has been checked.
+     * @param region the snapshot's contents
+     * @throws IOException if the flow file cannot be made
+     */
+    SnapshotNetwork( OffHeapGraph.Region region ) throws IOException {
+        this.region = region;
+        this.nodeCount = region.getInt( 8 );
+        this.edgeCount = region.getInt( 12 );
+        this.slotCount = region.getInt( 16 );
+        this.hasCosts =
+                ( region.getInt( 20 ) & GraphSnapshot.HAS_COSTS ) != 0;
+        this.at = GraphSnapshot.layout( this.nodeCount, this.edgeCount,
+                                        this.slotCount, this.hasCosts,
+                                        region.getLong( 24 ) );
+        Path file = Files.createTempFile( "flows", ".bin" );
+        try ( FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+            this.flows = new OffHeapGraph.Region(
+                    channel, (long) Long.BYTES * this.edgeCount );
+        }
+        try {
+            Files.delete( file );
+        }
+        catch ( IOException e ) {
+            // Some systems will not delete a mapped file.
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Map a snapshot. The mappings are let go when the network is garbage
+     * collected.
+     * @param file the snapshot file
+     * @return the network it holds, with no flow
+     * @throws IOException if the file cannot be read, or the flow file
+     *                     cannot be made
+     * @throws GraphException if the file is not a snapshot, or is
+     *                        damaged
+     */
+    public static SnapshotNetwork open( Path file )
+            throws IOException, GraphException {
+        return GraphSnapshot.map( file );
+    }
+
+    /**
+     * Check whether a file is a snapshot rather than an edge list.
+     * @param file the file to check
+     * @return true if the file starts like a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSnapshot( Path file ) throws IOException {
+        return GraphSnapshot.isSnapshot( file );
+    }
+
+    @Override
+    public int nodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return this.edgeCount;
+    }
+
+    @Override
+    public long arcCount() {
+        return 2L * this.edgeCount;
+    }
+
+    /**
+     * @return true if the snapshot holds a cost for each edge
+     */
+    public boolean hasCosts() {
+        return this.hasCosts;
+    }
+
+    @Override
+    public int id( String name ) {
+        int mask = this.slotCount - 1;
+        for ( int slot = name.hashCode() & mask; ;
+              slot = ( slot + 1 ) & mask ) {
+            int u = intAt( GraphSnapshot.NAME_SLOTS, slot ) - 1;
+            if ( u < 0 ) {
+                return -1;
+            }
+            if ( name( u ).equals( name ) ) {
+                return u;
+            }
+        }
+    }
+
+    @Override
+    public String name( int u ) {
+        int start = intAt( GraphSnapshot.NAME_OFFSETS, u );
+        byte[] bytes =
+                new byte[ intAt( GraphSnapshot.NAME_OFFSETS, u + 1 ) - start ];
+        long names = this.at[ GraphSnapshot.NAMES ] + start;
+        for ( int i = 0; i < bytes.length; i++ ) {
+            bytes[ i ] = this.region.get( names + i );
+        }
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    @Override
+    public long firstArc( int u ) {
+        return intAt( GraphSnapshot.OFFSETS, u );
+    }
+
+    @Override
+    public long endArc( int u ) {
+        return intAt( GraphSnapshot.OFFSETS, u + 1L );
+    }
+
+    @Override
+    public int head( long arc ) {
+        return intAt( GraphSnapshot.HEADS, arc );
+    }
+
+    @Override
+    public long mate( long arc ) {
+        return intAt( GraphSnapshot.MATES, arc );
+    }
+
+    @Override
+    public long residual( long arc ) {
+        int e = intAt( GraphSnapshot.ARC_EDGES, arc );
+        long flow = flow( e );
+        return capacity( e ) +
+               ( intAt( GraphSnapshot.EDGE_ARCS, e ) == arc ? -flow : flow );
+    }
+
+    @Override
+    public long arcFlow( long arc ) {
+        int e = intAt( GraphSnapshot.ARC_EDGES, arc );
+        return intAt( GraphSnapshot.EDGE_ARCS, e ) == arc ?
+               flow( e ) : -flow( e );
+    }
+
+    @Override
+    public void push( long arc, long delta ) {
+        int e = intAt( GraphSnapshot.ARC_EDGES, arc );
+        long at = (long) Long.BYTES * e;
+        this.flows.putLong( at, this.flows.getLong( at ) +
+                ( intAt( GraphSnapshot.EDGE_ARCS, e ) == arc ?
+                  delta : -delta ) );
+    }
+
+    /**
+     * @param edge an edge id
+     * @return the capacity of the edge, in either direction
+     */
+    public long capacity( int edge ) {
+        return this.region.getLong( this.at[ GraphSnapshot.CAPACITIES ] +
+                                    (long) Long.BYTES * edge );
+    }
+
+    /**
+     * @param edge an edge id
+     * @return the flow from the edge's first node to its second,
+     * negative if it runs the other way
+     */
+    public long flow( int edge ) {
+        return this.flows.getLong( (long) Long.BYTES * edge );
+    }
+
+    /**
+     * @param section a section index from {@link GraphSnapshot#layout}
+     * @param i an index into the section
+     * @return the int there
+     */
+    private int intAt( int section, long i ) {
+        return this.region.getInt( this.at[ section ] + Integer.BYTES * i );
+    }
+}
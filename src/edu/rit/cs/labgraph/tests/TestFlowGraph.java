@@ -1,18 +1,43 @@
 package edu.rit.cs.labgraph.tests;
 
+import edu.rit.cs.labgraph.CsrGraph;
 import edu.rit.cs.labgraph.Edge;
 import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphCache;
+import edu.rit.cs.labgraph.GraphException;
+import edu.rit.cs.labgraph.GraphReduction;
+import edu.rit.cs.labgraph.NodeOrder;
+import edu.rit.cs.labgraph.OffHeapGraph;
+import edu.rit.cs.labgraph.ParallelBfs;
+import edu.rit.cs.labgraph.PathSearch;
+import edu.rit.cs.labgraph.ResidualNetwork;
+import edu.rit.cs.labgraph.SnapshotNetwork;
 import static edu.rit.cs.labgraph.FlowGraph.CAP;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -164,4 +189,745 @@ public class TestFlowGraph {
         this.checkBFSResult( A, B, C, D );
     }
 
+    @Test
+    public void t15_pathSearch() {
+        this.eAB.changeFlow( A, B, CAP - 1 );
+        this.eAC.changeFlow( A, C, CAP );
+        PathSearch search = new PathSearch( this.graph );
+        assertTrue( search.find() );
+        assertEquals( 2, search.getLength() );
+        assertEquals( 1L, search.getBottleneck() );
+        CsrGraph csr = this.graph.getCsr();
+        int[] arcs = search.getArcs();
+        assertEquals( A, csr.name( csr.tail( arcs[ 0 ] ) ) );
+        assertEquals( B, csr.name( csr.head( arcs[ 0 ] ) ) );
+        assertEquals( D, csr.name( csr.head( arcs[ 1 ] ) ) );
+        assertEquals( 1L, search.augment() );
+        assertEquals( CAP, this.eAB.getFlow( A, B ) );
+        assertEquals( -1L, this.eDB.getFlow( D, B ) );
+        assertFalse( search.find() );
+        assertEquals( 0, search.getLength() );
+        assertEquals( 0L, search.augment() );
+    }
+
+    @TempDir
+    public Path tempDir;
+
+    private FlowGraph readGraph( String text )
+            throws IOException, GraphException {
+        Path file = this.tempDir.resolve( "graph.txt" );
+        Files.writeString( file, text );
+        return new FlowGraph( file.toString(), A, D );
+    }
+
+    @Test
+    public void t20_readFile() throws IOException, GraphException {
+        FlowGraph g = readGraph(
+                "A B 4\nA C 4\r\n\nB\tC  4\nD B 4\nD C 4" );
+        assertEquals( g.getEdge( A, B ).getCapacity(), CAP );
+        assertEquals( g.getEdgesAt( C ).size(), 3 );
+        assertEquals( g.getAvailableFlow( B, C ), CAP );
+        assertTrue( g.doBFS().isPresent() );
+    }
+
+    @Test
+    public void t21_badLine() {
+        GraphException ge = assertThrows( GraphException.class,
+                () -> readGraph( "A B 4\nA C four\nD C 4\n" ) );
+        assertTrue( ge.getMessage().endsWith(
+                "line 2, byte 10: expected a capacity" ) );
+    }
+
+    @Test
+    public void t22_missingSink() {
+        assertThrows( GraphException.class,
+                      () -> readGraph( "A B 4\nA C 4\n" ) );
+    }
+
+    @Test
+    public void t23_snapshot() throws IOException, GraphException {
+        Path file = this.tempDir.resolve( "graph.snap" );
+        this.graph.writeSnapshot( file.toString() );
+        FlowGraph g = new FlowGraph( file.toString(), A, D );
+        for ( String node: allNodes ) {
+            assertEquals( g.getEdgesAt( node ).toString(),
+                          this.graph.getEdgesAt( node ).toString() );
+        }
+        assertEquals( g.doBFS(), this.graph.doBFS() );
+    }
+
+    @Test
+    public void t24_parallelEdges() throws IOException, GraphException {
+        FlowGraph g = readGraph( "A B 1\nA B 2\nB D 5\n" );
+        PathSearch search = new PathSearch( g );
+        assertTrue( search.find() );
+        assertEquals( 1L, search.augment() );
+        assertTrue( search.find() );
+        assertEquals( 2L, search.augment() );
+        assertFalse( search.find() );
+    }
+
+    @Test
+    public void t25_setCapacity() throws GraphException {
+        this.eAB.changeFlow( A, B, CAP );
+        this.eDB.changeFlow( B, D, CAP );
+        this.eAC.changeFlow( A, C, CAP );
+        this.eDC.changeFlow( C, D, CAP );
+        this.graph.setCapacity( D, B, 1 );
+        // The cut flow cannot reach D another way, so it goes back to A.
+        assertEquals( 1L, this.eAB.getFlow( A, B ) );
+        assertEquals( 1L, this.eDB.getFlow( B, D ) );
+        assertEquals( 0L, this.eBC.getFlow( B, C ) );
+        assertEquals( 1L, this.eDB.getCapacity() );
+        assertEquals( CAP + 1, this.graph.getFlowValue() );
+        assertThrows( GraphException.class,
+                      () -> this.graph.setCapacity( A, D, 1 ) );
+        assertThrows( GraphException.class,
+                      () -> this.graph.setCapacity( A, B, -1 ) );
+    }
+
+    @Test
+    public void t26_setCapacityReroute() throws GraphException {
+        this.eAB.changeFlow( A, B, CAP );
+        this.eDB.changeFlow( B, D, CAP );
+        this.graph.setCapacity( D, B, 1 );
+        // B can still reach D through C, so the flow is kept.
+        assertEquals( CAP, this.graph.getFlowValue() );
+        assertEquals( 1L, this.eDB.getFlow( B, D ) );
+        assertEquals( CAP - 1, this.eBC.getFlow( B, C ) );
+        assertEquals( CAP - 1, this.eDC.getFlow( C, D ) );
+    }
+
+    @Test
+    public void t27_removeEdge() throws GraphException {
+        this.eAB.changeFlow( A, B, CAP );
+        this.eDB.changeFlow( B, D, CAP );
+        this.eAC.changeFlow( A, C, CAP );
+        this.eDC.changeFlow( C, D, CAP );
+        this.graph.removeEdge( C, D );
+        assertEquals( CAP, this.graph.getFlowValue() );
+        assertEquals( 0L, this.eAC.getFlow( A, C ) );
+        assertEquals( 0L, this.eDC.getFlow( C, D ) );
+        assertEquals( Set.of( eDB ), this.graph.getEdgesAt( D ) );
+        assertEquals( null, this.graph.getEdge( D, C ) );
+        assertThrows( GraphException.class,
+                      () -> this.graph.removeEdge( C, D ) );
+    }
+
+    @Test
+    public void t28_addEdge() throws GraphException {
+        this.eAB.changeFlow( A, B, CAP );
+        this.eDB.changeFlow( B, D, CAP );
+        Edge eAD = this.graph.addEdge( A, D, CAP );
+        Edge eCE = this.graph.addEdge( C, "E", 1 );
+        assertEquals( eAD, this.graph.getEdge( D, A ) );
+        assertEquals( Set.of( eAB, eAC, eAD ), this.graph.getEdgesAt( A ) );
+        assertEquals( Set.of( eCE ), this.graph.getEdgesAt( "E" ) );
+        assertEquals( CAP, this.eDB.getFlow( B, D ) );
+        assertEquals( CAP, this.graph.getFlowValue() );
+        assertEquals( List.of( A, D ), this.graph.doBFS().get() );
+    }
+
+    @Test
+    public void t29_showAndWriteFlows() throws GraphException, IOException {
+        this.eAB.changeFlow( A, B, CAP );
+        this.eDB.changeFlow( B, D, CAP );
+        this.graph.removeEdge( B, C );
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter( text );
+        this.graph.show( out, true );
+        out.flush();
+        StringBuilder expected = new StringBuilder();
+        for ( String node: allNodes ) {
+            expected.append( node ).append( ": " )
+                    .append( this.graph.getEdgesAt( node ) )
+                    .append( System.lineSeparator() );
+        }
+        assertEquals( expected.toString(), text.toString() );
+
+        Path file = this.tempDir.resolve( "flows.txt" );
+        this.graph.writeFlows( file.toString() );
+        assertEquals( List.of( "A B 4 4", "A C 4 0", "D B 4 -4", "D C 4 0" ),
+                      Files.readAllLines( file ) );
+    }
+
+    private void checkPath( CsrGraph csr, PathSearch search, long threshold ) {
+        int[] arcs = search.getArcs();
+        long least = Long.MAX_VALUE;
+        int at = this.graph.getSourceId();
+        for ( int i = 0; i < search.getLength(); i++ ) {
+            assertEquals( at, csr.tail( arcs[ i ] ) );
+            assertTrue( csr.residual( arcs[ i ] ) >= threshold );
+            least = Math.min( least, csr.residual( arcs[ i ] ) );
+            at = csr.head( arcs[ i ] );
+        }
+        assertEquals( this.graph.getSinkId(), at );
+        assertEquals( least, search.getBottleneck() );
+    }
+
+    @Test
+    public void t30_bidirectionalSearch() throws IOException, GraphException {
+        this.eAB.changeFlow( A, B, CAP - 1 );
+        this.eAC.changeFlow( A, C, CAP );
+        PathSearch both = new PathSearch( this.graph, true );
+        assertTrue( both.find() );
+        checkPath( this.graph.getCsr(), both, 1 );
+        assertEquals( 1L, both.augment() );
+        assertFalse( both.find() );
+
+        // Both kinds of search find paths of the same length, all the way
+        // to the max flow.
+        Random random = new Random( 17 );
+        for ( int round = 0; round < 20; round++ ) {
+            StringBuilder text = new StringBuilder();
+            for ( int i = 0; i < 120; i++ ) {
+                text.append( 'n' ).append( random.nextInt( 40 ) )
+                    .append( " n" ).append( random.nextInt( 40 ) )
+                    .append( ' ' ).append( 1 + random.nextInt( 50 ) )
+                    .append( '\n' );
+            }
+            text.append( "A n0 100\nn1 D 100\nA n2 100\nn3 D 100\n" );
+            this.graph = readGraph( text.toString() );
+            CsrGraph csr = this.graph.getCsr();
+            PathSearch forward = new PathSearch( this.graph );
+            both = new PathSearch( this.graph, true );
+            long threshold = 1 + random.nextInt( 20 );
+            while ( forward.find( threshold ) ) {
+                assertTrue( both.find( threshold ) );
+                assertEquals( forward.getLength(), both.getLength() );
+                checkPath( csr, both, threshold );
+                both.augment();
+            }
+            assertFalse( both.find( threshold ) );
+        }
+
+        // On a graph that fans out, the sink's side stays small.
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 40; i++ ) {
+            text.append( "A h" ).append( i ).append( " 5\n" );
+            for ( int j = 0; j < 40; j++ ) {
+                text.append( 'h' ).append( i ).append( " l" ).append( i )
+                    .append( '_' ).append( j ).append( " 1\n" );
+            }
+        }
+        text.append( "l7_7 D 1\n" );
+        this.graph = readGraph( text.toString() );
+        PathSearch forward = new PathSearch( this.graph );
+        both = new PathSearch( this.graph, true );
+        assertTrue( forward.find() );
+        assertTrue( both.find() );
+        assertEquals( 3, both.getLength() );
+        assertTrue( both.getNodesVisited() * 10 < forward.getNodesVisited() );
+    }
+
+    /**
+     * @param csr a graph
+     * @param root where to search from
+     * @param backward true to search for the nodes that can reach root
+     * @return each node's residual distance from the root, or -1
+     */
+    private static int[] distances( CsrGraph csr, int root,
+                                    boolean backward ) {
+        int[] result = new int[ csr.nodeCount() ];
+        Arrays.fill( result, -1 );
+        int[] queue = new int[ csr.nodeCount() ];
+        int head = 0;
+        int tail = 0;
+        queue[ tail++ ] = root;
+        result[ root ] = 0;
+        while ( head < tail ) {
+            int u = queue[ head++ ];
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int v = csr.head( a );
+                if ( result[ v ] < 0 &&
+                     csr.residual( backward ? csr.mate( a ) : a ) > 0 ) {
+                    result[ v ] = result[ u ] + 1;
+                    queue[ tail++ ] = v;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void t31_parallelBfs() {
+        // Wide enough that its levels are split among the workers.
+        Random random = new Random( 18 );
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        int n = 30000;
+        for ( int u = 0; u < n; u++ ) {
+            builder.newNode( "n" + u );
+        }
+        for ( int i = 0; i < 4 * n; i++ ) {
+            builder.addEdge( random.nextInt( n ), random.nextInt( n ),
+                             1 + random.nextInt( 3 ) );
+        }
+        CsrGraph csr = builder.build();
+        for ( int a = 0; a < csr.arcCount(); a += 3 ) {
+            csr.push( a, csr.residual( a ) );
+        }
+        try ( ParallelBfs bfs = new ParallelBfs( csr, 3 ) ) {
+            for ( boolean backward: List.of( false, true ) ) {
+                int[] expected = distances( csr, 0, backward );
+                int count = bfs.search( 0, backward );
+                BitSet reached = bfs.getReached();
+                assertEquals( count, reached.cardinality() );
+                assertEquals( count, bfs.getReachedCount() );
+                for ( int u = 0; u < n; u++ ) {
+                    assertEquals( expected[ u ], bfs.distance( u ) );
+                    assertEquals( expected[ u ] >= 0, reached.get( u ) );
+                }
+                int far = 0;
+                for ( int u = 0; u < n; u++ ) {
+                    if ( expected[ u ] > expected[ far ] ) {
+                        far = u;
+                    }
+                }
+                int[] arcs = bfs.pathTo( far );
+                assertEquals( expected[ far ], arcs.length );
+                int at = backward ? far : 0;
+                for ( int a: arcs ) {
+                    assertEquals( at, csr.tail( a ) );
+                    assertTrue( csr.residual( a ) > 0 );
+                    at = csr.head( a );
+                }
+                assertEquals( backward ? 0 : far, at );
+            }
+
+            // Stopping at a target leaves the levels past it unexplored.
+            int target = csr.head( csr.firstArc( 0 ) );
+            bfs.search( 0, target, false, a -> true );
+            assertEquals( 1, bfs.distance( target ) );
+            assertTrue( bfs.getReachedCount() < n );
+            for ( int u = 0; u < n; u++ ) {
+                assertTrue( bfs.distance( u ) <= 1 );
+            }
+            assertTrue( bfs.getNodesVisited() > 0 );
+        }
+        assertThrows( IllegalArgumentException.class,
+                      () -> new ParallelBfs( csr, 0 ) );
+    }
+
+    /**
+     * Push flow along shortest paths until there are none left.
+     * @param graph the graph to solve
+     * @return the value of the flow added
+     */
+    private static long solve( FlowGraph graph ) {
+        PathSearch search = new PathSearch( graph );
+        long total = 0;
+        while ( search.find() ) {
+            total += search.augment();
+        }
+        return total;
+    }
+
+    @Test
+    public void t32_reduction() throws IOException, GraphException {
+        // A chain, a parallel pair, a dead end, an island and a loop.
+        this.graph = readGraph( "A B 5\nB C 3\nC D 7\nA E 2\nA E 2\n" +
+                                "E D 9\nE F 4\nF G 4\nX Y 1\nD D 3\n" );
+        GraphReduction reduction = GraphReduction.reduce( this.graph );
+        CsrGraph small = reduction.getReduced().getCsr();
+        assertEquals( 2, small.nodeCount() );
+        assertEquals( 1, small.edgeCount() );
+        assertEquals( 7, reduction.getNodesRemoved() );
+        assertEquals( 9, reduction.getEdgesRemoved() );
+        assertEquals( 7L, solve( reduction.getReduced() ) );
+        reduction.expand();
+        assertEquals( 7L, this.graph.getFlowValue() );
+        assertEquals( 3L, this.graph.getEdge( B, C ).getFlow( B, C ) );
+        assertEquals( 3L, this.graph.getEdge( C, D ).getFlow( C, D ) );
+        assertEquals( 0L, this.graph.getEdge( "E", "F" ).getFlow( "E", "F" ) );
+        assertEquals( 0L, this.graph.getEdge( "X", "Y" ).getFlow( "X", "Y" ) );
+        assertFalse( new PathSearch( this.graph ).find() );
+
+        // The flow carried back is a maximum flow of the original graph.
+        Random random = new Random( 20 );
+        for ( int round = 0; round < 30; round++ ) {
+            StringBuilder text = new StringBuilder();
+            for ( int i = 0; i < 80; i++ ) {
+                text.append( 'n' ).append( random.nextInt( 50 ) )
+                    .append( " n" ).append( random.nextInt( 50 ) )
+                    .append( ' ' ).append( random.nextInt( 30 ) )
+                    .append( '\n' );
+            }
+            text.append( "A n0 100\nn1 D 100\n" );
+            FlowGraph plain = readGraph( text.toString() );
+            long expected = solve( plain );
+            this.graph = readGraph( text.toString() );
+            reduction = GraphReduction.reduce( this.graph );
+            assertTrue( reduction.getReduced().getCsr().nodeCount() <=
+                        this.graph.getCsr().nodeCount() );
+            assertEquals( expected, solve( reduction.getReduced() ) );
+            reduction.expand();
+            assertEquals( expected, this.graph.getFlowValue() );
+            CsrGraph csr = this.graph.getCsr();
+            long[] net = new long[ csr.nodeCount() ];
+            for ( int e = 0; e < csr.edgeCount(); e++ ) {
+                int a = csr.forwardArc( e );
+                assertTrue( Math.abs( csr.flow( e ) ) <= csr.capacity( e ) );
+                net[ csr.tail( a ) ] += csr.flow( e );
+                net[ csr.head( a ) ] -= csr.flow( e );
+            }
+            for ( int u = 0; u < csr.nodeCount(); u++ ) {
+                if ( u != this.graph.getSourceId() &&
+                     u != this.graph.getSinkId() ) {
+                    assertEquals( 0L, net[ u ] );
+                }
+            }
+            assertFalse( new PathSearch( this.graph ).find() );
+        }
+    }
+
+    @Test
+    public void t33_nodeOrder() throws IOException, GraphException {
+        Random random = new Random( 22 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 400; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 150 ) )
+                .append( " n" ).append( random.nextInt( 150 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 30 ) )
+                .append( '\n' );
+        }
+        text.append( "A n0 100\nn1 D 100\nX Y 1\n" );
+        long max = solve( readGraph( text.toString() ) );
+        this.graph = readGraph( text.toString() );
+        this.graph.removeEdge( "X", "Y" );
+        PathSearch search = new PathSearch( this.graph );
+        assertTrue( search.find() );
+        search.augment();
+        CsrGraph csr = this.graph.getCsr();
+        for ( NodeOrder order: NodeOrder.values() ) {
+            int[] ids = order.order( this.graph );
+            assertEquals( csr.nodeCount(),
+                          Arrays.stream( ids ).distinct().count() );
+            FlowGraph copy = order.apply( this.graph );
+            CsrGraph other = copy.getCsr();
+            assertEquals( A, copy.getSource() );
+            assertEquals( D, copy.getSink() );
+            for ( int u = 0; u < csr.nodeCount(); u++ ) {
+                assertEquals( csr.name( ids[ u ] ), other.name( u ) );
+            }
+            for ( int e = 0; e < csr.edgeCount(); e++ ) {
+                int a = csr.forwardArc( e );
+                int b = other.forwardArc( e );
+                assertEquals( csr.name( csr.tail( a ) ),
+                              other.name( other.tail( b ) ) );
+                assertEquals( csr.name( csr.head( a ) ),
+                              other.name( other.head( b ) ) );
+                assertEquals( csr.capacity( e ), other.capacity( e ) );
+                assertEquals( csr.flow( e ), other.flow( e ) );
+                assertEquals( csr.isRemoved( e ), other.isRemoved( e ) );
+            }
+            assertEquals( this.graph.getFlowValue(), copy.getFlowValue() );
+            solve( copy );
+            assertEquals( max, copy.getFlowValue() );
+        }
+        assertEquals( this.graph.getSourceId(),
+                      NodeOrder.BFS.order( this.graph )[ 0 ] );
+        int[] byDegree = NodeOrder.DEGREE.order( this.graph );
+        for ( int i = 1; i < byDegree.length; i++ ) {
+            assertTrue( csr.endArc( byDegree[ i - 1 ] ) -
+                        csr.firstArc( byDegree[ i - 1 ] ) >=
+                        csr.endArc( byDegree[ i ] ) -
+                        csr.firstArc( byDegree[ i ] ) );
+        }
+        assertEquals( NodeOrder.REVERSE_CUTHILL_MCKEE,
+                      NodeOrder.named( "rcm" ) );
+        assertThrows( GraphException.class, () -> NodeOrder.named( "x" ) );
+
+        // On a grid numbered at random, neighbours end up close.
+        StringBuilder grid = new StringBuilder();
+        List< Integer > labels = new ArrayList<>();
+        for ( int i = 0; i < 900; i++ ) {
+            labels.add( i );
+        }
+        Collections.shuffle( labels, random );
+        for ( int r = 0; r < 30; r++ ) {
+            for ( int c = 0; c < 30; c++ ) {
+                String here = "g" + labels.get( 30 * r + c );
+                if ( c < 29 ) {
+                    grid.append( here ).append( " g" )
+                        .append( labels.get( 30 * r + c + 1 ) )
+                        .append( " 1\n" );
+                }
+                if ( r < 29 ) {
+                    grid.append( here ).append( " g" )
+                        .append( labels.get( 30 * r + c + 30 ) )
+                        .append( " 1\n" );
+                }
+            }
+        }
+        grid.append( "A g0 1\ng1 D 1\n" );
+        this.graph = readGraph( grid.toString() );
+        assertTrue( bandwidth( NodeOrder.REVERSE_CUTHILL_MCKEE
+                                       .apply( this.graph ) ) <= 64 );
+        assertTrue( bandwidth( this.graph ) > 300 );
+    }
+
+    /**
+     * @param graph a graph
+     * @return the greatest difference between the ids of two neighbours
+     */
+    private static int bandwidth( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        int widest = 0;
+        for ( int u = 0; u < csr.nodeCount(); u++ ) {
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                widest = Math.max( widest, Math.abs( csr.head( a ) - u ) );
+            }
+        }
+        return widest;
+    }
+
+    @Test
+    public void t34_offHeap() throws IOException, GraphException {
+        Random random = new Random( 23 );
+        StringBuilder text = new StringBuilder( "A B 3\nB D 2\nA D 1\n" );
+        for ( int i = 0; i < 300; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 100 ) )
+                .append( " n" ).append( random.nextInt( 100 ) )
+                .append( ' ' ).append( random.nextInt( 50 ) )
+                .append( '\n' );
+        }
+        this.graph = readGraph( text.toString() );
+        CsrGraph csr = this.graph.getCsr();
+        Path file = this.tempDir.resolve( "graph.bin" );
+        try ( OffHeapGraph offHeap = OffHeapGraph.read(
+                this.tempDir.resolve( "graph.txt" ), file ) ) {
+            assertEquals( csr.nodeCount(), offHeap.nodeCount() );
+            assertEquals( csr.edgeCount(), offHeap.edgeCount() );
+            ResidualNetwork network = csr.asNetwork();
+            for ( int u = 0; u < csr.nodeCount(); u++ ) {
+                assertEquals( csr.name( u ), offHeap.name( u ) );
+                assertEquals( u, offHeap.id( csr.name( u ) ) );
+                assertEquals( network.firstArc( u ), offHeap.firstArc( u ) );
+                assertEquals( network.endArc( u ), offHeap.endArc( u ) );
+            }
+            for ( long a = 0; a < offHeap.arcCount(); a++ ) {
+                assertEquals( network.head( a ), offHeap.head( a ) );
+                assertEquals( network.mate( a ), offHeap.mate( a ) );
+                assertEquals( network.tail( a ), offHeap.tail( a ) );
+                assertEquals( network.residual( a ), offHeap.residual( a ) );
+            }
+            assertEquals( -1, offHeap.id( "nowhere" ) );
+            offHeap.push( offHeap.forwardArc( 0 ), 2 );
+            assertEquals( 2L, offHeap.flow( 0 ) );
+            assertEquals( 5L, offHeap.residual(
+                    offHeap.mate( offHeap.forwardArc( 0 ) ) ) );
+        }
+        assertFalse( Files.exists( this.tempDir.resolve( "graph.bin.edges" ) ) );
+
+        try ( OffHeapGraph again = OffHeapGraph.open( file ) ) {
+            assertEquals( 2L, again.flow( 0 ) );
+            assertEquals( 3L, again.capacity( 0 ) );
+            again.clearFlow();
+            assertEquals( 0L, again.flow( 0 ) );
+        }
+        assertThrows( IOException.class, () -> OffHeapGraph.open(
+                this.tempDir.resolve( "graph.txt" ) ) );
+    }
+
+    @Test
+    public void t35_graphCache() throws IOException, GraphException {
+        Path one = this.tempDir.resolve( "one.txt" );
+        Path two = this.tempDir.resolve( "two.txt" );
+        Files.writeString( one, "A B 1\nB D 2\n" );
+        Files.writeString( two, "A C 1\nC D 2\nA D 3\n" );
+        CsrGraph graph = new FlowGraph( one.toString(), A, D ).getCsr();
+        GraphCache cache = new GraphCache( GraphCache.footprint( graph ), 1 );
+
+        CsrGraph first = cache.get( one );
+        assertEquals( 3, first.nodeCount() );
+        assertTrue( first == cache.get( one ) );
+        assertTrue( first == cache.get(
+                this.tempDir.resolve( "x/../one.txt" ) ) );
+        assertEquals( 2L, cache.getHits() );
+        assertEquals( 1L, cache.getMisses() );
+        assertEquals( GraphCache.footprint( first ), cache.getBytes() );
+
+        // Only one graph fits, so loading another evicts the first.
+        assertEquals( 3, cache.get( two ).edgeCount() );
+        assertEquals( 1, cache.size() );
+        assertEquals( 1L, cache.getEvictions() );
+        assertTrue( first != cache.get( one ) );
+        assertEquals( 3L, cache.getMisses() );
+
+        // A changed file is read again.
+        CsrGraph before = cache.get( one );
+        Files.writeString( one, "A B 1\nB D 2\nB E 4\n" );
+        Files.setLastModifiedTime( one, FileTime.fromMillis(
+                Files.getLastModifiedTime( one ).toMillis() + 2000 ) );
+        CsrGraph after = cache.get( one );
+        assertTrue( before != after );
+        assertEquals( 4, after.nodeCount() );
+
+        assertThrows( NoSuchFileException.class, () -> cache.get(
+                this.tempDir.resolve( "missing.txt" ) ) );
+        Files.writeString( two, "A C\n" );
+        assertThrows( GraphException.class, () -> cache.get( two ) );
+        assertFalse( cache.size() > 1 );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0L, cache.getBytes() );
+    }
+
+    @Test
+    public void t36_costs() throws IOException, GraphException {
+        Path file = this.tempDir.resolve( "costs.txt" );
+        Files.writeString( file, "A B 4 2\nB D 4\t3\nA C 4\nC D 4 1 \n" );
+        FlowGraph graph = new FlowGraph( file.toString(), A, D );
+        assertTrue( graph.getCsr().hasCosts() );
+        assertEquals( 2L, graph.getEdge( A, B ).getCost() );
+        assertEquals( 3L, graph.getEdge( D, B ).getCost() );
+        assertEquals( 0L, graph.getEdge( A, C ).getCost() );
+        graph.getEdge( A, B ).changeFlow( A, B, 3 );
+        graph.getEdge( B, D ).changeFlow( B, D, 3 );
+        graph.getEdge( A, C ).changeFlow( A, C, 1 );
+        graph.getEdge( C, D ).changeFlow( C, D, 1 );
+        assertEquals( 3 * 2 + 3 * 3 + 1L, graph.getFlowCost() );
+
+        Path flows = this.tempDir.resolve( "flows.txt" );
+        graph.writeFlows( flows.toString() );
+        assertEquals( List.of( "A B 4 2 3", "B D 4 3 3", "A C 4 0 1",
+                               "C D 4 1 1" ),
+                      Files.readAllLines( flows ) );
+
+        // Costs survive a snapshot, and an added edge may have one.
+        Path snapshot = this.tempDir.resolve( "costs.snap" );
+        graph.writeSnapshot( snapshot.toString() );
+        FlowGraph loaded = new FlowGraph( snapshot.toString(), A, D );
+        assertEquals( 3L, loaded.getEdge( B, D ).getCost() );
+        assertEquals( 7L, loaded.addEdge( A, D, 1, 7 ).getCost() );
+        assertEquals( 0L, loaded.getFlowCost() );
+        assertThrows( GraphException.class,
+                      () -> loaded.addEdge( A, D, 1, -1 ) );
+
+        // Without a cost column, every edge is free.
+        assertFalse( this.graph.getCsr().hasCosts() );
+        assertEquals( 0L, this.eAB.getCost() );
+        this.eAB.changeFlow( A, B, CAP );
+        assertEquals( 0L, this.graph.getFlowCost() );
+
+        for ( String bad: List.of( "A B 4 x\n", "A B 4 -1\n", "A B 4 1 1\n",
+                                   "A B 4 99999999999999999999\n" ) ) {
+            Files.writeString( file, bad );
+            assertThrows( GraphException.class,
+                          () -> new FlowGraph( file.toString(), A, B ) );
+        }
+    }
+
+    @Test
+    public void t37_chunkedParse() throws IOException, GraphException {
+        // Past 16 MiB, four threads split the file into four chunks, each
+        // with names first seen in it and edges with and without costs.
+        Random random = new Random( 37 );
+        StringBuilder text = new StringBuilder();
+        int lines = 0;
+        while ( text.length() <= 17 << 20 ) {
+            text.append( 'n' ).append( random.nextInt( 200000 ) )
+                .append( " n" ).append( random.nextInt( 200000 ) )
+                .append( ' ' ).append( random.nextInt( 1000 ) );
+            if ( random.nextBoolean() ) {
+                text.append( '\t' ).append( random.nextInt( 50 ) );
+            }
+            text.append( '\n' );
+            lines++;
+        }
+        Path file = this.tempDir.resolve( "large.txt" );
+        Files.writeString( file, text );
+        CsrGraph one = new FlowGraph( file.toString(), "n0", "n1", 1 )
+                .getCsr();
+        CsrGraph four = new FlowGraph( file.toString(), "n0", "n1", 4 )
+                .getCsr();
+        assertEquals( lines, four.edgeCount() );
+        assertEquals( one.nodeCount(), four.nodeCount() );
+        for ( int u = 0; u < one.nodeCount(); u++ ) {
+            assertEquals( one.name( u ), four.name( u ) );
+        }
+        for ( int e = 0; e < one.edgeCount(); e++ ) {
+            int a = one.forwardArc( e );
+            int b = four.forwardArc( e );
+            assertEquals( one.tail( a ), four.tail( b ) );
+            assertEquals( one.head( a ), four.head( b ) );
+            assertEquals( one.capacity( e ), four.capacity( e ) );
+            assertEquals( one.cost( e ), four.cost( e ) );
+        }
+
+        // An error in a later chunk names the line in the whole file.
+        int at = text.length() * 3 / 4;
+        int start = text.lastIndexOf( "\n", at ) + 1;
+        long line = text.chars().limit( start ).filter( c -> c == '\n' )
+                        .count() + 1;
+        text.insert( start, "n0 n1 x\n" );
+        Files.writeString( file, text );
+        GraphException serial = assertThrows( GraphException.class,
+                () -> new FlowGraph( file.toString(), "n0", "n1", 1 ) );
+        GraphException chunked = assertThrows( GraphException.class,
+                () -> new FlowGraph( file.toString(), "n0", "n1", 4 ) );
+        assertTrue( serial.getMessage().contains(
+                "line " + line + ", byte " + ( start + 6 ) + ":" ),
+                    serial.getMessage() );
+        assertEquals( serial.getMessage(), chunked.getMessage() );
+    }
+
+    @Test
+    public void t38_snapshotNetwork() throws IOException, GraphException {
+        Random random = new Random( 38 );
+        StringBuilder text = new StringBuilder( "A B 3\nB D 2\nA D 1\n" );
+        for ( int i = 0; i < 300; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 100 ) )
+                .append( " n" ).append( random.nextInt( 100 ) )
+                .append( ' ' ).append( random.nextInt( 50 ) )
+                .append( '\n' );
+        }
+        this.graph = readGraph( text.toString() );
+        CsrGraph csr = this.graph.getCsr();
+        Path file = this.tempDir.resolve( "graph.snap" );
+        this.graph.writeSnapshot( file.toString() );
+        assertTrue( SnapshotNetwork.isSnapshot( file ) );
+        assertFalse( SnapshotNetwork.isSnapshot(
+                this.tempDir.resolve( "graph.txt" ) ) );
+
+        SnapshotNetwork mapped = SnapshotNetwork.open( file );
+        assertFalse( mapped.hasCosts() );
+        assertEquals( csr.nodeCount(), mapped.nodeCount() );
+        assertEquals( csr.edgeCount(), mapped.edgeCount() );
+        ResidualNetwork network = csr.asNetwork();
+        for ( int u = 0; u < csr.nodeCount(); u++ ) {
+            assertEquals( csr.name( u ), mapped.name( u ) );
+            assertEquals( u, mapped.id( csr.name( u ) ) );
+            assertEquals( network.firstArc( u ), mapped.firstArc( u ) );
+            assertEquals( network.endArc( u ), mapped.endArc( u ) );
+        }
+        for ( long a = 0; a < mapped.arcCount(); a++ ) {
+            assertEquals( network.head( a ), mapped.head( a ) );
+            assertEquals( network.mate( a ), mapped.mate( a ) );
+            assertEquals( network.residual( a ), mapped.residual( a ) );
+        }
+        assertEquals( -1, mapped.id( "nowhere" ) );
+
+        // Flow pushed either way along an edge shows up as it does in
+        // the CSR graph, whose arrays are left alone.
+        for ( long a = 0; a < mapped.arcCount(); a += 7 ) {
+            long delta = Math.min( 2, mapped.residual( a ) );
+            mapped.push( a, delta );
+            network.push( a, delta );
+        }
+        for ( long a = 0; a < mapped.arcCount(); a++ ) {
+            assertEquals( network.residual( a ), mapped.residual( a ) );
+            assertEquals( network.arcFlow( a ), mapped.arcFlow( a ) );
+        }
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            assertEquals( csr.capacity( e ), mapped.capacity( e ) );
+            assertEquals( csr.flow( e ), mapped.flow( e ) );
+        }
+        assertEquals( 0L, SnapshotNetwork.open( file ).flow( 0 ) );
+
+        Files.write( file, Arrays.copyOf( Files.readAllBytes( file ),
+                                          (int) Files.size( file ) - 1 ) );
+        assertThrows( GraphException.class,
+                      () -> SnapshotNetwork.open( file ) );
+    }
 }
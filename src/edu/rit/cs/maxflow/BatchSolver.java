@@ -0,0 +1,428 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs many max flow queries against one loaded graph. Each query names
+ * its own source and sink, and may change the capacities of a few edges
+ * for that query only.
+ * <p>
+ * The graph is read once. Every query works in its own view of it, made
+ * by {@link CsrGraph#shareTopology()}: the views share the graph's nodes,
+ * arcs and capacities, and each one only allocates its own residual
+ * array. A query that changes capacities gets its own copy of the
+ * capacity array as well, so the other queries never see the change. The
+ * queries run at the same time on a fixed pool of threads.
+ * <p>
+ * The graph's own edges must not be changed while queries are running.
+ *
+ * @author RIT CS
+ */
+public final class BatchSolver implements AutoCloseable {
+
+    /**
+     * The graph every query runs against
+     */
+    private final FlowGraph graph;
+
+    /**
+     * Makes the solver each query is run with
+     */
+    private final Supplier< MaxFlowSolver > solvers;
+
+    /**
+     * The threads the queries run on
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Create a batch solver that uses Dinic's algorithm.
+     * @param graph the graph to query; its source, sink and flow are
+     *              ignored
+     * @param threads how many queries to run at once
+     */
+    public BatchSolver( FlowGraph graph, int threads ) {
+        this( graph, threads, DinicSolver::new );
+    }
+
+    /**
+     * Create a batch solver.
+     * @param graph the graph to query; its source, sink and flow are
+     *              ignored
+     * @param threads how many queries to run at once
+     * @param solvers makes the solver each query is run with
+     */
+    public BatchSolver( FlowGraph graph, int threads,
+                        Supplier< MaxFlowSolver > solvers ) {
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "threads must be positive" );
+        }
+        this.graph = graph;
+        this.solvers = solvers;
+        this.pool = Executors.newFixedThreadPool( threads );
+    }
+
+    /**
+     * Run a batch of queries and wait for all of them.
+     * @param queries the queries to run
+     * @return the results, in the same order as the queries
+     * @throws GraphException if a query names a node or edge that is not
+     *                        in the graph, or a negative capacity, in
+     *                        which case no query is run
+     */
+    public List< Result > solve( List< Query > queries )
+            throws GraphException {
+        List< Future< Result > > futures = new ArrayList<>( queries.size() );
+        for ( Task task: tasks( queries ) ) {
+            futures.add( this.pool.submit( task::run ) );
+        }
+        List< Result > results = new ArrayList<>( futures.size() );
+        try {
+            for ( Future< Result > future: futures ) {
+                results.add( await( future ) );
+            }
+        }
+        finally {
+            for ( Future< Result > future: futures ) {
+                future.cancel( true );
+            }
+        }
+        return Collections.unmodifiableList( results );
+    }
+
+    /**
+     * Run a batch of queries, handing back each result as soon as it is
+     * ready. Use {@link Result#getIndex()} to tell which query a result
+     * belongs to.
+     * @param queries the queries to run
+     * @return the results, in the order they finish
+     * @throws GraphException if a query names a node or edge that is not
+     *                        in the graph, or a negative capacity, in
+     *                        which case no query is run
+     */
+    public Stream< Result > stream( List< Query > queries )
+            throws GraphException {
+        List< Task > tasks = tasks( queries );
+        CompletionService< Result > done =
+                new ExecutorCompletionService<>( this.pool );
+        List< Future< Result > > futures = new ArrayList<>( tasks.size() );
+        for ( Task task: tasks ) {
+            futures.add( done.submit( task::run ) );
+        }
+        Iterator< Result > results = new Iterator<>() {
+            private int left = tasks.size();
+
+            @Override
+            public boolean hasNext() {
+                return this.left > 0;
+            }
+
+            @Override
+            public Result next() {
+                if ( this.left == 0 ) {
+                    throw new NoSuchElementException();
+                }
+                this.left--;
+                try {
+                    return await( done.take() );
+                }
+                catch ( InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException( "interrupted", ie );
+                }
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliterator( results, tasks.size(),
+                                          Spliterator.NONNULL ),
+                false )
+                .onClose( () -> futures.forEach( f -> f.cancel( true ) ) );
+    }
+
+    /**
+     * Stop the threads. Queries that are still running are interrupted.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdownNow();
+    }
+
+    /**
+     * Check every query against the graph and look up its source and
+     * sink, before any of them is run.
+     * @param queries the queries
+     * @return a task for each query, in order
+     * @throws GraphException if a query does not fit the graph
+     */
+    private List< Task > tasks( List< Query > queries ) throws GraphException {
+        List< Task > tasks = new ArrayList<>( queries.size() );
+        for ( Query query: queries ) {
+            int source = nodeId( query.source );
+            int sink = nodeId( query.sink );
+            if ( source == sink ) {
+                throw new GraphException( "Source and sink are the same: " +
+                                          query.source );
+            }
+            for ( CapacityChange change: query.overrides ) {
+                if ( this.graph.getEdge( change.a, change.b ) == null ) {
+                    throw new GraphException( "No edge between " + change.a +
+                                              " and " + change.b );
+                }
+                if ( change.capacity < 0 ) {
+                    throw new GraphException( "Capacity cannot be " +
+                                              "negative: " + change.capacity );
+                }
+            }
+            tasks.add( new Task( query, tasks.size(), source, sink ) );
+        }
+        return tasks;
+    }
+
+    /**
+     * @param name a node name
+     * @return the node's id
+     * @throws GraphException if it is not in the graph
+     */
+    private int nodeId( String name ) throws GraphException {
+        int u = this.graph.getCsr().id( name );
+        if ( u < 0 ) {
+            throw new GraphException( "Node is not in the graph: " + name );
+        }
+        return u;
+    }
+
+    /**
+     * Wait for a result, passing on anything its query threw.
+     * @param future the result being computed
+     * @return the result
+     */
+    private static Result await( Future< Result > future ) {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "interrupted", ie );
+        }
+        catch ( ExecutionException ee ) {
+            if ( ee.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException( ee.getCause() );
+        }
+    }
+
+    /**
+     * A query checked against the graph, ready to run.
+     */
+    private final class Task {
+
+        private final Query query;
+        private final int index;
+        private final int source;
+        private final int sink;
+
+        /**
+         * @param query the query
+         * @param index where it is in its batch
+         * @param source the id of its source
+         * @param sink the id of its sink
+         */
+        Task( Query query, int index, int source, int sink ) {
+            this.query = query;
+            this.index = index;
+            this.source = source;
+            this.sink = sink;
+        }
+
+        /**
+         * Solve the query in a view of its own. The view starts with no
+         * flow, so changing a capacity moves no flow around.
+         * @return its result
+         */
+        Result run() {
+            FlowGraph view = new FlowGraph(
+                    BatchSolver.this.graph.getCsr().shareTopology(),
+                    this.source, this.sink );
+            try {
+                for ( CapacityChange change: this.query.overrides ) {
+                    view.setCapacity( change.a, change.b, change.capacity );
+                }
+            }
+            catch ( GraphException ge ) {
+                // Every change was checked before the query was submitted.
+                throw new IllegalStateException( ge );
+            }
+            long value = BatchSolver.this.solvers.get().maxFlow( view );
+            return new Result( this.query, this.index, value );
+        }
+    }
+
+    /**
+     * One max flow to compute: a source, a sink, and any capacities that
+     * are different for this query. Queries cannot be changed;
+     * {@link #withCapacity(String, String, long)} makes a new one.
+     */
+    public static final class Query {
+
+        /**
+         * The names of the source and sink
+         */
+        private final String source;
+        private final String sink;
+
+        /**
+         * The capacities changed for this query, in the order given
+         */
+        private final List< CapacityChange > overrides;
+
+        /**
+         * Make a query that uses the graph's capacities.
+         * @param source the name of the node the flow starts at
+         * @param sink the name of the node the flow ends at
+         */
+        public Query( String source, String sink ) {
+            this( source, sink, List.of() );
+        }
+
+        /**
+         * @param source the name of the source
+         * @param sink the name of the sink
+         * @param overrides the capacities changed for this query
+         */
+        private Query( String source, String sink,
+                       List< CapacityChange > overrides ) {
+            this.source = Objects.requireNonNull( source );
+            this.sink = Objects.requireNonNull( sink );
+            this.overrides = overrides;
+        }
+
+        /**
+         * Make a query like this one, but with one edge's capacity
+         * changed. If the same edge is changed twice, the last change wins.
+         * @param a the name of one of the edge's nodes
+         * @param b the name of the other node
+         * @param capacity the edge's capacity for this query
+         * @return the new query
+         */
+        public Query withCapacity( String a, String b, long capacity ) {
+            List< CapacityChange > more = new ArrayList<>( this.overrides );
+            more.add( new CapacityChange( a, b, capacity ) );
+            return new Query( this.source, this.sink,
+                              Collections.unmodifiableList( more ) );
+        }
+
+        /**
+         * @return the name of the source
+         */
+        public String getSource() {
+            return this.source;
+        }
+
+        /**
+         * @return the name of the sink
+         */
+        public String getSink() {
+            return this.sink;
+        }
+
+        @Override
+        public String toString() {
+            return this.source + " -> " + this.sink +
+                   ( this.overrides.isEmpty() ? "" : " " + this.overrides );
+        }
+    }
+
+    /**
+     * A capacity changed for one query.
+     */
+    private static final class CapacityChange {
+
+        private final String a;
+        private final String b;
+        private final long capacity;
+
+        /**
+         * @param a the name of one of the edge's nodes
+         * @param b the name of the other node
+         * @param capacity the edge's capacity for the query
+         */
+        CapacityChange( String a, String b, long capacity ) {
+            this.a = Objects.requireNonNull( a );
+            this.b = Objects.requireNonNull( b );
+            this.capacity = capacity;
+        }
+
+        @Override
+        public String toString() {
+            return this.a + "-" + this.b + "=" + this.capacity;
+        }
+    }
+
+    /**
+     * The answer to one query.
+     */
+    public static final class Result {
+
+        private final Query query;
+        private final int index;
+        private final long value;
+
+        /**
+         * @param query the query answered
+         * @param index where the query was in its batch
+         * @param value the value of its maximum flow
+         */
+        Result( Query query, int index, long value ) {
+            this.query = query;
+            this.index = index;
+            this.value = value;
+        }
+
+        /**
+         * @return the query answered
+         */
+        public Query getQuery() {
+            return this.query;
+        }
+
+        /**
+         * @return where the query was in the list it was submitted in
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        /**
+         * @return the value of the query's maximum flow
+         */
+        public long getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.query + ": " + this.value;
+        }
+    }
+}
@@ -0,0 +1,610 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.Arrays;
+
+/**
+ * A solver for assignment problems: graphs where the source feeds a set
+ * of left nodes, the sink drains a set of right nodes, every other edge
+ * joins a left node to a right one, and every capacity is 1. On such a
+ * graph, a maximum matching is found by Hopcroft and Karp's algorithm,
+ * which adds a set of shortest vertex-disjoint augmenting paths per phase
+ * and needs only O(sqrt V) phases, for O(E sqrt V) in all. The edges
+ * between the two sides are copied into int arrays apart from the graph,
+ * with the source and sink left implicit, and the flow is written to the
+ * graph at the end.
+ * <p>
+ * Edges are undirected, so a flow may also run from a right node back to
+ * a left one, and the maximum flow can be bigger than the largest
+ * matching. The matching is therefore finished by Dinic's algorithm on
+ * the same arrays, with a byte of residual capacity per direction of an
+ * edge. Since every capacity is 1, each of its phases takes O(E), and few
+ * are needed after the matching. A graph of any other shape, or one that
+ * already holds flow, is solved by a {@link DinicSolver}, and so is any
+ * {@link ResidualNetwork}, whose edges cannot be told apart from its
+ * arcs.
+ *
+ * @author RIT CS
+ */
+public class BipartiteMatchingSolver implements MaxFlowSolver {
+
+    /**
+     * The distance of a left node that no matching search has reached, or
+     * that is a dead end in this phase
+     */
+    private static final int FAR = Integer.MAX_VALUE;
+
+    /**
+     * The sides a node can be on
+     */
+    private static final byte LEFT = 1;
+    private static final byte RIGHT = 2;
+
+    /**
+     * Solves the graphs that are not assignment problems
+     */
+    private final DinicSolver dinic = new DinicSolver();
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    // Solve state, valid during a call to maxFlow. Left nodes are numbered
+    // from 0, and right nodes after them.
+    private int lefts;
+    private int rights;
+
+    /**
+     * The edges between the two sides, in CSR form, in both directions:
+     * where each node's entries start, the node each entry leads to, the
+     * entry for the other direction, and the graph's arc for the entry
+     */
+    private int[] start;
+    private int[] to;
+    private int[] mate;
+    private int[] arc;
+
+    /**
+     * The arc from the source to each left node, and from each right node
+     * to the sink
+     */
+    private int[] sourceArc;
+    private int[] sinkArc;
+
+    /**
+     * Each left node's partner, as the entry leading to it, or -1, and
+     * each right node's partner, or -1
+     */
+    private int[] matchLeft;
+    private int[] matchRight;
+
+    /**
+     * The residual capacity of each entry, 0 to 2, once the matching is
+     * done, and whether the source feeds each left node and each right
+     * node drains into the sink
+     */
+    private byte[] residual;
+    private boolean[] fed;
+    private boolean[] drained;
+
+    /**
+     * Each node's level in this phase
+     */
+    private int[] level;
+
+    /**
+     * The next entry to try from each node in this phase
+     */
+    private int[] next;
+
+    private int[] queue;
+    private int[] stack;
+    private SolverCounters counters;
+    private SolverProbe probe;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+        this.dinic.setMetrics( metrics );
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked before each phase.
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+        this.dinic.setBudget( budget );
+    }
+
+    /**
+     * Check whether a graph is an assignment problem this solver matches.
+     * @param graph a graph
+     * @return true if every edge has capacity 1 and carries no flow, the
+     *         source's and the sink's neighbours are apart, and every other
+     *         edge joins one of each
+     */
+    public static boolean fits( FlowGraph graph ) {
+        return sides( graph ) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * An assignment problem is reported to the metrics as a matching
+     * phase and a phase for the paths that finish it. Any other graph is
+     * reported as a solve by the {@link DinicSolver}.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        byte[] side = sides( graph );
+        if ( side == null ) {
+            return this.dinic.maxFlow( graph );
+        }
+        SolverProbe probe = new SolverProbe( "matching", this.metrics,
+                                             graph );
+        this.counters = probe.counters();
+        this.probe = probe;
+        probe.beginPhase( "hopcroft-karp" );
+        CsrGraph csr = graph.getCsr();
+        index( csr, graph.getSourceId(), graph.getSinkId(), side );
+        long maxFlow = match();
+        probe.endPhase();
+
+        probe.beginPhase( "unit-dinic" );
+        toResiduals();
+        maxFlow += unitDinic();
+        writeFlows( csr );
+        probe.endPhase();
+        probe.finish( maxFlow );
+        this.counters = null;
+        this.probe = null;
+        this.start = null;
+        this.to = null;
+        this.mate = null;
+        this.arc = null;
+        this.matchLeft = null;
+        this.matchRight = null;
+        this.residual = null;
+        this.fed = null;
+        this.drained = null;
+        this.level = null;
+        this.next = null;
+        this.queue = null;
+        this.stack = null;
+        return maxFlow;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The network is solved by the {@link DinicSolver}.
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        return this.dinic.maxFlow( network, source, sink );
+    }
+
+    /**
+     * Sort a graph's nodes into left and right, if it is an assignment
+     * problem.
+     * @param graph a graph
+     * @return {@link #LEFT} or {@link #RIGHT} for each node next to the
+     *         source or sink and 0 for the rest, or null if the graph is
+     *         not an assignment problem
+     */
+    private static byte[] sides( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        int source = graph.getSourceId();
+        int sink = graph.getSinkId();
+        byte[] side = new byte[ csr.nodeCount() ];
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            int a = csr.forwardArc( e );
+            long capacity = csr.capacity( e );
+            if ( capacity == 0 ) {
+                continue;
+            }
+            if ( capacity != 1 || csr.residual( a ) != 1 ) {
+                return null;
+            }
+            int u = csr.tail( a );
+            int v = csr.head( a );
+            boolean uEnd = u == source || u == sink;
+            boolean vEnd = v == source || v == sink;
+            if ( uEnd && vEnd ) {
+                return null;
+            }
+            if ( uEnd && !mark( side, v, u == source ? LEFT : RIGHT ) ) {
+                return null;
+            }
+            if ( vEnd && !mark( side, u, v == source ? LEFT : RIGHT ) ) {
+                return null;
+            }
+        }
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            int a = csr.forwardArc( e );
+            int u = csr.tail( a );
+            int v = csr.head( a );
+            if ( csr.capacity( e ) > 0 && u != source && u != sink &&
+                 v != source && v != sink &&
+                 side[ u ] + side[ v ] != LEFT + RIGHT ) {
+                return null;
+            }
+        }
+        return side;
+    }
+
+    /**
+     * Put a neighbour of the source or sink on its side.
+     * @param side each node's side so far
+     * @param u the neighbour
+     * @param which {@link #LEFT} or {@link #RIGHT}
+     * @return false if u is already on a side
+     */
+    private static boolean mark( byte[] side, int u, byte which ) {
+        if ( side[ u ] != 0 ) {
+            return false;
+        }
+        side[ u ] = which;
+        return true;
+    }
+
+    /**
+     * Number the left and right nodes, and lay out the edges between them
+     * in CSR form, each in both directions.
+     * @param csr the graph
+     * @param source the source node id
+     * @param sink the sink node id
+     * @param side each node's side
+     */
+    private void index( CsrGraph csr, int source, int sink, byte[] side ) {
+        int n = csr.nodeCount();
+        int[] number = new int[ n ];
+        this.lefts = 0;
+        this.rights = 0;
+        for ( int u = 0; u < n; u++ ) {
+            if ( side[ u ] == LEFT ) {
+                number[ u ] = this.lefts++;
+            }
+        }
+        for ( int u = 0; u < n; u++ ) {
+            if ( side[ u ] == RIGHT ) {
+                number[ u ] = this.lefts + this.rights++;
+            }
+        }
+        int nodes = this.lefts + this.rights;
+        this.sourceArc = new int[ this.lefts ];
+        this.sinkArc = new int[ this.rights ];
+        this.start = new int[ nodes + 1 ];
+        for ( int u = 0; u < n; u++ ) {
+            if ( side[ u ] == 0 ) {
+                continue;
+            }
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int v = csr.head( a );
+                if ( csr.residual( a ) == 0 ) {
+                    continue;
+                }
+                if ( v == source ) {
+                    this.sourceArc[ number[ u ] ] = csr.mate( a );
+                }
+                else if ( v == sink ) {
+                    this.sinkArc[ number[ u ] - this.lefts ] = a;
+                }
+                else {
+                    this.start[ number[ u ] + 1 ]++;
+                }
+            }
+        }
+        for ( int u = 0; u < nodes; u++ ) {
+            this.start[ u + 1 ] += this.start[ u ];
+        }
+        int entries = this.start[ nodes ];
+        this.to = new int[ entries ];
+        this.mate = new int[ entries ];
+        this.arc = new int[ entries ];
+        int[] fill = Arrays.copyOf( this.start, nodes );
+        int[] entry = new int[ csr.arcCount() ];
+        for ( int u = 0; u < n; u++ ) {
+            if ( side[ u ] == 0 ) {
+                continue;
+            }
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int v = csr.head( a );
+                if ( csr.residual( a ) > 0 && v != source && v != sink ) {
+                    int k = fill[ number[ u ] ]++;
+                    this.to[ k ] = number[ v ];
+                    this.arc[ k ] = a;
+                    entry[ a ] = k;
+                }
+            }
+        }
+        for ( int k = 0; k < entries; k++ ) {
+            this.mate[ k ] = entry[ csr.mate( this.arc[ k ] ) ];
+        }
+        this.matchLeft = new int[ this.lefts ];
+        this.matchRight = new int[ this.rights ];
+        Arrays.fill( this.matchLeft, -1 );
+        Arrays.fill( this.matchRight, -1 );
+        this.level = new int[ nodes ];
+        this.next = new int[ nodes ];
+        this.queue = new int[ nodes ];
+        this.stack = new int[ nodes ];
+    }
+
+    /**
+     * Grow the matching phase by phase until no augmenting path is left,
+     * or the budget runs out.
+     * @return the number of pairs matched
+     */
+    private long match() {
+        long matched = 0;
+        while ( ( this.budget == null ||
+                  !this.budget.shouldStop( this.probe.work() +
+                                           this.counters.arcsScanned ) ) &&
+                buildLayers() ) {
+            System.arraycopy( this.start, 0, this.next, 0, this.lefts );
+            for ( int l = 0; l < this.lefts; l++ ) {
+                if ( this.matchLeft[ l ] < 0 && augment( l ) ) {
+                    matched++;
+                    this.counters.augmentations++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Label each left node with its distance from the free left nodes,
+     * along edges to right nodes and back along matched pairs.
+     * @return true if a free right node was reached
+     */
+    private boolean buildLayers() {
+        this.counters.searches++;
+        int tail = 0;
+        for ( int l = 0; l < this.lefts; l++ ) {
+            if ( this.matchLeft[ l ] < 0 ) {
+                this.level[ l ] = 0;
+                this.queue[ tail++ ] = l;
+            }
+            else {
+                this.level[ l ] = FAR;
+            }
+        }
+        int found = FAR;
+        for ( int head = 0; head < tail; head++ ) {
+            int l = this.queue[ head ];
+            if ( this.level[ l ] >= found ) {
+                break;
+            }
+            this.counters.nodesVisited++;
+            int end = this.start[ l + 1 ];
+            this.counters.arcsScanned += end - this.start[ l ];
+            for ( int k = this.start[ l ]; k < end; k++ ) {
+                int partner = this.matchRight[ this.to[ k ] - this.lefts ];
+                if ( partner < 0 ) {
+                    found = this.level[ l ] + 1;
+                }
+                else if ( this.level[ partner ] == FAR ) {
+                    this.level[ partner ] = this.level[ l ] + 1;
+                    this.queue[ tail++ ] = partner;
+                }
+            }
+        }
+        return found != FAR;
+    }
+
+    /**
+     * Look for a shortest augmenting path from a free left node through
+     * the layers, and flip it if one is found. The search is an iterative
+     * depth-first walk that resumes each left node where it last stopped.
+     * @param root a free left node
+     * @return true if the node was matched
+     */
+    private boolean augment( int root ) {
+        int depth = 0;
+        this.stack[ depth++ ] = root;
+        while ( depth > 0 ) {
+            int l = this.stack[ depth - 1 ];
+            int k = this.next[ l ];
+            if ( k == this.start[ l + 1 ] ) {
+                this.level[ l ] = FAR;
+                if ( --depth > 0 ) {
+                    this.next[ this.stack[ depth - 1 ] ]++;
+                }
+                continue;
+            }
+            this.counters.arcsScanned++;
+            int partner = this.matchRight[ this.to[ k ] - this.lefts ];
+            if ( partner < 0 ) {
+                while ( depth > 0 ) {
+                    l = this.stack[ --depth ];
+                    k = this.next[ l ];
+                    this.matchLeft[ l ] = k;
+                    this.matchRight[ this.to[ k ] - this.lefts ] = l;
+                }
+                return true;
+            }
+            if ( this.level[ partner ] == this.level[ l ] + 1 ) {
+                this.counters.nodesVisited++;
+                this.stack[ depth++ ] = partner;
+            }
+            else {
+                this.next[ l ]++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn the matching into residual capacities and mark the ends used.
+     */
+    private void toResiduals() {
+        int entries = this.to.length;
+        this.residual = new byte[ entries ];
+        Arrays.fill( this.residual, (byte) 1 );
+        this.fed = new boolean[ this.lefts ];
+        this.drained = new boolean[ this.rights ];
+        for ( int l = 0; l < this.lefts; l++ ) {
+            int k = this.matchLeft[ l ];
+            if ( k >= 0 ) {
+                this.residual[ k ] = 0;
+                this.residual[ this.mate[ k ] ] = 2;
+                this.fed[ l ] = true;
+                this.drained[ this.to[ k ] - this.lefts ] = true;
+            }
+        }
+    }
+
+    /**
+     * Run Dinic's phases on the unit edges between the two sides, from
+     * the left nodes the source does not feed yet to the right nodes that
+     * do not drain into the sink yet, until none can be reached or the
+     * budget runs out.
+     * @return the flow added
+     */
+    private long unitDinic() {
+        long pushed = 0;
+        int top;
+        while ( ( this.budget == null ||
+                  !this.budget.shouldStop( this.probe.work() +
+                                           this.counters.arcsScanned ) ) &&
+                ( top = buildLevels() ) > 0 ) {
+            System.arraycopy( this.start, 0, this.next, 0, this.next.length );
+            for ( int l = 0; l < this.lefts; l++ ) {
+                if ( !this.fed[ l ] && this.level[ l ] == top && path( l ) ) {
+                    pushed++;
+                    this.counters.augmentations++;
+                }
+            }
+        }
+        return pushed;
+    }
+
+    /**
+     * Label each node with its distance to the undrained right nodes along
+     * edges with room for more flow. The search goes backward from those
+     * nodes, so that the paths only visit nodes that lead to one, and
+     * stops at the level of the first unfed left node.
+     * @return the level of the unfed left nodes that can reach an
+     *         undrained right node, or -1 if none can
+     */
+    private int buildLevels() {
+        this.counters.searches++;
+        Arrays.fill( this.level, -1 );
+        int tail = 0;
+        for ( int r = 0; r < this.rights; r++ ) {
+            if ( !this.drained[ r ] ) {
+                this.level[ this.lefts + r ] = 0;
+                this.queue[ tail++ ] = this.lefts + r;
+            }
+        }
+        int found = -1;
+        for ( int head = 0; head < tail; head++ ) {
+            int v = this.queue[ head ];
+            if ( found >= 0 && this.level[ v ] >= found ) {
+                break;
+            }
+            this.counters.nodesVisited++;
+            int end = this.start[ v + 1 ];
+            this.counters.arcsScanned += end - this.start[ v ];
+            for ( int k = this.start[ v ]; k < end; k++ ) {
+                // The two directions of an edge have 2 units of room
+                // between them, so u to v has room unless v to u has 2.
+                int u = this.to[ k ];
+                if ( this.residual[ k ] < 2 && this.level[ u ] < 0 ) {
+                    this.level[ u ] = this.level[ v ] + 1;
+                    this.queue[ tail++ ] = u;
+                    if ( u < this.lefts && !this.fed[ u ] ) {
+                        found = this.level[ u ];
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Push one unit along a level-decreasing path from an unfed left node
+     * to an undrained right node, if there is one. Nodes found to be dead
+     * ends, and right nodes once drained, are taken out of the levels.
+     * @param root an unfed left node
+     * @return true if a unit was pushed
+     */
+    private boolean path( int root ) {
+        int depth = 0;
+        int u = root;
+        while ( true ) {
+            if ( this.level[ u ] == 0 ) {
+                for ( int i = 0; i < depth; i++ ) {
+                    int k = this.stack[ i ];
+                    this.residual[ k ]--;
+                    this.residual[ this.mate[ k ] ]++;
+                }
+                this.fed[ root ] = true;
+                this.drained[ u - this.lefts ] = true;
+                this.level[ u ] = -1;
+                return true;
+            }
+            int k = this.next[ u ];
+            int end = this.start[ u + 1 ];
+            while ( k < end && ( this.residual[ k ] == 0 ||
+                                 this.level[ this.to[ k ] ] !=
+                                 this.level[ u ] - 1 ) ) {
+                k++;
+            }
+            this.counters.arcsScanned += k - this.next[ u ] +
+                                         ( k < end ? 1 : 0 );
+            this.next[ u ] = k;
+            if ( k < end ) {
+                this.stack[ depth++ ] = k;
+                u = this.to[ k ];
+                this.counters.nodesVisited++;
+            }
+            else {
+                this.level[ u ] = -1;
+                if ( depth == 0 ) {
+                    return false;
+                }
+                u = this.to[ this.mate[ this.stack[ --depth ] ] ];
+                this.next[ u ]++;
+            }
+        }
+    }
+
+    /**
+     * Write the flow found to the graph.
+     * @param csr the graph
+     */
+    private void writeFlows( CsrGraph csr ) {
+        for ( int l = 0; l < this.lefts; l++ ) {
+            if ( this.fed[ l ] ) {
+                csr.push( this.sourceArc[ l ], 1 );
+            }
+            for ( int k = this.start[ l ]; k < this.start[ l + 1 ]; k++ ) {
+                if ( this.residual[ k ] == 0 ) {
+                    csr.push( this.arc[ k ], 1 );
+                }
+                else if ( this.residual[ k ] == 2 ) {
+                    csr.push( this.arc[ this.mate[ k ] ], 1 );
+                }
+            }
+        }
+        for ( int r = 0; r < this.rights; r++ ) {
+            if ( this.drained[ r ] ) {
+                csr.push( this.sinkArc[ r ], 1 );
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.PathSearch;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+/**
+ * The capacity scaling max flow algorithm: Edmonds-Karp, but only along
+ * arcs with plenty of room. Each phase has a threshold, delta, and only
+ * fills shortest paths whose every arc has at least delta more room.
+ * Delta starts at the largest power of two no bigger than any residual
+ * capacity, and is halved after each phase down to 1, when every path
+ * counts.
+ * <p>
+ * Each phase adds at most 2m augmentations, so a solve takes
+ * O(m log U) of them, where U is the largest capacity, instead of the
+ * O(nm) Edmonds-Karp may need when capacities span a wide range.
+ * <p>
+ * The paths can be searched for in a {@link FlowGraph} or in any
+ * {@link ResidualNetwork}.
+ *
+ * @author RIT CS
+ */
+public class CapacityScalingSolver implements MaxFlowSolver {
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked before each path is searched for.
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each value of delta is reported to the metrics as a phase.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        SolverProbe probe = new SolverProbe( "capacity-scaling", this.metrics,
+                                             graph );
+        CsrGraph csr = graph.getCsr();
+        long largest = 0;
+        for ( int a = 0; a < csr.arcCount(); a++ ) {
+            largest = Math.max( largest, csr.residual( a ) );
+        }
+        return scale( probe, new PathSearch( graph ), largest );
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each value of delta is reported to the metrics as a phase.
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        SolverProbe probe = new SolverProbe( "capacity-scaling", this.metrics,
+                                             network.nodeCount(),
+                                             network.arcCount() / 2 );
+        long largest = 0;
+        for ( long a = 0; a < network.arcCount(); a++ ) {
+            largest = Math.max( largest, network.residual( a ) );
+        }
+        return scale( probe, new PathSearch( network, source, sink ),
+                      largest );
+    }
+
+    /**
+     * Run the phases, from the largest delta down to 1.
+     * @param probe where the work is counted
+     * @param search the search for paths from the source to the sink
+     * @param largest the largest residual capacity of any arc
+     * @return the amount of flow added
+     */
+    private long scale( SolverProbe probe, PathSearch search, long largest ) {
+        SolverCounters counters = probe.counters();
+        long maxFlow = 0;
+        long nodes = 0;
+        long arcs = 0;
+        SolveBudget budget = this.budget;
+        boolean stopped = false;
+        for ( long delta = Long.highestOneBit( largest );
+              delta > 0 && !stopped; delta >>= 1 ) {
+            probe.beginPhase( "delta " + delta );
+            while ( !( stopped = budget != null &&
+                       budget.shouldStop( search.getArcsScanned() ) ) &&
+                    search.find( delta ) ) {
+                counters.searches++;
+                counters.augmentations++;
+                maxFlow += search.augment();
+            }
+            if ( !stopped ) {
+                counters.searches++;
+            }
+            counters.nodesVisited = search.getNodesVisited() - nodes;
+            counters.arcsScanned = search.getArcsScanned() - arcs;
+            nodes = search.getNodesVisited();
+            arcs = search.getArcsScanned();
+            probe.endPhase();
+        }
+        probe.finish( maxFlow );
+        return maxFlow;
+    }
+}
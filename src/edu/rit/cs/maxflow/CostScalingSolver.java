@@ -0,0 +1,870 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.Arrays;
+
+/**
+ * A min-cost max flow solver for large graphs, by Goldberg and Tarjan's
+ * cost scaling. A {@link PushRelabelSolver} first finds a maximum flow,
+ * of any cost. Then flow is sent around cycles of the residual graph,
+ * which keeps its value, until it is the cheapest: every node has a
+ * price, an arc's reduced cost is its cost plus the price of its tail
+ * minus that of its head, and each round of refinement makes every arc
+ * with room have a reduced cost of at least minus some epsilon. Epsilon
+ * starts at the dearest cost and is divided by {@value #ALPHA} each
+ * round; with costs multiplied by one more than the number of nodes, the
+ * flow is the cheapest once epsilon reaches 1, and the rounds stop
+ * sooner if the prices, rounded, already show that it is.
+ * <p>
+ * A round first tries to get there by changing prices alone: the arcs
+ * below 0 are sorted into a topological order, cancelling any cycle of
+ * them, and nodes are lowered by as many epsilons as the paths into them
+ * call for. If that fails, the round saturates the arcs below 0, then
+ * pushes the excess this leaves, first in first out, along paths of up
+ * to {@value #PATH_LENGTH} arcs below 0, lowering a node's price by as
+ * little as lets it push again once it has none. Now and then all the
+ * prices are lowered at once, by distances to the nodes short of flow.
+ * <p>
+ * Unlike {@link SuccessiveShortestPathSolver}, the work does not grow
+ * with the number of distinct path costs, only with the logarithm of the
+ * dearest cost. Costs times the square of the number of nodes must fit
+ * in a long. A random graph of 250,000 nodes and a million edges, with
+ * costs up to 1000, takes about 13 s, and a 500 by 500 grid about 20 s,
+ * most of it in the rounds' relabels and price updates.
+ * <p>
+ * Along an edge whose flow runs the other way, an arc cancels that flow
+ * first, at minus the edge's cost, and then pays the cost, as in
+ * {@link SuccessiveShortestPathSolver}.
+ *
+ * @author RIT CS
+ */
+public class CostScalingSolver implements MinCostFlowSolver {
+
+    /**
+     * How much smaller epsilon is made each round
+     */
+    static final int ALPHA = 8;
+
+    /**
+     * How much work is counted for each relabel, on top of the arcs it scans
+     */
+    private static final int RELABEL_WORK = 12;
+
+    /**
+     * How much relabel work, per node, is allowed between price updates
+     */
+    private static final int NODE_WORK = 6;
+
+    /**
+     * How many more relabels are allowed between price updates for each
+     * node left with excess by the last one
+     */
+    private static final int EXCESS_RELABELS = 10;
+
+    /**
+     * The most arcs flow is pushed along at once
+     */
+    private static final int PATH_LENGTH = 4;
+
+    /**
+     * How many passes over the arcs the check for the cheapest flow may
+     * make
+     */
+    private static final int CHECK_PASSES = 2;
+
+    /**
+     * How many rounds run before prices are refined first
+     */
+    private static final int PLAIN_ROUNDS = 2;
+
+    /**
+     * How many times prices may be lowered in one refinement
+     */
+    private static final int REFINE_PASSES = 2;
+
+    /**
+     * Marks a node the search for a topological order has reached, and a
+     * node it is done with
+     */
+    private static final byte REACHED = 1;
+    private static final byte SORTED = 2;
+
+    /**
+     * Marks the end of a bucket
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Finds the maximum flow the rounds start from
+     */
+    private final PushRelabelSolver initial = new PushRelabelSolver();
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    // Solve state, valid during a call to maxFlow.
+    private CsrGraph csr;
+
+    /**
+     * The scaled cost and the capacity of each arc's edge, by arc
+     */
+    private long[] cost;
+    private long[] capacity;
+
+    private long[] price;
+    private long[] excess;
+    private int[] currentArc;
+
+    /**
+     * Each node's distance in the last price update, the first entry of
+     * each distance's bucket, and each entry's node and the next entry in
+     * its bucket. A node whose distance falls gets a new entry, and the
+     * old one is passed over when its bucket is emptied.
+     */
+    private int[] distance;
+    private int[] bucket;
+    private int[] entryNode;
+    private int[] nextEntry;
+    private int entries;
+
+    /**
+     * Relabel work done since the last price update
+     */
+    private long work;
+
+    /**
+     * The nodes with excess, in a ring, first in first out
+     */
+    private int[] queue;
+    private boolean[] queued;
+    private int head;
+    private int size;
+
+    /**
+     * The arcs of the path being grown from a node with excess
+     */
+    private int[] path;
+
+    /**
+     * How far the search for a topological order has got with each node,
+     * and the node it was reached from
+     */
+    private byte[] mark;
+    private int[] pred;
+
+    /**
+     * The arcs the max flow scanned, charged to the budget
+     */
+    private long before;
+
+    private SolverCounters counters;
+    private SolverProbe probe;
+
+    /**
+     * Whether the last solve ran its rounds to the end
+     */
+    private boolean cheapest;
+
+    /**
+     * {@inheritDoc}
+     * The max flow found first is reported as a solve of its own.
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+        this.initial.setMetrics( metrics );
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked before each discharge. If it runs out during
+     * a round, the flow is put back as it was when the round began, so a
+     * stop after the max flow leaves a maximum flow that may not be the
+     * cheapest.
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+        this.initial.setBudget( budget );
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each round of refinement is reported to the metrics as a phase.
+     * @throws IllegalArgumentException if the costs are too large to scale
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        int n = csr.nodeCount();
+        long scale = n + 1L;
+        long dearest = 0;
+        for ( int e = 0; e < csr.edgeCount(); e++ ) {
+            dearest = Math.max( dearest, csr.cost( e ) );
+        }
+        if ( dearest > Long.MAX_VALUE / 8 / scale / scale ) {
+            throw new IllegalArgumentException(
+                    "Edge costs are too large to scale: " + dearest );
+        }
+        this.cheapest = false;
+        long maxFlow = this.initial.maxFlow( graph );
+        if ( this.budget != null && this.budget.isExhausted() ) {
+            return maxFlow;
+        }
+
+        this.probe = new SolverProbe( "cost-scaling", this.metrics, graph );
+        this.counters = this.probe.counters();
+        this.before = this.initial.work();
+        this.csr = csr;
+        int arcs = csr.arcCount();
+        this.cost = new long[ arcs ];
+        this.capacity = new long[ arcs ];
+        for ( int a = 0; a < arcs; a++ ) {
+            int e = csr.edge( a );
+            this.cost[ a ] = csr.cost( e ) * scale;
+            this.capacity[ a ] = csr.capacity( e );
+        }
+        this.price = new long[ n ];
+        this.excess = new long[ n ];
+        this.currentArc = new int[ n ];
+        this.queue = new int[ n ];
+        this.queued = new boolean[ n ];
+        this.path = new int[ PATH_LENGTH ];
+        this.mark = new byte[ n ];
+        this.pred = new int[ n ];
+        this.distance = new int[ n ];
+        this.bucket = new int[ n + 1 ];
+        this.entryNode = new int[ n + arcs ];
+        this.nextEntry = new int[ n + arcs ];
+        long[] saved = new long[ csr.edgeCount() ];
+
+        long[] rounded = new long[ n ];
+
+        long epsilon = dearest * scale;
+        this.cheapest = true;
+        for ( int round = 0; epsilon > 1 && !isOptimal( scale, rounded );
+              round++ ) {
+            epsilon = Math.max( 1, epsilon / ALPHA );
+            this.probe.beginPhase( "refine" );
+            for ( int e = 0; e < saved.length; e++ ) {
+                saved[ e ] = csr.flow( e );
+            }
+            boolean done = round >= PLAIN_ROUNDS && refinePrices( epsilon ) ||
+                           refine( epsilon );
+            if ( !done ) {
+                for ( int e = 0; e < saved.length; e++ ) {
+                    csr.push( csr.forwardArc( e ),
+                              saved[ e ] - csr.flow( e ) );
+                }
+            }
+            this.probe.endPhase();
+            if ( !done ) {
+                this.cheapest = false;
+                break;
+            }
+        }
+        this.probe.finish( maxFlow );
+        this.csr = null;
+        this.cost = null;
+        this.capacity = null;
+        this.price = null;
+        this.excess = null;
+        this.currentArc = null;
+        this.queue = null;
+        this.queued = null;
+        this.path = null;
+        this.mark = null;
+        this.pred = null;
+        this.distance = null;
+        this.bucket = null;
+        this.entryNode = null;
+        this.nextEntry = null;
+        this.counters = null;
+        this.probe = null;
+        return maxFlow;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If the budget runs out before the rounds are done, the bounds say the
+     * flow may not be the cheapest, even when its value is the maximum.
+     */
+    @Override
+    public FlowBounds maxFlow( FlowGraph graph, SolveBudget budget ) {
+        FlowBounds bounds = MinCostFlowSolver.super.maxFlow( graph, budget );
+        return this.cheapest ? bounds : bounds.notCheapest();
+    }
+
+    /**
+     * {@inheritDoc}
+     * A network has no edge costs, so there is no cheapest flow to find.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        throw new UnsupportedOperationException(
+                "cost-scaling needs a FlowGraph with costs" );
+    }
+
+    /**
+     * @param a an arc
+     * @return how much flow the arc can take at its present cost: what
+     *         runs the other way along its edge, if any, else its room
+     */
+    private long room( int a ) {
+        long residual = this.csr.residual( a );
+        long c = this.capacity[ a ];
+        return residual > c ? residual - c : residual;
+    }
+
+    /**
+     * @param a an arc
+     * @param tailPrice the price of the arc's tail, which the caller knows
+     * @return the arc's scaled cost, less than 0 if it cancels flow running
+     *         the other way, adjusted by the prices of its ends
+     */
+    private long reducedCost( int a, long tailPrice ) {
+        long c = this.csr.residual( a ) > this.capacity[ a ] ?
+                 -this.cost[ a ] : this.cost[ a ];
+        return c + tailPrice - this.price[ this.csr.head( a ) ];
+    }
+
+    /**
+     * Check whether the flow is already the cheapest, by finding prices at
+     * which no arc with room has an unscaled reduced cost below 0. The
+     * search starts from each price rounded to the nearest multiple of the
+     * scale, and lowers the head of any arc below 0 until there are none,
+     * first in first out, as Bellman and Ford's shortest paths do. A cycle
+     * whose cost is below 0 would keep it lowering prices for ever, so it
+     * gives up after {@value #CHECK_PASSES} passes' worth of arcs. This
+     * often spares the last rounds, whose epsilon is finer than the flow
+     * needs.
+     * @param scale what the costs were multiplied by
+     * @param rounded where to put the rounded prices, one per node
+     * @return true if no cycle of arcs with room has a cost below 0, false
+     *         if there is one or the search gave up
+     */
+    private boolean isOptimal( long scale, long[] rounded ) {
+        CsrGraph csr = this.csr;
+        int n = rounded.length;
+        for ( int u = 0; u < n; u++ ) {
+            rounded[ u ] = Math.floorDiv( this.price[ u ] + scale / 2, scale );
+            this.queue[ u ] = u;
+        }
+        Arrays.fill( this.queued, true );
+        int head = 0;
+        int size = n;
+        long left = (long) CHECK_PASSES * csr.arcCount();
+        while ( size > 0 ) {
+            int u = this.queue[ head ];
+            head = head + 1 == n ? 0 : head + 1;
+            size--;
+            this.queued[ u ] = false;
+            int end = csr.endArc( u );
+            this.counters.arcsScanned += end - csr.firstArc( u );
+            left -= end - csr.firstArc( u );
+            if ( left < 0 ) {
+                Arrays.fill( this.queued, false );
+                return false;
+            }
+            for ( int a = csr.firstArc( u ); a < end; a++ ) {
+                long residual = csr.residual( a );
+                if ( residual == 0 ) {
+                    continue;
+                }
+                long c = this.cost[ a ] / scale;
+                if ( residual > this.capacity[ a ] ) {
+                    c = -c;
+                }
+                int v = csr.head( a );
+                if ( c + rounded[ u ] < rounded[ v ] ) {
+                    rounded[ v ] = c + rounded[ u ];
+                    if ( !this.queued[ v ] ) {
+                        int tail = head + size;
+                        this.queue[ tail >= n ? tail - n : tail ] = v;
+                        this.queued[ v ] = true;
+                        size++;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Try to make the flow epsilon-optimal by changing prices alone, so
+     * that a round can be skipped once the flow needs little more work.
+     * The arcs below 0 are sorted into a topological order, and any cycle
+     * they form, whose cost is below 0, is cancelled on the way. Then each
+     * node is lowered by as many epsilons as the arcs below 0 on paths to
+     * it call for, and the lowering is passed on along the other arcs with
+     * room, largest first; this is repeated until no node needs lowering,
+     * or for {@value #REFINE_PASSES} passes.
+     * @param epsilon how far below 0 a reduced cost may be
+     * @return true if the flow is epsilon-optimal, false if the round
+     *         must still refine it, at whatever prices this left
+     */
+    private boolean refinePrices( long epsilon ) {
+        for ( int pass = 0; pass < REFINE_PASSES; pass++ ) {
+            int top = rankNodes( sortAdmissible(), epsilon );
+            if ( top <= 0 ) {
+                return top == 0;
+            }
+            lowerPrices( top, epsilon );
+        }
+        return false;
+    }
+
+    /**
+     * Sort the nodes so that every arc below 0 runs from a node to a later
+     * one, by depth-first search, cancelling each cycle of such arcs the
+     * search finds. Cancelling only takes room from arcs below 0, so the
+     * order stays good for the arcs that are left.
+     * @return how many nodes there are, in {@link #queue} in reverse order
+     */
+    private int sortAdmissible() {
+        CsrGraph csr = this.csr;
+        byte[] mark = this.mark;
+        int n = mark.length;
+        Arrays.fill( mark, (byte) 0 );
+        int count = 0;
+        for ( int start = 0; start < n; start++ ) {
+            if ( mark[ start ] != 0 ) {
+                continue;
+            }
+            mark[ start ] = REACHED;
+            this.pred[ start ] = NONE;
+            this.currentArc[ start ] = csr.firstArc( start );
+            int tip = start;
+            while ( tip != NONE ) {
+                long price = this.price[ tip ];
+                int first = this.currentArc[ tip ];
+                int end = csr.endArc( tip );
+                int a = first;
+                while ( a < end && ( room( a ) == 0 ||
+                                     reducedCost( a, price ) >= 0 ||
+                                     mark[ csr.head( a ) ] == SORTED ) ) {
+                    a++;
+                }
+                this.counters.arcsScanned += a - first;
+                this.currentArc[ tip ] = a;
+                if ( a == end ) {
+                    mark[ tip ] = SORTED;
+                    this.queue[ count++ ] = tip;
+                    tip = this.pred[ tip ];
+                    continue;
+                }
+                int v = csr.head( a );
+                if ( mark[ v ] == 0 ) {
+                    mark[ v ] = REACHED;
+                    this.pred[ v ] = tip;
+                    this.currentArc[ v ] = csr.firstArc( v );
+                    tip = v;
+                }
+                else {
+                    tip = cancelCycle( tip, v );
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Cancel a cycle of arcs below 0 found by {@link #sortAdmissible()}:
+     * push as much flow around it as its arcs have room for, and take the
+     * search back to the first node whose arc on the cycle is left
+     * without room.
+     * @param tip the node the search is at, whose current arc closes the
+     *            cycle
+     * @param v the node the cycle starts and ends at
+     * @return the node to go on searching from
+     */
+    private int cancelCycle( int tip, int v ) {
+        long delta = room( this.currentArc[ tip ] );
+        int back = tip;
+        for ( int u = tip; u != v; ) {
+            u = this.pred[ u ];
+            long room = room( this.currentArc[ u ] );
+            if ( room <= delta ) {
+                delta = room;
+                back = u;
+            }
+        }
+        this.csr.push( this.currentArc[ tip ], delta );
+        this.counters.pushes++;
+        for ( int u = tip; u != v; ) {
+            u = this.pred[ u ];
+            this.csr.push( this.currentArc[ u ], delta );
+            this.counters.pushes++;
+        }
+        this.counters.augmentations++;
+        for ( int u = tip; u != back; u = this.pred[ u ] ) {
+            this.mark[ u ] = 0;
+        }
+        return back;
+    }
+
+    /**
+     * Work out how many epsilons each node must be lowered by for every
+     * arc below 0 to be no more than epsilon below it, taking the nodes in
+     * topological order, and put the nodes to lower in buckets by that.
+     * @param count how many nodes {@link #sortAdmissible()} sorted
+     * @param epsilon how far below 0 a reduced cost may be
+     * @return the most any node must be lowered by, or -1 if that is more
+     *         than the buckets hold
+     */
+    private int rankNodes( int count, long epsilon ) {
+        CsrGraph csr = this.csr;
+        int[] rank = this.distance;
+        int n = rank.length;
+        Arrays.fill( rank, 0 );
+        Arrays.fill( this.bucket, NONE );
+        this.entries = 0;
+        int top = 0;
+        for ( int i = count - 1; i >= 0; i-- ) {
+            int u = this.queue[ i ];
+            long price = this.price[ u ];
+            int end = csr.endArc( u );
+            this.counters.arcsScanned += end - csr.firstArc( u );
+            for ( int a = csr.firstArc( u ); a < end; a++ ) {
+                long reduced;
+                if ( room( a ) > 0 &&
+                     ( reduced = reducedCost( a, price ) ) < 0 ) {
+                    long r = rank[ u ] + ( -reduced - 1 ) / epsilon;
+                    if ( r > n ) {
+                        return -1;
+                    }
+                    int v = csr.head( a );
+                    rank[ v ] = Math.max( rank[ v ], (int) r );
+                }
+            }
+            if ( rank[ u ] > 0 ) {
+                top = Math.max( top, rank[ u ] );
+                addToBucket( u );
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Lower the ranked nodes, highest rank first, raising the rank of any
+     * node an arc with room runs to as far as keeps that arc no more than
+     * epsilon below 0 once its tail is lowered.
+     * @param top the highest rank
+     * @param epsilon how far below 0 a reduced cost may be
+     */
+    private void lowerPrices( int top, long epsilon ) {
+        CsrGraph csr = this.csr;
+        int[] rank = this.distance;
+        for ( int level = top; level > 0; level-- ) {
+            int entry;
+            while ( ( entry = this.bucket[ level ] ) != NONE ) {
+                this.bucket[ level ] = this.nextEntry[ entry ];
+                int u = this.entryNode[ entry ];
+                if ( rank[ u ] != level ) {
+                    continue;
+                }
+                this.counters.nodesVisited++;
+                long price = this.price[ u ];
+                int end = csr.endArc( u );
+                this.counters.arcsScanned += end - csr.firstArc( u );
+                for ( int a = csr.firstArc( u ); a < end; a++ ) {
+                    int v = csr.head( a );
+                    if ( rank[ v ] >= level || room( a ) == 0 ) {
+                        continue;
+                    }
+                    long reduced = reducedCost( a, price );
+                    long r = reduced < 0 ? level :
+                             level - 1 - Math.min( level, reduced / epsilon );
+                    if ( r > rank[ v ] ) {
+                        rank[ v ] = (int) r;
+                        addToBucket( v );
+                    }
+                }
+                this.price[ u ] -= level * epsilon;
+            }
+        }
+    }
+
+    /**
+     * Make the flow epsilon-optimal: saturate every arc whose reduced cost
+     * is below 0, then discharge the nodes left with excess.
+     * @param epsilon how far below 0 a reduced cost may be
+     * @return true if the round finished, false if the budget ran out
+     */
+    private boolean refine( long epsilon ) {
+        CsrGraph csr = this.csr;
+        int n = this.price.length;
+        this.head = 0;
+        this.size = 0;
+        for ( int u = 0; u < n; u++ ) {
+            int end = csr.endArc( u );
+            this.counters.arcsScanned += end - csr.firstArc( u );
+            for ( int a = csr.firstArc( u ); a < end; a++ ) {
+                long room;
+                while ( ( room = room( a ) ) > 0 &&
+                        reducedCost( a, this.price[ u ] ) < 0 ) {
+                    csr.push( a, room );
+                    this.counters.pushes++;
+                    this.excess[ u ] -= room;
+                    this.excess[ csr.head( a ) ] += room;
+                }
+            }
+        }
+        for ( int u = 0; u < n; u++ ) {
+            if ( this.excess[ u ] > 0 ) {
+                this.queue[ this.size++ ] = u;
+                this.queued[ u ] = true;
+            }
+        }
+        if ( this.size == 0 ) {
+            return true;
+        }
+        updatePrices( epsilon );
+        long allowed = allowedWork();
+        while ( this.size > 0 ) {
+            if ( this.budget != null &&
+                 this.budget.shouldStop( this.before + this.probe.work() +
+                                         this.counters.arcsScanned ) ) {
+                Arrays.fill( this.excess, 0 );
+                return false;
+            }
+            int u = this.queue[ this.head ];
+            this.head = this.head + 1 == n ? 0 : this.head + 1;
+            this.size--;
+            this.queued[ u ] = false;
+            discharge( u, epsilon );
+            if ( this.work > allowed ) {
+                updatePrices( epsilon );
+                allowed = allowedWork();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return how much relabel work to allow before the next price update:
+     *         more while many nodes have excess, each of which may need
+     *         relabels of its own however good the prices
+     */
+    private long allowedWork() {
+        int n = this.price.length;
+        int arcs = this.csr.arcCount();
+        long perRelabel = RELABEL_WORK + arcs / n;
+        return (long) NODE_WORK * n + arcs / 2 +
+               EXCESS_RELABELS * perRelabel * this.size;
+    }
+
+    /**
+     * Send a node's excess on along paths of arcs whose reduced cost is
+     * below 0, until the excess is gone. Each path is grown an arc at a
+     * time from the node, up to {@value #PATH_LENGTH} arcs or to a node
+     * short of flow; a node on it with no arc below 0 is relabeled and
+     * taken off the end. Then as much of the excess as the arcs have room
+     * for is pushed along the whole path, so that the flow moves several
+     * arcs for each look at the queue, rather than one.
+     * @param start a node with excess
+     * @param epsilon how far below 0 a reduced cost may be
+     */
+    private void discharge( int start, long epsilon ) {
+        CsrGraph csr = this.csr;
+        int[] path = this.path;
+        this.counters.nodesVisited++;
+        while ( this.excess[ start ] > 0 ) {
+            int length = 0;
+            int tip = start;
+            while ( length < PATH_LENGTH && this.excess[ tip ] >= 0 ) {
+                int a = advance( tip, epsilon );
+                if ( a == NONE && tip != start ) {
+                    // The tip has no arc with room until flow reaches it.
+                    break;
+                }
+                if ( a >= 0 && a < csr.endArc( tip ) ) {
+                    path[ length++ ] = a;
+                    tip = csr.head( a );
+                }
+                else if ( tip != start ) {
+                    tip = csr.tail( path[ --length ] );
+                }
+            }
+            if ( length > 0 ) {
+                this.counters.augmentations++;
+            }
+            int u = start;
+            for ( int i = 0; i < length; i++ ) {
+                int a = path[ i ];
+                int v = csr.head( a );
+                long delta = Math.min( this.excess[ u ], room( a ) );
+                if ( delta == 0 ) {
+                    break;
+                }
+                csr.push( a, delta );
+                this.counters.pushes++;
+                this.excess[ u ] -= delta;
+                this.excess[ v ] += delta;
+                if ( this.excess[ v ] > 0 && !this.queued[ v ] ) {
+                    int tail = this.head + this.size;
+                    this.queue[ tail >= this.queue.length ?
+                                tail - this.queue.length : tail ] = v;
+                    this.queued[ v ] = true;
+                    this.size++;
+                }
+                u = v;
+            }
+        }
+    }
+
+    /**
+     * Find the first arc out of a node, from its current arc on, whose
+     * reduced cost is below 0, and make it the current arc. If there is
+     * none, relabel the node: lower its price as little as gives it an
+     * arc below 0, to epsilon below the most it could be without one,
+     * and make that arc the current one. The arcs scanned for the first
+     * are not scanned again for the relabel.
+     * @param u a node
+     * @param epsilon how far below 0 a reduced cost may be
+     * @return the arc below 0, or the end of u's arcs if u was relabeled,
+     *         or {@link #NONE} if u has no arc with room and was left as
+     *         it is
+     */
+    private int advance( int u, long epsilon ) {
+        CsrGraph csr = this.csr;
+        long price = this.price[ u ];
+        int start = this.currentArc[ u ];
+        int end = csr.endArc( u );
+        long least = Long.MAX_VALUE;
+        int leastArc = end;
+        for ( int a = start; a < end; a++ ) {
+            if ( room( a ) == 0 ) {
+                continue;
+            }
+            long reduced = reducedCost( a, price );
+            if ( reduced < 0 ) {
+                this.counters.arcsScanned += a + 1 - start;
+                this.currentArc[ u ] = a;
+                return a;
+            }
+            // A loop's reduced cost does not change with the price.
+            if ( reduced < least && csr.head( a ) != u ) {
+                least = reduced;
+                leastArc = a;
+            }
+        }
+        int first = csr.firstArc( u );
+        for ( int a = first; a < start; a++ ) {
+            long reduced;
+            if ( room( a ) > 0 &&
+                 ( reduced = reducedCost( a, price ) ) < least &&
+                 csr.head( a ) != u ) {
+                least = reduced;
+                leastArc = a;
+            }
+        }
+        this.counters.arcsScanned += end - first;
+        this.counters.relabels++;
+        this.work += RELABEL_WORK + end - first;
+        if ( leastArc == end ) {
+            return NONE;
+        }
+        this.price[ u ] = price - least - epsilon;
+        this.currentArc[ u ] = leastArc;
+        return end;
+    }
+
+    /**
+     * Lower the prices all at once, so that every node with excess has a
+     * path of arcs below 0 to a node short of flow, as a global relabel
+     * does for {@link PushRelabelSolver}'s heights. An arc whose reduced
+     * cost is r is given the length floor(r / epsilon) + 1, and each node
+     * is lowered by epsilon times its distance from the nodes short of
+     * flow, which leaves no arc below minus epsilon. The search takes
+     * nodes from buckets by distance, and stops once it has reached every
+     * node with excess; the nodes it has not reached are lowered as far
+     * as it got.
+     * @param epsilon how far below 0 a reduced cost may be
+     */
+    private void updatePrices( long epsilon ) {
+        CsrGraph csr = this.csr;
+        int n = this.price.length;
+        this.counters.searches++;
+        this.work = 0;
+        Arrays.fill( this.bucket, NONE );
+        Arrays.fill( this.distance, Integer.MAX_VALUE );
+        this.entries = 0;
+        int waiting = 0;
+        for ( int u = 0; u < n; u++ ) {
+            if ( this.excess[ u ] < 0 ) {
+                this.distance[ u ] = 0;
+                addToBucket( u );
+            }
+            else if ( this.excess[ u ] > 0 ) {
+                waiting++;
+            }
+        }
+        int level = 0;
+        while ( level <= n && waiting > 0 ) {
+            int entry;
+            while ( ( entry = this.bucket[ level ] ) != NONE ) {
+                this.bucket[ level ] = this.nextEntry[ entry ];
+                int v = this.entryNode[ entry ];
+                if ( this.distance[ v ] != level ) {
+                    continue;
+                }
+                if ( this.excess[ v ] > 0 ) {
+                    waiting--;
+                }
+                this.counters.nodesVisited++;
+                long price = this.price[ v ];
+                int end = csr.endArc( v );
+                this.counters.arcsScanned += end - csr.firstArc( v );
+                for ( int a = csr.firstArc( v ); a < end; a++ ) {
+                    // The arc from w back to v is a's mate, whose room and
+                    // cost follow from a's, which are read in order.
+                    long residual = csr.residual( a );
+                    long capacity = this.capacity[ a ];
+                    if ( residual == 2 * capacity ) {
+                        continue;
+                    }
+                    int w = csr.head( a );
+                    long reduced = ( residual < capacity ? -this.cost[ a ] :
+                                     this.cost[ a ] ) +
+                                   this.price[ w ] - price;
+                    int known = Math.min( this.distance[ w ], n + 1 );
+                    if ( reduced >= ( known - level - 1 ) * epsilon ) {
+                        continue;
+                    }
+                    this.distance[ w ] = level + 1 +
+                            (int) Math.floorDiv( reduced, epsilon );
+                    addToBucket( w );
+                }
+            }
+            level++;
+        }
+        for ( int u = 0; u < n; u++ ) {
+            this.price[ u ] -= epsilon * Math.min( this.distance[ u ], level );
+            this.currentArc[ u ] = csr.firstArc( u );
+        }
+    }
+
+    /**
+     * Put a node in the bucket of its distance.
+     * @param u the node
+     */
+    private void addToBucket( int u ) {
+        int d = this.distance[ u ];
+        int entry = this.entries++;
+        this.entryNode[ entry ] = u;
+        this.nextEntry[ entry ] = this.bucket[ d ];
+        this.bucket[ d ] = entry;
+    }
+}
@@ -0,0 +1,367 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.Arrays;
+
+/**
+ * Dinic's max flow algorithm. Each phase labels every node with its BFS
+ * distance from the source in the residual graph, then saturates that
+ * level graph with a blocking flow. A current-arc pointer per node means
+ * no arc is looked at twice in the same phase, so a phase costs one BFS
+ * and O(VE) of search instead of one BFS per augmenting path.
+ * <p>
+ * The same search runs on any {@link ResidualNetwork}, such as an
+ * {@link edu.rit.cs.labgraph.OffHeapGraph} with more than 2^31 arcs. A
+ * {@link FlowGraph} is solved by a copy of the search that works on its
+ * {@link CsrGraph} directly, with int arc ids: on a million-edge random
+ * graph and on a 60k-node grid it takes 15 to 20 percent less time than
+ * the same search going through the interface, which is worth the second
+ * copy for the solver the command line uses most.
+ *
+ * @author RIT CS
+ */
+public class DinicSolver implements MaxFlowSolver {
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    /**
+     * How many arcs the last solve of a {@link FlowGraph} scanned
+     */
+    private long work;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked after each augmenting path, so a phase may be
+     * left with its blocking flow half built.
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each level graph is reported to the metrics as a phase.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        SolverProbe probe = new SolverProbe( "dinic", this.metrics, graph );
+        SolverCounters counters = probe.counters();
+        CsrGraph csr = graph.getCsr();
+        int source = graph.getSourceId();
+        int sink = graph.getSinkId();
+        int n = csr.nodeCount();
+        int[] level = new int[ n ];
+        int[] queue = new int[ n ];
+        int[] currentArc = new int[ n ];
+        int[] path = new int[ n ];
+
+        long maxFlow = 0;
+        probe.beginPhase( "levels" );
+        while ( buildLevels( csr, source, sink, level, queue, counters ) ) {
+            for ( int u = 0; u < n; u++ ) {
+                currentArc[ u ] = csr.firstArc( u );
+            }
+            maxFlow += blockingFlow( csr, source, sink, level, currentArc,
+                                     path, counters, this.budget,
+                                     probe.work() );
+            if ( this.budget != null && this.budget.isExhausted() ) {
+                break;
+            }
+            probe.endPhase();
+            probe.beginPhase( "levels" );
+        }
+        probe.endPhase();
+        probe.finish( maxFlow );
+        this.work = probe.work();
+        return maxFlow;
+    }
+
+    /**
+     * @return how many arcs the last call to {@link #maxFlow(FlowGraph)}
+     *         scanned, for a solver that goes on from its flow to charge
+     *         to the same budget
+     */
+    long work() {
+        return this.work;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each level graph is reported to the metrics as a phase.
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        SolverProbe probe = new SolverProbe( "dinic", this.metrics,
+                                             network.nodeCount(),
+                                             network.arcCount() / 2 );
+        SolverCounters counters = probe.counters();
+        int n = network.nodeCount();
+        int[] level = new int[ n ];
+        int[] queue = new int[ n ];
+        long[] currentArc = new long[ n ];
+        long[] path = new long[ n ];
+
+        long maxFlow = 0;
+        probe.beginPhase( "levels" );
+        while ( buildLevels( network, source, sink, level, queue,
+                             counters ) ) {
+            for ( int u = 0; u < n; u++ ) {
+                currentArc[ u ] = network.firstArc( u );
+            }
+            maxFlow += blockingFlow( network, source, sink, level,
+                                     currentArc, path, counters, this.budget,
+                                     probe.work() );
+            if ( this.budget != null && this.budget.isExhausted() ) {
+                break;
+            }
+            probe.endPhase();
+            probe.beginPhase( "levels" );
+        }
+        probe.endPhase();
+        probe.finish( maxFlow );
+        return maxFlow;
+    }
+
+    /**
+     * Label each node with its distance from the source along arcs that
+     * have room for more flow. The search stops at the sink's level.
+     * @param csr the graph
+     * @param source the source node id
+     * @param sink the sink node id
+     * @param level filled with each node's distance, or -1 if unreached
+     * @param queue scratch space for the search
+     * @param counters where the search's work is counted
+     * @return true if the sink was reached
+     */
+    private static boolean buildLevels( CsrGraph csr, int source, int sink,
+                                        int[] level, int[] queue,
+                                        SolverCounters counters ) {
+        counters.searches++;
+        Arrays.fill( level, -1 );
+        level[ source ] = 0;
+        queue[ 0 ] = source;
+        int head = 0;
+        int tail = 1;
+        while ( head < tail ) {
+            int u = queue[ head++ ];
+            if ( level[ sink ] >= 0 && level[ u ] >= level[ sink ] ) {
+                break;
+            }
+            counters.nodesVisited++;
+            counters.arcsScanned += csr.endArc( u ) - csr.firstArc( u );
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int v = csr.head( a );
+                if ( level[ v ] < 0 && csr.residual( a ) > 0 ) {
+                    level[ v ] = level[ u ] + 1;
+                    queue[ tail++ ] = v;
+                }
+            }
+        }
+        return level[ sink ] >= 0;
+    }
+
+    /**
+     * Push flow along level-increasing paths until none is left. The
+     * search is an iterative depth-first walk, so deep graphs do not
+     * overflow the stack.
+     * @param csr the graph
+     * @param source the source node id
+     * @param sink the sink node id
+     * @param level each node's distance from the source; nodes found to
+     *              be dead ends are set to -1
+     * @param currentArc the next arc to try at each node
+     * @param path scratch space for the arcs of the current path
+     * @param counters where the search's work is counted
+     * @param budget when to stop early, or null
+     * @param before the arcs scanned in earlier phases
+     * @return the amount of flow pushed
+     */
+    private static long blockingFlow( CsrGraph csr, int source, int sink,
+                                      int[] level, int[] currentArc,
+                                      int[] path, SolverCounters counters,
+                                      SolveBudget budget, long before ) {
+        long pushed = 0;
+        int depth = 0;
+        int u = source;
+        while ( true ) {
+            if ( u == sink ) {
+                long delta = Long.MAX_VALUE;
+                for ( int i = 0; i < depth; i++ ) {
+                    delta = Math.min( delta, csr.residual( path[ i ] ) );
+                }
+                int saturated = -1;
+                for ( int i = 0; i < depth; i++ ) {
+                    csr.push( path[ i ], delta );
+                    if ( saturated < 0 && csr.residual( path[ i ] ) == 0 ) {
+                        saturated = i;
+                    }
+                }
+                pushed += delta;
+                counters.augmentations++;
+                if ( budget != null &&
+                     budget.shouldStop( before + counters.arcsScanned ) ) {
+                    return pushed;
+                }
+                depth = saturated;
+                u = csr.tail( path[ depth ] );
+                continue;
+            }
+
+            int a = currentArc[ u ];
+            int end = csr.endArc( u );
+            while ( a < end && ( csr.residual( a ) == 0 ||
+                                 level[ csr.head( a ) ] != level[ u ] + 1 ) ) {
+                a++;
+            }
+            counters.arcsScanned += a - currentArc[ u ] + ( a < end ? 1 : 0 );
+            currentArc[ u ] = a;
+            if ( a < end ) {
+                path[ depth++ ] = a;
+                u = csr.head( a );
+                counters.nodesVisited++;
+            }
+            else {
+                level[ u ] = -1;
+                if ( depth == 0 ) {
+                    return pushed;
+                }
+                u = csr.tail( path[ --depth ] );
+                currentArc[ u ]++;
+            }
+        }
+    }
+
+    /**
+     * Label each node of a network with its distance from the source, as
+     * {@link #buildLevels(CsrGraph, int, int, int[], int[], SolverCounters)}
+     * does.
+     * @param network the graph
+     * @param source the source node id
+     * @param sink the sink node id
+     * @param level filled with each node's distance, or -1 if unreached
+     * @param queue scratch space for the search
+     * @param counters where the search's work is counted
+     * @return true if the sink was reached
+     */
+    private static boolean buildLevels( ResidualNetwork network, int source,
+                                        int sink, int[] level, int[] queue,
+                                        SolverCounters counters ) {
+        counters.searches++;
+        Arrays.fill( level, -1 );
+        level[ source ] = 0;
+        queue[ 0 ] = source;
+        int head = 0;
+        int tail = 1;
+        while ( head < tail ) {
+            int u = queue[ head++ ];
+            if ( level[ sink ] >= 0 && level[ u ] >= level[ sink ] ) {
+                break;
+            }
+            counters.nodesVisited++;
+            long end = network.endArc( u );
+            counters.arcsScanned += end - network.firstArc( u );
+            for ( long a = network.firstArc( u ); a < end; a++ ) {
+                int v = network.head( a );
+                if ( level[ v ] < 0 && network.residual( a ) > 0 ) {
+                    level[ v ] = level[ u ] + 1;
+                    queue[ tail++ ] = v;
+                }
+            }
+        }
+        return level[ sink ] >= 0;
+    }
+
+    /**
+     * Push flow along the level-increasing paths of a network until none
+     * is left, as {@link #blockingFlow(CsrGraph, int, int, int[], int[],
+     * int[], SolverCounters, SolveBudget, long)} does.
+     * @param network the graph
+     * @param source the source node id
+     * @param sink the sink node id
+     * @param level each node's distance from the source; nodes found to
+     *              be dead ends are set to -1
+     * @param currentArc the next arc to try at each node
+     * @param path scratch space for the arcs of the current path
+     * @param counters where the search's work is counted
+     * @param budget when to stop early, or null
+     * @param before the arcs scanned in earlier phases
+     * @return the amount of flow pushed
+     */
+    private static long blockingFlow( ResidualNetwork network, int source,
+                                      int sink, int[] level,
+                                      long[] currentArc, long[] path,
+                                      SolverCounters counters,
+                                      SolveBudget budget, long before ) {
+        long pushed = 0;
+        int depth = 0;
+        int u = source;
+        while ( true ) {
+            if ( u == sink ) {
+                long delta = Long.MAX_VALUE;
+                for ( int i = 0; i < depth; i++ ) {
+                    delta = Math.min( delta, network.residual( path[ i ] ) );
+                }
+                int saturated = -1;
+                for ( int i = 0; i < depth; i++ ) {
+                    network.push( path[ i ], delta );
+                    if ( saturated < 0 &&
+                         network.residual( path[ i ] ) == 0 ) {
+                        saturated = i;
+                    }
+                }
+                pushed += delta;
+                counters.augmentations++;
+                if ( budget != null &&
+                     budget.shouldStop( before + counters.arcsScanned ) ) {
+                    return pushed;
+                }
+                depth = saturated;
+                u = network.tail( path[ depth ] );
+                continue;
+            }
+
+            long a = currentArc[ u ];
+            long end = network.endArc( u );
+            while ( a < end &&
+                    ( network.residual( a ) == 0 ||
+                      level[ network.head( a ) ] != level[ u ] + 1 ) ) {
+                a++;
+            }
+            counters.arcsScanned += a - currentArc[ u ] + ( a < end ? 1 : 0 );
+            currentArc[ u ] = a;
+            if ( a < end ) {
+                path[ depth++ ] = a;
+                u = network.head( a );
+                counters.nodesVisited++;
+            }
+            else {
+                level[ u ] = -1;
+                if ( depth == 0 ) {
+                    return pushed;
+                }
+                u = network.tail( path[ --depth ] );
+                currentArc[ u ]++;
+            }
+        }
+    }
+}
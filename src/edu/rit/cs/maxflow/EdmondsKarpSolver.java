@@ -0,0 +1,195 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.PathSearch;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.function.IntFunction;
+
+/**
+ * The Edmonds-Karp max flow algorithm: repeatedly find a shortest path
+ * with room for more flow using a {@link PathSearch}, and fill it.
+ * Each path tried is printed on standard output, unless the solver is
+ * made without a trace.
+ * <p>
+ * The trace is sampled so that it stays readable on long runs: the first
+ * {@value #TRACE_ALL} paths are all printed, and after that only the
+ * paths whose number is a power of two. If any were left out, a last
+ * line says how many.
+ * <p>
+ * The paths can also be found with a bidirectional {@link PathSearch},
+ * which explores far fewer nodes on graphs with a small diameter. The
+ * paths through a {@link ResidualNetwork} are always searched for from
+ * the source alone.
+ *
+ * @author RIT CS
+ * @author Ryan Nowak
+ */
+public class EdmondsKarpSolver implements MaxFlowSolver {
+
+    /**
+     * How many paths are printed before the trace is sampled
+     */
+    public static final int TRACE_ALL = 1000;
+
+    /**
+     * Where each path is printed, or null for nowhere
+     */
+    private final PrintStream trace;
+
+    /**
+     * Whether paths are searched for from both ends
+     */
+    private final boolean bidirectional;
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    /**
+     * Create a solver that prints its paths on standard output.
+     */
+    public EdmondsKarpSolver() {
+        this(System.out);
+    }
+
+    /**
+     * Create a solver.
+     * @param trace Where to print the paths tried, or null to print
+     *              nothing.
+     */
+    public EdmondsKarpSolver(PrintStream trace) {
+        this(trace, false);
+    }
+
+    /**
+     * Create a solver.
+     * @param trace Where to print the paths tried, or null to print
+     *              nothing.
+     * @param bidirectional True to search for each path from both ends.
+     */
+    public EdmondsKarpSolver(PrintStream trace, boolean bidirectional) {
+        this.trace = trace;
+        this.bidirectional = bidirectional;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked before each path is searched for.
+     */
+    @Override
+    public void setBudget(SolveBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The whole search is reported to the metrics as one phase.
+     */
+    @Override
+    public long maxFlow(FlowGraph graph) {
+        SolverProbe probe = new SolverProbe(
+                this.bidirectional ? "bidirectional-edmonds-karp" :
+                "edmonds-karp", this.metrics, graph);
+        CsrGraph csr = graph.getCsr();
+        return augment(probe, new PathSearch(graph, this.bidirectional),
+                       graph.getSource(), csr::name);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The whole search is reported to the metrics as one phase.
+     */
+    @Override
+    public long maxFlow(ResidualNetwork network, int source, int sink) {
+        SolverProbe probe = new SolverProbe("edmonds-karp", this.metrics,
+                                            network.nodeCount(),
+                                            network.arcCount() / 2);
+        return augment(probe, new PathSearch(network, source, sink),
+                       network.name(source), network::name);
+    }
+
+    /**
+     * Fill shortest paths until none is left or the budget runs out.
+     * @param probe where the work is counted
+     * @param search the search for paths from the source to the sink
+     * @param sourceName the source's name, for the trace
+     * @param names the name of each node id, for the trace
+     * @return the amount of flow added
+     */
+    private long augment(SolverProbe probe, PathSearch search,
+                         String sourceName, IntFunction<String> names) {
+        SolverCounters counters = probe.counters();
+        probe.beginPhase("augment");
+        PrintWriter out = this.trace == null ? null :
+                new PrintWriter(new BufferedWriter(
+                        new OutputStreamWriter(this.trace), 1 << 16));
+        long maxFlow = 0;
+        long paths = 0;
+        long printed = 0;
+        SolveBudget budget = this.budget;
+        boolean stopped = false;
+        while (!(stopped = budget != null &&
+                           budget.shouldStop(search.getArcsScanned())) &&
+               search.find()) {
+            counters.searches++;
+            counters.augmentations++;
+            paths++;
+            //The search found the most additional traffic tmax that can be added
+            boolean shown = out != null &&
+                    (paths <= TRACE_ALL || Long.bitCount(paths) == 1);
+            if (shown) {
+                printed++;
+                out.print("Trying ");
+                out.print(sourceName);
+                for (int i = 0; i < search.getLength(); i++) {
+                    out.print("->");
+                    out.print(names.apply(search.getHead(i)));
+                }
+                out.print("; ");
+            }
+            //for each edge, add tmax to the edge
+            long tmax = search.augment();
+            if (shown) {
+                out.print("adding ");
+                out.print(tmax);
+                out.println(" to path.");
+            }
+            maxFlow += tmax;
+        }
+        if (out != null) {
+            if (printed < paths) {
+                out.println("Tried " + paths + " paths; " +
+                            (paths - printed) + " not shown.");
+            }
+            out.flush();
+        }
+        if (!stopped) {
+            counters.searches++;
+        }
+        counters.nodesVisited = search.getNodesVisited();
+        counters.arcsScanned = search.getArcsScanned();
+        probe.endPhase();
+        probe.finish(maxFlow);
+        return maxFlow;
+    }
+}
@@ -0,0 +1,196 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+
+import java.util.Arrays;
+
+/**
+ * What is known about the value of a maximum flow after a solve that may
+ * have stopped early: the value of the flow the graph holds, which no
+ * maximum flow is below, and the capacity of a cut, which none is above.
+ * When the two are equal the value is exact. A
+ * {@link MinCostFlowSolver} that stopped before it knew its flow was the
+ * cheapest also says so, since the flow is then not the answer even if
+ * its value is.
+ * <p>
+ * The cut is found by {@link #of(FlowGraph)} with a search of the
+ * residual graph from the source. Every node the search reaches before
+ * the sink is given a level, and the nodes below each level form a cut
+ * whose only residual arcs lead to that level. The bound is the flow plus
+ * the smallest residual capacity into any level up to the sink's. A
+ * second search does the same backward from the sink, and the smaller of
+ * the two bounds is kept.
+ *
+ * @author RIT CS
+ */
+public final class FlowBounds {
+
+    /**
+     * The value of the flow, and the most the maximum flow could be
+     */
+    private final long lower;
+    private final long upper;
+
+    /**
+     * Whether the flow is known to be the cheapest of its value
+     */
+    private final boolean cheapest;
+
+    /**
+     * Make bounds.
+     * @param lower the value of a feasible flow
+     * @param upper the capacity of a cut
+     */
+    public FlowBounds( long lower, long upper ) {
+        this( lower, upper, true );
+    }
+
+    /**
+     * Make bounds.
+     * @param lower the value of a feasible flow
+     * @param upper the capacity of a cut
+     * @param cheapest false if the flow's edges have costs and it may not
+     *                 be the cheapest flow of its value
+     */
+    public FlowBounds( long lower, long upper, boolean cheapest ) {
+        if ( lower > upper ) {
+            throw new IllegalArgumentException(
+                    "lower bound " + lower + " is above upper bound " +
+                    upper );
+        }
+        this.lower = lower;
+        this.upper = upper;
+        this.cheapest = cheapest;
+    }
+
+    /**
+     * Bound the maximum flow of a graph from the flow it holds.
+     * @param graph a graph holding a flow, not a preflow
+     * @return the flow's value, and the smallest level cut's capacity
+     */
+    public static FlowBounds of( FlowGraph graph ) {
+        CsrGraph csr = graph.getCsr();
+        int source = graph.getSourceId();
+        int sink = graph.getSinkId();
+        long room = Math.min( room( csr, source, sink, false ),
+                              room( csr, sink, source, true ) );
+        long flow = graph.getFlowValue();
+        return new FlowBounds( flow, saturatedAdd( flow, room ) );
+    }
+
+    /**
+     * Find the level cut with the least room left, searching out from one
+     * end of the graph.
+     * @param csr the graph
+     * @param from the node the search starts from
+     * @param to the node at the other end
+     * @param reverse false to follow arcs forward from the source, true to
+     *                follow them backward from the sink
+     * @return the least residual capacity of the arcs between two levels
+     *         up to the other end's, or 0 if the search does not reach it
+     */
+    private static long room( CsrGraph csr, int from, int to,
+                              boolean reverse ) {
+        int n = csr.nodeCount();
+        int[] level = new int[ n ];
+        int[] queue = new int[ n ];
+        long[] between = new long[ n ];
+        Arrays.fill( level, -1 );
+        level[ from ] = 0;
+        queue[ 0 ] = from;
+        int head = 0;
+        int tail = 1;
+        while ( head < tail ) {
+            int u = queue[ head++ ];
+            int next = level[ u ] + 1;
+            if ( level[ to ] >= 0 && next > level[ to ] ) {
+                break;
+            }
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                long residual = csr.residual( reverse ? csr.mate( a ) : a );
+                int v = csr.head( a );
+                if ( residual > 0 ) {
+                    if ( level[ v ] < 0 ) {
+                        level[ v ] = next;
+                        queue[ tail++ ] = v;
+                    }
+                    if ( level[ v ] == next ) {
+                        between[ next ] = saturatedAdd( between[ next ],
+                                                        residual );
+                    }
+                }
+            }
+        }
+        if ( level[ to ] < 0 ) {
+            return 0;
+        }
+        long room = Long.MAX_VALUE;
+        for ( int k = 1; k <= level[ to ]; k++ ) {
+            room = Math.min( room, between[ k ] );
+        }
+        return room;
+    }
+
+    /**
+     * @return the value of the flow found
+     */
+    public long getLower() {
+        return this.lower;
+    }
+
+    /**
+     * @return the capacity of the cut found; no flow is bigger
+     */
+    public long getUpper() {
+        return this.upper;
+    }
+
+    /**
+     * @return false if the flow may not be the cheapest of its value
+     */
+    public boolean isCheapest() {
+        return this.cheapest;
+    }
+
+    /**
+     * @return true if the maximum flow's value is not known exactly
+     */
+    public boolean isInexact() {
+        return this.lower < this.upper;
+    }
+
+    /**
+     * @return true if the value is not known exactly, or the flow may not
+     *         be the cheapest
+     */
+    public boolean isPartial() {
+        return isInexact() || !this.cheapest;
+    }
+
+    /**
+     * @return the same bounds, for a flow that may not be the cheapest
+     */
+    public FlowBounds notCheapest() {
+        return new FlowBounds( this.lower, this.upper, false );
+    }
+
+    /**
+     * @return the value, or the range it lies in if it is not exact
+     */
+    @Override
+    public String toString() {
+        return isInexact() ?
+               "between " + this.lower + " and " + this.upper :
+               Long.toString( this.lower );
+    }
+
+    /**
+     * @param a a sum that is not negative
+     * @param b an amount that is not negative
+     * @return a + b, or {@link Long#MAX_VALUE} if that is too big
+     */
+    private static long saturatedAdd( long a, long b ) {
+        return b > Long.MAX_VALUE - a ? Long.MAX_VALUE : a + b;
+    }
+}
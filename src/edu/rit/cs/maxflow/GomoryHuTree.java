@@ -0,0 +1,369 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A Gomory-Hu tree of a {@link FlowGraph}: a tree on the graph's nodes in
+ * which the minimum cut between any two nodes is the lightest edge on the
+ * tree path between them. Once the tree is built, a query walks that
+ * path and needs no max flow computation at all.
+ * <p>
+ * The tree is built with Gusfield's method, which runs n-1 max flows on
+ * the original graph, the i-th between node i and its current parent.
+ * Those flows are run in parallel: each worker thread pushes flow through
+ * its own residual arrays over the graph's shared nodes and arcs, see
+ * {@link CsrGraph#shareTopology()}. A node's flow is started as soon as
+ * it is near the front of the queue, using the parent it has then, and
+ * the results are applied strictly in node order. If applying an earlier
+ * node's cut changes a later node's parent, the later node's flow is run
+ * again, so the tree is exactly what the sequential method builds.
+ * <p>
+ * A tree can be saved and loaded with Java serialization, or with
+ * {@link #save(Path)} and {@link #load(Path)}.
+ *
+ * @author RIT CS
+ */
+public final class GomoryHuTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The name of each node, indexed by id
+     */
+    private final String[] names;
+
+    /**
+     * Each node's parent in the tree, or -1 for the root, node 0
+     */
+    private final int[] parent;
+
+    /**
+     * The minimum cut between each node and its parent
+     */
+    private final long[] weight;
+
+    /**
+     * How many tree edges lie between each node and the root
+     */
+    private final int[] depth;
+
+    /**
+     * The id of each node name, built when first needed
+     */
+    private transient Map< String, Integer > ids;
+
+    /**
+     * Build the tree for a graph, using Dinic's algorithm for the flows.
+     * The graph's source, sink and flow are ignored.
+     * @param graph the graph
+     * @param threads how many flows to run at once
+     * @return the tree
+     */
+    public static GomoryHuTree build( FlowGraph graph, int threads ) {
+        return build( graph, threads, DinicSolver::new );
+    }
+
+    /**
+     * Build the tree for a graph. The graph's source, sink and flow are
+     * ignored, and its edges must not be changed until this returns.
+     * @param graph the graph
+     * @param threads how many flows to run at once
+     * @param solvers makes the solver each flow is computed with
+     * @return the tree
+     */
+    public static GomoryHuTree build( FlowGraph graph, int threads,
+                                      Supplier< MaxFlowSolver > solvers ) {
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "threads must be positive" );
+        }
+        CsrGraph csr = graph.getCsr();
+        int n = csr.nodeCount();
+        String[] names = new String[ n ];
+        for ( int u = 0; u < n; u++ ) {
+            names[ u ] = csr.name( u );
+        }
+        int[] parent = new int[ n ];
+        long[] weight = new long[ n ];
+        if ( n > 0 ) {
+            parent[ 0 ] = -1;
+        }
+
+        ThreadLocal< CsrGraph > residuals =
+                ThreadLocal.withInitial( csr::shareTopology );
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        try {
+            List< Future< Cut > > pending =
+                    new ArrayList<>( Collections.nCopies( n, null ) );
+            int window = 2 * threads;
+            int next = 1;
+            for ( int s = 1; s < n; s++ ) {
+                for ( ; next < n && next <= s + window; next++ ) {
+                    pending.set( next, pool.submit( cutTask(
+                            residuals, solvers, next, parent[ next ] ) ) );
+                }
+                Cut cut = await( pending.get( s ) );
+                pending.set( s, null );
+                int t = parent[ s ];
+                weight[ s ] = cut.value;
+                for ( int i = 0; i < n; i++ ) {
+                    if ( i != s && parent[ i ] == t && cut.side.get( i ) ) {
+                        parent[ i ] = s;
+                        if ( i > s && i < next ) {
+                            pending.get( i ).cancel( false );
+                            pending.set( i, pool.submit( cutTask(
+                                    residuals, solvers, i, s ) ) );
+                        }
+                    }
+                }
+                if ( parent[ t ] >= 0 && cut.side.get( parent[ t ] ) ) {
+                    parent[ s ] = parent[ t ];
+                    parent[ t ] = s;
+                    weight[ s ] = weight[ t ];
+                    weight[ t ] = cut.value;
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return new GomoryHuTree( names, parent, weight );
+    }
+
+    /**
+     * @param residuals each worker's own residual arrays
+     * @param solvers makes the solver to use
+     * @param s the node to cut from
+     * @param t the node to cut it from
+     * @return a task computing a minimum cut between s and t
+     */
+    private static Callable< Cut > cutTask(
+            ThreadLocal< CsrGraph > residuals,
+            Supplier< MaxFlowSolver > solvers, int s, int t ) {
+        return () -> {
+            CsrGraph csr = residuals.get();
+            csr.clearFlow();
+            FlowGraph view = new FlowGraph( csr, s, t );
+            long value = solvers.get().maxFlow( view );
+            return new Cut( value,
+                            MinCut.findNearSink( view ).getSourceSide() );
+        };
+    }
+
+    /**
+     * Wait for a cut, passing on anything it threw.
+     * @param future the cut being computed
+     * @return the cut
+     */
+    private static Cut await( Future< Cut > future ) {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "interrupted", ie );
+        }
+        catch ( ExecutionException ee ) {
+            if ( ee.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException( ee.getCause() );
+        }
+    }
+
+    /**
+     * Make a tree and work out the depth of each node.
+     * @param names the name of each node
+     * @param parent each node's parent, -1 for the root
+     * @param weight the minimum cut between each node and its parent
+     */
+    private GomoryHuTree( String[] names, int[] parent, long[] weight ) {
+        this.names = names;
+        this.parent = parent;
+        this.weight = weight;
+        this.depth = new int[ parent.length ];
+        int[] stack = new int[ parent.length ];
+        boolean[] done = new boolean[ parent.length ];
+        for ( int u = 0; u < parent.length; u++ ) {
+            int top = 0;
+            int v = u;
+            while ( v >= 0 && !done[ v ] ) {
+                stack[ top++ ] = v;
+                v = parent[ v ];
+            }
+            int d = v >= 0 ? this.depth[ v ] + 1 : 0;
+            while ( top > 0 ) {
+                v = stack[ --top ];
+                this.depth[ v ] = d++;
+                done[ v ] = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes in the tree
+     */
+    public int nodeCount() {
+        return this.names.length;
+    }
+
+    /**
+     * @param u a node id
+     * @return the node's name
+     */
+    public String name( int u ) {
+        return this.names[ u ];
+    }
+
+    /**
+     * @param u a node id
+     * @return the node's parent in the tree, or -1 for the root
+     */
+    public int parent( int u ) {
+        return this.parent[ u ];
+    }
+
+    /**
+     * @param u a node id other than the root's
+     * @return the minimum cut between the node and its parent
+     */
+    public long weight( int u ) {
+        return this.weight[ u ];
+    }
+
+    /**
+     * Find the minimum cut between two nodes: the lightest tree edge on
+     * the path between them.
+     * @param u one node's id
+     * @param v the other node's id
+     * @return the value of a minimum cut between them, which is the
+     *         value of a maximum flow from either one to the other
+     * @rit.pre u and v are different
+     */
+    public long minCut( int u, int v ) {
+        long result = Long.MAX_VALUE;
+        while ( u != v ) {
+            if ( this.depth[ u ] >= this.depth[ v ] ) {
+                result = Math.min( result, this.weight[ u ] );
+                u = this.parent[ u ];
+            }
+            else {
+                result = Math.min( result, this.weight[ v ] );
+                v = this.parent[ v ];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the minimum cut between two nodes, by name.
+     * @param a one node's name
+     * @param b the other node's name
+     * @return the value of a minimum cut between them
+     * @throws GraphException if either node is not in the tree, or they
+     *                        are the same node
+     */
+    public long minCut( String a, String b ) throws GraphException {
+        int u = id( a );
+        int v = id( b );
+        if ( u == v ) {
+            throw new GraphException( "Cannot cut a node from itself: " + a );
+        }
+        return minCut( u, v );
+    }
+
+    /**
+     * @param name a node name
+     * @return the node's id
+     * @throws GraphException if it is not in the tree
+     */
+    private int id( String name ) throws GraphException {
+        if ( this.ids == null ) {
+            Map< String, Integer > map = new HashMap<>();
+            for ( int u = 0; u < this.names.length; u++ ) {
+                map.put( this.names[ u ], u );
+            }
+            this.ids = map;
+        }
+        Integer u = this.ids.get( name );
+        if ( u == null ) {
+            throw new GraphException( "Node is not in the tree: " + name );
+        }
+        return u;
+    }
+
+    /**
+     * Save this tree to a file.
+     * @param file the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void save( Path file ) throws IOException {
+        try ( ObjectOutputStream out =
+                      new ObjectOutputStream( Files.newOutputStream( file ) ) ) {
+            out.writeObject( this );
+        }
+    }
+
+    /**
+     * Load a tree saved by {@link #save(Path)}.
+     * @param file the file to read
+     * @return the tree
+     * @throws IOException if the file cannot be read
+     * @throws GraphException if the file does not hold a tree
+     */
+    public static GomoryHuTree load( Path file )
+            throws IOException, GraphException {
+        try ( ObjectInputStream in =
+                      new ObjectInputStream( Files.newInputStream( file ) ) ) {
+            return (GomoryHuTree) in.readObject();
+        }
+        catch ( ClassNotFoundException | ClassCastException e ) {
+            throw new GraphException( file + ": not a Gomory-Hu tree" );
+        }
+    }
+
+    /**
+     * The value of a minimum cut and the nodes on its first node's side.
+     */
+    private static final class Cut {
+
+        /**
+         * The cut's capacity
+         */
+        final long value;
+
+        /**
+         * The nodes on the side of the node cut from
+         */
+        final BitSet side;
+
+        /**
+         * @param value the cut's capacity
+         * @param side the nodes on the side of the node cut from
+         */
+        Cut( long value, BitSet side ) {
+            this.value = value;
+            this.side = side;
+        }
+    }
+}
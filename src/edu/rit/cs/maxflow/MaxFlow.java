@@ -1,12 +1,18 @@
 package edu.rit.cs.maxflow;
 
+import edu.rit.cs.labgraph.CsrGraph;
 import edu.rit.cs.labgraph.Edge;
 import edu.rit.cs.labgraph.GraphException;
 import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphReduction;
+import edu.rit.cs.labgraph.NodeOrder;
+import edu.rit.cs.labgraph.SnapshotNetwork;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Optional;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 
 /**
  * A program that reads in a graph and computes the maximum flow possible
@@ -32,28 +38,240 @@ public class MaxFlow {
      */
     public static final String DEFAULT_SINK = "sink";
 
+    /**
+     * The name of the solver used if none is given on the command line,
+     * unless the graph is an assignment problem and no trace is printed
+     */
+    public static final String DEFAULT_SOLVER = "edmonds-karp";
+
+    /**
+     * The output level used if none is given on the command line
+     */
+    public static final String DEFAULT_OUTPUT = "trace";
+
+    /**
+     * How to run the program
+     */
+    private static final String USAGE =
+            "Usage: java MaxFlow [-s solver] [-t threads] [-w snapshot]" +
+            " [-c source|sink] [-o value|summary|trace] [-f flow-file]" +
+            " [-r] [-n bfs|rcm|degree] [-d millis]" + NEW_LINE +
+            "       graph-file [source sink]" + NEW_LINE +
+            "  graph-file may be an edge list or a snapshot;" +
+            " -w saves a snapshot of it" + NEW_LINE +
+            "  a snapshot solved by a named max flow solver, with just" +
+            " -o value or summary," + NEW_LINE +
+            "     is mapped and solved where it lies" + NEW_LINE +
+            "  -c prints the minimum cut nearest the source or the sink" +
+            NEW_LINE +
+            "  -o prints just the flow's value, a summary of the solve," +
+            " or the graphs and" + NEW_LINE +
+            "     paths tried (the default)" + NEW_LINE +
+            "  -f writes each edge's nodes, capacity, cost if edges have" +
+            " them, and flow to a" + NEW_LINE +
+            "     file" + NEW_LINE +
+            "  -r reduces the graph before solving it: drops nodes that" +
+            " cannot carry flow," + NEW_LINE +
+            "     bypasses chains and merges parallel edges" + NEW_LINE +
+            "  -n renumbers the nodes breadth-first from the source," +
+            " in reverse" + NEW_LINE +
+            "     Cuthill-McKee order, or by degree, before solving" +
+            NEW_LINE +
+            "  -d stops the solver after that many milliseconds, and" +
+            " prints bounds on the" + NEW_LINE +
+            "     flow if it was not done" + NEW_LINE +
+            "  solvers: edmonds-karp, bidirectional-edmonds-karp," +
+            " capacity-scaling, dinic," + NEW_LINE +
+            "           push-relabel, parallel-push-relabel, matching," +
+            NEW_LINE +
+            "           successive-shortest-paths, cost-scaling" + NEW_LINE +
+            "  matching solves assignment problems, with unit capacities," +
+            " by Hopcroft-Karp," + NEW_LINE +
+            "  and any other graph by dinic" + NEW_LINE +
+            "  without -s, assignment problems are solved by matching" +
+            " unless the output is" + NEW_LINE +
+            "  a trace, and other graphs by edmonds-karp" + NEW_LINE +
+            "  successive-shortest-paths and cost-scaling find the" +
+            " cheapest maximum flow" + NEW_LINE +
+            "  when edges have costs, and cannot be used with -r; the" +
+            " flow's cost is" + NEW_LINE +
+            "  printed whenever edges have costs";
+
     /**
      * Process the command line, create a FlowGraph, and perform the
      * Max Flow algorithm on it.
      * Details of output format are shown in the lab document.
-     * @param args [0] graph file name; [1],[2] source and sink names (optional)
+     * @param args options, then [0] graph file name;
+     *             [1],[2] source and sink names (optional)
      */
     public static void main( String[] args ) {
         try {
-            FlowGraph graph = readFlowGraph( args );
+            String solverName = null;
+            int threads = Runtime.getRuntime().availableProcessors();
+            String snapshot = null;
+            String cutSide = null;
+            String output = DEFAULT_OUTPUT;
+            String flowFile = null;
+            boolean reduce = false;
+            NodeOrder order = null;
+            int millis = 0;
+            int first = 0;
+            while ( first < args.length && args[ first ].startsWith( "-" ) ) {
+                if ( args[ first ].equals( "-r" ) ) {
+                    reduce = true;
+                    first++;
+                    continue;
+                }
+                if ( first + 1 == args.length ) {
+                    usage();
+                }
+                String value = args[ first + 1 ];
+                switch ( args[ first ] ) {
+                    case "-s":
+                        solverName = value;
+                        break;
+                    case "-t":
+                        threads = positive( "-t", value );
+                        break;
+                    case "-w":
+                        snapshot = value;
+                        break;
+                    case "-c":
+                        if ( !value.equals( "source" ) &&
+                             !value.equals( "sink" ) ) {
+                            usage();
+                        }
+                        cutSide = value;
+                        break;
+                    case "-o":
+                        if ( !value.equals( "value" ) &&
+                             !value.equals( "summary" ) &&
+                             !value.equals( "trace" ) ) {
+                            usage();
+                        }
+                        output = value;
+                        break;
+                    case "-f":
+                        flowFile = value;
+                        break;
+                    case "-n":
+                        order = NodeOrder.named( value );
+                        break;
+                    case "-d":
+                        millis = positive( "-d", value );
+                        break;
+                    default:
+                        usage();
+                }
+                first += 2;
+            }
+            boolean trace = output.equals( "trace" );
+            MaxFlowSolver solver = solverName == null ? null :
+                                   solverNamed( solverName, threads,
+                                                trace ? System.out : null );
+            if ( reduce && solver instanceof MinCostFlowSolver ) {
+                throw new GraphException( "-r cannot be used with " +
+                                          solverName + ": reducing the" +
+                                          " graph changes its costs" );
+            }
+            String[] files = Arrays.copyOfRange( args, first, args.length );
+            if ( solver != null && !( solver instanceof MinCostFlowSolver ) &&
+                 !trace && snapshot == null && cutSide == null &&
+                 flowFile == null && !reduce && order == null &&
+                 millis == 0 && files.length > 0 &&
+                 SnapshotNetwork.isSnapshot( Paths.get( files[ 0 ] ) ) &&
+                 solveMapped( files, solver, output.equals( "summary" ) ) ) {
+                return;
+            }
+            FlowGraph graph = readFlowGraph( files, threads );
+            if ( snapshot != null ) {
+                graph.writeSnapshot( snapshot );
+            }
+            if ( order != null ) {
+                graph = order.apply( graph );
+            }
 
-            System.out.println( "Initial Graph:" + NEW_LINE );
-            graph.show( true );
-            System.out.println();
+            if ( trace ) {
+                System.out.println( "Initial Graph:" + NEW_LINE );
+                graph.show( true );
+                System.out.println();
+            }
+            else if ( output.equals( "summary" ) ) {
+                System.out.println( "Graph has " +
+                                    graph.getCsr().nodeCount() +
+                                    " nodes and " +
+                                    graph.getCsr().edgeCount() + " edges" );
+            }
+            GraphReduction reduction = null;
+            if ( reduce ) {
+                reduction = GraphReduction.reduce( graph );
+                CsrGraph small = reduction.getReduced().getCsr();
+                if ( !output.equals( "value" ) ) {
+                    System.out.println( "Reduced graph has " +
+                                        small.nodeCount() + " nodes and " +
+                                        small.edgeCount() + " edges" );
+                }
+            }
 
 
             // Uncomment these lines after you have finished the in-lab part.
-            final long maxFlow = maxFlow( graph );
-            System.out.println( "Max flow is " + maxFlow );
+            FlowGraph solved = reduce ? reduction.getReduced() : graph;
+            if ( solver == null ) {
+                // Matching prints no paths, so a trace keeps the default.
+                solver = !trace && BipartiteMatchingSolver.fits( solved ) ?
+                         new BipartiteMatchingSolver() :
+                         solverNamed( DEFAULT_SOLVER, threads,
+                                      trace ? System.out : null );
+            }
+            if ( output.equals( "summary" ) ) {
+                solver.setMetrics( summary( System.out ) );
+            }
+            FlowBounds bounds = null;
+            if ( millis > 0 ) {
+                bounds = solver.maxFlow(
+                        solved, new SolveBudget( Duration.ofMillis( millis ) ) );
+            }
+            final long maxFlow = bounds == null ? solver.maxFlow( solved ) :
+                                 bounds.getLower();
+            if ( reduce ) {
+                reduction.expand();
+            }
+            if ( bounds != null && bounds.isInexact() ) {
+                System.out.println( "Max flow is " + bounds +
+                                    " (stopped after " + millis + " ms)" );
+            }
+            else {
+                System.out.println( "Max flow is " + maxFlow );
+            }
+            if ( graph.getCsr().hasCosts() ) {
+                String least = bounds == null || bounds.isCheapest() ? "" :
+                               ", which may not be the least (stopped after " +
+                               millis + " ms)";
+                System.out.println( "Flow cost is " + graph.getFlowCost() +
+                                    least );
+            }
 
-            System.out.println( NEW_LINE + "Solution:" + NEW_LINE );
-            graph.show( false );
+            if ( trace ) {
+                System.out.println( NEW_LINE + "Solution:" + NEW_LINE );
+                graph.show( false );
+            }
+            if ( flowFile != null ) {
+                graph.writeFlows( flowFile );
+            }
 
+            if ( cutSide != null && bounds != null && bounds.isInexact() ) {
+                System.out.println( NEW_LINE + "No minimum cut: the solve" +
+                                    " stopped early" );
+            }
+            else if ( cutSide != null ) {
+                MinCut cut = cutSide.equals( "source" ) ?
+                        MinCut.find( graph ) : MinCut.findNearSink( graph );
+                System.out.println( NEW_LINE + "Min cut capacity is " +
+                                    cut.getCapacity() );
+                for ( Edge e: cut.getCutEdges() ) {
+                    System.out.println( e );
+                }
+            }
         }
         catch( IOException ioe ) {
             System.err.println( "File IO Problem" );
@@ -65,64 +283,122 @@ public class MaxFlow {
     }
 
     /**
-     * Perform the Max Flow algorithm on the given graph. The algorithm is
-     * described elsewhere. The graph's edges' flows are modified by this method.
-     * @param graph The graph used in the computation of max flow.
-     * @return The amount of flow that can be sent from the graph's source
-     * to its' sink.
+     * Look up a max flow algorithm by the name used on the command line.
+     * @param name the solver's name
+     * @param threads how many threads a parallel solver may use
+     * @param trace where a solver that prints its paths prints them, or
+     *              null to print nothing
+     * @return a new instance of the named solver
+     * @throws GraphException if there is no solver by that name
      */
-    private static long maxFlow(FlowGraph graph) {
-        Optional<List<String>> path = graph.doBFS();
-        long maxFlow = 0;
-        while (path.isPresent()) {
-            //Compute most additional traffic tmax that can be added
-            System.out.print("Trying " + String.join("->", path.get()) + "; ");
-            long tmax = graph.getAvailableFlow(path.get().get(0), path.get().get(1));
-            for (int i = 1; i < path.get().size()-1; i++) {
-                String in = path.get().get(i);
-                String out = path.get().get(i+1);
-                if (graph.getEdge(in, out).availableFlow(in, out) < tmax) {
-                    tmax = graph.getEdge(in, out).availableFlow(in, out);
-                }
+    public static MaxFlowSolver solverNamed( String name, int threads,
+                                             PrintStream trace )
+            throws GraphException {
+        switch ( name ) {
+            case "edmonds-karp":
+                return new EdmondsKarpSolver( trace );
+            case "bidirectional-edmonds-karp":
+                return new EdmondsKarpSolver( trace, true );
+            case "capacity-scaling":
+                return new CapacityScalingSolver();
+            case "dinic":
+                return new DinicSolver();
+            case "push-relabel":
+                return new PushRelabelSolver();
+            case "parallel-push-relabel":
+                return new ParallelPushRelabelSolver( threads );
+            case "matching":
+                return new BipartiteMatchingSolver();
+            case "successive-shortest-paths":
+                return new SuccessiveShortestPathSolver();
+            case "cost-scaling":
+                return new CostScalingSolver();
+            default:
+                throw new GraphException( "Unknown solver: " + name );
+        }
+    }
+
+    /**
+     * Make a listener that prints one line about the work of each solve.
+     * @param out where to print
+     * @return the listener
+     */
+    private static SolverMetrics summary( PrintStream out ) {
+        return new SolverMetrics() {
+            @Override
+            public void phaseEnded( String solver, String phase,
+                                    SolverCounters counters, long nanos,
+                                    long allocatedBytes ) {
             }
-            //for each edge, add tmax to the edge
-            for (int i = 0; i < path.get().size()-1; i++) {
-                String in = path.get().get(i);
-                String out = path.get().get(i+1);
-                graph.getEdge(in, out).changeFlow(in, out, tmax);
+
+            @Override
+            public void solveEnded( String solver, long value,
+                                    SolverCounters totals, long nanos,
+                                    long allocatedBytes ) {
+                out.printf( "Solved with %s in %.3f ms: %s%n", solver,
+                            nanos / 1e6, totals );
+            }
+        };
+    }
+
+    /**
+     * Read a positive whole number from the command line.
+     * @param option the option the value was given for
+     * @param value the value as typed
+     * @return the value
+     * @throws GraphException if the value is not a positive integer
+     */
+    private static int positive( String option, String value )
+            throws GraphException {
+        try {
+            int result = Integer.parseInt( value );
+            if ( result > 0 ) {
+                return result;
             }
-            System.out.println("adding " + tmax + " to path.");
-            maxFlow += tmax;
-            //Find shortest path using BFS
-            path = graph.doBFS();
         }
+        catch ( NumberFormatException nfe ) {
+            // reported below
+        }
+        throw new GraphException(
+                option + " needs a positive integer, not " + value );
+    }
 
-        //Get max flow
-        /*long maxFlow = 0;
-        for (Edge edge: graph.getEdgesAt(graph.getSink())) {
-            maxFlow += edge.getFlow(graph.getSink(),
-                    edge.getOtherEnd(graph.getSink()));
-        }*/
-        return maxFlow;
+    /**
+     * Print how to run the program and quit.
+     */
+    private static void usage() {
+        System.err.println( USAGE );
+        System.exit( 1 );
     }
 
     /**
      * Build a FlowGraph object from the command line arguments and
      * the named edge-list file.
      * @param args [0] graph file name; [1],[2] source and sink names (optional)
+     * @param threads how many threads may read the file
      * @return a fully built FlowGraph object
      * @throws GraphException if there is a problem with the command line
      *                         values or the contents of the file
      * @throws IOException if there is a problem opening or reading the file
      */
-    private static FlowGraph readFlowGraph( String[] args ) throws
+    private static FlowGraph readFlowGraph( String[] args, int threads ) throws
             GraphException, IOException {
+        String[] ends = endpoints( args );
+
+        // Read the graph into a variable called graph.
+        return new FlowGraph( args[ 0 ], ends[ 0 ], ends[ 1 ], threads );
+    }
+
+    /**
+     * Read the source and sink names from the command line arguments.
+     * @param args [0] graph file name; [1],[2] source and sink names (optional)
+     * @return the source's and the sink's names
+     * @throws GraphException if the source and sink are the same
+     */
+    private static String[] endpoints( String[] args ) throws GraphException {
         boolean nonStdEndpoints = args.length == 3;
         if ( !( args.length == 1 || nonStdEndpoints ) ) {
-            System.err.println(
-                    "Usage: java MaxFlow graph-file source sink"
-            );
-            System.exit( 1 );
+            usage();
         }
 
         // Read the source and sink nodes from the command line.
@@ -132,9 +408,50 @@ public class MaxFlow {
             throw new GraphException(
                     "Source and sink are the same: " + sink );
         }
+        return new String[]{ source, sink };
+    }
 
-        // Read the graph into a variable called graph.
-        return new FlowGraph( args[ 0 ], source, sink );
+    /**
+     * Solve a snapshot where it is mapped, without loading it into a
+     * FlowGraph, and print its max flow.
+     * @param args [0] snapshot file name; [1],[2] source and sink names
+     *             (optional)
+     * @param solver the max flow solver to use
+     * @param summary whether to print a summary of the graph and solve
+     * @return false, having printed nothing, if the snapshot holds costs,
+     *         which need a FlowGraph to print the flow's cost
+     * @throws GraphException if there is a problem with the command line
+     *                         values or the contents of the file
+     * @throws IOException if there is a problem mapping the file
+     */
+    private static boolean solveMapped( String[] args, MaxFlowSolver solver,
+                                        boolean summary )
+            throws GraphException, IOException {
+        String[] ends = endpoints( args );
+        SnapshotNetwork network =
+                SnapshotNetwork.open( Paths.get( args[ 0 ] ) );
+        if ( network.hasCosts() ) {
+            return false;
+        }
+        int source = network.id( ends[ 0 ] );
+        int sink = network.id( ends[ 1 ] );
+        if ( source < 0 ) {
+            throw new GraphException( "Source is not in the graph: " +
+                                      ends[ 0 ] );
+        }
+        if ( sink < 0 ) {
+            throw new GraphException( "Sink is not in the graph: " +
+                                      ends[ 1 ] );
+        }
+        if ( summary ) {
+            System.out.println( "Graph has " + network.nodeCount() +
+                                " nodes and " + network.edgeCount() +
+                                " edges" );
+            solver.setMetrics( summary( System.out ) );
+        }
+        System.out.println( "Max flow is " +
+                            solver.maxFlow( network, source, sink ) );
+        return true;
     }
 
 }
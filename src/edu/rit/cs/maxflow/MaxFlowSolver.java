@@ -0,0 +1,81 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+/**
+ * An algorithm that computes the maximum flow through a {@link FlowGraph}
+ * from its source to its sink.
+ *
+ * @author RIT CS
+ */
+public interface MaxFlowSolver {
+
+    /**
+     * Push as much flow as possible from the graph's source to its sink.
+     * The search starts from whatever flow the graph already holds, and
+     * the graph's edges' flows are modified by this method. After edges
+     * are added, removed or given new capacities through the graph, a
+     * second call only has to add what the changes allow.
+     * @param graph The graph used in the computation of max flow.
+     * @return The amount of flow added to the graph.
+     */
+    long maxFlow( FlowGraph graph );
+
+    /**
+     * Push as much flow as possible from one node to another through the
+     * arcs of a network, such as an
+     * {@link edu.rit.cs.labgraph.OffHeapGraph} too big for the heap, as
+     * {@link #maxFlow(FlowGraph)} does through a graph's edges.
+     * @param network the arcs, whose residual capacities are modified
+     * @param source the id of the node the flow starts from
+     * @param sink the id of the node the flow ends at
+     * @return The amount of flow added to the network.
+     * @throws UnsupportedOperationException if this solver needs more
+     *                                       than a network gives, such
+     *                                       as edge costs
+     */
+    long maxFlow( ResidualNetwork network, int source, int sink );
+
+    /**
+     * Report the work done by each later call to
+     * {@link #maxFlow(FlowGraph)}. Solvers that do not count their work
+     * ignore this.
+     * @param metrics the listener, or null for none
+     */
+    default void setMetrics( SolverMetrics metrics ) {
+    }
+
+    /**
+     * Let each later call to {@link #maxFlow(FlowGraph)} stop early when
+     * a budget runs out, leaving a feasible flow that may not be maximal.
+     * Solvers that cannot stop early ignore this, and always finish.
+     * @param budget the budget, or null to always finish
+     */
+    default void setBudget( SolveBudget budget ) {
+    }
+
+    /**
+     * Push flow from the graph's source to its sink until the maximum is
+     * reached or the budget runs out, whichever is first.
+     * @param graph The graph used in the computation of max flow.
+     * @param budget When to stop.
+     * @return The value of the flow the graph holds, and, if the solve
+     *         stopped before reaching the maximum, how much bigger the
+     *         maximum could be.
+     */
+    default FlowBounds maxFlow( FlowGraph graph, SolveBudget budget ) {
+        long value = graph.getFlowValue();
+        setBudget( budget );
+        try {
+            value += maxFlow( graph );
+        }
+        finally {
+            setBudget( null );
+        }
+        if ( budget.isExhausted() ) {
+            return FlowBounds.of( graph );
+        }
+        return new FlowBounds( value, value );
+    }
+}
@@ -0,0 +1,21 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.FlowGraph;
+
+/**
+ * An algorithm that finds, among the maximum flows through a
+ * {@link FlowGraph}, one of least cost. Each unit of flow through an edge
+ * costs the edge's cost, whichever way it runs, so an edge with a cost is
+ * like a pair of opposite arcs with that cost, and costs are never
+ * negative. {@link #maxFlow(FlowGraph)} returns the flow's value as any
+ * solver does, and {@link FlowGraph#getFlowCost()} then gives its cost.
+ * <p>
+ * The flow the graph already holds may be rerouted, or taken away and
+ * found again, since it is not in general the cheapest one of its value.
+ * A solve stopped early by a {@link SolveBudget} leaves a feasible flow,
+ * but it may be smaller or dearer than the one a whole solve finds.
+ *
+ * @author RIT CS
+ */
+public interface MinCostFlowSolver extends MaxFlowSolver {
+}
@@ -0,0 +1,216 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.Edge;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ParallelBfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A minimum cut of a {@link FlowGraph}, read off the residual graph a
+ * {@link MaxFlowSolver} leaves behind. No flow is computed here: one
+ * search over the residual arcs finds a side of the cut, and one pass
+ * over that side's arcs finds the edges that cross it.
+ * <p>
+ * A graph can have many minimum cuts. {@link #find(FlowGraph)} gives the
+ * one with the smallest source side: the nodes the source can still
+ * reach. {@link #findNearSink(FlowGraph)} gives the one with the
+ * smallest sink side: the nodes that can still reach the sink. On large
+ * graphs, both can run their search on several threads, with a
+ * {@link ParallelBfs}.
+ *
+ * @author RIT CS
+ */
+public final class MinCut {
+
+    /**
+     * The graph that was cut
+     */
+    private final FlowGraph graph;
+
+    /**
+     * The ids of the nodes on the source side
+     */
+    private final BitSet sourceSide;
+
+    /**
+     * The ids of the edges with one node on each side
+     */
+    private final int[] cutEdges;
+
+    /**
+     * The total capacity of the cut edges
+     */
+    private final long capacity;
+
+    /**
+     * Find the minimum cut closest to the source. The graph must hold a
+     * maximum flow.
+     * @param graph a graph after a call to
+     *              {@link MaxFlowSolver#maxFlow(FlowGraph)}
+     * @return the cut whose source side is every node the source can
+     *         reach along arcs with room for more flow
+     */
+    public static MinCut find( FlowGraph graph ) {
+        return new MinCut( graph, reached( graph, false ) );
+    }
+
+    /**
+     * Find the minimum cut closest to the sink. This also works when the
+     * graph only holds a maximum preflow, as a {@link PushRelabelSolver}
+     * that does not compute flows leaves it.
+     * @param graph a graph after a call to
+     *              {@link MaxFlowSolver#maxFlow(FlowGraph)}
+     * @return the cut whose sink side is every node that can reach the
+     *         sink along arcs with room for more flow
+     */
+    public static MinCut findNearSink( FlowGraph graph ) {
+        BitSet sourceSide = reached( graph, true );
+        sourceSide.flip( 0, graph.getCsr().nodeCount() );
+        return new MinCut( graph, sourceSide );
+    }
+
+    /**
+     * Find the minimum cut closest to the source, searching the residual
+     * graph on several threads.
+     * @param graph a graph after a call to
+     *              {@link MaxFlowSolver#maxFlow(FlowGraph)}
+     * @param workers how many threads to search with
+     * @return the same cut as {@link #find(FlowGraph)}
+     */
+    public static MinCut find( FlowGraph graph, int workers ) {
+        try ( ParallelBfs bfs = new ParallelBfs( graph.getCsr(), workers ) ) {
+            bfs.search( graph.getSourceId(), false );
+            return new MinCut( graph, bfs.getReached() );
+        }
+    }
+
+    /**
+     * Find the minimum cut closest to the sink, searching the residual
+     * graph on several threads.
+     * @param graph a graph after a call to
+     *              {@link MaxFlowSolver#maxFlow(FlowGraph)}
+     * @param workers how many threads to search with
+     * @return the same cut as {@link #findNearSink(FlowGraph)}
+     */
+    public static MinCut findNearSink( FlowGraph graph, int workers ) {
+        try ( ParallelBfs bfs = new ParallelBfs( graph.getCsr(), workers ) ) {
+            bfs.search( graph.getSinkId(), true );
+            BitSet sourceSide = bfs.getReached();
+            sourceSide.flip( 0, graph.getCsr().nodeCount() );
+            return new MinCut( graph, sourceSide );
+        }
+    }
+
+    /**
+     * Make the cut between a set of nodes and the rest, such as the
+     * source side found by {@link PushRelabelSolver#getSourceSide()}.
+     * @param graph the graph being cut
+     * @param sourceSide the ids of the nodes on the source side; the set
+     *                   is used, not copied
+     */
+    public MinCut( FlowGraph graph, BitSet sourceSide ) {
+        CsrGraph csr = graph.getCsr();
+        int[] edges = new int[ 16 ];
+        int count = 0;
+        long total = 0;
+        for ( int u = sourceSide.nextSetBit( 0 ); u >= 0;
+              u = sourceSide.nextSetBit( u + 1 ) ) {
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int e = csr.edge( a );
+                if ( !sourceSide.get( csr.head( a ) ) && !csr.isRemoved( e ) ) {
+                    if ( count == edges.length ) {
+                        edges = Arrays.copyOf( edges, 2 * count );
+                    }
+                    edges[ count++ ] = e;
+                    total += csr.capacity( e );
+                }
+            }
+        }
+        this.graph = graph;
+        this.sourceSide = sourceSide;
+        this.cutEdges = Arrays.copyOf( edges, count );
+        this.capacity = total;
+    }
+
+    /**
+     * Search the residual graph from the source, or backwards from the
+     * sink.
+     * @param graph the graph to search
+     * @param fromSink true to find the nodes that can reach the sink,
+     *                 false to find the nodes the source can reach
+     * @return the ids of the nodes found
+     */
+    private static BitSet reached( FlowGraph graph, boolean fromSink ) {
+        CsrGraph csr = graph.getCsr();
+        int root = fromSink ? graph.getSinkId() : graph.getSourceId();
+        BitSet seen = new BitSet( csr.nodeCount() );
+        int[] queue = new int[ csr.nodeCount() ];
+        int head = 0;
+        int tail = 0;
+        queue[ tail++ ] = root;
+        seen.set( root );
+        while ( head < tail ) {
+            int u = queue[ head++ ];
+            for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                int v = csr.head( a );
+                // Going backwards, v reaches u through the mate of a.
+                long room = csr.residual( fromSink ? csr.mate( a ) : a );
+                if ( room > 0 && !seen.get( v ) ) {
+                    seen.set( v );
+                    queue[ tail++ ] = v;
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * @return the ids of the nodes on the source side of the cut; the
+     *         set should not be changed
+     */
+    public BitSet getSourceSide() {
+        return this.sourceSide;
+    }
+
+    /**
+     * @param node a node's name
+     * @return true if the node is on the source side of the cut
+     */
+    public boolean isOnSourceSide( String node ) {
+        int u = this.graph.getCsr().id( node );
+        return u >= 0 && this.sourceSide.get( u );
+    }
+
+    /**
+     * @return the ids of the edges that cross the cut
+     */
+    public int[] getCutEdgeIds() {
+        return this.cutEdges.clone();
+    }
+
+    /**
+     * @return the edges that cross the cut. In a maximum flow, each one
+     *         is full, carrying flow from the source side to the sink side.
+     */
+    public List< Edge > getCutEdges() {
+        List< Edge > result = new ArrayList<>( this.cutEdges.length );
+        for ( int e: this.cutEdges ) {
+            result.add( this.graph.getEdge( e ) );
+        }
+        return Collections.unmodifiableList( result );
+    }
+
+    /**
+     * @return the total capacity of the edges that cross the cut, which
+     *         equals the value of a maximum flow
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+}
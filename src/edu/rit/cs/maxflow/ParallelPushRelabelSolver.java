@@ -0,0 +1,585 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ParallelBfs;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A multi-threaded push-relabel max flow algorithm.
+ * <p>
+ * Each active node is discharged by a task on a {@link ForkJoinPool}, so
+ * every worker has its own deque of nodes and idle workers steal from
+ * busy ones. Pushes and relabels follow Hong's lock-free scheme: a node
+ * is only ever discharged by one task at a time, residual capacities and
+ * excesses are updated with atomic adds, and a node pushes to its lowest
+ * residual neighbour. A stale view of a neighbour's height or residual
+ * capacity can only make a task do less, never break the preflow.
+ * <p>
+ * Work is done in rounds. When enough work has been done since the last
+ * global relabel, the tasks wind down, the heights are recomputed from
+ * residual distances by a {@link ParallelBfs} on the same pool, and a new
+ * round starts from the nodes that still have excess. Like
+ * {@link PushRelabelSolver}, phase one stops when no excess can reach the
+ * sink, and phase two returns the rest to the source.
+ * <p>
+ * A budget is checked between the rounds of phase one. If it runs out,
+ * phase two is run with the sink shut off, so that the graph is left
+ * holding a flow whose value is what reached the sink so far.
+ * <p>
+ * The tasks walk the arcs through {@link ResidualNetwork}, so the solver
+ * also runs on an {@link edu.rit.cs.labgraph.OffHeapGraph}, as long as it
+ * has fewer than 2^31 arcs: the residual capacities it works on are
+ * copied into an atomic array indexed by int. A network's global
+ * relabels are searched on the calling thread, since {@link ParallelBfs}
+ * needs a {@link CsrGraph}.
+ *
+ * @author RIT CS
+ */
+public class ParallelPushRelabelSolver implements MaxFlowSolver {
+
+    /**
+     * How much work, per node, is allowed between global relabels
+     */
+    private static final int NODE_WORK = 6;
+
+    /**
+     * How many worker threads to use
+     */
+    private final int threads;
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop phase one early, or null
+     */
+    private SolveBudget budget;
+
+    // Solver state, valid during a call to maxFlow. The graph is only set
+    // when a FlowGraph is solved.
+    private ResidualNetwork network;
+    private CsrGraph csr;
+    private int source;
+    private int sink;
+    private int n;
+    private AtomicLongArray residual;
+    private AtomicLongArray excess;
+    private AtomicIntegerArray height;
+
+    /**
+     * 1 while a node is queued or being discharged, so that only one
+     * task owns it at a time
+     */
+    private AtomicIntegerArray claimed;
+
+    /**
+     * Nodes at this height or above are not worked on in this phase
+     */
+    private int limit;
+
+    /**
+     * Work done in the current round
+     */
+    private LongAdder work;
+
+    /**
+     * How much work a round may do before the next global relabel
+     */
+    private long allowed;
+
+    /**
+     * Set when the current round should wind down
+     */
+    private volatile boolean relabelDue;
+
+    /**
+     * Whether phase one stopped early, so the sink takes no more flow
+     */
+    private boolean stopped;
+
+    /**
+     * The first exception thrown by a task in the current round
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * The pool running the current solve
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The search the global relabels run on the pool, or null to search
+     * the network on the calling thread
+     */
+    private ParallelBfs bfs;
+
+    /**
+     * The nodes waiting to be expanded by a search on the calling thread
+     */
+    private int[] queue;
+
+    /**
+     * The work counted by the calling thread, and by the tasks
+     */
+    private SolverCounters counters;
+    private LongAdder pushes;
+    private LongAdder relabels;
+    private LongAdder arcsScanned;
+    private LongAdder nodesVisited;
+
+    /**
+     * Create a solver that uses every available processor.
+     */
+    public ParallelPushRelabelSolver() {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Create a solver.
+     * @param threads how many worker threads to use
+     */
+    public ParallelPushRelabelSolver( int threads ) {
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "threads must be positive" );
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each of the two phases is reported to the metrics; what the worker
+     * threads allocate is not counted.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        SolverProbe probe = new SolverProbe( "parallel-push-relabel",
+                                             this.metrics, graph );
+        this.csr = graph.getCsr();
+        return solve( probe, this.csr.asNetwork(), graph.getSourceId(),
+                      graph.getSinkId() );
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException if the network has 2^31 arcs or
+     *                                       more; use a
+     *                                       {@link PushRelabelSolver}
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        if ( network.arcCount() > Integer.MAX_VALUE ) {
+            throw new UnsupportedOperationException(
+                    "parallel-push-relabel cannot solve " +
+                    network.arcCount() + " arcs" );
+        }
+        SolverProbe probe = new SolverProbe( "parallel-push-relabel",
+                                             this.metrics,
+                                             network.nodeCount(),
+                                             network.arcCount() / 2 );
+        this.csr = null;
+        return solve( probe, network, source, sink );
+    }
+
+    /**
+     * Run both phases, and copy the flow found back into the network.
+     * @param probe where the work is reported
+     * @param network the arcs to solve
+     * @param source the id of the node the flow starts from
+     * @param sink the id of the node the flow ends at
+     * @return the value of the flow added
+     */
+    private long solve( SolverProbe probe, ResidualNetwork network,
+                        int source, int sink ) {
+        this.counters = probe.counters();
+        probe.beginPhase( "phase one" );
+        init( network, source, sink );
+        long initial = this.excess.get( this.sink );
+        for ( int a = (int) network.firstArc( source );
+              a < network.endArc( source ); a++ ) {
+            long delta = this.residual.get( a );
+            if ( delta > 0 ) {
+                push( source, a, delta );
+                this.counters.pushes++;
+            }
+        }
+
+        this.pool = new ForkJoinPool( this.threads );
+        if ( this.csr != null ) {
+            this.bfs = new ParallelBfs( this.csr, this.pool );
+        }
+        else {
+            this.queue = new int[ this.n ];
+        }
+        try {
+            this.limit = this.n;
+            this.stopped = false;
+            solvePhase( this.budget );
+            long value = this.excess.get( this.sink ) - initial;
+            endPhase( probe );
+            probe.beginPhase( "phase two" );
+            this.limit = 2 * this.n;
+            solvePhase( null );
+
+            for ( int u = 0; u < this.n; u++ ) {
+                for ( int a = (int) network.firstArc( u );
+                      a < network.endArc( u ); a++ ) {
+                    if ( a < network.mate( a ) ) {
+                        network.push( a, network.residual( a ) -
+                                         this.residual.get( a ) );
+                    }
+                }
+            }
+            endPhase( probe );
+            probe.finish( value );
+            return value;
+        }
+        finally {
+            this.pool.shutdown();
+            this.pool = null;
+            this.bfs = null;
+            this.queue = null;
+            this.network = null;
+            this.csr = null;
+            this.counters = null;
+        }
+    }
+
+    /**
+     * Move the tasks' counts into the phase's counters and end the phase.
+     * @param probe the solve's probe
+     */
+    private void endPhase( SolverProbe probe ) {
+        this.counters.pushes += this.pushes.sumThenReset();
+        this.counters.relabels += this.relabels.sumThenReset();
+        this.counters.arcsScanned += this.arcsScanned.sumThenReset();
+        this.counters.nodesVisited += this.nodesVisited.sumThenReset();
+        probe.endPhase();
+    }
+
+    /**
+     * Set up the atomic arrays from the network's current flow.
+     * @param network the network being solved
+     * @param source the id of the node the flow starts from
+     * @param sink the id of the node the flow ends at
+     */
+    private void init( ResidualNetwork network, int source, int sink ) {
+        this.network = network;
+        this.source = source;
+        this.sink = sink;
+        this.n = network.nodeCount();
+        this.residual = new AtomicLongArray( (int) network.arcCount() );
+        this.excess = new AtomicLongArray( this.n );
+        this.height = new AtomicIntegerArray( this.n );
+        this.claimed = new AtomicIntegerArray( this.n );
+        this.work = new LongAdder();
+        this.pushes = new LongAdder();
+        this.relabels = new LongAdder();
+        this.arcsScanned = new LongAdder();
+        this.nodesVisited = new LongAdder();
+        this.allowed = (long) NODE_WORK * this.n + network.arcCount() / 2;
+        for ( int u = 0; u < this.n; u++ ) {
+            long net = 0;
+            for ( int a = (int) network.firstArc( u );
+                  a < network.endArc( u ); a++ ) {
+                this.residual.set( a, network.residual( a ) );
+                net += network.arcFlow( a );
+            }
+            this.excess.set( u, -net );
+        }
+    }
+
+    /**
+     * Run rounds of parallel discharging, each after a global relabel,
+     * until no node below the limit has excess, or the budget runs out.
+     * @param budget when to stop early, or null
+     */
+    private void solvePhase( SolveBudget budget ) {
+        while ( true ) {
+            if ( budget != null &&
+                 budget.shouldStop( this.counters.arcsScanned +
+                                    this.arcsScanned.sum() ) ) {
+                this.stopped = true;
+                return;
+            }
+            globalRelabel();
+            this.relabelDue = false;
+            this.work.reset();
+            boolean any = false;
+            for ( int u = 0; u < this.n; u++ ) {
+                this.claimed.set( u, 0 );
+                any |= isActive( u );
+            }
+            if ( !any ) {
+                return;
+            }
+            this.pool.invoke( new Round() );
+            if ( this.failure != null ) {
+                RuntimeException e = this.failure;
+                this.failure = null;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param u a node id
+     * @return true if u has excess to move in this phase
+     */
+    private boolean isActive( int u ) {
+        return u != this.source && u != this.sink &&
+               this.excess.get( u ) > 0 && this.height.get( u ) < this.limit;
+    }
+
+    /**
+     * Push flow along an arc and wake up the node it reaches.
+     * @param u the node the arc leaves
+     * @param a the arc
+     * @param delta how much flow to push
+     */
+    private void push( int u, int a, long delta ) {
+        int v = this.network.head( a );
+        this.residual.addAndGet( a, -delta );
+        this.residual.addAndGet( (int) this.network.mate( a ), delta );
+        this.excess.addAndGet( u, -delta );
+        this.excess.addAndGet( v, delta );
+        if ( this.pool != null && isActive( v ) &&
+             this.claimed.compareAndSet( v, 0, 1 ) ) {
+            new Discharge( v ).fork();
+        }
+    }
+
+    /**
+     * Move excess out of a node until it has none, has been lifted out of
+     * this phase, or the round is winding down.
+     * @param u a node owned by the calling task
+     */
+    private void discharge( int u ) {
+        long done = 0;
+        long moves = 0;
+        long lifts = 0;
+        int first = (int) this.network.firstArc( u );
+        int end = (int) this.network.endArc( u );
+        while ( !this.relabelDue ) {
+            long e = this.excess.get( u );
+            int h = this.height.get( u );
+            if ( e <= 0 || h >= this.limit ) {
+                break;
+            }
+            int lowest = Integer.MAX_VALUE;
+            int lowestArc = -1;
+            for ( int a = first; a < end; a++ ) {
+                if ( this.residual.get( a ) > 0 ) {
+                    int hv = this.height.get( this.network.head( a ) );
+                    if ( hv < lowest ) {
+                        lowest = hv;
+                        lowestArc = a;
+                    }
+                }
+            }
+            done += end - first;
+            if ( lowestArc >= 0 && h > lowest ) {
+                push( u, lowestArc,
+                      Math.min( e, this.residual.get( lowestArc ) ) );
+                moves++;
+            }
+            else {
+                this.height.set( u, lowestArc < 0 ? this.limit :
+                                    Math.min( lowest + 1, this.limit ) );
+                lifts++;
+            }
+        }
+        this.work.add( done );
+        this.arcsScanned.add( done );
+        this.pushes.add( moves );
+        this.relabels.add( lifts );
+        this.nodesVisited.increment();
+        if ( this.work.sum() > this.allowed ) {
+            this.relabelDue = true;
+        }
+    }
+
+    /**
+     * Reset every height to its exact residual distance to the sink, and
+     * in phase two, nodes that cannot reach the sink to n plus their
+     * distance to the source. Runs between rounds, when no task is live;
+     * the searches themselves are spread over the pool. After phase one
+     * stopped early, the sink is put above every other node, so all the
+     * excess goes back to the source.
+     */
+    private void globalRelabel() {
+        this.counters.searches++;
+        if ( this.bfs == null ) {
+            relabelNetwork();
+            return;
+        }
+        long nodes = this.bfs.getNodesVisited();
+        long arcs = this.bfs.getArcsScanned();
+        int unseen = 2 * this.n;
+        for ( int u = 0; u < this.n; u++ ) {
+            this.height.set( u, unseen );
+        }
+        this.height.set( this.source, this.n );
+        if ( this.stopped ) {
+            this.height.set( this.sink, unseen + 1 );
+        }
+        else {
+            this.height.set( this.sink, 0 );
+            reverseBFS( this.sink, unseen );
+        }
+        if ( this.limit > this.n ) {
+            reverseBFS( this.source, unseen );
+        }
+        this.counters.nodesVisited += this.bfs.getNodesVisited() - nodes;
+        this.counters.arcsScanned += this.bfs.getArcsScanned() - arcs;
+    }
+
+    /**
+     * Label the unlabelled nodes that can reach a root along arcs with
+     * room for more flow with their distance plus the root's height.
+     * @param root the sink or the source
+     * @param unseen the height of a node that has no label yet
+     */
+    private void reverseBFS( int root, int unseen ) {
+        this.bfs.search( root, -1, true,
+                         a -> this.residual.get( a ) > 0 &&
+                              this.height.get( this.csr.tail( a ) ) == unseen );
+        int base = this.height.get( root );
+        for ( int u = 0; u < this.n; u++ ) {
+            if ( u != root && this.bfs.isReached( u ) ) {
+                this.height.set( u, base + this.bfs.distance( u ) );
+            }
+        }
+    }
+
+    /**
+     * Reset the heights as {@link #globalRelabel()} does, searching the
+     * network on the calling thread.
+     */
+    private void relabelNetwork() {
+        int unseen = 2 * this.n;
+        for ( int u = 0; u < this.n; u++ ) {
+            this.height.set( u, unseen );
+        }
+        this.height.set( this.source, this.n );
+        if ( this.stopped ) {
+            this.height.set( this.sink, unseen + 1 );
+        }
+        else {
+            this.height.set( this.sink, 0 );
+            reverseSearch( this.sink, unseen );
+        }
+        if ( this.limit > this.n ) {
+            reverseSearch( this.source, unseen );
+        }
+    }
+
+    /**
+     * Label the unlabelled nodes that can reach a root along arcs with
+     * room for more flow with their distance plus the root's height,
+     * searching the network on the calling thread.
+     * @param root the sink or the source
+     * @param unseen the height of a node that has no label yet
+     */
+    private void reverseSearch( int root, int unseen ) {
+        ResidualNetwork network = this.network;
+        int head = 0;
+        int tail = 0;
+        this.queue[ tail++ ] = root;
+        while ( head < tail ) {
+            int v = this.queue[ head++ ];
+            int next = this.height.get( v ) + 1;
+            this.counters.nodesVisited++;
+            int end = (int) network.endArc( v );
+            int first = (int) network.firstArc( v );
+            this.counters.arcsScanned += end - first;
+            for ( int a = first; a < end; a++ ) {
+                int w = network.head( a );
+                if ( this.height.get( w ) == unseen &&
+                     this.residual.get( (int) network.mate( a ) ) > 0 ) {
+                    this.height.set( w, next );
+                    this.queue[ tail++ ] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * The root task of a round: start a task for every active node, then
+     * help run tasks until the pool is quiet.
+     */
+    private final class Round extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            for ( int u = 0; u < n; u++ ) {
+                if ( isActive( u ) && claimed.compareAndSet( u, 0, 1 ) ) {
+                    new Discharge( u ).fork();
+                }
+            }
+            helpQuiesce();
+        }
+    }
+
+    /**
+     * A task that owns one node and discharges it.
+     */
+    private final class Discharge extends RecursiveAction {
+
+        /**
+         * The node this task owns
+         */
+        private final int node;
+
+        /**
+         * @param node a node just claimed by the caller
+         */
+        Discharge( int node ) {
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                int u = this.node;
+                while ( true ) {
+                    discharge( u );
+                    claimed.set( u, 0 );
+                    // Someone may have pushed to u after it ran dry.
+                    if ( relabelDue || !isActive( u ) ||
+                         !claimed.compareAndSet( u, 0, 1 ) ) {
+                        return;
+                    }
+                }
+            }
+            catch ( RuntimeException e ) {
+                failure = e;
+                relabelDue = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package edu.rit.cs.maxflow;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for one phase of a max flow solve. Its
+ * duration is the phase's wall time.
+ *
+ * @author RIT CS
+ */
+@Name( "edu.rit.cs.maxflow.Phase" )
+@Label( "Max Flow Phase" )
+@Category( "Max Flow" )
+@Description( "One phase of a max flow solve" )
+@StackTrace( false )
+final class PhaseEvent extends Event {
+
+    @Label( "Solver" )
+    String solver;
+
+    @Label( "Phase" )
+    String phase;
+
+    @Label( "Augmentations" )
+    long augmentations;
+
+    @Label( "Pushes" )
+    long pushes;
+
+    @Label( "Relabels" )
+    long relabels;
+
+    @Label( "Searches" )
+    @Description( "Breadth-first searches and global relabels" )
+    long searches;
+
+    @Label( "Arcs Scanned" )
+    long arcsScanned;
+
+    @Label( "Nodes Visited" )
+    long nodesVisited;
+
+    @Label( "Allocated" )
+    @Description( "Bytes allocated by the solving thread, or -1" )
+    @DataAmount
+    long allocated;
+
+    /**
+     * Copy a phase's counters into this event.
+     * @param counters the work done in the phase
+     */
+    void set( SolverCounters counters ) {
+        this.augmentations = counters.augmentations;
+        this.pushes = counters.pushes;
+        this.relabels = counters.relabels;
+        this.searches = counters.searches;
+        this.arcsScanned = counters.arcsScanned;
+        this.nodesVisited = counters.nodesVisited;
+    }
+}
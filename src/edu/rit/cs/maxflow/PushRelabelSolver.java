@@ -0,0 +1,680 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The highest-label push-relabel max flow algorithm, with the global
+ * relabel and gap heuristics.
+ * <p>
+ * Phase one floods the graph from the source and moves excess toward
+ * the sink, always working on the highest active node. Once no excess
+ * can reach the sink, the value of the flow and a minimum cut are known.
+ * The graph then holds a preflow, not a flow: some nodes may still hold
+ * excess that could not reach the sink. Phase two returns that excess
+ * to the source, and is only run if edge flows are wanted.
+ * <p>
+ * Every so often, and at the start of each phase, the heights are reset
+ * to exact residual distances by a reverse BFS from the sink.
+ * <p>
+ * A budget is checked before each discharge in phase one. If it runs
+ * out, phase two is run with the sink shut off, whether or not flows are
+ * wanted, so that the graph is left holding a flow whose value is what
+ * reached the sink so far.
+ * <p>
+ * The same discharges and searches run on any {@link ResidualNetwork},
+ * such as an {@link edu.rit.cs.labgraph.OffHeapGraph} with more than 2^31
+ * arcs. A {@link FlowGraph} is solved by a copy of them that works on its
+ * {@link CsrGraph} directly, with int arc ids, which takes 3 to 20
+ * percent less time than going through the interface, as
+ * {@link DinicSolver}'s copy does.
+ *
+ * @author RIT CS
+ */
+public class PushRelabelSolver implements MaxFlowSolver {
+
+    /**
+     * How much work is counted for each relabel, on top of the arcs it scans
+     */
+    private static final int RELABEL_WORK = 12;
+
+    /**
+     * How much work, per node, is allowed between global relabels
+     */
+    private static final int NODE_WORK = 6;
+
+    /**
+     * Marks the end of a node list
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Whether phase two is run to turn the preflow into a flow
+     */
+    private final boolean computeFlows;
+
+    /**
+     * The nodes that could not reach the sink at the end of phase one
+     */
+    private BitSet sourceSide;
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop phase one early, or null
+     */
+    private SolveBudget budget;
+
+    // Solver state, valid during a call to maxFlow. Either csr and
+    // currentArc are set, or network and networkArc.
+    private CsrGraph csr;
+    private ResidualNetwork network;
+    private int source;
+    private int sink;
+    private int n;
+    private int[] height;
+    private long[] excess;
+    private int[] currentArc;
+    private long[] networkArc;
+    private int[] queue;
+    private SolverCounters counters;
+
+    /**
+     * The first active node at each height, linked through nextActive
+     */
+    private int[] activeHead;
+    private int[] nextActive;
+
+    /**
+     * The nodes at each height, doubly linked, used to find gaps
+     */
+    private int[] nodeHead;
+    private int[] nextNode;
+    private int[] prevNode;
+
+    /**
+     * The highest height that may hold an active node
+     */
+    private int maxActive;
+
+    /**
+     * The highest height that holds any node in the lists
+     */
+    private int maxHeight;
+
+    /**
+     * Nodes at this height or above are not worked on in this phase
+     */
+    private int limit;
+
+    /**
+     * Work done since the last global relabel
+     */
+    private long work;
+
+    /**
+     * Whether phase one stopped early, so the sink takes no more flow
+     */
+    private boolean stopped;
+
+    /**
+     * The arcs the last solve scanned
+     */
+    private long scanned;
+
+    /**
+     * Create a solver that leaves a full flow in the graph.
+     */
+    public PushRelabelSolver() {
+        this( true );
+    }
+
+    /**
+     * Create a solver.
+     * @param computeFlows true to convert the preflow into a flow after
+     *                     phase one; false to stop once the value and
+     *                     minimum cut are known
+     */
+    public PushRelabelSolver( boolean computeFlows ) {
+        this.computeFlows = computeFlows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If this solver was created without computing flows, the graph is
+     * left holding a preflow whose value into the sink is maximal, unless
+     * the budget ran out. Each of the two phases is reported to the
+     * metrics.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        SolverProbe probe = new SolverProbe( "push-relabel", this.metrics,
+                                             graph );
+        this.csr = graph.getCsr();
+        this.currentArc = new int[ this.csr.nodeCount() ];
+        return solve( probe, graph.getSourceId(), graph.getSinkId() );
+    }
+
+    /**
+     * {@inheritDoc}
+     * If this solver was created without computing flows, the network is
+     * left holding a preflow, as {@link #maxFlow(FlowGraph)} leaves a
+     * graph.
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        SolverProbe probe = new SolverProbe( "push-relabel", this.metrics,
+                                             network.nodeCount(),
+                                             network.arcCount() / 2 );
+        this.network = network;
+        this.networkArc = new long[ network.nodeCount() ];
+        return solve( probe, source, sink );
+    }
+
+    /**
+     * Run both phases on the graph or network set up by the caller.
+     * @param probe where the work is reported
+     * @param source the id of the node the flow starts from
+     * @param sink the id of the node the flow ends at
+     * @return the value of the flow added
+     */
+    private long solve( SolverProbe probe, int source, int sink ) {
+        this.counters = probe.counters();
+        probe.beginPhase( "phase one" );
+        init( source, sink );
+        long initial = this.excess[ this.sink ];
+        if ( this.csr != null ) {
+            floodCsr();
+        }
+        else {
+            floodNetwork();
+        }
+
+        this.limit = this.n;
+        this.stopped = false;
+        globalRelabel();
+        run( this.budget );
+        this.sourceSide = null;
+        if ( !this.stopped ) {
+            this.sourceSide = new BitSet( this.n );
+            globalRelabel();
+            for ( int u = 0; u < this.n; u++ ) {
+                if ( this.height[ u ] >= this.n ) {
+                    this.sourceSide.set( u );
+                }
+            }
+        }
+        long value = this.excess[ this.sink ] - initial;
+        probe.endPhase();
+
+        if ( this.computeFlows || this.stopped ) {
+            probe.beginPhase( "phase two" );
+            this.limit = 2 * this.n;
+            globalRelabel();
+            run( null );
+            probe.endPhase();
+        }
+        probe.finish( value );
+        this.scanned = probe.work();
+        this.csr = null;
+        this.network = null;
+        this.currentArc = null;
+        this.networkArc = null;
+        this.counters = null;
+        return value;
+    }
+
+    /**
+     * @return how many arcs the last call to {@link #maxFlow(FlowGraph)}
+     *         scanned, for a solver that goes on from its flow to charge
+     *         to the same budget
+     */
+    long work() {
+        return this.scanned;
+    }
+
+    /**
+     * Get the source side of a minimum cut found by the last solve: the
+     * nodes that cannot reach the sink
+     * along arcs with room for more flow.
+     * @return the ids of the nodes on the source side of the cut, or null
+     *         if the budget ran out before the cut was found
+     */
+    public BitSet getSourceSide() {
+        return this.sourceSide;
+    }
+
+    /**
+     * Set up the arrays, taking the excess at each node from the flow the
+     * graph or network already holds.
+     * @param source the id of the node the flow starts from
+     * @param sink the id of the node the flow ends at
+     */
+    private void init( int source, int sink ) {
+        this.source = source;
+        this.sink = sink;
+        this.n = this.csr != null ? this.csr.nodeCount() :
+                 this.network.nodeCount();
+        this.height = new int[ this.n ];
+        this.excess = new long[ this.n ];
+        this.queue = new int[ this.n ];
+        this.activeHead = new int[ 2 * this.n + 1 ];
+        this.nextActive = new int[ this.n ];
+        this.nodeHead = new int[ 2 * this.n + 1 ];
+        this.nextNode = new int[ this.n ];
+        this.prevNode = new int[ this.n ];
+        CsrGraph csr = this.csr;
+        ResidualNetwork network = this.network;
+        for ( int u = 0; u < this.n; u++ ) {
+            if ( csr != null ) {
+                for ( int a = csr.firstArc( u ); a < csr.endArc( u ); a++ ) {
+                    this.excess[ u ] -= csr.capacity( csr.edge( a ) ) -
+                                        csr.residual( a );
+                }
+            }
+            else {
+                for ( long a = network.firstArc( u );
+                      a < network.endArc( u ); a++ ) {
+                    this.excess[ u ] -= network.arcFlow( a );
+                }
+            }
+        }
+    }
+
+    /**
+     * Saturate every arc out of the source of the graph.
+     */
+    private void floodCsr() {
+        CsrGraph csr = this.csr;
+        for ( int a = csr.firstArc( this.source );
+              a < csr.endArc( this.source ); a++ ) {
+            long delta = csr.residual( a );
+            if ( delta > 0 ) {
+                csr.push( a, delta );
+                this.counters.pushes++;
+                this.excess[ this.source ] -= delta;
+                this.excess[ csr.head( a ) ] += delta;
+            }
+        }
+    }
+
+    /**
+     * Saturate every arc out of the source of the network.
+     */
+    private void floodNetwork() {
+        ResidualNetwork network = this.network;
+        for ( long a = network.firstArc( this.source );
+              a < network.endArc( this.source ); a++ ) {
+            long delta = network.residual( a );
+            if ( delta > 0 ) {
+                network.push( a, delta );
+                this.counters.pushes++;
+                this.excess[ this.source ] -= delta;
+                this.excess[ network.head( a ) ] += delta;
+            }
+        }
+    }
+
+    /**
+     * Discharge the highest active node until none is left below the limit,
+     * or the budget runs out.
+     * @param budget when to stop early, or null
+     */
+    private void run( SolveBudget budget ) {
+        long arcs = this.csr != null ? this.csr.arcCount() :
+                    this.network.arcCount();
+        long allowed = (long) NODE_WORK * this.n + arcs / 2;
+        while ( this.maxActive >= 0 ) {
+            int u = this.activeHead[ this.maxActive ];
+            if ( u == NONE ) {
+                this.maxActive--;
+                continue;
+            }
+            if ( budget != null &&
+                 budget.shouldStop( this.counters.arcsScanned ) ) {
+                this.stopped = true;
+                return;
+            }
+            this.activeHead[ this.maxActive ] = this.nextActive[ u ];
+            if ( this.csr != null ) {
+                dischargeCsr( u );
+            }
+            else {
+                dischargeNetwork( u );
+            }
+            if ( this.work > allowed ) {
+                globalRelabel();
+            }
+        }
+    }
+
+    /**
+     * Push excess out of a node, relabelling it as needed, until it has
+     * none left or has been lifted out of this phase, in the graph.
+     * @param u an active node
+     */
+    private void dischargeCsr( int u ) {
+        CsrGraph csr = this.csr;
+        SolverCounters counters = this.counters;
+        counters.nodesVisited++;
+        while ( true ) {
+            int h = this.height[ u ];
+            int start = this.currentArc[ u ];
+            int end = csr.endArc( u );
+            for ( int a = start; a < end; a++ ) {
+                long residual = csr.residual( a );
+                int v = csr.head( a );
+                if ( residual > 0 && this.height[ v ] == h - 1 ) {
+                    long delta = Math.min( this.excess[ u ], residual );
+                    csr.push( a, delta );
+                    counters.pushes++;
+                    this.excess[ u ] -= delta;
+                    if ( this.excess[ v ] == 0 && v != this.sink &&
+                         v != this.source ) {
+                        addActive( v );
+                    }
+                    this.excess[ v ] += delta;
+                    if ( this.excess[ u ] == 0 ) {
+                        this.currentArc[ u ] = a;
+                        counters.arcsScanned += a + 1 - start;
+                        return;
+                    }
+                }
+            }
+
+            // Relabel: u has excess but no admissible arc.
+            counters.relabels++;
+            int first = csr.firstArc( u );
+            counters.arcsScanned += end - start + end - first;
+            this.work += RELABEL_WORK + end - first;
+            int lowest = this.limit;
+            int lowestArc = end;
+            for ( int a = first; a < end; a++ ) {
+                if ( csr.residual( a ) > 0 &&
+                     this.height[ csr.head( a ) ] < lowest ) {
+                    lowest = this.height[ csr.head( a ) ];
+                    lowestArc = a;
+                }
+            }
+            removeNode( u );
+            if ( this.limit == this.n && this.nodeHead[ h ] == NONE ) {
+                gap( h );
+                this.height[ u ] = this.n;
+                return;
+            }
+            if ( lowest + 1 >= this.limit ) {
+                this.height[ u ] = this.limit;
+                return;
+            }
+            this.height[ u ] = lowest + 1;
+            this.currentArc[ u ] = lowestArc;
+            addNode( u );
+        }
+    }
+
+    /**
+     * Push excess out of a node, relabelling it as needed, until it has
+     * none left or has been lifted out of this phase, in the network.
+     * @param u an active node
+     */
+    private void dischargeNetwork( int u ) {
+        ResidualNetwork network = this.network;
+        SolverCounters counters = this.counters;
+        counters.nodesVisited++;
+        while ( true ) {
+            int h = this.height[ u ];
+            long start = this.networkArc[ u ];
+            long end = network.endArc( u );
+            for ( long a = start; a < end; a++ ) {
+                long residual = network.residual( a );
+                int v = network.head( a );
+                if ( residual > 0 && this.height[ v ] == h - 1 ) {
+                    long delta = Math.min( this.excess[ u ], residual );
+                    network.push( a, delta );
+                    counters.pushes++;
+                    this.excess[ u ] -= delta;
+                    if ( this.excess[ v ] == 0 && v != this.sink &&
+                         v != this.source ) {
+                        addActive( v );
+                    }
+                    this.excess[ v ] += delta;
+                    if ( this.excess[ u ] == 0 ) {
+                        this.networkArc[ u ] = a;
+                        counters.arcsScanned += a + 1 - start;
+                        return;
+                    }
+                }
+            }
+
+            // Relabel: u has excess but no admissible arc.
+            counters.relabels++;
+            long first = network.firstArc( u );
+            counters.arcsScanned += end - start + end - first;
+            this.work += RELABEL_WORK + end - first;
+            int lowest = this.limit;
+            long lowestArc = end;
+            for ( long a = first; a < end; a++ ) {
+                if ( network.residual( a ) > 0 &&
+                     this.height[ network.head( a ) ] < lowest ) {
+                    lowest = this.height[ network.head( a ) ];
+                    lowestArc = a;
+                }
+            }
+            removeNode( u );
+            if ( this.limit == this.n && this.nodeHead[ h ] == NONE ) {
+                gap( h );
+                this.height[ u ] = this.n;
+                return;
+            }
+            if ( lowest + 1 >= this.limit ) {
+                this.height[ u ] = this.limit;
+                return;
+            }
+            this.height[ u ] = lowest + 1;
+            this.networkArc[ u ] = lowestArc;
+            addNode( u );
+        }
+    }
+
+    /**
+     * No node is left at height h, so nothing above it can reach the
+     * sink. Lift every node above h out of phase one.
+     * @param h the empty height
+     */
+    private void gap( int h ) {
+        for ( int g = h + 1; g <= this.maxHeight; g++ ) {
+            for ( int u = this.nodeHead[ g ]; u != NONE;
+                  u = this.nextNode[ u ] ) {
+                this.height[ u ] = this.n;
+            }
+            this.nodeHead[ g ] = NONE;
+            this.activeHead[ g ] = NONE;
+        }
+        this.maxHeight = h - 1;
+        this.maxActive = Math.min( this.maxActive, h - 1 );
+    }
+
+    /**
+     * Reset every height to its exact residual distance to the sink, and
+     * in phase two, nodes that cannot reach the sink to n plus their
+     * distance to the source. Rebuild the node lists to match. After
+     * phase one stopped early, the sink is put above every other node, so
+     * all the excess goes back to the source.
+     */
+    private void globalRelabel() {
+        this.counters.searches++;
+        this.work = 0;
+        Arrays.fill( this.height, 2 * this.n );
+        Arrays.fill( this.activeHead, NONE );
+        Arrays.fill( this.nodeHead, NONE );
+        this.maxActive = -1;
+        this.maxHeight = -1;
+
+        this.height[ this.source ] = this.n;
+        if ( this.stopped ) {
+            this.height[ this.sink ] = 2 * this.n + 1;
+        }
+        else {
+            this.height[ this.sink ] = 0;
+            reverseBFS( this.sink );
+        }
+        if ( this.limit > this.n ) {
+            reverseBFS( this.source );
+        }
+
+        for ( int u = 0; u < this.n; u++ ) {
+            if ( this.height[ u ] < this.limit && u != this.sink &&
+                 u != this.source ) {
+                if ( this.csr != null ) {
+                    this.currentArc[ u ] = this.csr.firstArc( u );
+                }
+                else {
+                    this.networkArc[ u ] = this.network.firstArc( u );
+                }
+                addNode( u );
+                if ( this.excess[ u ] > 0 ) {
+                    addActive( u );
+                }
+            }
+        }
+    }
+
+    /**
+     * Label the nodes that can reach a root along arcs with room for more
+     * flow, and that have no label yet, with their distance plus the
+     * root's height.
+     * @param root the sink or the source
+     */
+    private void reverseBFS( int root ) {
+        if ( this.csr != null ) {
+            reverseBFSCsr( root );
+        }
+        else {
+            reverseBFSNetwork( root );
+        }
+    }
+
+    /**
+     * Label the nodes as {@link #reverseBFS(int)} does, in the graph.
+     * @param root the sink or the source
+     */
+    private void reverseBFSCsr( int root ) {
+        CsrGraph csr = this.csr;
+        int head = 0;
+        int tail = 0;
+        this.queue[ tail++ ] = root;
+        while ( head < tail ) {
+            int v = this.queue[ head++ ];
+            int next = this.height[ v ] + 1;
+            this.counters.nodesVisited++;
+            int end = csr.endArc( v );
+            this.counters.arcsScanned += end - csr.firstArc( v );
+            for ( int a = csr.firstArc( v ); a < end; a++ ) {
+                int w = csr.head( a );
+                if ( this.height[ w ] == 2 * this.n &&
+                     csr.residual( csr.mate( a ) ) > 0 ) {
+                    this.height[ w ] = next;
+                    this.queue[ tail++ ] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Label the nodes as {@link #reverseBFS(int)} does, in the network.
+     * @param root the sink or the source
+     */
+    private void reverseBFSNetwork( int root ) {
+        ResidualNetwork network = this.network;
+        int head = 0;
+        int tail = 0;
+        this.queue[ tail++ ] = root;
+        while ( head < tail ) {
+            int v = this.queue[ head++ ];
+            int next = this.height[ v ] + 1;
+            this.counters.nodesVisited++;
+            long end = network.endArc( v );
+            this.counters.arcsScanned += end - network.firstArc( v );
+            for ( long a = network.firstArc( v ); a < end; a++ ) {
+                int w = network.head( a );
+                if ( this.height[ w ] == 2 * this.n &&
+                     network.residual( network.mate( a ) ) > 0 ) {
+                    this.height[ w ] = next;
+                    this.queue[ tail++ ] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a node to the active list for its height.
+     * @param u a node with new excess
+     */
+    private void addActive( int u ) {
+        int h = this.height[ u ];
+        if ( h >= this.limit ) {
+            return;
+        }
+        this.nextActive[ u ] = this.activeHead[ h ];
+        this.activeHead[ h ] = u;
+        if ( h > this.maxActive ) {
+            this.maxActive = h;
+        }
+    }
+
+    /**
+     * Add a node to the list of all nodes at its height.
+     * @param u a node
+     */
+    private void addNode( int u ) {
+        int h = this.height[ u ];
+        this.prevNode[ u ] = NONE;
+        this.nextNode[ u ] = this.nodeHead[ h ];
+        if ( this.nodeHead[ h ] != NONE ) {
+            this.prevNode[ this.nodeHead[ h ] ] = u;
+        }
+        this.nodeHead[ h ] = u;
+        if ( h > this.maxHeight ) {
+            this.maxHeight = h;
+        }
+    }
+
+    /**
+     * Take a node out of the list of all nodes at its height.
+     * @param u a node
+     */
+    private void removeNode( int u ) {
+        if ( this.prevNode[ u ] == NONE ) {
+            this.nodeHead[ this.height[ u ] ] = this.nextNode[ u ];
+        }
+        else {
+            this.nextNode[ this.prevNode[ u ] ] = this.nextNode[ u ];
+        }
+        if ( this.nextNode[ u ] != NONE ) {
+            this.prevNode[ this.nextNode[ u ] ] = this.prevNode[ u ];
+        }
+    }
+}
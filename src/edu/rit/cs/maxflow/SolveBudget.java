@@ -0,0 +1,161 @@
+package edu.rit.cs.maxflow;
+
+import java.time.Duration;
+
+/**
+ * A limit on how long a solve may run: a time limit, a limit on the arcs
+ * it may scan, or neither, and a way to cancel it from another thread. A
+ * solver given a budget by {@link MaxFlowSolver#setBudget(SolveBudget)}
+ * asks {@link #shouldStop(long)} once per augmenting path, discharge or
+ * round, and when told to stop, leaves the graph holding a feasible flow.
+ * {@link MaxFlowSolver#maxFlow(edu.rit.cs.labgraph.FlowGraph, SolveBudget)}
+ * then bounds the maximum flow from both sides.
+ * <p>
+ * A budget is for one solve. Its clock starts when it is made, and once
+ * a solver has stopped on it, it stays spent. The clock is only read on
+ * every {@value #CLOCK_CHECKS}th check, or once {@value #CLOCK_WORK} more
+ * arcs have been scanned, so checking costs a few comparisons.
+ *
+ * @author RIT CS
+ */
+public final class SolveBudget {
+
+    /**
+     * The most checks between two readings of the clock
+     */
+    public static final int CLOCK_CHECKS = 64;
+
+    /**
+     * The most arcs scanned between two readings of the clock
+     */
+    public static final long CLOCK_WORK = 1L << 16;
+
+    /**
+     * When the time runs out, by {@link System#nanoTime()}, if there is a
+     * time limit
+     */
+    private final boolean timed;
+    private final long deadline;
+
+    /**
+     * The most arcs a solve may scan
+     */
+    private final long workLimit;
+
+    /**
+     * Set by {@link #cancel()}, from any thread
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Set once a solver has been told to stop
+     */
+    private volatile boolean exhausted;
+
+    /**
+     * Checks left, and the work done, until and when the clock is next and
+     * was last read; the first check reads it
+     */
+    private int countdown = 1;
+    private long clockWork;
+
+    /**
+     * Make a budget with no limits, that only stops a solve if it is
+     * cancelled.
+     */
+    public SolveBudget() {
+        this( null, Long.MAX_VALUE );
+    }
+
+    /**
+     * Make a budget of time.
+     * @param timeLimit how long the solve may run, from now
+     */
+    public SolveBudget( Duration timeLimit ) {
+        this( timeLimit, Long.MAX_VALUE );
+    }
+
+    /**
+     * Make a budget of time and work.
+     * @param timeLimit how long the solve may run, from now, or null for
+     *                  no limit
+     * @param workLimit how many arcs the solve may scan, or
+     *                  {@link Long#MAX_VALUE} for no limit
+     */
+    public SolveBudget( Duration timeLimit, long workLimit ) {
+        if ( timeLimit != null && timeLimit.isNegative() ) {
+            throw new IllegalArgumentException(
+                    "time limit cannot be negative" );
+        }
+        if ( workLimit < 0 ) {
+            throw new IllegalArgumentException(
+                    "work limit cannot be negative" );
+        }
+        this.timed = timeLimit != null;
+        this.deadline = this.timed ?
+                System.nanoTime() + saturatedNanos( timeLimit ) : 0;
+        this.workLimit = workLimit;
+    }
+
+    /**
+     * Ask the solve to stop at its next check. Any thread may call this.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return true if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return true if a solver has stopped on this budget, so the flow it
+     *         left may not be maximal
+     */
+    public boolean isExhausted() {
+        return this.exhausted;
+    }
+
+    /**
+     * Check whether a solve should stop. Only the thread running the
+     * solve may call this.
+     * @param work how many arcs the solve has scanned so far
+     * @return true if the solve is cancelled or over its limits
+     */
+    public boolean shouldStop( long work ) {
+        if ( this.exhausted ) {
+            return true;
+        }
+        if ( this.cancelled || work > this.workLimit ) {
+            this.exhausted = true;
+            return true;
+        }
+        if ( this.timed && ( --this.countdown <= 0 ||
+                             work - this.clockWork >= CLOCK_WORK ) ) {
+            this.countdown = CLOCK_CHECKS;
+            this.clockWork = work;
+            if ( System.nanoTime() - this.deadline >= 0 ) {
+                this.exhausted = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param duration a duration that is not negative
+     * @return its length in nanoseconds, or about 146 years if it is
+     *         longer than that
+     */
+    private static long saturatedNanos( Duration duration ) {
+        try {
+            return Math.min( duration.toNanos(), Long.MAX_VALUE / 2 );
+        }
+        catch ( ArithmeticException ae ) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.rit.cs.maxflow;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for a whole max flow solve, with the work of
+ * all of its phases added up. Its duration is the solve's wall time.
+ *
+ * @author RIT CS
+ */
+@Name( "edu.rit.cs.maxflow.Solve" )
+@Label( "Max Flow Solve" )
+@Category( "Max Flow" )
+@Description( "A call to MaxFlowSolver.maxFlow" )
+final class SolveEvent extends Event {
+
+    @Label( "Solver" )
+    String solver;
+
+    @Label( "Nodes" )
+    int nodes;
+
+    @Label( "Edges" )
+    long edges;
+
+    @Label( "Flow Added" )
+    long value;
+
+    @Label( "Augmentations" )
+    long augmentations;
+
+    @Label( "Pushes" )
+    long pushes;
+
+    @Label( "Relabels" )
+    long relabels;
+
+    @Label( "Searches" )
+    @Description( "Breadth-first searches and global relabels" )
+    long searches;
+
+    @Label( "Arcs Scanned" )
+    long arcsScanned;
+
+    @Label( "Nodes Visited" )
+    long nodesVisited;
+
+    @Label( "Allocated" )
+    @Description( "Bytes allocated by the solving thread, or -1" )
+    @DataAmount
+    long allocated;
+
+    /**
+     * Copy a solve's counters into this event.
+     * @param totals the work done in every phase
+     */
+    void set( SolverCounters totals ) {
+        this.augmentations = totals.augmentations;
+        this.pushes = totals.pushes;
+        this.relabels = totals.relabels;
+        this.searches = totals.searches;
+        this.arcsScanned = totals.arcsScanned;
+        this.nodesVisited = totals.nodesVisited;
+    }
+}
@@ -0,0 +1,135 @@
+package edu.rit.cs.maxflow;
+
+/**
+ * Counts of the work a {@link MaxFlowSolver} did, for one phase of a
+ * solve or for the whole of it. Each solver counts what fits how it
+ * works: augmenting path solvers count augmentations, push-relabel
+ * solvers count pushes and relabels, and every solver counts its
+ * searches, the arcs it scanned and the nodes it visited.
+ *
+ * @author RIT CS
+ */
+public final class SolverCounters {
+
+    /**
+     * Paths that flow was pushed along
+     */
+    long augmentations;
+
+    /**
+     * Single-arc pushes
+     */
+    long pushes;
+
+    /**
+     * Nodes lifted to a new height
+     */
+    long relabels;
+
+    /**
+     * Breadth-first searches and global relabels
+     */
+    long searches;
+
+    /**
+     * Arcs looked at
+     */
+    long arcsScanned;
+
+    /**
+     * Nodes taken off a search queue or stepped to
+     */
+    long nodesVisited;
+
+    /**
+     * Create counters that are all zero.
+     */
+    SolverCounters() {
+    }
+
+    /**
+     * Copy another set of counters, such as one passed to a
+     * {@link SolverMetrics} that is only valid during the call.
+     * @param other the counters to copy
+     */
+    public SolverCounters( SolverCounters other ) {
+        add( other );
+    }
+
+    /**
+     * Add another set of counters to this one.
+     * @param other the counters to add
+     */
+    void add( SolverCounters other ) {
+        this.augmentations += other.augmentations;
+        this.pushes += other.pushes;
+        this.relabels += other.relabels;
+        this.searches += other.searches;
+        this.arcsScanned += other.arcsScanned;
+        this.nodesVisited += other.nodesVisited;
+    }
+
+    /**
+     * Set every counter back to zero.
+     */
+    void clear() {
+        this.augmentations = 0;
+        this.pushes = 0;
+        this.relabels = 0;
+        this.searches = 0;
+        this.arcsScanned = 0;
+        this.nodesVisited = 0;
+    }
+
+    /**
+     * @return how many paths flow was pushed along
+     */
+    public long getAugmentations() {
+        return this.augmentations;
+    }
+
+    /**
+     * @return how many times flow was pushed along a single arc
+     */
+    public long getPushes() {
+        return this.pushes;
+    }
+
+    /**
+     * @return how many times a node was lifted to a new height
+     */
+    public long getRelabels() {
+        return this.relabels;
+    }
+
+    /**
+     * @return how many breadth-first searches or global relabels were run
+     */
+    public long getSearches() {
+        return this.searches;
+    }
+
+    /**
+     * @return how many arcs were looked at
+     */
+    public long getArcsScanned() {
+        return this.arcsScanned;
+    }
+
+    /**
+     * @return how many nodes were taken off a search queue or stepped to
+     */
+    public long getNodesVisited() {
+        return this.nodesVisited;
+    }
+
+    @Override
+    public String toString() {
+        return "augmentations=" + this.augmentations +
+               " pushes=" + this.pushes +
+               " relabels=" + this.relabels +
+               " searches=" + this.searches +
+               " arcs=" + this.arcsScanned +
+               " nodes=" + this.nodesVisited;
+    }
+}
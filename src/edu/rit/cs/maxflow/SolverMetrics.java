@@ -0,0 +1,78 @@
+package edu.rit.cs.maxflow;
+
+import java.io.PrintStream;
+
+/**
+ * Listens to the work a {@link MaxFlowSolver} does, phase by phase. Give
+ * one to a solver with {@link MaxFlowSolver#setMetrics(SolverMetrics)}.
+ * <p>
+ * What a phase is depends on the solver: Edmonds-Karp has one, Dinic has
+ * one per level graph, and the push-relabel solvers have two, one to find
+ * the flow's value and one to turn the preflow into a flow. The same
+ * numbers are also recorded as Java Flight Recorder events, named
+ * edu.rit.cs.maxflow.Phase and edu.rit.cs.maxflow.Solve, whenever a
+ * recording has them enabled. With no listener and no recording, a solver
+ * only adds to a few counters and never reads the clock.
+ * <p>
+ * Allocation is measured on the thread that called the solver, so it
+ * leaves out what a parallel solver's workers allocate. It is -1 if the
+ * JVM cannot measure it.
+ *
+ * @author RIT CS
+ */
+public interface SolverMetrics {
+
+    /**
+     * Called at the end of each phase, on the thread that called the
+     * solver.
+     * @param solver the solver's name, as used by {@link MaxFlow}
+     * @param phase the phase's name
+     * @param counters the work done in the phase; only valid during the
+     *                 call, so copy it to keep it
+     * @param nanos how long the phase took
+     * @param allocatedBytes how much the phase allocated, or -1
+     */
+    void phaseEnded( String solver, String phase, SolverCounters counters,
+                     long nanos, long allocatedBytes );
+
+    /**
+     * Called once a solve is done, after its last phase.
+     * @param solver the solver's name, as used by {@link MaxFlow}
+     * @param value the amount of flow the solve added
+     * @param totals the work done in every phase; only valid during the
+     *               call, so copy it to keep it
+     * @param nanos how long the solve took
+     * @param allocatedBytes how much the solve allocated, or -1
+     */
+    default void solveEnded( String solver, long value, SolverCounters totals,
+                             long nanos, long allocatedBytes ) {
+    }
+
+    /**
+     * Make a listener that prints a line for each phase and solve.
+     * @param out where to print
+     * @return the listener
+     */
+    static SolverMetrics printingTo( PrintStream out ) {
+        return new SolverMetrics() {
+            @Override
+            public void phaseEnded( String solver, String phase,
+                                    SolverCounters counters, long nanos,
+                                    long allocatedBytes ) {
+                out.println( solver + " " + phase + ": " + counters +
+                             " time=" + nanos / 1000 + "us" +
+                             " allocated=" + allocatedBytes );
+            }
+
+            @Override
+            public void solveEnded( String solver, long value,
+                                    SolverCounters totals, long nanos,
+                                    long allocatedBytes ) {
+                out.println( solver + " total: " + totals +
+                             " time=" + nanos / 1000 + "us" +
+                             " allocated=" + allocatedBytes +
+                             " value=" + value );
+            }
+        };
+    }
+}
@@ -0,0 +1,249 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.FlowGraph;
+
+import jdk.jfr.FlightRecorder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Collects a solver's counters during one call to
+ * {@link MaxFlowSolver#maxFlow(FlowGraph)} and hands them to its
+ * {@link SolverMetrics} and to the flight recorder. The solver adds to
+ * {@link #counters()} as it works and marks where its phases start and
+ * end. The clock and the allocation counter are only read if someone is
+ * listening, and no flight recorder event is made, which would load the
+ * recorder's classes, unless the recorder has been started.
+ *
+ * @author RIT CS
+ */
+final class SolverProbe {
+
+    /**
+     * The solver's name
+     */
+    private final String solver;
+
+    /**
+     * The listener, or null
+     */
+    private final SolverMetrics metrics;
+
+    /**
+     * True if the listener or the flight recorder wants the numbers
+     */
+    private final boolean enabled;
+
+    /**
+     * The work done in the current phase, and in the phases before it
+     */
+    private final SolverCounters phase = new SolverCounters();
+    private final SolverCounters total = new SolverCounters();
+
+    /**
+     * The size of the graph being solved
+     */
+    private final int nodes;
+    private final long edges;
+
+    /**
+     * The name of the current phase
+     */
+    private String phaseName;
+
+    /**
+     * The clock and allocation counter when the solve and the current
+     * phase started
+     */
+    private long solveStart;
+    private long solveAllocated;
+    private long phaseStart;
+    private long phaseAllocated;
+
+    /**
+     * The flight recorder events being timed, or null
+     */
+    private SolveEvent solveEvent;
+    private PhaseEvent phaseEvent;
+
+    /**
+     * Start watching a solve.
+     * @param solver the solver's name
+     * @param metrics the solver's listener, or null
+     * @param graph the graph being solved
+     */
+    SolverProbe( String solver, SolverMetrics metrics, FlowGraph graph ) {
+        this( solver, metrics, graph.getCsr().nodeCount(),
+              graph.getCsr().edgeCount() );
+    }
+
+    /**
+     * Start watching a solve of a graph that is not a {@link FlowGraph}.
+     * @param solver the solver's name
+     * @param metrics the solver's listener, or null
+     * @param nodes how many nodes the graph has
+     * @param edges how many edges the graph has
+     */
+    SolverProbe( String solver, SolverMetrics metrics, int nodes,
+                 long edges ) {
+        this.solver = solver;
+        this.metrics = metrics;
+        this.nodes = nodes;
+        this.edges = edges;
+        SolveEvent event = recorderStarted() ? new SolveEvent() : null;
+        boolean recording = event != null &&
+                ( event.isEnabled() || new PhaseEvent().isEnabled() );
+        this.enabled = metrics != null || recording;
+        if ( this.enabled ) {
+            if ( event != null && event.isEnabled() ) {
+                this.solveEvent = event;
+                event.begin();
+            }
+            this.solveStart = System.nanoTime();
+            this.solveAllocated = allocated();
+        }
+    }
+
+    /**
+     * @return the counters for the current phase, for the solver to add to
+     */
+    SolverCounters counters() {
+        return this.phase;
+    }
+
+    /**
+     * @return how many arcs the phases that have ended scanned
+     */
+    long work() {
+        return this.total.arcsScanned;
+    }
+
+    /**
+     * Start a phase.
+     * @param name the phase's name
+     */
+    void beginPhase( String name ) {
+        this.phaseName = name;
+        if ( this.enabled ) {
+            PhaseEvent event = recorderStarted() ? new PhaseEvent() : null;
+            if ( event != null && event.isEnabled() ) {
+                this.phaseEvent = event;
+                event.begin();
+            }
+            this.phaseStart = System.nanoTime();
+            this.phaseAllocated = allocated();
+        }
+    }
+
+    /**
+     * End the current phase, reporting its work, and start counting from
+     * zero again.
+     */
+    void endPhase() {
+        if ( this.enabled ) {
+            long nanos = System.nanoTime() - this.phaseStart;
+            long bytes = since( this.phaseAllocated );
+            if ( this.phaseEvent != null ) {
+                this.phaseEvent.end();
+                if ( this.phaseEvent.shouldCommit() ) {
+                    this.phaseEvent.solver = this.solver;
+                    this.phaseEvent.phase = this.phaseName;
+                    this.phaseEvent.set( this.phase );
+                    this.phaseEvent.allocated = bytes;
+                    this.phaseEvent.commit();
+                }
+                this.phaseEvent = null;
+            }
+            if ( this.metrics != null ) {
+                this.metrics.phaseEnded( this.solver, this.phaseName,
+                                         this.phase, nanos, bytes );
+            }
+        }
+        this.total.add( this.phase );
+        this.phase.clear();
+    }
+
+    /**
+     * End the solve, reporting the work of all of its phases.
+     * @param value the amount of flow the solve added
+     */
+    void finish( long value ) {
+        if ( this.enabled ) {
+            long nanos = System.nanoTime() - this.solveStart;
+            long bytes = since( this.solveAllocated );
+            if ( this.solveEvent != null ) {
+                this.solveEvent.end();
+                if ( this.solveEvent.shouldCommit() ) {
+                    this.solveEvent.solver = this.solver;
+                    this.solveEvent.nodes = this.nodes;
+                    this.solveEvent.edges = this.edges;
+                    this.solveEvent.value = value;
+                    this.solveEvent.set( this.total );
+                    this.solveEvent.allocated = bytes;
+                    this.solveEvent.commit();
+                }
+            }
+            if ( this.metrics != null ) {
+                this.metrics.solveEnded( this.solver, value, this.total,
+                                         nanos, bytes );
+            }
+        }
+    }
+
+    /**
+     * @return true if the flight recorder has been started in this JVM,
+     *         which is the only way an event can be enabled; checking this
+     *         loads none of the recorder's classes
+     */
+    private static boolean recorderStarted() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * @return how much the calling thread has allocated so far, or -1
+     */
+    private static long allocated() {
+        com.sun.management.ThreadMXBean threads = Allocation.THREADS;
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @param start what {@link #allocated()} returned earlier
+     * @return how much the calling thread has allocated since, or -1
+     */
+    private static long since( long start ) {
+        return start < 0 ? -1 : allocated() - start;
+    }
+
+    /**
+     * @return the bean that measures allocation, or null if there is none
+     *         or it is turned off
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( bean instanceof com.sun.management.ThreadMXBean ) {
+            com.sun.management.ThreadMXBean sun =
+                    (com.sun.management.ThreadMXBean) bean;
+            if ( sun.isThreadAllocatedMemorySupported() &&
+                 sun.isThreadAllocatedMemoryEnabled() ) {
+                return sun;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Holds the allocation bean, so that the management classes are only
+     * loaded by the first solve that someone is listening to.
+     */
+    private static final class Allocation {
+
+        /**
+         * Measures how much a thread has allocated, or null if the JVM
+         * cannot
+         */
+        static final com.sun.management.ThreadMXBean THREADS =
+                allocationBean();
+    }
+}
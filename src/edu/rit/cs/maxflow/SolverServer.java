@@ -0,0 +1,356 @@
+package edu.rit.cs.maxflow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphCache;
+import edu.rit.cs.labgraph.GraphException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A program that stays running and solves max flow queries sent to it over
+ * HTTP, so that repeated queries pay for neither starting a JVM nor
+ * parsing their graph. It only listens on the loopback address.
+ * <p>
+ * {@code GET /solve?graph=file&source=s&sink=t&solver=name} solves one
+ * query and answers "Max flow is N". The source and sink default to
+ * {@value MaxFlow#DEFAULT_SOURCE} and {@value MaxFlow#DEFAULT_SINK}, and
+ * the solver to matching, which sends assignment problems to
+ * {@link BipartiteMatchingSolver} and the rest to dinic; solvers are named
+ * as on the MaxFlow command line.
+ * With {@code &timeout=millis}, a solve that takes longer is stopped and
+ * answers "Max flow is between L and U" instead. If the graph's edges
+ * have costs, a second line gives the flow's, "Flow cost is C", with
+ * ", which may not be the least" after it if the solve stopped before
+ * it found the cheapest flow.
+ * {@code GET /stats} reports the graph cache's size and hit counts.
+ * A query that names a missing file answers 404, and one whose file,
+ * nodes or solver are wrong, or whose graph the solver refuses, answers
+ * 400, with the reason as the body. A solver that fails in any other way
+ * answers 500.
+ * <p>
+ * Graphs are kept in a {@link GraphCache}, and every query is solved in
+ * its own view of its graph, made by {@link CsrGraph#shareTopology()},
+ * so any number of queries may run on the same graph at once. Each query
+ * runs on a thread of its own. Closing the server cancels the solves
+ * still running, which answer with bounds as if they had timed out.
+ *
+ * @author RIT CS
+ */
+public final class SolverServer implements AutoCloseable {
+
+    /**
+     * The solver used if a query does not name one
+     */
+    public static final String DEFAULT_SOLVER = "matching";
+
+    /**
+     * How to run the program
+     */
+    private static final String USAGE =
+            "Usage: java SolverServer [-p port] [-m cache-megabytes]" +
+            " [-t threads]" + System.lineSeparator() +
+            "  -m defaults to half of the heap; -t is how many threads a" +
+            " parallel solver" + System.lineSeparator() +
+            "     or the parser may use";
+
+    static {
+        // Without this, each small response waits out the client's
+        // delayed ACK, some 40 ms, before it is sent.
+        System.getProperties().putIfAbsent( "sun.net.httpserver.nodelay",
+                                            "true" );
+    }
+
+    /**
+     * The HTTP server
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads queries are served on
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The graphs loaded so far
+     */
+    private final GraphCache cache;
+
+    /**
+     * How many threads a parallel solver may use
+     */
+    private final int threads;
+
+    /**
+     * The budgets of the solves running now
+     */
+    private final Set< SolveBudget > running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Start serving.
+     * @param port the port to listen on, or 0 for any free port
+     * @param cache where graphs are kept between queries
+     * @param threads how many threads a parallel solver may use
+     * @throws IOException if the port cannot be listened on
+     */
+    public SolverServer( int port, GraphCache cache, int threads )
+            throws IOException {
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "threads must be positive" );
+        }
+        this.cache = cache;
+        this.threads = threads;
+        this.server = HttpServer.create(
+                new InetSocketAddress( InetAddress.getLoopbackAddress(),
+                                       port ), 0 );
+        this.pool = Executors.newCachedThreadPool();
+        this.server.setExecutor( this.pool );
+        this.server.createContext( "/solve", this::solve );
+        this.server.createContext( "/stats", this::stats );
+        this.server.start();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return the graphs the server keeps
+     */
+    public GraphCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Stop listening, cancel the solves that are running, and stop the
+     * threads once they have answered.
+     */
+    @Override
+    public void close() {
+        this.server.stop( 0 );
+        for ( SolveBudget budget: this.running ) {
+            budget.cancel();
+        }
+        this.pool.shutdown();
+    }
+
+    /**
+     * Answer a query for a max flow.
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void solve( HttpExchange exchange ) throws IOException {
+        if ( !exchange.getRequestMethod().equals( "GET" ) ) {
+            respond( exchange, 405, "Only GET is allowed" );
+            return;
+        }
+        Map< String, String > query =
+                parameters( exchange.getRequestURI().getRawQuery() );
+        String file = query.get( "graph" );
+        if ( file == null ) {
+            respond( exchange, 400, "No graph given" );
+            return;
+        }
+        String source = query.getOrDefault( "source", MaxFlow.DEFAULT_SOURCE );
+        String sink = query.getOrDefault( "sink", MaxFlow.DEFAULT_SINK );
+        SolveBudget budget = null;
+        try {
+            MaxFlowSolver solver = MaxFlow.solverNamed(
+                    query.getOrDefault( "solver", DEFAULT_SOLVER ),
+                    this.threads, null );
+            CsrGraph csr = this.cache.get( Paths.get( file ) );
+            int sourceId = csr.id( source );
+            int sinkId = csr.id( sink );
+            if ( sourceId < 0 ) {
+                throw new GraphException( "Source is not in the graph: " +
+                                          source );
+            }
+            if ( sinkId < 0 ) {
+                throw new GraphException( "Sink is not in the graph: " +
+                                          sink );
+            }
+            if ( sourceId == sinkId ) {
+                throw new GraphException( "Source and sink are the same: " +
+                                          sink );
+            }
+            budget = budget( query.get( "timeout" ) );
+            this.running.add( budget );
+            FlowGraph graph =
+                    new FlowGraph( csr.shareTopology(), sourceId, sinkId );
+            FlowBounds bounds = solver.maxFlow( graph, budget );
+            String cost = !csr.hasCosts() ? "" :
+                          "\nFlow cost is " + graph.getFlowCost() +
+                          ( bounds.isCheapest() ? "" :
+                            ", which may not be the least" );
+            respond( exchange, 200, "Max flow is " + bounds + cost );
+        }
+        catch ( NoSuchFileException nsfe ) {
+            respond( exchange, 404, "No such file: " + file );
+        }
+        catch ( GraphException ge ) {
+            respond( exchange, 400, ge.getMessage() );
+        }
+        catch ( IOException ioe ) {
+            respond( exchange, 500, "File IO Problem: " + ioe.getMessage() );
+        }
+        catch ( IllegalArgumentException iae ) {
+            respond( exchange, 400, iae.getMessage() );
+        }
+        catch ( RuntimeException re ) {
+            // Left to the HTTP server, this would close the connection
+            // without any answer.
+            respond( exchange, 500, "Solver failed: " + re );
+        }
+        finally {
+            if ( budget != null ) {
+                this.running.remove( budget );
+            }
+        }
+    }
+
+    /**
+     * @param timeout a query's timeout parameter, or null
+     * @return a budget of that many milliseconds, or one with no limit
+     * @throws GraphException if the timeout is not a positive integer
+     */
+    private static SolveBudget budget( String timeout )
+            throws GraphException {
+        if ( timeout == null ) {
+            return new SolveBudget();
+        }
+        try {
+            long millis = Long.parseLong( timeout );
+            if ( millis > 0 ) {
+                return new SolveBudget( Duration.ofMillis( millis ) );
+            }
+        }
+        catch ( NumberFormatException nfe ) {
+            // reported below
+        }
+        throw new GraphException(
+                "timeout needs a positive integer, not " + timeout );
+    }
+
+    /**
+     * Report on the graph cache.
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void stats( HttpExchange exchange ) throws IOException {
+        respond( exchange, 200,
+                 "graphs " + this.cache.size() + "\n" +
+                 "bytes " + this.cache.getBytes() + "\n" +
+                 "budget " + this.cache.getBudget() + "\n" +
+                 "hits " + this.cache.getHits() + "\n" +
+                 "misses " + this.cache.getMisses() + "\n" +
+                 "evictions " + this.cache.getEvictions() );
+    }
+
+    /**
+     * @param raw a URI's query string, still encoded, or null
+     * @return its parameters by name; the last of a repeated name wins
+     */
+    private static Map< String, String > parameters( String raw ) {
+        Map< String, String > result = new HashMap<>();
+        if ( raw != null ) {
+            for ( String pair: raw.split( "&" ) ) {
+                int equals = pair.indexOf( '=' );
+                if ( equals > 0 ) {
+                    result.put( URLDecoder.decode( pair.substring( 0, equals ),
+                                                   StandardCharsets.UTF_8 ),
+                                URLDecoder.decode( pair.substring( equals + 1 ),
+                                                   StandardCharsets.UTF_8 ) );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Send a plain text response and end the exchange.
+     * @param exchange the request and its response
+     * @param status the HTTP status code
+     * @param text the body, without its final line break
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond( HttpExchange exchange, int status,
+                                 String text ) throws IOException {
+        byte[] body = ( text + "\n" ).getBytes( StandardCharsets.UTF_8 );
+        exchange.getResponseHeaders().set( "Content-Type",
+                                           "text/plain; charset=utf-8" );
+        exchange.sendResponseHeaders( status, body.length );
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write( body );
+        }
+    }
+
+    /**
+     * Run the server until the JVM is stopped.
+     * @param args options: -p the port, 8080 by default; -m the cache's
+     *             budget in megabytes; -t how many threads a parallel
+     *             solver may use
+     */
+    public static void main( String[] args ) {
+        int port = 8080;
+        long budget = Runtime.getRuntime().maxMemory() / 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for ( int i = 0; i < args.length; i += 2 ) {
+                if ( i + 1 == args.length ) {
+                    usage();
+                }
+                int value = Integer.parseInt( args[ i + 1 ] );
+                switch ( args[ i ] ) {
+                    case "-p":
+                        port = value;
+                        break;
+                    case "-m":
+                        budget = ( (long) value ) << 20;
+                        break;
+                    case "-t":
+                        threads = value;
+                        break;
+                    default:
+                        usage();
+                }
+            }
+            SolverServer server = new SolverServer(
+                    port, new GraphCache( budget, threads ), threads );
+            System.out.println( "Listening on port " + server.getPort() );
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() );
+            usage();
+        }
+        catch ( IOException ioe ) {
+            System.err.println( "Cannot listen: " + ioe.getMessage() );
+        }
+    }
+
+    /**
+     * Print how to run the program and quit.
+     */
+    private static void usage() {
+        System.err.println( USAGE );
+        System.exit( 1 );
+    }
+}
@@ -0,0 +1,490 @@
+package edu.rit.cs.maxflow;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.ResidualNetwork;
+
+import java.util.Arrays;
+
+/**
+ * A min-cost max flow solver that sends flow along shortest paths by
+ * cost. Every node has a potential, and an arc's reduced cost is its cost
+ * plus the potential of its tail minus that of its head. While the flow
+ * is the cheapest of its value, no arc with room has a negative reduced
+ * cost, so Dijkstra's algorithm finds the cheapest path to the sink, on
+ * an indexed binary heap of node ids, and raising every potential by its
+ * node's distance keeps it so. All the cheapest paths then have a reduced
+ * cost of 0, and a blocking flow as in {@link DinicSolver} saturates them
+ * before the next search, so there is one search per path cost instead of
+ * one per path.
+ * <p>
+ * Along an edge whose flow runs the other way, a unit of flow first
+ * cancels a unit of that flow, and earns its cost back; only then does
+ * it pay the cost. Each arc therefore costs minus or plus its edge's cost
+ * depending on the way the edge's flow runs, and has room up to the point
+ * where that changes.
+ * <p>
+ * The search must start from a flow of least cost, so any flow the graph
+ * holds is cleared first. Potentials grow to at most the cost of the
+ * dearest path, which must fit in a long.
+ *
+ * @author RIT CS
+ */
+public class SuccessiveShortestPathSolver implements MinCostFlowSolver {
+
+    /**
+     * The distance of a node the search has not reached
+     */
+    private static final long FAR = Long.MAX_VALUE;
+
+    /**
+     * Where the work of each solve is reported, or null
+     */
+    private SolverMetrics metrics;
+
+    /**
+     * When to stop early, or null
+     */
+    private SolveBudget budget;
+
+    // Solve state, valid during a call to maxFlow.
+    private CsrGraph csr;
+    private int source;
+    private int sink;
+
+    /**
+     * The cost and capacity of each arc's edge, copied out by arc so that
+     * the searches read them in order
+     */
+    private long[] cost;
+    private long[] capacity;
+
+    /**
+     * Each node's potential, and its distance in the last search
+     */
+    private long[] potential;
+    private long[] distance;
+
+    /**
+     * Each node's level, the next arc to try from it, and the arcs of the
+     * path being built, for the blocking flows
+     */
+    private int[] level;
+    private int[] currentArc;
+    private int[] path;
+
+    private int[] queue;
+    private NodeHeap heap;
+    private SolverCounters counters;
+    private SolverProbe probe;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMetrics( SolverMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The budget is checked after each path. The flow left is the cheapest
+     * of its value.
+     */
+    @Override
+    public void setBudget( SolveBudget budget ) {
+        this.budget = budget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each shortest path search, with the blocking flows that follow it,
+     * is reported to the metrics as a phase.
+     */
+    @Override
+    public long maxFlow( FlowGraph graph ) {
+        long before = graph.getFlowValue();
+        this.csr = graph.getCsr();
+        this.source = graph.getSourceId();
+        this.sink = graph.getSinkId();
+        this.csr.clearFlow();
+        this.probe = new SolverProbe( "successive-shortest-paths",
+                                      this.metrics, graph );
+        this.counters = this.probe.counters();
+        int n = this.csr.nodeCount();
+        int arcs = this.csr.arcCount();
+        this.cost = new long[ arcs ];
+        this.capacity = new long[ arcs ];
+        for ( int a = 0; a < arcs; a++ ) {
+            int e = this.csr.edge( a );
+            this.cost[ a ] = this.csr.cost( e );
+            this.capacity[ a ] = this.csr.capacity( e );
+        }
+        this.potential = new long[ n ];
+        this.distance = new long[ n ];
+        this.level = new int[ n ];
+        this.currentArc = new int[ n ];
+        this.path = new int[ n ];
+        this.queue = new int[ n ];
+        this.heap = new NodeHeap( n, this.distance );
+
+        long maxFlow = 0;
+        while ( !stopped() ) {
+            this.probe.beginPhase( "shortest-paths" );
+            boolean found = shortestPaths();
+            if ( found ) {
+                while ( !stopped() && buildLevels() ) {
+                    for ( int u = 0; u < n; u++ ) {
+                        this.currentArc[ u ] = this.csr.firstArc( u );
+                    }
+                    maxFlow += blockingFlow();
+                }
+            }
+            this.probe.endPhase();
+            if ( !found ) {
+                break;
+            }
+        }
+        this.probe.finish( maxFlow );
+        this.csr = null;
+        this.cost = null;
+        this.capacity = null;
+        this.potential = null;
+        this.distance = null;
+        this.level = null;
+        this.currentArc = null;
+        this.path = null;
+        this.queue = null;
+        this.heap = null;
+        this.counters = null;
+        this.probe = null;
+        return maxFlow - before;
+    }
+
+    /**
+     * {@inheritDoc}
+     * A network has no edge costs, so there is no cheapest flow to find.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public long maxFlow( ResidualNetwork network, int source, int sink ) {
+        throw new UnsupportedOperationException(
+                "successive-shortest-paths needs a FlowGraph with costs" );
+    }
+
+    /**
+     * @return true if the budget has run out
+     */
+    private boolean stopped() {
+        return this.budget != null &&
+               this.budget.shouldStop( this.probe.work() +
+                                       this.counters.arcsScanned );
+    }
+
+    /**
+     * @param a an arc
+     * @return how much flow the arc can take at its present cost: what
+     *         runs the other way along its edge, if any, else its room
+     */
+    private long room( int a ) {
+        long residual = this.csr.residual( a );
+        long c = this.capacity[ a ];
+        return residual > c ? residual - c : residual;
+    }
+
+    /**
+     * @param a an arc
+     * @return the cost of one more unit along the arc, less than 0 if it
+     *         cancels flow running the other way
+     */
+    private long cost( int a ) {
+        return this.csr.residual( a ) > this.capacity[ a ] ?
+               -this.cost[ a ] : this.cost[ a ];
+    }
+
+    /**
+     * @param a an arc
+     * @return the arc's cost adjusted by the potentials of its ends
+     */
+    private long reducedCost( int a ) {
+        return cost( a ) + this.potential[ this.csr.tail( a ) ] -
+               this.potential[ this.csr.head( a ) ];
+    }
+
+    /**
+     * Find each node's reduced-cost distance from the source, stopping
+     * once the sink's is known, and raise each potential by its node's
+     * distance, or by the sink's if that is less.
+     * @return true if the sink was reached
+     */
+    private boolean shortestPaths() {
+        this.counters.searches++;
+        Arrays.fill( this.distance, FAR );
+        this.heap.clear();
+        this.distance[ this.source ] = 0;
+        this.heap.offer( this.source );
+        while ( !this.heap.isEmpty() ) {
+            int u = this.heap.poll();
+            if ( u == this.sink ) {
+                break;
+            }
+            this.counters.nodesVisited++;
+            long du = this.distance[ u ] + this.potential[ u ];
+            int end = this.csr.endArc( u );
+            this.counters.arcsScanned += end - this.csr.firstArc( u );
+            for ( int a = this.csr.firstArc( u ); a < end; a++ ) {
+                if ( room( a ) == 0 ) {
+                    continue;
+                }
+                int v = this.csr.head( a );
+                long dv = du + cost( a ) - this.potential[ v ];
+                if ( dv < this.distance[ v ] ) {
+                    this.distance[ v ] = dv;
+                    this.heap.offer( v );
+                }
+            }
+        }
+        long reach = this.distance[ this.sink ];
+        if ( reach == FAR ) {
+            return false;
+        }
+        for ( int u = 0; u < this.potential.length; u++ ) {
+            this.potential[ u ] += Math.min( this.distance[ u ], reach );
+        }
+        return true;
+    }
+
+    /**
+     * Label each node with its distance from the source along arcs with
+     * room and a reduced cost of 0. The search stops at the sink's level.
+     * @return true if the sink was reached
+     */
+    private boolean buildLevels() {
+        this.counters.searches++;
+        Arrays.fill( this.level, -1 );
+        this.level[ this.source ] = 0;
+        this.queue[ 0 ] = this.source;
+        int head = 0;
+        int tail = 1;
+        while ( head < tail ) {
+            int u = this.queue[ head++ ];
+            if ( this.level[ this.sink ] >= 0 &&
+                 this.level[ u ] >= this.level[ this.sink ] ) {
+                break;
+            }
+            this.counters.nodesVisited++;
+            int end = this.csr.endArc( u );
+            this.counters.arcsScanned += end - this.csr.firstArc( u );
+            for ( int a = this.csr.firstArc( u ); a < end; a++ ) {
+                int v = this.csr.head( a );
+                if ( this.level[ v ] < 0 && admissible( a ) ) {
+                    this.level[ v ] = this.level[ u ] + 1;
+                    this.queue[ tail++ ] = v;
+                }
+            }
+        }
+        return this.level[ this.sink ] >= 0;
+    }
+
+    /**
+     * @param a an arc
+     * @return true if the arc has room and a reduced cost of 0
+     */
+    private boolean admissible( int a ) {
+        return room( a ) > 0 && reducedCost( a ) == 0;
+    }
+
+    /**
+     * Push flow along level-increasing paths of admissible arcs until
+     * none is left, as {@link DinicSolver} does.
+     * @return the amount of flow pushed
+     */
+    private long blockingFlow() {
+        CsrGraph csr = this.csr;
+        long pushed = 0;
+        int depth = 0;
+        int u = this.source;
+        while ( true ) {
+            if ( u == this.sink ) {
+                long delta = Long.MAX_VALUE;
+                for ( int i = 0; i < depth; i++ ) {
+                    delta = Math.min( delta, room( this.path[ i ] ) );
+                }
+                int saturated = -1;
+                for ( int i = 0; i < depth; i++ ) {
+                    // An arc whose cancelling room runs out may still have
+                    // room at its full cost, if that is 0, but the search
+                    // goes back to it all the same.
+                    if ( saturated < 0 && room( this.path[ i ] ) == delta ) {
+                        saturated = i;
+                    }
+                    csr.push( this.path[ i ], delta );
+                }
+                pushed += delta;
+                this.counters.augmentations++;
+                if ( stopped() ) {
+                    return pushed;
+                }
+                depth = saturated;
+                u = csr.tail( this.path[ depth ] );
+                continue;
+            }
+
+            int a = this.currentArc[ u ];
+            int end = csr.endArc( u );
+            while ( a < end &&
+                    ( this.level[ csr.head( a ) ] != this.level[ u ] + 1 ||
+                      !admissible( a ) ) ) {
+                a++;
+            }
+            this.counters.arcsScanned +=
+                    a - this.currentArc[ u ] + ( a < end ? 1 : 0 );
+            this.currentArc[ u ] = a;
+            if ( a < end ) {
+                this.path[ depth++ ] = a;
+                u = csr.head( a );
+                this.counters.nodesVisited++;
+            }
+            else {
+                this.level[ u ] = -1;
+                if ( depth == 0 ) {
+                    return pushed;
+                }
+                u = csr.tail( this.path[ --depth ] );
+                this.currentArc[ u ]++;
+            }
+        }
+    }
+
+    /**
+     * A binary min-heap of node ids, ordered by their entries in an array
+     * of keys, that knows where each node is so that a node whose key
+     * goes down can be moved up in place.
+     */
+    static final class NodeHeap {
+
+        /**
+         * The nodes, as a binary heap
+         */
+        private final int[] nodes;
+
+        /**
+         * Where each node is in the heap, or -1 if it is not there
+         */
+        private final int[] position;
+
+        /**
+         * Each node's key
+         */
+        private final long[] keys;
+
+        /**
+         * How many nodes are in the heap
+         */
+        private int size;
+
+        /**
+         * @param n how many nodes there are
+         * @param keys each node's key, read as the heap works
+         */
+        NodeHeap( int n, long[] keys ) {
+            this.nodes = new int[ n ];
+            this.position = new int[ n ];
+            this.keys = keys;
+            Arrays.fill( this.position, -1 );
+        }
+
+        /**
+         * Empty the heap.
+         */
+        void clear() {
+            for ( int i = 0; i < this.size; i++ ) {
+                this.position[ this.nodes[ i ] ] = -1;
+            }
+            this.size = 0;
+        }
+
+        /**
+         * @return true if the heap is empty
+         */
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        /**
+         * Add a node, or move it up if its key has gone down.
+         * @param u a node
+         */
+        void offer( int u ) {
+            int i = this.position[ u ];
+            if ( i < 0 ) {
+                i = this.size++;
+            }
+            siftUp( u, i );
+        }
+
+        /**
+         * Take out the node with the least key.
+         * @return the node
+         * @rit.pre the heap is not empty
+         */
+        int poll() {
+            int top = this.nodes[ 0 ];
+            this.position[ top ] = -1;
+            int last = this.nodes[ --this.size ];
+            if ( this.size > 0 ) {
+                siftDown( last, 0 );
+            }
+            return top;
+        }
+
+        /**
+         * Put a node at a slot, or above it while its key is less than
+         * its parent's.
+         * @param u the node
+         * @param i the slot
+         */
+        private void siftUp( int u, int i ) {
+            long key = this.keys[ u ];
+            while ( i > 0 ) {
+                int parent = ( i - 1 ) >>> 1;
+                int p = this.nodes[ parent ];
+                if ( this.keys[ p ] <= key ) {
+                    break;
+                }
+                this.nodes[ i ] = p;
+                this.position[ p ] = i;
+                i = parent;
+            }
+            this.nodes[ i ] = u;
+            this.position[ u ] = i;
+        }
+
+        /**
+         * Put a node at a slot, or below it while its key is more than one
+         * of its children's.
+         * @param u the node
+         * @param i the slot
+         */
+        private void siftDown( int u, int i ) {
+            long key = this.keys[ u ];
+            int half = this.size >>> 1;
+            while ( i < half ) {
+                int child = 2 * i + 1;
+                int c = this.nodes[ child ];
+                if ( child + 1 < this.size &&
+                     this.keys[ this.nodes[ child + 1 ] ] < this.keys[ c ] ) {
+                    c = this.nodes[ ++child ];
+                }
+                if ( key <= this.keys[ c ] ) {
+                    break;
+                }
+                this.nodes[ i ] = c;
+                this.position[ c ] = i;
+                i = child;
+            }
+            this.nodes[ i ] = u;
+            this.position[ u ] = i;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package edu.rit.cs.maxflow.tests;
+
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphException;
+import edu.rit.cs.maxflow.DinicSolver;
+import edu.rit.cs.maxflow.GomoryHuTree;
+import edu.rit.cs.maxflow.PushRelabelSolver;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static edu.rit.cs.labgraph.FlowGraph.CAP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Exercise {@link GomoryHuTree} by checking every pair of nodes against a
+ * max flow run on its own.
+ *
+ * @author RIT CS
+ */
+@TestMethodOrder( MethodOrderer.Alphanumeric.class )
+public class TestGomoryHuTree {
+
+    @TempDir
+    public Path tempDir;
+
+    /**
+     * Write a random graph with nodes named n0, n1, ...
+     */
+    private Path randomGraph( long seed, int n, int m ) throws IOException {
+        Random random = new Random( seed );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < m; i++ ) {
+            int u = random.nextInt( n );
+            int v = random.nextInt( n );
+            if ( u != v ) {
+                text.append( "n" ).append( u ).append( " n" ).append( v )
+                    .append( ' ' ).append( random.nextInt( 20 ) )
+                    .append( '\n' );
+            }
+        }
+        text.append( "n0 n" ).append( n - 1 ).append( " 1\n" );
+        Path file = this.tempDir.resolve( "graph" + seed + ".txt" );
+        Files.writeString( file, text );
+        return file;
+    }
+
+    private void checkAllPairs( Path file, GomoryHuTree tree )
+            throws IOException, GraphException {
+        for ( int u = 0; u < tree.nodeCount(); u++ ) {
+            for ( int v = u + 1; v < tree.nodeCount(); v++ ) {
+                FlowGraph pair = new FlowGraph( file.toString(),
+                                                tree.name( u ), tree.name( v ) );
+                assertEquals( new DinicSolver().maxFlow( pair ),
+                              tree.minCut( u, v ) );
+            }
+        }
+    }
+
+    @Test
+    public void t00_fixedGraph() throws GraphException {
+        GomoryHuTree tree = GomoryHuTree.build( new FlowGraph(), 2 );
+        assertEquals( 2 * CAP, tree.minCut( "A", "D" ) );
+        assertEquals( 2 * CAP, tree.minCut( "A", "B" ) );
+        assertEquals( 3 * CAP, tree.minCut( "B", "C" ) );
+        assertThrows( GraphException.class, () -> tree.minCut( "A", "A" ) );
+        assertThrows( GraphException.class, () -> tree.minCut( "A", "E" ) );
+    }
+
+    @Test
+    public void t01_randomGraphs() throws IOException, GraphException {
+        for ( int seed = 0; seed < 6; seed++ ) {
+            Path file = randomGraph( seed, 12, 30 );
+            FlowGraph graph = new FlowGraph( file.toString(), "n0", "n11" );
+            checkAllPairs( file, GomoryHuTree.build( graph, 1 ) );
+            checkAllPairs( file, GomoryHuTree.build(
+                    graph, 3, () -> new PushRelabelSolver( false ) ) );
+        }
+    }
+
+    @Test
+    public void t02_saveAndLoad() throws IOException, GraphException {
+        Path file = randomGraph( 42, 10, 25 );
+        FlowGraph graph = new FlowGraph( file.toString(), "n0", "n9" );
+        Path saved = this.tempDir.resolve( "tree.bin" );
+        GomoryHuTree.build( graph, 2 ).save( saved );
+        checkAllPairs( file, GomoryHuTree.load( saved ) );
+    }
+}
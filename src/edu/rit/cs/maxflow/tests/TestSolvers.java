@@ -0,0 +1,796 @@
+package edu.rit.cs.maxflow.tests;
+
+import edu.rit.cs.labgraph.CsrGraph;
+import edu.rit.cs.labgraph.Edge;
+import edu.rit.cs.labgraph.FlowGraph;
+import edu.rit.cs.labgraph.GraphCache;
+import edu.rit.cs.labgraph.GraphException;
+import edu.rit.cs.labgraph.GraphReduction;
+import edu.rit.cs.labgraph.OffHeapGraph;
+import edu.rit.cs.maxflow.BatchSolver;
+import edu.rit.cs.maxflow.BipartiteMatchingSolver;
+import edu.rit.cs.maxflow.CapacityScalingSolver;
+import edu.rit.cs.maxflow.CostScalingSolver;
+import edu.rit.cs.maxflow.DinicSolver;
+import edu.rit.cs.maxflow.EdmondsKarpSolver;
+import edu.rit.cs.maxflow.FlowBounds;
+import edu.rit.cs.maxflow.MaxFlowSolver;
+import edu.rit.cs.maxflow.MinCut;
+import edu.rit.cs.maxflow.ParallelPushRelabelSolver;
+import edu.rit.cs.maxflow.PushRelabelSolver;
+import edu.rit.cs.maxflow.SolveBudget;
+import edu.rit.cs.maxflow.SolverCounters;
+import edu.rit.cs.maxflow.SolverMetrics;
+import edu.rit.cs.maxflow.SolverServer;
+import edu.rit.cs.maxflow.SuccessiveShortestPathSolver;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static edu.rit.cs.labgraph.FlowGraph.CAP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercise the {@link MaxFlowSolver} implementations on the fixed test
+ * graph from {@link FlowGraph#FlowGraph()}.
+ *
+ * @author RIT CS
+ */
+@TestMethodOrder( MethodOrderer.Alphanumeric.class )
+public class TestSolvers {
+
+    private void checkSolver( MaxFlowSolver solver ) {
+        FlowGraph graph = new FlowGraph();
+        assertEquals( 2 * CAP, solver.maxFlow( graph ) );
+        // Flow is conserved at every node but the source and sink.
+        for ( String node: List.of( "B", "C" ) ) {
+            long net = 0;
+            for ( Edge e: graph.getEdgesAt( node ) ) {
+                net += e.getFlow( node, e.getOtherEnd( node ) );
+                assertTrue( Math.abs( e.getFlow( node, e.getOtherEnd( node ) ) )
+                            <= e.getCapacity() );
+            }
+            assertEquals( 0L, net );
+        }
+        assertEquals( 0L, solver.maxFlow( graph ) );
+    }
+
+    @Test
+    public void t00_edmondsKarp() {
+        checkSolver( new EdmondsKarpSolver() );
+        checkSolver( new EdmondsKarpSolver( null, true ) );
+    }
+
+    @Test
+    public void t01_dinic() {
+        checkSolver( new DinicSolver() );
+    }
+
+    @Test
+    public void t02_pushRelabel() {
+        checkSolver( new PushRelabelSolver() );
+    }
+
+    @Test
+    public void t03_pushRelabelValueOnly() {
+        FlowGraph graph = new FlowGraph();
+        PushRelabelSolver solver = new PushRelabelSolver( false );
+        assertEquals( 2 * CAP, solver.maxFlow( graph ) );
+        BitSet sourceSide = solver.getSourceSide();
+        assertTrue( sourceSide.get( graph.getSourceId() ) );
+        assertFalse( sourceSide.get( graph.getSinkId() ) );
+    }
+
+    @Test
+    public void t04_parallelPushRelabel() {
+        checkSolver( new ParallelPushRelabelSolver( 1 ) );
+        checkSolver( new ParallelPushRelabelSolver( 4 ) );
+    }
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void t05_parallelEdges() throws IOException, GraphException {
+        Path file = this.tempDir.resolve( "graph.txt" );
+        Files.writeString( file, "A B 1\nA B 2\nB D 5\nA D 1\nA D 1\n" );
+        for ( MaxFlowSolver solver: List.of(
+                new EdmondsKarpSolver( null ), new CapacityScalingSolver(),
+                new DinicSolver(), new PushRelabelSolver(),
+                new ParallelPushRelabelSolver( 2 ) ) ) {
+            FlowGraph graph = new FlowGraph( file.toString(), "A", "D" );
+            assertEquals( 5L, solver.maxFlow( graph ) );
+        }
+    }
+
+    @Test
+    public void t06_warmStart() throws GraphException {
+        for ( MaxFlowSolver solver: List.of(
+                new EdmondsKarpSolver( null ), new CapacityScalingSolver(),
+                new DinicSolver(), new PushRelabelSolver(),
+                new ParallelPushRelabelSolver( 2 ) ) ) {
+            FlowGraph graph = new FlowGraph();
+            solver.maxFlow( graph );
+            graph.setCapacity( "D", "B", 1 );
+            assertEquals( 0L, solver.maxFlow( graph ) );
+            assertEquals( CAP + 1, graph.getFlowValue() );
+            graph.addEdge( "C", "D", 3 );
+            assertEquals( 3L, solver.maxFlow( graph ) );
+            assertEquals( 2 * CAP, graph.getFlowValue() );
+            graph.removeEdge( "A", "B" );
+            solver.maxFlow( graph );
+            assertEquals( CAP, graph.getFlowValue() );
+            graph.setCapacity( "D", "B", CAP );
+            graph.addEdge( "A", "B", CAP );
+            assertEquals( CAP, solver.maxFlow( graph ) );
+            assertEquals( 2 * CAP, graph.getFlowValue() );
+        }
+    }
+
+    @Test
+    public void t07_minCut() {
+        FlowGraph graph = new FlowGraph();
+        new DinicSolver().maxFlow( graph );
+        MinCut cut = MinCut.find( graph );
+        assertEquals( 2 * CAP, cut.getCapacity() );
+        assertEquals( Set.of( graph.getEdge( "A", "B" ),
+                              graph.getEdge( "A", "C" ) ),
+                      Set.copyOf( cut.getCutEdges() ) );
+        assertTrue( cut.isOnSourceSide( "A" ) );
+        assertFalse( cut.isOnSourceSide( "B" ) );
+        MinCut nearSink = MinCut.findNearSink( graph );
+        assertEquals( 2 * CAP, nearSink.getCapacity() );
+        assertEquals( Set.of( graph.getEdge( "D", "B" ),
+                              graph.getEdge( "D", "C" ) ),
+                      Set.copyOf( nearSink.getCutEdges() ) );
+        for ( Edge e: nearSink.getCutEdges() ) {
+            assertEquals( e.getCapacity(),
+                          e.getFlow( e.getOtherEnd( "D" ), "D" ) );
+        }
+
+        PushRelabelSolver solver = new PushRelabelSolver( false );
+        graph = new FlowGraph();
+        solver.maxFlow( graph );
+        assertEquals( 2 * CAP, MinCut.findNearSink( graph ).getCapacity() );
+        assertEquals( MinCut.findNearSink( graph ).getCapacity(),
+                      new MinCut( graph, solver.getSourceSide() )
+                              .getCapacity() );
+    }
+
+    @Test
+    public void t08_batch() throws GraphException {
+        FlowGraph graph = new FlowGraph();
+        List< BatchSolver.Query > queries = List.of(
+                new BatchSolver.Query( "A", "D" ),
+                new BatchSolver.Query( "A", "D" ).withCapacity( "A", "B", 1 ),
+                new BatchSolver.Query( "D", "A" )
+                        .withCapacity( "D", "B", 0 )
+                        .withCapacity( "C", "D", 2 ),
+                new BatchSolver.Query( "B", "A" ) );
+        List< Long > expected = List.of( 2 * CAP, CAP + 1, 2L, 2 * CAP );
+        try ( BatchSolver batch = new BatchSolver( graph, 2 ) ) {
+            List< BatchSolver.Result > results = batch.solve( queries );
+            for ( int i = 0; i < queries.size(); i++ ) {
+                assertEquals( i, results.get( i ).getIndex() );
+                assertEquals( queries.get( i ), results.get( i ).getQuery() );
+                assertEquals( expected.get( i ), results.get( i ).getValue() );
+            }
+            try ( Stream< BatchSolver.Result > stream =
+                          batch.stream( queries ) ) {
+                stream.forEach( r -> assertEquals(
+                        expected.get( r.getIndex() ), r.getValue() ) );
+            }
+            assertThrows( GraphException.class, () -> batch.solve( List.of(
+                    new BatchSolver.Query( "A", "E" ) ) ) );
+            assertThrows( GraphException.class, () -> batch.solve( List.of(
+                    new BatchSolver.Query( "A", "D" )
+                            .withCapacity( "A", "D", 1 ) ) ) );
+        }
+        // The overrides only applied to their own queries.
+        assertEquals( CAP, graph.getEdge( "A", "B" ).getCapacity() );
+        assertEquals( 0L, graph.getFlowValue() );
+    }
+
+    /**
+     * Records what a solver reports.
+     */
+    private static final class Recorder implements SolverMetrics {
+        final List< String > phases = new ArrayList<>();
+        final List< SolverCounters > counters = new ArrayList<>();
+        SolverCounters totals;
+        long value = -1;
+
+        @Override
+        public void phaseEnded( String solver, String phase,
+                                SolverCounters counters, long nanos,
+                                long allocatedBytes ) {
+            this.phases.add( phase );
+            this.counters.add( new SolverCounters( counters ) );
+            assertTrue( nanos >= 0 );
+        }
+
+        @Override
+        public void solveEnded( String solver, long value,
+                                SolverCounters totals, long nanos,
+                                long allocatedBytes ) {
+            this.value = value;
+            this.totals = new SolverCounters( totals );
+        }
+    }
+
+    @Test
+    public void t09_metrics() {
+        for ( MaxFlowSolver solver: List.of(
+                new EdmondsKarpSolver( null ), new CapacityScalingSolver(),
+                new DinicSolver(), new PushRelabelSolver(),
+                new ParallelPushRelabelSolver( 2 ) ) ) {
+            Recorder recorder = new Recorder();
+            solver.setMetrics( recorder );
+            solver.maxFlow( new FlowGraph() );
+            assertEquals( 2 * CAP, recorder.value );
+            assertFalse( recorder.phases.isEmpty() );
+            long arcs = 0;
+            for ( SolverCounters c: recorder.counters ) {
+                arcs += c.getArcsScanned();
+            }
+            assertEquals( recorder.totals.getArcsScanned(), arcs );
+            assertTrue( recorder.totals.getSearches() > 0 );
+            assertTrue( recorder.totals.getNodesVisited() > 0 );
+            assertTrue( recorder.totals.getAugmentations() +
+                        recorder.totals.getPushes() > 0 );
+        }
+        Recorder recorder = new Recorder();
+        MaxFlowSolver solver = new EdmondsKarpSolver();
+        solver.setMetrics( recorder );
+        solver.maxFlow( new FlowGraph() );
+        assertEquals( List.of( "augment" ), recorder.phases );
+        assertEquals( 2L, recorder.totals.getAugmentations() );
+        assertEquals( 3L, recorder.totals.getSearches() );
+    }
+
+    @Test
+    public void t10_flightRecorder() throws IOException {
+        Path file = this.tempDir.resolve( "solve.jfr" );
+        try ( Recording recording = new Recording() ) {
+            recording.enable( "edu.rit.cs.maxflow.Phase" );
+            recording.enable( "edu.rit.cs.maxflow.Solve" );
+            recording.start();
+            new PushRelabelSolver().maxFlow( new FlowGraph() );
+            recording.stop();
+            recording.dump( file );
+        }
+        List< String > phases = new ArrayList<>();
+        long value = -1;
+        for ( RecordedEvent event: RecordingFile.readAllEvents( file ) ) {
+            String type = event.getEventType().getName();
+            if ( type.equals( "edu.rit.cs.maxflow.Phase" ) ) {
+                phases.add( event.getString( "phase" ) );
+            }
+            else if ( type.equals( "edu.rit.cs.maxflow.Solve" ) ) {
+                assertEquals( "push-relabel", event.getString( "solver" ) );
+                value = event.getLong( "value" );
+            }
+        }
+        assertEquals( List.of( "phase one", "phase two" ), phases );
+        assertEquals( 2 * CAP, value );
+    }
+
+    @Test
+    public void t11_trace() throws IOException, GraphException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new EdmondsKarpSolver( new PrintStream( bytes ) )
+                .maxFlow( new FlowGraph() );
+        assertEquals( List.of( "Trying A->B->D; adding 4 to path.",
+                               "Trying A->C->D; adding 4 to path." ),
+                      bytes.toString().lines().collect( Collectors.toList() ) );
+        assertEquals( 2 * CAP, new EdmondsKarpSolver( null )
+                .maxFlow( new FlowGraph() ) );
+
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 1100; i++ ) {
+            text.append( "A n" ).append( i ).append( " 1\n" )
+                .append( "n" ).append( i ).append( " D 1\n" );
+        }
+        Path file = this.tempDir.resolve( "paths.txt" );
+        Files.writeString( file, text );
+        bytes.reset();
+        assertEquals( 1100L, new EdmondsKarpSolver( new PrintStream( bytes ) )
+                .maxFlow( new FlowGraph( file.toString(), "A", "D" ) ) );
+        List< String > lines =
+                bytes.toString().lines().collect( Collectors.toList() );
+        assertEquals( EdmondsKarpSolver.TRACE_ALL + 2, lines.size() );
+        assertEquals( "Tried 1100 paths; 99 not shown.",
+                      lines.get( lines.size() - 1 ) );
+    }
+
+    @Test
+    public void t12_capacityScaling() throws IOException, GraphException {
+        checkSolver( new CapacityScalingSolver() );
+
+        // Capacities from 1 to 10^12 on a random graph.
+        Random random = new Random( 16 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 600; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 100 ) ).append( " n" )
+                .append( random.nextInt( 100 ) ).append( ' ' )
+                .append( (long) Math.pow( 10, 12 * random.nextDouble() ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "wide.txt" );
+        Files.writeString( file, text );
+        Recorder scaling = new Recorder();
+        MaxFlowSolver solver = new CapacityScalingSolver();
+        solver.setMetrics( scaling );
+        Recorder plain = new Recorder();
+        MaxFlowSolver ek = new EdmondsKarpSolver( null );
+        ek.setMetrics( plain );
+        assertEquals( new DinicSolver().maxFlow(
+                              new FlowGraph( file.toString(), "n0", "n1" ) ),
+                      solver.maxFlow(
+                              new FlowGraph( file.toString(), "n0", "n1" ) ) );
+        ek.maxFlow( new FlowGraph( file.toString(), "n0", "n1" ) );
+        assertEquals( scaling.value, new EdmondsKarpSolver( null, true )
+                .maxFlow( new FlowGraph( file.toString(), "n0", "n1" ) ) );
+        assertTrue( scaling.totals.getAugmentations() <
+                    plain.totals.getAugmentations() );
+    }
+
+    @Test
+    public void t13_parallelSearches() throws IOException, GraphException {
+        Random random = new Random( 19 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 40000; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 8000 ) ).append( " n" )
+                .append( random.nextInt( 8000 ) ).append( ' ' )
+                .append( 1 + random.nextInt( 20 ) ).append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "wide.txt" );
+        Files.writeString( file, text );
+        FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+        long value = new DinicSolver().maxFlow( graph );
+        for ( int workers: List.of( 1, 3 ) ) {
+            MinCut cut = MinCut.find( graph, workers );
+            assertEquals( MinCut.find( graph ).getSourceSide(),
+                          cut.getSourceSide() );
+            assertEquals( value, cut.getCapacity() );
+            MinCut nearSink = MinCut.findNearSink( graph, workers );
+            assertEquals( MinCut.findNearSink( graph ).getSourceSide(),
+                          nearSink.getSourceSide() );
+            assertEquals( value, nearSink.getCapacity() );
+        }
+        assertEquals( value, new ParallelPushRelabelSolver( 3 ).maxFlow(
+                new FlowGraph( file.toString(), "n0", "n1" ) ) );
+    }
+
+    @Test
+    public void t14_reduction() throws IOException, GraphException {
+        // Random edges, each replaced by a chain of one to three.
+        Random random = new Random( 21 );
+        StringBuilder text = new StringBuilder();
+        int hops = 0;
+        for ( int i = 0; i < 3000; i++ ) {
+            String at = "n" + random.nextInt( 400 );
+            for ( int j = random.nextInt( 3 ); j > 0; j-- ) {
+                String via = "h" + hops++;
+                text.append( at ).append( ' ' ).append( via ).append( ' ' )
+                    .append( 1 + random.nextInt( 20 ) ).append( '\n' );
+                at = via;
+            }
+            text.append( at ).append( " n" ).append( random.nextInt( 400 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 20 ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "chains.txt" );
+        Files.writeString( file, text );
+        long expected = new DinicSolver().maxFlow(
+                new FlowGraph( file.toString(), "n0", "n1" ) );
+        for ( MaxFlowSolver solver: List.of( new DinicSolver(),
+                                             new PushRelabelSolver() ) ) {
+            FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+            GraphReduction reduction = GraphReduction.reduce( graph );
+            assertTrue( reduction.getNodesRemoved() >= hops );
+            assertEquals( expected, solver.maxFlow( reduction.getReduced() ) );
+            reduction.expand();
+            assertEquals( expected, graph.getFlowValue() );
+            assertEquals( expected, MinCut.find( graph ).getCapacity() );
+            assertEquals( expected, MinCut.findNearSink( graph ).getCapacity() );
+        }
+    }
+
+    @Test
+    public void t15_offHeap() throws IOException, GraphException {
+        Random random = new Random( 24 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 5000; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 800 ) )
+                .append( " n" ).append( random.nextInt( 800 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 100 ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "random.txt" );
+        Files.writeString( file, text );
+        FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+        long expected = new PushRelabelSolver().maxFlow( graph );
+        try ( OffHeapGraph offHeap = OffHeapGraph.read(
+                file, this.tempDir.resolve( "random.bin" ) ) ) {
+            int source = offHeap.id( "n0" );
+            int sink = offHeap.id( "n1" );
+            Recorder recorder = new Recorder();
+            DinicSolver dinic = new DinicSolver();
+            dinic.setMetrics( recorder );
+            assertEquals( expected, dinic.maxFlow( offHeap, source, sink ) );
+            assertEquals( expected, recorder.value );
+            assertEquals( 0L, dinic.maxFlow( offHeap, source, sink ) );
+
+            // The flow is conserved at every node but the ends.
+            long[] net = new long[ offHeap.nodeCount() ];
+            for ( long e = 0; e < offHeap.edgeCount(); e++ ) {
+                long a = offHeap.forwardArc( e );
+                net[ offHeap.tail( a ) ] -= offHeap.flow( e );
+                net[ offHeap.head( a ) ] += offHeap.flow( e );
+            }
+            for ( int u = 0; u < net.length; u++ ) {
+                if ( u != source && u != sink ) {
+                    assertEquals( 0L, net[ u ] );
+                }
+            }
+            assertEquals( expected, net[ sink ] );
+        }
+
+        // Every solver that needs no more than the residual arcs gives
+        // the same flow on a fresh copy; the others say they cannot run.
+        MaxFlowSolver[] solvers = { new EdmondsKarpSolver( null ),
+                                    new CapacityScalingSolver(),
+                                    new PushRelabelSolver(),
+                                    new ParallelPushRelabelSolver( 2 ),
+                                    new BipartiteMatchingSolver() };
+        for ( int i = 0; i < solvers.length; i++ ) {
+            try ( OffHeapGraph offHeap = OffHeapGraph.read(
+                    file, this.tempDir.resolve( "random" + i + ".bin" ) ) ) {
+                int source = offHeap.id( "n0" );
+                int sink = offHeap.id( "n1" );
+                assertEquals( expected,
+                              solvers[ i ].maxFlow( offHeap, source, sink ) );
+                assertEquals( 0L,
+                              solvers[ i ].maxFlow( offHeap, source, sink ) );
+            }
+        }
+        try ( OffHeapGraph offHeap = OffHeapGraph.read(
+                file, this.tempDir.resolve( "unsupported.bin" ) ) ) {
+            for ( MaxFlowSolver solver : new MaxFlowSolver[] {
+                    new SuccessiveShortestPathSolver(),
+                    new CostScalingSolver() } ) {
+                assertThrows( UnsupportedOperationException.class,
+                              () -> solver.maxFlow( offHeap, 0, 1 ) );
+            }
+        }
+    }
+
+    /**
+     * Send a GET request to a server on this machine.
+     * @param port the server's port
+     * @param path the path and query
+     * @return the response
+     */
+    private static HttpResponse< String > get( int port, String path )
+            throws IOException, InterruptedException {
+        return HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder( URI.create(
+                        "http://localhost:" + port + path ) ).build(),
+                HttpResponse.BodyHandlers.ofString() );
+    }
+
+    @Test
+    public void t16_server() throws IOException, GraphException,
+                                    InterruptedException {
+        Path file = this.tempDir.resolve( "graph.txt" );
+        Files.writeString( file, "A B 3\nB D 2\nA C 2\nC D 4\nB C 1\n" );
+        String graph = "/solve?graph=" +
+                       URLEncoder.encode( file.toString(),
+                                          StandardCharsets.UTF_8 );
+        try ( SolverServer server = new SolverServer(
+                0, new GraphCache( 1 << 20, 1 ), 2 ) ) {
+            int port = server.getPort();
+            for ( String solver: List.of( "dinic", "edmonds-karp",
+                                          "push-relabel",
+                                          "parallel-push-relabel" ) ) {
+                HttpResponse< String > response = get(
+                        port, graph + "&source=A&sink=D&solver=" + solver );
+                assertEquals( 200, response.statusCode() );
+                assertEquals( "Max flow is 5\n", response.body() );
+            }
+            assertEquals( "Max flow is 6\n", get(
+                    port, graph + "&source=D&sink=C" ).body() );
+            assertEquals( 1L, server.getCache().getMisses() );
+            assertEquals( 4L, server.getCache().getHits() );
+            assertTrue( get( port, "/stats" ).body().contains( "hits 4\n" ) );
+
+            assertEquals( 400, get( port, graph + "&source=A" ).statusCode() );
+            assertEquals( 400, get( port, graph +
+                    "&source=A&sink=D&solver=none" ).statusCode() );
+            assertEquals( 400, get( port, "/solve" ).statusCode() );
+            assertEquals( 404, get( port, graph + "x&source=A&sink=D" )
+                    .statusCode() );
+        }
+    }
+
+    @Test
+    public void t17_budget() throws IOException, GraphException {
+        Random random = new Random( 27 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 5000; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 800 ) )
+                .append( " n" ).append( random.nextInt( 800 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 100 ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "random.txt" );
+        Files.writeString( file, text );
+        long expected = new DinicSolver().maxFlow(
+                new FlowGraph( file.toString(), "n0", "n1" ) );
+        SolveBudget cancelled = new SolveBudget();
+        cancelled.cancel();
+        for ( MaxFlowSolver solver: List.of(
+                new EdmondsKarpSolver( null ), new CapacityScalingSolver(),
+                new DinicSolver(), new PushRelabelSolver(),
+                new PushRelabelSolver( false ),
+                new ParallelPushRelabelSolver( 2 ) ) ) {
+            for ( SolveBudget budget: List.of(
+                    new SolveBudget( null, 2000 ), new SolveBudget(
+                            Duration.ZERO ), cancelled ) ) {
+                FlowGraph graph = new FlowGraph( file.toString(), "n0",
+                                                 "n1" );
+                FlowBounds bounds = solver.maxFlow( graph, budget );
+                assertTrue( budget.isExhausted() );
+                assertTrue( bounds.getLower() <= expected );
+                assertTrue( expected <= bounds.getUpper() );
+
+                // What was left is a flow, which a second solve finishes.
+                CsrGraph csr = graph.getCsr();
+                long[] net = new long[ csr.nodeCount() ];
+                for ( int e = 0; e < csr.edgeCount(); e++ ) {
+                    int a = csr.forwardArc( e );
+                    net[ csr.tail( a ) ] -= csr.flow( e );
+                    net[ csr.head( a ) ] += csr.flow( e );
+                }
+                for ( int u = 0; u < net.length; u++ ) {
+                    if ( u != graph.getSourceId() && u != graph.getSinkId() ) {
+                        assertEquals( 0L, net[ u ] );
+                    }
+                }
+                assertEquals( bounds.getLower(), net[ graph.getSinkId() ] );
+                assertEquals( expected - bounds.getLower(),
+                              solver.maxFlow( graph ) );
+            }
+            FlowBounds bounds = solver.maxFlow(
+                    new FlowGraph( file.toString(), "n0", "n1" ),
+                    new SolveBudget( Duration.ofHours( 1 ) ) );
+            assertFalse( bounds.isPartial() );
+            assertEquals( expected, bounds.getLower() );
+            assertEquals( Long.toString( expected ), bounds.toString() );
+        }
+
+        // The level cut bound is exact once no path is left.
+        FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+        new DinicSolver().maxFlow( graph );
+        assertEquals( expected, FlowBounds.of( graph ).getUpper() );
+        assertThrows( IllegalArgumentException.class,
+                      () -> new SolveBudget( Duration.ofMillis( -1 ) ) );
+    }
+
+    @Test
+    public void t18_matching() throws IOException, GraphException {
+        checkSolver( new BipartiteMatchingSolver() );
+        assertFalse( BipartiteMatchingSolver.fits( new FlowGraph() ) );
+
+        Random random = new Random( 30 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 2000; i++ ) {
+            text.append( "source l" ).append( i ).append( " 1\n" );
+            text.append( 'r' ).append( i ).append( " sink 1\n" );
+            for ( int k = random.nextInt( 4 ); k > 0; k-- ) {
+                text.append( 'l' ).append( i ).append( " r" )
+                    .append( random.nextInt( 2000 ) ).append( " 1\n" );
+            }
+        }
+        Path file = this.tempDir.resolve( "assign.txt" );
+        Files.writeString( file, text );
+        long expected = new DinicSolver().maxFlow(
+                new FlowGraph( file.toString(), "source", "sink" ) );
+        FlowGraph graph = new FlowGraph( file.toString(), "source", "sink" );
+        assertTrue( BipartiteMatchingSolver.fits( graph ) );
+        Recorder recorder = new Recorder();
+        MaxFlowSolver solver = new BipartiteMatchingSolver();
+        solver.setMetrics( recorder );
+        assertEquals( expected, solver.maxFlow( graph ) );
+        assertEquals( List.of( "hopcroft-karp", "unit-dinic" ), recorder.phases );
+        assertEquals( expected, recorder.value );
+        assertEquals( expected, graph.getFlowValue() );
+        assertEquals( expected, MinCut.find( graph ).getCapacity() );
+        assertFalse( BipartiteMatchingSolver.fits( graph ) );
+        assertEquals( 0L, solver.maxFlow( graph ) );
+
+        // Flow can zig-zag through the undirected edges: x to a carries
+        // a third unit, though no matching has more than two pairs.
+        Path small = this.tempDir.resolve( "zigzag.txt" );
+        Files.writeString( small, "source a 1\nsource b 1\nsource c 1\n" +
+                                  "b x 1\nc x 1\nx a 1\na y 1\na z 1\n" +
+                                  "x sink 1\ny sink 1\nz sink 1\n" );
+        FlowGraph zigzag = new FlowGraph( small.toString(), "source", "sink" );
+        assertTrue( BipartiteMatchingSolver.fits( zigzag ) );
+        assertEquals( 3L, new BipartiteMatchingSolver().maxFlow( zigzag ) );
+
+        SolveBudget budget = new SolveBudget();
+        budget.cancel();
+        FlowBounds bounds = new BipartiteMatchingSolver().maxFlow(
+                new FlowGraph( file.toString(), "source", "sink" ), budget );
+        assertEquals( 0L, bounds.getLower() );
+        assertTrue( expected <= bounds.getUpper() );
+    }
+
+    @Test
+    public void t19_minCostFlow() throws IOException, GraphException {
+        checkSolver( new SuccessiveShortestPathSolver() );
+        checkSolver( new CostScalingSolver() );
+
+        // Three units fit through T; the third must take the dear route
+        // through C, but the first two, sent that way to start with,
+        // need not.
+        Path small = this.tempDir.resolve( "routes.txt" );
+        Files.writeString( small, "S A 3 0\nA B 2 1\nB D 2 1\nA C 2 4\n" +
+                                  "C D 2 4\nD T 3 0\n" );
+        for ( MaxFlowSolver solver: List.of(
+                new SuccessiveShortestPathSolver(),
+                new CostScalingSolver() ) ) {
+            FlowGraph graph = new FlowGraph( small.toString(), "S", "T" );
+            for ( String[] edge: List.of( new String[]{ "S", "A" },
+                    new String[]{ "A", "C" }, new String[]{ "C", "D" },
+                    new String[]{ "D", "T" } ) ) {
+                graph.getEdge( edge[ 0 ], edge[ 1 ] )
+                     .changeFlow( edge[ 0 ], edge[ 1 ], 2 );
+            }
+            assertEquals( 16L, graph.getFlowCost() );
+            assertEquals( 1L, solver.maxFlow( graph ) );
+            assertEquals( 3L, graph.getFlowValue() );
+            assertEquals( 12L, graph.getFlowCost() );
+        }
+
+        Random random = new Random( 31 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 3000; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 400 ) )
+                .append( " n" ).append( random.nextInt( 400 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 50 ) )
+                .append( ' ' ).append( random.nextInt( 20 ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "costs.txt" );
+        Files.writeString( file, text );
+        FlowGraph cheapest = new FlowGraph( file.toString(), "n0", "n1" );
+        long expected = new DinicSolver().maxFlow( cheapest );
+        long cost = cheapest.getFlowCost();
+        new SuccessiveShortestPathSolver().maxFlow( cheapest );
+        assertTrue( cheapest.getFlowCost() < cost );
+        cost = cheapest.getFlowCost();
+
+        SolveBudget cancelled = new SolveBudget();
+        cancelled.cancel();
+        for ( MaxFlowSolver solver: List.of(
+                new SuccessiveShortestPathSolver(),
+                new CostScalingSolver() ) ) {
+            FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+            assertEquals( expected, solver.maxFlow( graph ) );
+            assertEquals( cost, graph.getFlowCost() );
+            assertEquals( 0L, solver.maxFlow( graph ) );
+            assertEquals( cost, graph.getFlowCost() );
+
+            // A stopped solve leaves a flow that a second solve finishes.
+            for ( SolveBudget budget: List.of(
+                    new SolveBudget( null, 2000 ), cancelled ) ) {
+                graph = new FlowGraph( file.toString(), "n0", "n1" );
+                FlowBounds bounds = solver.maxFlow( graph, budget );
+                assertTrue( budget.isExhausted() );
+                assertTrue( bounds.getLower() <= expected );
+                assertTrue( expected <= bounds.getUpper() );
+                assertEquals( bounds.getLower(), graph.getFlowValue() );
+                assertEquals( expected - bounds.getLower(),
+                              solver.maxFlow( graph ) );
+                assertEquals( cost, graph.getFlowCost() );
+            }
+        }
+    }
+
+    @Test
+    public void t20_serverErrors() throws IOException, GraphException,
+                                          InterruptedException {
+        Path file = this.tempDir.resolve( "graph.txt" );
+        Files.writeString( file, "a b 1 9223372036854775807\n" );
+        String graph = "/solve?graph=" +
+                       URLEncoder.encode( file.toString(),
+                                          StandardCharsets.UTF_8 ) +
+                       "&source=a&sink=b";
+        try ( SolverServer server = new SolverServer(
+                0, new GraphCache( 1 << 20, 1 ), 2 ) ) {
+            int port = server.getPort();
+            // The cost is too large for cost scaling to scale.
+            HttpResponse< String > response =
+                    get( port, graph + "&solver=cost-scaling" );
+            assertEquals( 400, response.statusCode() );
+            assertTrue( response.body().contains( "too large" ) );
+
+            // The failure does not hold up the queries after it.
+            response = get( port, graph + "&solver=dinic" );
+            assertEquals( 200, response.statusCode() );
+            assertTrue( response.body().startsWith( "Max flow is 1\n" ) );
+        }
+    }
+
+    @Test
+    public void t21_costScalingBudget() throws IOException, GraphException {
+        Random random = new Random( 37 );
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 3000; i++ ) {
+            text.append( 'n' ).append( random.nextInt( 400 ) )
+                .append( " n" ).append( random.nextInt( 400 ) )
+                .append( ' ' ).append( 1 + random.nextInt( 50 ) )
+                .append( ' ' ).append( random.nextInt( 1000 ) )
+                .append( '\n' );
+        }
+        Path file = this.tempDir.resolve( "costs.txt" );
+        Files.writeString( file, text );
+        FlowGraph cheapest = new FlowGraph( file.toString(), "n0", "n1" );
+        long expected = new SuccessiveShortestPathSolver().maxFlow( cheapest );
+        long cost = cheapest.getFlowCost();
+
+        // Budgets from too small to find any flow to big enough for the
+        // whole solve; some run out during refinement, after the maximum
+        // flow is found, and must not claim it is the cheapest.
+        boolean stoppedRefining = false;
+        CostScalingSolver solver = new CostScalingSolver();
+        for ( long work = 1000; ; work *= 2 ) {
+            FlowGraph graph = new FlowGraph( file.toString(), "n0", "n1" );
+            FlowBounds bounds =
+                    solver.maxFlow( graph, new SolveBudget( null, work ) );
+            assertTrue( bounds.getLower() <= expected );
+            assertTrue( expected <= bounds.getUpper() );
+            if ( !bounds.isPartial() ) {
+                assertEquals( expected, bounds.getLower() );
+                assertEquals( cost, graph.getFlowCost() );
+                break;
+            }
+            assertFalse( bounds.isCheapest() );
+            if ( !bounds.isInexact() ) {
+                assertEquals( expected, bounds.getLower() );
+                stoppedRefining |= graph.getFlowCost() > cost;
+            }
+        }
+        assertTrue( stoppedRefining );
+    }
+}